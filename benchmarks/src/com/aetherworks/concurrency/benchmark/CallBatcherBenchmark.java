@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.benchmark;
+
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aetherworks.concurrency.client.CallBatcher;
+import com.aetherworks.concurrency.server.Counter;
+import com.aetherworks.concurrency.server.ServerRemote;
+import com.aetherworks.concurrency.server.ServerRemoteImpl;
+
+/**
+ * Makes calls through a {@link CallBatcher} over a full RMI round trip, from enough threads that batches can fill. The
+ * throughput results show how much batching recovers over a batch size of one (a plain call per round trip), and the
+ * sampled times show what it costs each call in latency.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class CallBatcherBenchmark {
+
+	@Param({ "1", "4", "16" })
+	public int maxBatchSize;
+
+	@Param({ "50", "200" })
+	public long lingerMicros;
+
+	private ServerRemoteImpl server;
+
+	private CallBatcher countCallsBatch;
+
+	private CallBatcher executeBatch;
+
+	@Setup
+	public void setUp() throws RemoteException {
+		Logger.getLogger(ServerRemoteImpl.class.getName()).setLevel(Level.OFF);
+
+		server = new ServerRemoteImpl();
+		final ServerRemote stub = (ServerRemote) UnicastRemoteObject.exportObject(server, 0);
+
+		countCallsBatch = new CallBatcher(stub, Counter.BATCH, maxBatchSize, lingerMicros, TimeUnit.MICROSECONDS);
+		executeBatch = new CallBatcher(stub, Counter.ATOMIC, maxBatchSize, lingerMicros, TimeUnit.MICROSECONDS);
+	}
+
+	@TearDown
+	public void tearDown() throws NoSuchObjectException {
+		UnicastRemoteObject.unexportObject(server, true);
+	}
+
+	@Benchmark
+	public int countCallsBatch() throws RemoteException, InterruptedException {
+		return countCallsBatch.call();
+	}
+
+	@Benchmark
+	public int executeBatch() throws RemoteException, InterruptedException {
+		return executeBatch.call();
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.benchmark;
+
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aetherworks.concurrency.server.ServerRemote;
+import com.aetherworks.concurrency.server.ServerRemoteImpl;
+
+/**
+ * Calls {@link ServerRemoteImpl} through a stub exported on an anonymous port, so that every call makes a full RMI round
+ * trip over loopback. Subtracting {@link ServerRemoteImplBenchmark} from this gives the cost added by RMI.
+ * <p>
+ * Server logging is turned off, so that only RMI and the server's own work are measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class RmiRoundTripBenchmark {
+
+	private ServerRemoteImpl server;
+
+	private ServerRemote stub;
+
+	@Setup
+	public void setUp() throws RemoteException {
+		Logger.getLogger(ServerRemoteImpl.class.getName()).setLevel(Level.OFF);
+
+		server = new ServerRemoteImpl();
+		stub = (ServerRemote) UnicastRemoteObject.exportObject(server, 0);
+	}
+
+	@TearDown
+	public void tearDown() throws NoSuchObjectException {
+		UnicastRemoteObject.unexportObject(server, true);
+	}
+
+	@Benchmark
+	public int countCalls() throws RemoteException {
+		return stub.countCalls();
+	}
+
+	@Benchmark
+	public int countCallsWithSynchronization() throws RemoteException {
+		return stub.countCallsWithSynchronization();
+	}
+
+	@Benchmark
+	public int countCallsWithAtomicInteger() throws RemoteException {
+		return stub.countCallsWithAtomicInteger();
+	}
+
+	@Benchmark
+	public int countCallsWithLongAdder() throws RemoteException {
+		return stub.countCallsWithLongAdder();
+	}
+
+	@Benchmark
+	public int countCallsWithStripedCounter() throws RemoteException {
+		return stub.countCallsWithStripedCounter();
+	}
+
+	@Benchmark
+	public int countCallsWithReentrantLock() throws RemoteException {
+		return stub.countCallsWithReentrantLock();
+	}
+
+	@Benchmark
+	public int countCallsWithStampedLock() throws RemoteException {
+		return stub.countCallsWithStampedLock();
+	}
+}
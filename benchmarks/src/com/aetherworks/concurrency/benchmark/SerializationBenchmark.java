@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aetherworks.concurrency.server.ServerRemote;
+import com.aetherworks.concurrency.server.ServerRemoteImpl;
+
+/**
+ * The Java serialization work RMI does on each call, without the network or the server: opening a pair of object
+ * streams (done for every call), writing and reading an <tt>int</tt> result as RMI does for primitive return values,
+ * and marshalling the stub itself (done on every registry lookup).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+	private ServerRemoteImpl server;
+
+	private ServerRemote stub;
+
+	private int result = 42;
+
+	@Setup
+	public void setUp() throws RemoteException {
+		server = new ServerRemoteImpl();
+		stub = (ServerRemote) UnicastRemoteObject.exportObject(server, 0);
+	}
+
+	@TearDown
+	public void tearDown() throws NoSuchObjectException {
+		UnicastRemoteObject.unexportObject(server, true);
+	}
+
+	@Benchmark
+	public ObjectInputStream openObjectStreams() throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		new ObjectOutputStream(bytes).flush();
+
+		return new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+	}
+
+	@Benchmark
+	public int roundTripIntResult() throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+
+		try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeInt(result);
+		}
+
+		try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			return in.readInt();
+		}
+	}
+
+	@Benchmark
+	public Object roundTripStub() throws IOException, ClassNotFoundException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+
+		try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(stub);
+		}
+
+		try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			return in.readObject();
+		}
+	}
+}
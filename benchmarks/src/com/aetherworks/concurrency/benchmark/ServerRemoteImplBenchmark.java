@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.benchmark;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.aetherworks.concurrency.server.ServerRemoteImpl;
+
+/**
+ * Calls {@link ServerRemoteImpl} methods directly, with no RMI in between, from several threads at once. This is the
+ * cost of the server-side work alone, including contention on the <tt>synch</tt> monitor.
+ * <p>
+ * The sleeping call types are left out: their cost is the sleep.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ServerRemoteImplBenchmark {
+
+	private ServerRemoteImpl server;
+
+	@Setup
+	public void setUp() {
+		server = new ServerRemoteImpl();
+	}
+
+	@Benchmark
+	public int countCalls() throws RemoteException {
+		return server.countCalls();
+	}
+
+	@Benchmark
+	public int countCallsWithSynchronization() throws RemoteException {
+		return server.countCallsWithSynchronization();
+	}
+
+	@Benchmark
+	public int countCallsWithAtomicInteger() throws RemoteException {
+		return server.countCallsWithAtomicInteger();
+	}
+
+	@Benchmark
+	public int countCallsWithLongAdder() throws RemoteException {
+		return server.countCallsWithLongAdder();
+	}
+
+	@Benchmark
+	public int countCallsWithStripedCounter() throws RemoteException {
+		return server.countCallsWithStripedCounter();
+	}
+
+	@Benchmark
+	public int countCallsWithReentrantLock() throws RemoteException {
+		return server.countCallsWithReentrantLock();
+	}
+
+	@Benchmark
+	public int countCallsWithStampedLock() throws RemoteException {
+		return server.countCallsWithStampedLock();
+	}
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client;
+
+import java.rmi.RemoteException;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.aetherworks.concurrency.server.Counter;
+import com.aetherworks.concurrency.server.ServerRemote;
+import com.google.common.base.Preconditions;
+
+/**
+ * Gathers counting calls made by many threads into a single remote invocation, so that they share one RMI round trip.
+ * <p>
+ * The first caller to arrive opens a batch and becomes its leader. Later callers join the open batch until it holds
+ * <tt>maxBatchSize</tt> calls, or until <tt>linger</tt> has passed since the leader arrived. The leader then sends the
+ * whole batch, and every caller in it returns its own call number. There is no background thread, so a batcher needs no
+ * shutting down. Batching trades latency for throughput: a call can wait up to the linger time for others to join it.
+ * <p>
+ * Calls to {@link Counter#BATCH} are sent with {@link ServerRemote#countCallsBatch(int)}; all other counters with
+ * {@link ServerRemote#executeBatch(java.util.List)}.
+ */
+public class CallBatcher {
+	private final static Logger LOGGER = Logger.getLogger(CallBatcher.class.getName());
+
+	public static final int DEFAULT_MAX_BATCH_SIZE = 16;
+
+	public static final long DEFAULT_LINGER_MICROS = 200;
+
+	private final ServerRemote server;
+
+	private final Counter operation;
+
+	private final int maxBatchSize;
+
+	private final long lingerNanos;
+
+	/**
+	 * The batch new calls join, or null if there isn't one open. Guarded by <tt>this</tt>.
+	 */
+	private Batch openBatch;
+
+	private final AtomicLong batchesSent = new AtomicLong();
+
+	private final AtomicLong callsSent = new AtomicLong();
+
+	public CallBatcher(final ServerRemote server, final Counter operation) {
+		this(server, operation, DEFAULT_MAX_BATCH_SIZE, DEFAULT_LINGER_MICROS, TimeUnit.MICROSECONDS);
+	}
+
+	/**
+	 * @param maxBatchSize
+	 *        The most calls sent in one invocation. A batch is sent as soon as it is full.
+	 * @param linger
+	 *        The longest a batch waits for more calls once its first call has arrived.
+	 */
+	public CallBatcher(final ServerRemote server, final Counter operation, final int maxBatchSize, final long linger, final TimeUnit unit) {
+		Preconditions.checkArgument(maxBatchSize > 0, "A batch must hold at least one call.");
+		Preconditions.checkArgument(linger >= 0, "The linger time can't be negative.");
+
+		this.server = server;
+		this.operation = operation;
+		this.maxBatchSize = maxBatchSize;
+		this.lingerNanos = unit.toNanos(linger);
+	}
+
+	/**
+	 * Make one call as part of a batch, blocking until the batch has been sent.
+	 * 
+	 * @return The call number the server gave this call.
+	 */
+	public int call() throws RemoteException, InterruptedException {
+		final Batch batch;
+		final int position;
+		final boolean isLeader;
+
+		synchronized (this) {
+			isLeader = openBatch == null;
+
+			if (isLeader) {
+				openBatch = new Batch();
+			}
+
+			batch = openBatch;
+			position = batch.size++;
+
+			if (batch.size >= maxBatchSize) {
+				openBatch = null;
+				batch.full.countDown();
+			}
+		}
+
+		if (isLeader) {
+			// The batch is sent even if the leader is interrupted, or the calls that joined it would wait forever.
+			boolean interrupted = false;
+
+			try {
+				batch.full.await(lingerNanos, TimeUnit.NANOSECONDS);
+			} catch (final InterruptedException e) {
+				interrupted = true;
+			}
+
+			final int size;
+			synchronized (this) {
+				if (openBatch == batch) {
+					openBatch = null;
+				}
+
+				size = batch.size;
+			}
+
+			send(batch, size);
+
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		try {
+			return batch.callNumbers.get()[position];
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof RemoteException) {
+				throw (RemoteException) e.getCause();
+			}
+
+			throw new RemoteException("Batched call failed.", e.getCause());
+		}
+	}
+
+	private void send(final Batch batch, final int size) {
+		try {
+			final int[] callNumbers;
+
+			if (operation == Counter.BATCH) {
+				final int lastCallNumber = server.countCallsBatch(size);
+
+				callNumbers = new int[size];
+				for (int i = 0; i < size; i++) {
+					callNumbers[i] = lastCallNumber - size + 1 + i;
+				}
+			} else {
+				callNumbers = server.executeBatch(Collections.nCopies(size, operation));
+			}
+
+			batchesSent.incrementAndGet();
+			callsSent.addAndGet(size);
+
+			LOGGER.log(Level.FINE, "Sent batch of " + size + " " + operation + " calls.");
+
+			batch.callNumbers.complete(callNumbers);
+		} catch (final RemoteException | RuntimeException e) {
+			batch.callNumbers.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * The mean number of calls per batch sent so far, which shows how much batching the load actually allowed.
+	 */
+	public double getMeanBatchSize() {
+		final long batches = batchesSent.get();
+
+		return batches == 0 ? 0 : callsSent.get() / (double) batches;
+	}
+
+	public long getBatchesSent() {
+		return batchesSent.get();
+	}
+
+	/**
+	 * Calls gathered into a single invocation.
+	 */
+	private static class Batch {
+		/**
+		 * The number of calls that have joined. Guarded by the batcher.
+		 */
+		private int size = 0;
+
+		/**
+		 * Released when the batch reaches its maximum size, so the leader can send it without waiting out the linger.
+		 */
+		private final CountDownLatch full = new CountDownLatch(1);
+
+		private final CompletableFuture<int[]> callNumbers = new CompletableFuture<>();
+	}
+}
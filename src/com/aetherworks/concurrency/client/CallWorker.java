@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.aetherworks.concurrency.client.RemoteCalls.CallType;
+import com.aetherworks.concurrency.server.ServerRemote;
+import com.aetherworks.concurrency.util.CommandLineArgs;
+
+/**
+ * A long-lived worker process that makes calls on behalf of a parent process, so that calls can come from a separate
+ * JVM without starting a new one for every call.
+ * <p>
+ * The worker looks up the server once, connects back to the parent over a loopback socket, and then makes one call for
+ * each {@link #COMMAND_CALL} it receives, replying with whether the call failed, the call number returned by the server,
+ * and the execution time in nanoseconds. It exits on {@link #COMMAND_STOP} or when the parent closes the connection.
+ */
+public class CallWorker {
+	private final static Logger LOGGER = Logger.getLogger(CallWorker.class.getName());
+
+	/**
+	 * Sent by the parent to ask the worker to make one call.
+	 */
+	public static final byte COMMAND_CALL = 1;
+
+	/**
+	 * Sent by the parent to ask the worker to exit.
+	 */
+	public static final byte COMMAND_STOP = 0;
+
+	/**
+	 * Expects the arguments: <tt>-p</tt> registry or NIO server port, optionally <tt>-h</tt> server host and <tt>-r</tt>
+	 * {@link Transport}, <tt>-n</tt> service name, <tt>-t</tt> call type, <tt>-c</tt> the parent's loopback port,
+	 * <tt>-i</tt> this worker's number, which is sent to the parent when the worker connects, and optionally
+	 * <tt>-z</tt> the payload size and <tt>-k</tt> the chunk size in KB.
+	 */
+	public static void main(final String[] args) throws Exception {
+		final CommandLineArgs parsedArgs = CommandLineArgs.parseArgs(args);
+
+		final int serverPort = Integer.parseInt(parsedArgs.getNotNull('p'));
+		final String serverHost = parsedArgs.get('h');
+		final Transport transport = parsedArgs.get('r') == null ? Transport.RMI : Transport.valueOf(parsedArgs.get('r'));
+		final String serviceName = parsedArgs.getNotNull('n');
+		final CallType callType = CallType.valueOf(parsedArgs.getNotNull('t'));
+		final int parentPort = Integer.parseInt(parsedArgs.getNotNull('c'));
+		final int workerNumber = Integer.parseInt(parsedArgs.getNotNull('i'));
+		final int payloadSize = parsedArgs.get('z') == null ? RemoteCalls.DEFAULT_PAYLOAD_SIZE : Integer.parseInt(parsedArgs.get('z'));
+		final int chunkKilobytes = parsedArgs.get('k') == null ? RemoteCalls.DEFAULT_CHUNK_KILOBYTES : Integer.parseInt(parsedArgs
+				.get('k'));
+
+		try {
+			// Look the server up before connecting, so the worker is ready to make calls as soon as the parent sees it.
+			final ServerRemote server = transport.connect(serverHost, serverPort, serviceName);
+
+			try (final Socket socket = new Socket(InetAddress.getLoopbackAddress(), parentPort)) {
+				socket.setTcpNoDelay(true);
+
+				final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+				final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+				out.writeInt(workerNumber);
+				out.flush();
+
+				serve(new TimedFunctionExecutor(server, RemoteCalls.getCall(callType, server, payloadSize, chunkKilobytes)), in, out);
+			}
+		} catch (final Exception e) {
+			LOGGER.log(Level.WARNING, "Worker " + workerNumber + " failed.", e);
+
+			System.exit(1);
+		}
+
+		System.exit(0);
+	}
+
+	private static void serve(final TimedFunctionExecutor runner, final DataInputStream in, final DataOutputStream out) throws IOException {
+		while (true) {
+			final byte command;
+
+			try {
+				command = in.readByte();
+			} catch (final EOFException e) {
+				LOGGER.log(Level.FINE, "Parent closed the connection.");
+				return;
+			}
+
+			if (command == COMMAND_STOP) {
+				return;
+			}
+
+			try {
+				final long executionNanos = runner.call();
+
+				out.writeBoolean(false);
+				out.writeInt(runner.getCallNumber());
+				out.writeLong(executionNanos);
+			} catch (final Exception e) {
+				LOGGER.log(Level.FINE, "Call failed.", e);
+
+				out.writeBoolean(true);
+				out.writeInt(-1);
+				out.writeLong(0);
+			}
+
+			out.flush();
+		}
+	}
+}
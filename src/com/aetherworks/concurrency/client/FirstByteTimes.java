@@ -0,0 +1,39 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client;
+
+import com.aetherworks.concurrency.stats.LatencyHistogram;
+
+/**
+ * How long the transfer call types waited for the first bytes of their results, from every call made in this JVM,
+ * alongside {@link com.aetherworks.concurrency.transport.InstrumentedClientSocketFactory#getStatistics()}.
+ */
+public final class FirstByteTimes {
+
+	private static final LatencyHistogram TIMES = new LatencyHistogram();
+
+	private FirstByteTimes() {
+	}
+
+	static void record(final long nanos) {
+		synchronized (TIMES) {
+			TIMES.recordValue(nanos);
+		}
+	}
+
+	/**
+	 * The times recorded since the last drain, which are then forgotten.
+	 */
+	public static LatencyHistogram drain() {
+		final LatencyHistogram times = new LatencyHistogram();
+
+		synchronized (TIMES) {
+			times.add(TIMES);
+			TIMES.reset();
+		}
+
+		return times;
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * How long a {@link LoopingTimedFunctionExecutor} keeps calling the server: either a fixed number of iterations or a
+ * fixed duration, with an optional pause (think time) between calls.
+ */
+public class LoopSettings {
+
+	private final long iterations;
+	private final long durationNanos;
+	private final long thinkTimeNanos;
+
+	private LoopSettings(final long iterations, final long durationNanos, final long thinkTimeNanos) {
+		this.iterations = iterations;
+		this.durationNanos = durationNanos;
+		this.thinkTimeNanos = thinkTimeNanos;
+	}
+
+	/**
+	 * Make exactly <tt>iterations</tt> calls.
+	 */
+	public static LoopSettings forIterations(final long iterations) {
+		Preconditions.checkArgument(iterations > 0, "At least one iteration is needed.");
+
+		return new LoopSettings(iterations, 0, 0);
+	}
+
+	/**
+	 * Keep making calls until <tt>duration</tt> has elapsed. The last call may finish after this time.
+	 */
+	public static LoopSettings forDuration(final long duration, final TimeUnit unit) {
+		Preconditions.checkArgument(duration > 0, "The duration must be positive.");
+
+		return new LoopSettings(0, unit.toNanos(duration), 0);
+	}
+
+	/**
+	 * A copy of these settings that pauses for <tt>thinkTime</tt> after each call. Think time is not included in the
+	 * latency of a call.
+	 */
+	public LoopSettings withThinkTime(final long thinkTime, final TimeUnit unit) {
+		Preconditions.checkArgument(thinkTime >= 0, "The think time can't be negative.");
+
+		return new LoopSettings(iterations, durationNanos, unit.toNanos(thinkTime));
+	}
+
+	/**
+	 * True if the loop should make another call, given how many it has already made and when it started.
+	 */
+	boolean shouldContinue(final long iterationsCompleted, final long startTime) {
+		if (iterations > 0) {
+			return iterationsCompleted < iterations;
+		}
+
+		return System.nanoTime() - startTime < durationNanos;
+	}
+
+	public long getThinkTimeNanos() {
+		return thinkTimeNanos;
+	}
+
+	@Override
+	public String toString() {
+		final String limit = iterations > 0 ? iterations + " iterations" : TimeUnit.NANOSECONDS.toMillis(durationNanos) + " ms";
+
+		return limit + ", think time " + TimeUnit.NANOSECONDS.toMicros(thinkTimeNanos) + " us";
+	}
+}
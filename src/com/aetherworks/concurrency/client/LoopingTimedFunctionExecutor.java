@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.aetherworks.concurrency.client.call.executor.CallExecutionResults;
+import com.aetherworks.concurrency.server.ServerRemote;
+import com.aetherworks.concurrency.stats.LatencyHistogram;
+import com.aetherworks.concurrency.stats.LatencySamples;
+import com.google.common.base.Function;
+
+/**
+ * Repeatedly executes the provided function against the same server stub, timing each call, for as long as its
+ * {@link LoopSettings} allow. Each call is made as soon as the previous one (plus any think time) has finished, so this
+ * measures steady-state latency and throughput of a single closed-loop caller.
+ */
+public class LoopingTimedFunctionExecutor implements Callable<CallExecutionResults> {
+	private final static Logger LOGGER = Logger.getLogger(LoopingTimedFunctionExecutor.class.getName());
+
+	private final TimedFunctionExecutor executor;
+
+	private final LoopSettings settings;
+
+	public LoopingTimedFunctionExecutor(final ServerRemote server, final Function<ServerRemote, Integer> call, final LoopSettings settings) {
+		executor = new TimedFunctionExecutor(server, call);
+		this.settings = settings;
+	}
+
+	/**
+	 * Returns the latency of every call made by this worker, and its throughput.
+	 * <p>
+	 * {@inheritDoc}
+	 */
+	@Override
+	public CallExecutionResults call() throws InterruptedException {
+		final LatencyHistogram latencies = new LatencyHistogram();
+		final LatencySamples samples = new LatencySamples();
+		int numberOfErrors = 0;
+
+		final long startTime = System.nanoTime();
+		long iterationsCompleted = 0;
+
+		while (settings.shouldContinue(iterationsCompleted, startTime)) {
+			try {
+				final long latency = executor.call();
+
+				latencies.recordValue(latency);
+				samples.recordValue(latency);
+			} catch (final Exception e) {
+				LOGGER.log(Level.FINE, "Call failed.", e);
+				numberOfErrors++;
+			}
+
+			iterationsCompleted++;
+
+			if (settings.getThinkTimeNanos() > 0) {
+				TimeUnit.NANOSECONDS.sleep(settings.getThinkTimeNanos());
+			}
+		}
+
+		return new CallExecutionResults(latencies, samples, numberOfErrors, System.nanoTime() - startTime);
+	}
+}
@@ -0,0 +1,18 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client;
+
+/**
+ * Thrown when a remote call made by the client did not complete successfully, so its timing should not be recorded.
+ */
+public class RemoteCallFailedException extends Exception {
+
+	private static final long serialVersionUID = -2412379215301734625L;
+
+	public RemoteCallFailedException(final String message) {
+		super(message);
+	}
+
+}
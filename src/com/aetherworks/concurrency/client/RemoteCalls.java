@@ -5,8 +5,15 @@
 package com.aetherworks.concurrency.client;
 
 import java.rmi.RemoteException;
+import java.util.concurrent.TimeUnit;
 
+import com.aetherworks.concurrency.server.Counter;
+import com.aetherworks.concurrency.server.RemoteCursor;
 import com.aetherworks.concurrency.server.ServerRemote;
+import com.aetherworks.concurrency.server.payload.ExternalizableNode;
+import com.aetherworks.concurrency.server.payload.PayloadReply;
+import com.aetherworks.concurrency.server.payload.Payloads;
+import com.aetherworks.concurrency.server.payload.SerializableNode;
 import com.google.common.base.Function;
 
 /**
@@ -14,10 +21,106 @@ import com.google.common.base.Function;
  */
 public class RemoteCalls {
 	public enum CallType {
-		BASIC, SYNC, SLEEP, SYNC_SLEEP
+		BASIC(Counter.BASIC), SYNC(Counter.SYNC), SLEEP(Counter.SLEEP), SYNC_SLEEP(Counter.SYNC_SLEEP), ATOMIC(Counter.ATOMIC), LONG_ADDER(
+				Counter.LONG_ADDER), STRIPED(Counter.STRIPED), LOCK(Counter.LOCK), STAMPED_LOCK(Counter.STAMPED_LOCK),
+
+		/**
+		 * Calls from every thread sharing a {@link #getCall} function are gathered by a {@link CallBatcher} and counted
+		 * together with {@link ServerRemote#countCallsBatch(int)}.
+		 */
+		BATCH(Counter.BATCH),
+
+		/**
+		 * The same work as {@link #ATOMIC}, but gathered by a {@link CallBatcher} and sent with
+		 * {@link ServerRemote#executeBatch(java.util.List)}.
+		 */
+		BATCHED_ATOMIC(Counter.ATOMIC),
+
+		/**
+		 * Sends a random byte array, of the payload size in KB, with {@link ServerRemote#echoBytes(byte[])}, and gets it
+		 * back.
+		 */
+		BYTES_PAYLOAD(Counter.BYTES),
+
+		/**
+		 * Sends a binary tree of {@link SerializableNode}s, as deep as the payload size, and gets it back.
+		 */
+		SERIALIZABLE_PAYLOAD(Counter.SERIALIZABLE),
+
+		/**
+		 * Sends the same tree as {@link #SERIALIZABLE_PAYLOAD}, but of {@link ExternalizableNode}s, and gets it back.
+		 */
+		EXTERNALIZABLE_PAYLOAD(Counter.EXTERNALIZABLE),
+
+		/**
+		 * Gets a result of the payload size in KB in one piece, with {@link ServerRemote#fetchAll(int)}.
+		 */
+		ONE_SHOT_TRANSFER(Counter.FETCH_ALL),
+
+		/**
+		 * Gets the same result as {@link #ONE_SHOT_TRANSFER}, pulled in chunks through the cursor from
+		 * {@link ServerRemote#openCursor(int)}, and throws each chunk away once it has arrived.
+		 */
+		CHUNKED_TRANSFER(Counter.CURSOR);
+
+		private final Counter counter;
+
+		private CallType(final Counter counter) {
+			this.counter = counter;
+		}
+
+		/**
+		 * The server-side counter incremented by this type of call.
+		 */
+		public Counter getCounter() {
+			return counter;
+		}
 	}
 
+	/**
+	 * The payload size used when none is given: 4KB, or a tree four deep.
+	 */
+	public static final int DEFAULT_PAYLOAD_SIZE = 4;
+
+	/**
+	 * The size of the chunks {@link CallType#CHUNKED_TRANSFER} pulls when none is given, in KB.
+	 */
+	public static final int DEFAULT_CHUNK_KILOBYTES = 64;
+
 	public static Function<ServerRemote, Integer> getCall(final CallType type, final ServerRemote server) {
+		return getCall(type, server, DEFAULT_PAYLOAD_SIZE);
+	}
+
+	/**
+	 * Get the function for a type of call, with the given payload size for the payload call types.
+	 */
+	public static Function<ServerRemote, Integer> getCall(final CallType type, final ServerRemote server, final int payloadSize) {
+		return getCall(type, server, payloadSize, DEFAULT_CHUNK_KILOBYTES);
+	}
+
+	/**
+	 * Get the function for a type of call, with the given payload size for the payload call types, and chunk size for
+	 * {@link CallType#CHUNKED_TRANSFER}.
+	 */
+	public static Function<ServerRemote, Integer> getCall(final CallType type, final ServerRemote server, final int payloadSize,
+			final int chunkKilobytes) {
+		return getCall(type, server, payloadSize, chunkKilobytes, CallBatcher.DEFAULT_MAX_BATCH_SIZE, CallBatcher.DEFAULT_LINGER_MICROS,
+				TimeUnit.MICROSECONDS);
+	}
+
+	/**
+	 * Get the function for a type of call. Batched call types share one {@link CallBatcher} between every thread that
+	 * applies the returned function, with the given batch size and linger time; other call types ignore them.
+	 * 
+	 * @param payloadSize
+	 *        For {@link CallType#BYTES_PAYLOAD}, the size of the array in KB, and for the other payload call types, the
+	 *        depth of the tree. The payload is built once and sent with every call. For the transfer call types, the size
+	 *        of the result in KB. Other call types ignore it.
+	 * @param chunkKilobytes
+	 *        The size of the chunks {@link CallType#CHUNKED_TRANSFER} pulls, in KB. Other call types ignore it.
+	 */
+	public static Function<ServerRemote, Integer> getCall(final CallType type, final ServerRemote server, final int payloadSize,
+			final int chunkKilobytes, final int maxBatchSize, final long batchLinger, final TimeUnit unit) {
 		Function<ServerRemote, Integer> func;
 
 		switch (type) {
@@ -33,6 +136,40 @@ public class RemoteCalls {
 			case SYNC_SLEEP:
 				func = getCountCallsWithSleepAndSynchFunction(server);
 				break;
+			case ATOMIC:
+				func = getCountCallsWithAtomicIntegerFunction(server);
+				break;
+			case LONG_ADDER:
+				func = getCountCallsWithLongAdderFunction(server);
+				break;
+			case STRIPED:
+				func = getCountCallsWithStripedCounterFunction(server);
+				break;
+			case LOCK:
+				func = getCountCallsWithReentrantLockFunction(server);
+				break;
+			case STAMPED_LOCK:
+				func = getCountCallsWithStampedLockFunction(server);
+				break;
+			case BATCH:
+			case BATCHED_ATOMIC:
+				func = getBatchedFunction(new CallBatcher(server, type.getCounter(), maxBatchSize, batchLinger, unit));
+				break;
+			case BYTES_PAYLOAD:
+				func = getEchoBytesFunction(server, Payloads.bytes(payloadSize));
+				break;
+			case SERIALIZABLE_PAYLOAD:
+				func = getEchoSerializableFunction(server, Payloads.serializableTree(payloadSize));
+				break;
+			case EXTERNALIZABLE_PAYLOAD:
+				func = getEchoExternalizableFunction(server, Payloads.externalizableTree(payloadSize));
+				break;
+			case ONE_SHOT_TRANSFER:
+				func = getFetchAllFunction(server, payloadSize);
+				break;
+			case CHUNKED_TRANSFER:
+				func = getChunkedFetchFunction(server, payloadSize, chunkKilobytes * 1024);
+				break;
 			default:
 				func = null;
 				break;
@@ -41,6 +178,26 @@ public class RemoteCalls {
 		return func;
 	}
 
+	/**
+	 * The length of the serialized payload that each call of a type sends, and gets back, or zero if it sends none. For
+	 * the transfer call types, the length of the result, which is only sent one way.
+	 */
+	public static int getPayloadBytes(final CallType type, final int payloadSize) {
+		switch (type) {
+			case BYTES_PAYLOAD:
+				return Payloads.serializedSize(Payloads.bytes(payloadSize));
+			case SERIALIZABLE_PAYLOAD:
+				return Payloads.serializedSize(Payloads.serializableTree(payloadSize));
+			case EXTERNALIZABLE_PAYLOAD:
+				return Payloads.serializedSize(Payloads.externalizableTree(payloadSize));
+			case ONE_SHOT_TRANSFER:
+			case CHUNKED_TRANSFER:
+				return payloadSize * 1024;
+			default:
+				return 0;
+		}
+	}
+
 	private static Function<ServerRemote, Integer> getCountCallsFunction(final ServerRemote server) {
 		final Function<ServerRemote, Integer> countCalls = new Function<ServerRemote, Integer>() {
 			@Override
@@ -100,4 +257,206 @@ public class RemoteCalls {
 		};
 		return countCalls;
 	}
+
+	private static Function<ServerRemote, Integer> getCountCallsWithAtomicIntegerFunction(final ServerRemote server) {
+		final Function<ServerRemote, Integer> countCalls = new Function<ServerRemote, Integer>() {
+			@Override
+			public Integer apply(final ServerRemote input) {
+				try {
+					return server.countCallsWithAtomicInteger();
+				} catch (final RemoteException e) {
+					e.printStackTrace();
+					return -1;
+				}
+			}
+		};
+		return countCalls;
+	}
+
+	private static Function<ServerRemote, Integer> getCountCallsWithLongAdderFunction(final ServerRemote server) {
+		final Function<ServerRemote, Integer> countCalls = new Function<ServerRemote, Integer>() {
+			@Override
+			public Integer apply(final ServerRemote input) {
+				try {
+					return server.countCallsWithLongAdder();
+				} catch (final RemoteException e) {
+					e.printStackTrace();
+					return -1;
+				}
+			}
+		};
+		return countCalls;
+	}
+
+	private static Function<ServerRemote, Integer> getCountCallsWithStripedCounterFunction(final ServerRemote server) {
+		final Function<ServerRemote, Integer> countCalls = new Function<ServerRemote, Integer>() {
+			@Override
+			public Integer apply(final ServerRemote input) {
+				try {
+					return server.countCallsWithStripedCounter();
+				} catch (final RemoteException e) {
+					e.printStackTrace();
+					return -1;
+				}
+			}
+		};
+		return countCalls;
+	}
+
+	private static Function<ServerRemote, Integer> getCountCallsWithReentrantLockFunction(final ServerRemote server) {
+		final Function<ServerRemote, Integer> countCalls = new Function<ServerRemote, Integer>() {
+			@Override
+			public Integer apply(final ServerRemote input) {
+				try {
+					return server.countCallsWithReentrantLock();
+				} catch (final RemoteException e) {
+					e.printStackTrace();
+					return -1;
+				}
+			}
+		};
+		return countCalls;
+	}
+
+	private static Function<ServerRemote, Integer> getCountCallsWithStampedLockFunction(final ServerRemote server) {
+		final Function<ServerRemote, Integer> countCalls = new Function<ServerRemote, Integer>() {
+			@Override
+			public Integer apply(final ServerRemote input) {
+				try {
+					return server.countCallsWithStampedLock();
+				} catch (final RemoteException e) {
+					e.printStackTrace();
+					return -1;
+				}
+			}
+		};
+		return countCalls;
+	}
+
+	private static Function<ServerRemote, Integer> getEchoBytesFunction(final ServerRemote server, final byte[] payload) {
+		final Function<ServerRemote, Integer> countCalls = new Function<ServerRemote, Integer>() {
+			@Override
+			public Integer apply(final ServerRemote input) {
+				try {
+					return server.echoBytes(payload).getCallNumber();
+				} catch (final RemoteException e) {
+					e.printStackTrace();
+					return -1;
+				}
+			}
+		};
+		return countCalls;
+	}
+
+	private static Function<ServerRemote, Integer> getEchoSerializableFunction(final ServerRemote server, final SerializableNode tree) {
+		final Function<ServerRemote, Integer> countCalls = new Function<ServerRemote, Integer>() {
+			@Override
+			public Integer apply(final ServerRemote input) {
+				try {
+					return server.echoSerializable(tree).getCallNumber();
+				} catch (final RemoteException e) {
+					e.printStackTrace();
+					return -1;
+				}
+			}
+		};
+		return countCalls;
+	}
+
+	private static Function<ServerRemote, Integer> getEchoExternalizableFunction(final ServerRemote server, final ExternalizableNode tree) {
+		final Function<ServerRemote, Integer> countCalls = new Function<ServerRemote, Integer>() {
+			@Override
+			public Integer apply(final ServerRemote input) {
+				try {
+					return server.echoExternalizable(tree).getCallNumber();
+				} catch (final RemoteException e) {
+					e.printStackTrace();
+					return -1;
+				}
+			}
+		};
+		return countCalls;
+	}
+
+	/**
+	 * Checks that the whole result arrived, and records its time to first byte, which is the whole call for a one-shot
+	 * transfer.
+	 */
+	private static Function<ServerRemote, Integer> getFetchAllFunction(final ServerRemote server, final int kilobytes) {
+		final Function<ServerRemote, Integer> countCalls = new Function<ServerRemote, Integer>() {
+			@Override
+			public Integer apply(final ServerRemote input) {
+				final long start = System.nanoTime();
+				try {
+					final PayloadReply<byte[]> reply = server.fetchAll(kilobytes);
+					FirstByteTimes.record(System.nanoTime() - start);
+
+					return reply.getPayload().length == kilobytes * 1024 ? reply.getCallNumber() : -1;
+				} catch (final RemoteException e) {
+					e.printStackTrace();
+					return -1;
+				}
+			}
+		};
+		return countCalls;
+	}
+
+	/**
+	 * Pulls chunks until the whole result has arrived, holding only one at a time, then closes the cursor. Records the
+	 * time to the first chunk.
+	 */
+	private static Function<ServerRemote, Integer> getChunkedFetchFunction(final ServerRemote server, final int kilobytes,
+			final int chunkBytes) {
+		final long expectedBytes = kilobytes * 1024L;
+
+		final Function<ServerRemote, Integer> countCalls = new Function<ServerRemote, Integer>() {
+			@Override
+			public Integer apply(final ServerRemote input) {
+				final long start = System.nanoTime();
+				try {
+					final PayloadReply<RemoteCursor> reply = server.openCursor(kilobytes);
+					final RemoteCursor cursor = reply.getPayload();
+
+					long received = 0;
+					try {
+						byte[] chunk = cursor.next(chunkBytes);
+						FirstByteTimes.record(System.nanoTime() - start);
+
+						while (chunk != null) {
+							received += chunk.length;
+
+							// The size is known, so there's no need for another round trip to find the end.
+							chunk = received < expectedBytes ? cursor.next(chunkBytes) : null;
+						}
+					} finally {
+						cursor.close();
+					}
+
+					return received == expectedBytes ? reply.getCallNumber() : -1;
+				} catch (final RemoteException e) {
+					e.printStackTrace();
+					return -1;
+				}
+			}
+		};
+		return countCalls;
+	}
+
+	private static Function<ServerRemote, Integer> getBatchedFunction(final CallBatcher batcher) {
+		final Function<ServerRemote, Integer> countCalls = new Function<ServerRemote, Integer>() {
+			@Override
+			public Integer apply(final ServerRemote input) {
+				try {
+					return batcher.call();
+				} catch (final RemoteException e) {
+					e.printStackTrace();
+					return -1;
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return -1;
+				}
+			}
+		};
+		return countCalls;
+	}
 }
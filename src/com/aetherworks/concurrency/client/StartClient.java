@@ -4,28 +4,25 @@
 
 package com.aetherworks.concurrency.client;
 
-import java.rmi.AccessException;
-import java.rmi.ConnectException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.nio.file.Path;
 import java.rmi.NotBoundException;
-import java.rmi.RemoteException;
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
 import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import com.aetherworks.concurrency.client.RemoteCalls.CallType;
-import com.aetherworks.concurrency.client.call.executor.CallExecutor;
-import com.aetherworks.concurrency.client.call.factory.CallFactory;
-import com.aetherworks.concurrency.client.call.factory.SeparateProcessCallFactory;
-import com.aetherworks.concurrency.client.call.factory.SingleProcessCallFactory;
-import com.aetherworks.concurrency.server.ServerRemote;
-import com.aetherworks.concurrency.util.CommandLineArgs;
+import com.aetherworks.concurrency.client.sweep.SweepRunner;
+import com.aetherworks.concurrency.client.sweep.SweepSettings;
 
 /**
  * Start class for the client.
  * <p>
- * Modify the provided class variables to set up the program, and run the client by starting through the main method.
+ * Give the path of a properties file as the only argument to run a sweep over the concurrency levels, process modes and
+ * call types it lists; see {@link SweepSettings} for the keys. With no argument, every call type is run once with
+ * {@link SweepSettings#defaults()}.
+ * <p>
+ * Exits with {@link #REGRESSION_EXIT_VALUE} if the sweep has a baseline to compare with and any cell regressed against it.
  * 
  * @author Angus Macdonald (amacdonald@aetherworks.com)
  */
@@ -33,48 +30,22 @@ public class StartClient {
 
 	private final static Logger LOGGER = Logger.getLogger(StartClient.class.getName());
 
-	private static final String REMOTE_SERVICE_BINDING = "server-remote";
-
-	private static final String SERVER_HOSTNAME = "localhost";
-	private static final int SERVER_PORT = 1099;
-
-	private static final int NUM_THREADS = 2;
-
-	private static final boolean IS_SINGLE_PROCESS = false;
-
-	public static void main(final String[] args) throws RemoteException, NotBoundException, InterruptedException, ExecutionException {
-
-		for (final CallType callType : CallType.values()) {
-			final long avgTimeToExecute = CallExecutor.execute(NUM_THREADS, createNewCall(IS_SINGLE_PROCESS, callType));
-			LOGGER.log(Level.INFO, callType.name() + ": " + avgTimeToExecute + " ms.");
-		}
-
-	}
+	/**
+	 * The exit value when a cell regressed against the baseline, distinct from that of a failure to run the sweep.
+	 */
+	public static final int REGRESSION_EXIT_VALUE = 2;
 
-	private static CallFactory createNewCall(final boolean singleProcess, final CallType callType) throws RemoteException,
-			NotBoundException {
-		if (singleProcess) {
-			final Registry registry = LocateRegistry.getRegistry(SERVER_HOSTNAME, SERVER_PORT);
-			final ServerRemote server = getServer(registry);
-
-			return new SingleProcessCallFactory(server, RemoteCalls.getCall(callType, server));
-		} else {
-			final CommandLineArgs args = new CommandLineArgs();
-			args.put('p', SERVER_PORT);
-			args.put('h', SERVER_HOSTNAME);
-			args.put('n', REMOTE_SERVICE_BINDING);
-			args.put('t', callType.name());
-			return new SeparateProcessCallFactory(args.getArgsAsList());
-		}
-	}
+	public static void main(final String[] args) throws IOException, NotBoundException, InterruptedException, ExecutionException {
+		final SweepSettings settings = args.length > 0 ? SweepSettings.load(Path.of(args[0])) : SweepSettings.defaults();
 
-	private static ServerRemote getServer(final Registry registry) throws RemoteException, NotBoundException, AccessException {
 		try {
-			return (ServerRemote) registry.lookup(REMOTE_SERVICE_BINDING);
-		} catch (final ConnectException e) {
+			if (!new SweepRunner(settings).run()) {
+				LOGGER.log(Level.SEVERE, "Latencies regressed against the baseline.");
+				System.exit(REGRESSION_EXIT_VALUE);
+			}
+		} catch (final ConnectException | java.rmi.ConnectException e) {
 			LOGGER.log(Level.SEVERE, "Remote server not active.");
 			System.exit(1);
 		}
-		return null;
 	}
 }
@@ -4,19 +4,21 @@
 
 package com.aetherworks.concurrency.client;
 
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
+import java.io.File;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.annotation.Nullable;
+
 import com.aetherworks.concurrency.client.RemoteCalls.CallType;
+import com.aetherworks.concurrency.client.call.factory.StartGate;
+import com.aetherworks.concurrency.client.call.result.ResultChannel;
 import com.aetherworks.concurrency.server.ServerRemote;
 import com.aetherworks.concurrency.util.CommandLineArgs;
 import com.google.common.base.Function;
 import com.google.common.base.Stopwatch;
-import com.google.common.primitives.Ints;
 
 /**
  * Executes the provided function and times how long execution took to complete.
@@ -30,47 +32,129 @@ public class TimedFunctionExecutor implements Callable<Long> {
 
 	private final Function<ServerRemote, Integer> call;
 
+	@Nullable
+	private final StartGate startGate;
+
+	private volatile int callNumber;
+
+	/**
+	 * When this task was created, which is taken to be when it was submitted.
+	 */
+	private final long creationTime = System.nanoTime();
+
+	private volatile long startDelay;
+
 	public TimedFunctionExecutor(final ServerRemote server, final Function<ServerRemote, Integer> call) {
+		this(server, call, null);
+	}
+
+	/**
+	 * @param startGate
+	 *        If not null, the first execution of {@link #call()} waits for this gate to open before making the call, and
+	 *        its start delay is measured from when the gate opened rather than from when this task was created.
+	 */
+	public TimedFunctionExecutor(final ServerRemote server, final Function<ServerRemote, Integer> call, @Nullable final StartGate startGate) {
 		this.server = server;
 		this.call = call;
+		this.startGate = startGate;
 	}
 
 	/**
-	 * Returns the time in MS it took to complete execution.
+	 * Returns the time in nanoseconds it took to complete execution.
 	 * <p>
 	 * {@inheritDoc}
+	 * 
+	 * @throws RemoteCallFailedException
+	 *         If the remote call failed, in which case there is no meaningful execution time.
 	 */
 	@Override
 	public Long call() throws Exception {
+		final long readyTime = startGate == null ? creationTime : startGate.awaitStart(creationTime);
+
+		startDelay = System.nanoTime() - readyTime;
+
 		final Stopwatch timer = Stopwatch.createStarted();
 
-		final int callNumber = call.apply(server);
+		callNumber = call.apply(server);
 
 		timer.stop();
 
-		final long timeElapsed = timer.elapsed(TimeUnit.MILLISECONDS);
+		final long timeElapsed = timer.elapsed(TimeUnit.NANOSECONDS);
+
+		if (callNumber < 0) {
+			throw new RemoteCallFailedException("Remote call failed after " + timeElapsed + " ns.");
+		}
 
-		LOGGER.log(Level.FINE, "Call number: " + callNumber + " (" + timeElapsed + " ms)");
+		LOGGER.log(Level.FINE, "Call number: " + callNumber + " (" + timeElapsed + " ns)");
 
 		return timeElapsed;
 	}
 
+	/**
+	 * The call number returned by the server on the last execution of {@link #call()}.
+	 */
+	public int getCallNumber() {
+		return callNumber;
+	}
+
+	/**
+	 * The time in nanoseconds between this task being created, or its start gate opening, and the last execution of
+	 * {@link #call()} starting.
+	 */
+	public long getStartDelay() {
+		return startDelay;
+	}
+
+	/**
+	 * Run a single call and write its result to the {@link ResultChannel} slot given by the parent process.
+	 * <p>
+	 * Expects the arguments: <tt>-p</tt> registry or NIO server port, optionally <tt>-h</tt> server host and <tt>-r</tt>
+	 * {@link Transport}, <tt>-n</tt> service name, <tt>-t</tt> call type, <tt>-f</tt> result channel file, <tt>-s</tt>
+	 * result slot, optionally <tt>-g</tt> the gate generation to wait for before making the call, and optionally
+	 * <tt>-z</tt> the payload size and <tt>-k</tt> the chunk size in KB.
+	 */
 	public static void main(final String[] args) throws Exception {
 		final CommandLineArgs parsedArgs = CommandLineArgs.parseArgs(args);
 
-		final int registryPort = Integer.parseInt(parsedArgs.getNotNull('p'));
+		final int serverPort = Integer.parseInt(parsedArgs.getNotNull('p'));
+		final String serverHost = parsedArgs.get('h');
+		final Transport transport = parsedArgs.get('r') == null ? Transport.RMI : Transport.valueOf(parsedArgs.get('r'));
 		final String serviceName = parsedArgs.getNotNull('n');
 		final CallType callType = CallType.valueOf(parsedArgs.getNotNull('t'));
 
-		final Registry registry = LocateRegistry.getRegistry(registryPort);
-		final ServerRemote server = (ServerRemote) registry.lookup(serviceName);
+		final ResultChannel resultChannel = ResultChannel.open(new File(parsedArgs.getNotNull('f')));
+		final int slot = Integer.parseInt(parsedArgs.getNotNull('s'));
+		final String gateGeneration = parsedArgs.get('g');
+		final int payloadSize = parsedArgs.get('z') == null ? RemoteCalls.DEFAULT_PAYLOAD_SIZE : Integer.parseInt(parsedArgs.get('z'));
+		final int chunkKilobytes = parsedArgs.get('k') == null ? RemoteCalls.DEFAULT_CHUNK_KILOBYTES : Integer.parseInt(parsedArgs
+				.get('k'));
+
+		try {
+			final ServerRemote server = transport.connect(serverHost, serverPort, serviceName);
+
+			final TimedFunctionExecutor runner = new TimedFunctionExecutor(server, RemoteCalls.getCall(callType, server, payloadSize,
+					chunkKilobytes));
+
+			// Tells the parent this child has started up, as well as that it is waiting at the gate.
+			resultChannel.markReady(slot);
+
+			if (gateGeneration != null) {
+				resultChannel.awaitGate(Integer.parseInt(gateGeneration));
+			}
+
+			final Long result = runner.call();
+
+			resultChannel.writeResult(slot, runner.getCallNumber(), result, false);
 
-		final TimedFunctionExecutor runner = new TimedFunctionExecutor(server, RemoteCalls.getCall(callType, server));
+			LOGGER.log(Level.INFO, callType.name() + " executed in " + result + " ns.");
+		} catch (final Exception e) {
+			LOGGER.log(Level.WARNING, callType.name() + " failed.", e);
 
-		final Long result = runner.call();
+			resultChannel.writeResult(slot, -1, 0, true);
 
-		LOGGER.log(Level.INFO, callType.name() + " executed in " + result + " ms.");
+			System.exit(1);
+		}
 
-		System.exit(Ints.checkedCast(result));
+		System.exit(0);
 	}
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.rmi.NotBoundException;
+import java.rmi.registry.LocateRegistry;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+import com.aetherworks.concurrency.server.ServerRemote;
+import com.aetherworks.concurrency.transport.NioServer;
+import com.aetherworks.concurrency.transport.NioServerRemote;
+
+/**
+ * How the client reaches the server. Every call type can be run over either transport, so the two can be compared
+ * directly to see how much of a call's latency is down to RMI.
+ */
+public enum Transport {
+
+	/**
+	 * Look the server up in an RMI registry, and call it through the RMI stub.
+	 */
+	RMI {
+		@Override
+		public ServerRemote connect(@Nullable final String host, final int port, final String serviceName) throws IOException,
+				NotBoundException {
+			return (ServerRemote) LocateRegistry.getRegistry(host, port).lookup(serviceName);
+		}
+	},
+
+	/**
+	 * Connect to a {@link NioServer}, and pipeline calls over a single connection with its framed binary protocol.
+	 */
+	NIO {
+		@Override
+		public ServerRemote connect(@Nullable final String host, final int port, final String serviceName) throws IOException {
+			return new NioServerRemote(host, port);
+		}
+	};
+
+	/**
+	 * Get a {@link ServerRemote} through which to make calls.
+	 * 
+	 * @param host
+	 *        The server's host, or null for the local host.
+	 * @param port
+	 *        The RMI registry port, or the NIO server port.
+	 * @param serviceName
+	 *        The name the server is bound to in the registry. Not used by {@link #NIO}.
+	 */
+	public abstract ServerRemote connect(@Nullable String host, int port, String serviceName) throws IOException, NotBoundException;
+
+	/**
+	 * Release what {@link #connect(String, int, String)} holds open for a connection: a {@link #NIO} connection's socket
+	 * and reader thread are closed, while an RMI stub holds nothing, since RMI manages its own connections. Failures are
+	 * only logged.
+	 * 
+	 * @param server
+	 *        A connection from either transport, or null.
+	 */
+	public static void disconnect(@Nullable final ServerRemote server) {
+		if (server instanceof Closeable) {
+			try {
+				((Closeable) server).close();
+			} catch (final IOException e) {
+				Logger.getLogger(Transport.class.getName()).log(Level.FINE, "Failed to close connection to server.", e);
+			}
+		}
+	}
+}
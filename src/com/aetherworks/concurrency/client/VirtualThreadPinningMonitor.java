@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Counts how often, and for how long, virtual threads in this JVM block while pinned to their carrier thread, using the
+ * <tt>jdk.VirtualThreadPinned</tt> flight recorder event.
+ * <p>
+ * A pinned virtual thread holds its carrier while it blocks, for example when it blocks on socket I/O inside a
+ * <tt>synchronized</tt> block, as parts of the RMI transport do. With thousands of virtual callers, pinning is what
+ * limits how many calls can really be in flight at once.
+ */
+public class VirtualThreadPinningMonitor implements AutoCloseable {
+
+	private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+	private final RecordingStream stream;
+
+	private final LongAdder pinnedCount = new LongAdder();
+	private final LongAdder pinnedNanos = new LongAdder();
+
+	private boolean closed = false;
+
+	/**
+	 * Start recording pinning events that last at least <tt>threshold</tt>.
+	 */
+	public VirtualThreadPinningMonitor(final Duration threshold) {
+		stream = new RecordingStream();
+		stream.enable(PINNED_EVENT).withThreshold(threshold).withoutStackTrace();
+		stream.onEvent(PINNED_EVENT, new Consumer<RecordedEvent>() {
+			@Override
+			public void accept(final RecordedEvent event) {
+				pinnedCount.increment();
+				pinnedNanos.add(event.getDuration().toNanos());
+			}
+		});
+		stream.startAsync();
+	}
+
+	/**
+	 * Stop recording, after every event recorded so far has been counted. Does nothing if already closed.
+	 */
+	@Override
+	public synchronized void close() {
+		if (!closed) {
+			closed = true;
+			stream.stop();
+			stream.close();
+		}
+	}
+
+	/**
+	 * The number of times a virtual thread blocked while pinned.
+	 */
+	public long getPinnedCount() {
+		return pinnedCount.sum();
+	}
+
+	/**
+	 * Total time virtual threads spent blocked while pinned, in nanoseconds.
+	 */
+	public long getPinnedNanos() {
+		return pinnedNanos.sum();
+	}
+
+	/**
+	 * A single line summary of the pinning seen so far.
+	 */
+	public String toSummaryString() {
+		return "pinned=" + getPinnedCount() + " times, " + TimeUnit.NANOSECONDS.toMillis(getPinnedNanos()) + " ms in total";
+	}
+}
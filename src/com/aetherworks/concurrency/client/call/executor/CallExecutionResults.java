@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client.call.executor;
+
+import java.util.concurrent.TimeUnit;
+
+import com.aetherworks.concurrency.stats.LatencyHistogram;
+import com.aetherworks.concurrency.stats.LatencySamples;
+
+/**
+ * The outcome of a single run of {@link CallExecutor}: the latency distribution of every successful call, a sample of
+ * the individual latencies, the number of failed calls, and the wall-clock time the run took from the first call being
+ * submitted to the last call completing.
+ */
+public class CallExecutionResults {
+
+	private final LatencyHistogram latencies;
+
+	private final LatencySamples samples;
+
+	private final int numberOfErrors;
+
+	private final long elapsedNanos;
+
+	public CallExecutionResults(final LatencyHistogram latencies, final LatencySamples samples, final int numberOfErrors,
+			final long elapsedNanos) {
+		this.latencies = latencies;
+		this.samples = samples;
+		this.numberOfErrors = numberOfErrors;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	/**
+	 * The latency of every successful call made in this run, in nanoseconds.
+	 */
+	public LatencyHistogram getLatencies() {
+		return latencies;
+	}
+
+	/**
+	 * The individual latencies of the successful calls, in nanoseconds: every one of them, or a uniform sample once
+	 * there are more than {@link LatencySamples#getCapacity()}.
+	 */
+	public LatencySamples getSamples() {
+		return samples;
+	}
+
+	/**
+	 * The number of calls that failed, and so are not included in {@link #getLatencies()}.
+	 */
+	public int getNumberOfErrors() {
+		return numberOfErrors;
+	}
+
+	/**
+	 * Wall-clock time taken by the run, in nanoseconds.
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * The number of calls completed per second over the whole run.
+	 */
+	public double getThroughput() {
+		if (elapsedNanos <= 0) {
+			return 0;
+		}
+
+		return latencies.getTotalCount() / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+	}
+
+	/**
+	 * A single line summary of the run, with latencies in milliseconds.
+	 */
+	public String toSummaryString() {
+		return String.format("calls=%d, errors=%d, throughput=%.1f calls/s, "
+				+ "min=%.3f ms, p50=%.3f ms, p90=%.3f ms, p99=%.3f ms, p99.9=%.3f ms, max=%.3f ms", latencies.getTotalCount(), numberOfErrors,
+				getThroughput(), toMillis(latencies.getMinValue()), toMillis(latencies.getValueAtPercentile(50)),
+				toMillis(latencies.getValueAtPercentile(90)), toMillis(latencies.getValueAtPercentile(99)),
+				toMillis(latencies.getValueAtPercentile(99.9)), toMillis(latencies.getMaxValue()));
+	}
+
+	private static double toMillis(final long nanos) {
+		return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+}
@@ -6,62 +6,130 @@ package com.aetherworks.concurrency.client.call.executor;
 
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.annotation.Nullable;
+
 import com.aetherworks.concurrency.client.call.factory.CallFactory;
+import com.aetherworks.concurrency.client.call.factory.StartGate;
 import com.aetherworks.concurrency.client.call.future.CallFuture;
+import com.aetherworks.concurrency.stats.LatencyHistogram;
+import com.aetherworks.concurrency.stats.LatencySamples;
 
 /**
  * Executor for {@link CallFactory} instances. Used to create and wait for the termination of many {@link CallFuture}
  * objects returned by the {@link CallFactory}.
+ * <p>
+ * Every call waits at a {@link StartGate} until all of them are ready, and they are then released together, so they
+ * really do overlap at the server rather than arriving in the order they happened to be created.
  * 
  * @author Angus Macdonald (amacdonald@aetherworks.com)
  */
 public class CallExecutor {
 	private final static Logger LOGGER = Logger.getLogger(CallExecutor.class.getName());
 
+	/**
+	 * How long to wait for another call to reach the start gate before giving up and opening it anyway.
+	 */
+	private static final long START_GATE_STALL_TIMEOUT_SECONDS = 10;
+
 	/**
 	 * Create <tt>numExecutions</tt> instances of the {@link CallFuture} created by
-	 * {@link CallFactory#createAndSubmitTask()}, and returns the averaged result.
+	 * {@link CallFactory#createAndSubmitTask(StartGate)}, release them together once they are all ready, and returns the
+	 * latency of every call along with the time the whole run took from the moment they were released. Failed calls are
+	 * counted, but their execution time is not recorded.
 	 */
-	public static long execute(final int numExecutions, final CallFactory callFactory) throws InterruptedException, ExecutionException {
+	public static CallExecutionResults execute(final int numExecutions, final CallFactory callFactory) throws InterruptedException {
+		return execute(numExecutions, callFactory, null);
+	}
+
+	/**
+	 * As {@link #execute(int, CallFactory)}, but run <tt>beforeRelease</tt> once every call has reached the start gate,
+	 * and only release them once it returns, so that calls from other processes can be released at the same moment.
+	 * 
+	 * @param beforeRelease
+	 *        Run on this thread just before the calls are released, or null to release them straight away.
+	 */
+	public static CallExecutionResults execute(final int numExecutions, final CallFactory callFactory, @Nullable final Runnable beforeRelease)
+			throws InterruptedException {
 		final List<CallFuture> threads = new LinkedList<>();
+		final StartGate startGate = new StartGate();
 
 		LOGGER.log(Level.FINE, "Starting threads.");
 		for (int i = 0; i < numExecutions; i++) {
-			threads.add(callFactory.createAndSubmitTask());
+			threads.add(callFactory.createAndSubmitTask(startGate));
 		}
 
+		if (!startGate.awaitParties(numExecutions, START_GATE_STALL_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+			LOGGER.log(Level.WARNING, "Only " + startGate.getReadyParties() + " of " + numExecutions
+					+ " calls reached the start gate, so they will not all start together. "
+					+ "Is the client pool smaller than the number of calls?");
+		}
+
+		if (beforeRelease != null) {
+			beforeRelease.run();
+		}
+
+		startGate.open();
+
 		waitUntilAllFuturesComplete(threads);
 
-		return getAverageExecutionTime(threads);
+		final long elapsedNanos = System.nanoTime() - startGate.getOpenTime();
 
+		final LatencyHistogram latencies = new LatencyHistogram();
+		final LatencySamples samples = new LatencySamples();
+		final int numberOfErrors = recordExecutionTimes(threads, latencies, samples);
+
+		return new CallExecutionResults(latencies, samples, numberOfErrors, elapsedNanos);
 	}
 
 	/**
-	 * Wait until every executing future is completed.
+	 * Wait until every executing future is completed. Each future counts down a shared latch as it completes, so this
+	 * thread wakes once, when the last call finishes, rather than waiting on each future in turn.
 	 */
-	public static void waitUntilAllFuturesComplete(final List<CallFuture> futures) {
+	public static void waitUntilAllFuturesComplete(final List<CallFuture> futures) throws InterruptedException {
 		LOGGER.log(Level.FINE, "Waiting for completion of threads.");
 
+		final CountDownLatch remaining = new CountDownLatch(futures.size());
+
 		for (final CallFuture callExecutor : futures) {
-			callExecutor.waitForCompletion();
+			callExecutor.onCompletion(new Runnable() {
+				@Override
+				public void run() {
+					remaining.countDown();
+				}
+			});
 		}
+
+		remaining.await();
 	}
 
 	/**
-	 * The average execution time of each executing future.
+	 * Record the execution time of each successfully completed future, in the histogram and as a sample.
+	 * 
+	 * @return The number of futures whose call failed.
 	 */
-	private static long getAverageExecutionTime(final List<CallFuture> threads) throws InterruptedException, ExecutionException {
-		long total = 0;
+	private static int recordExecutionTimes(final List<CallFuture> threads, final LatencyHistogram latencies, final LatencySamples samples)
+			throws InterruptedException {
+		int numberOfErrors = 0;
 
 		for (final CallFuture future : threads) {
-			total += future.getExecutionTime();
+			try {
+				final long executionTime = future.getExecutionTime();
+
+				latencies.recordValue(executionTime);
+				samples.recordValue(executionTime);
+			} catch (final ExecutionException e) {
+				LOGGER.log(Level.FINE, "Call failed.", e);
+				numberOfErrors++;
+			}
 		}
 
-		return total / threads.size();
+		return numberOfErrors;
 	}
 
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client.call.executor;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.aetherworks.concurrency.client.LoopingTimedFunctionExecutor;
+import com.aetherworks.concurrency.client.call.factory.ClientExecutors;
+import com.aetherworks.concurrency.client.call.factory.ThreadModel;
+import com.aetherworks.concurrency.stats.LatencyHistogram;
+import com.aetherworks.concurrency.stats.LatencySamples;
+
+/**
+ * Runs a set of {@link LoopingTimedFunctionExecutor} workers concurrently, each on its own thread, and collects the
+ * results of every worker.
+ */
+public class ClosedLoopCallExecutor {
+	private final static Logger LOGGER = Logger.getLogger(ClosedLoopCallExecutor.class.getName());
+
+	/**
+	 * Run every worker to completion, each on its own platform thread.
+	 * 
+	 * @return The results of each worker, in the order they were given.
+	 */
+	public static List<CallExecutionResults> execute(final List<LoopingTimedFunctionExecutor> workers) throws InterruptedException,
+			ExecutionException {
+		return execute(workers, ThreadModel.FIXED);
+	}
+
+	/**
+	 * Run every worker to completion, each on its own thread of the given model.
+	 * 
+	 * @return The results of each worker, in the order they were given.
+	 */
+	public static List<CallExecutionResults> execute(final List<LoopingTimedFunctionExecutor> workers, final ThreadModel threadModel)
+			throws InterruptedException, ExecutionException {
+		final ExecutorService executor = ClientExecutors.create(threadModel, workers.size());
+
+		try {
+			LOGGER.log(Level.FINE, "Starting " + workers.size() + " workers.");
+
+			final List<Future<CallExecutionResults>> futures = executor.invokeAll(workers);
+
+			final List<CallExecutionResults> results = new LinkedList<>();
+			for (final Future<CallExecutionResults> future : futures) {
+				results.add(future.get());
+			}
+
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Combine the results of workers that ran at the same time. Throughput of the combined result is the total number of
+	 * calls over the longest-running worker's elapsed time.
+	 */
+	public static CallExecutionResults combine(final List<CallExecutionResults> workerResults) {
+		final LatencyHistogram latencies = new LatencyHistogram();
+		final LatencySamples samples = new LatencySamples();
+		int numberOfErrors = 0;
+		long elapsedNanos = 0;
+
+		for (final CallExecutionResults result : workerResults) {
+			latencies.add(result.getLatencies());
+			samples.add(result.getSamples());
+			numberOfErrors += result.getNumberOfErrors();
+			elapsedNanos = Math.max(elapsedNanos, result.getElapsedNanos());
+		}
+
+		return new CallExecutionResults(latencies, samples, numberOfErrors, elapsedNanos);
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client.call.executor;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.aetherworks.concurrency.client.call.factory.CallFactory;
+import com.aetherworks.concurrency.client.call.future.CallFuture;
+import com.aetherworks.concurrency.stats.LatencyHistogram;
+import com.aetherworks.concurrency.stats.LatencySamples;
+import com.google.common.base.Preconditions;
+
+/**
+ * Executor for {@link CallFactory} instances that issues calls at a constant rate for a fixed duration (an open-loop
+ * load), rather than firing a fixed number of calls at once and waiting for them like {@link CallExecutor}.
+ * <p>
+ * Every call has an intended start time on a fixed schedule. Its latency is measured from that intended start time,
+ * not from when it was actually submitted: if the client falls behind schedule (for example because submitting tasks is
+ * slow, or the machine stalls), the delay is added to the latency of every call that should have been issued during it.
+ * This corrects for coordinated omission, where a stall would otherwise hide itself by delaying the calls that would
+ * have observed it.
+ * <p>
+ * Latency is the submission delay, plus any time the call waited inside the factory before starting (such as for a
+ * free client thread), plus the execution time reported by the {@link CallFuture}.
+ */
+public class OpenLoopCallExecutor {
+	private final static Logger LOGGER = Logger.getLogger(OpenLoopCallExecutor.class.getName());
+
+	/**
+	 * Placed on the queue of submitted calls to tell the collector that no more calls will follow.
+	 */
+	private static final SubmittedCall END_OF_CALLS = new SubmittedCall(0, 0, null);
+
+	/**
+	 * Issue calls created by <tt>callFactory</tt> at <tt>callsPerSecond</tt> until <tt>duration</tt> has elapsed, then wait
+	 * for every call to complete.
+	 */
+	public static CallExecutionResults execute(final double callsPerSecond, final long duration, final TimeUnit unit,
+			final CallFactory callFactory) throws InterruptedException {
+		Preconditions.checkArgument(callsPerSecond > 0, "The call rate must be positive.");
+
+		final double intervalNanos = TimeUnit.SECONDS.toNanos(1) / callsPerSecond;
+		final long durationNanos = unit.toNanos(duration);
+
+		final BlockingQueue<SubmittedCall> submittedCalls = new LinkedBlockingQueue<>();
+		final Collector collector = new Collector(submittedCalls);
+		collector.start();
+
+		LOGGER.log(Level.FINE, "Issuing calls at " + callsPerSecond + " calls/s for " + durationNanos + " ns.");
+
+		final long startTime = System.nanoTime();
+		long maxSubmissionDelay = 0;
+
+		try {
+			for (long i = 0;; i++) {
+				final long intendedStartTime = startTime + (long) (i * intervalNanos);
+
+				if (intendedStartTime - startTime >= durationNanos) {
+					break;
+				}
+
+				waitUntil(intendedStartTime);
+
+				final long submissionTime = System.nanoTime();
+				final CallFuture future = callFactory.createAndSubmitTask();
+
+				submittedCalls.put(new SubmittedCall(intendedStartTime, submissionTime, future));
+				maxSubmissionDelay = Math.max(maxSubmissionDelay, submissionTime - intendedStartTime);
+			}
+		} finally {
+			submittedCalls.put(END_OF_CALLS);
+		}
+
+		collector.join();
+
+		final long elapsedNanos = System.nanoTime() - startTime;
+
+		if (maxSubmissionDelay > intervalNanos) {
+			LOGGER.log(Level.INFO, "Calls were submitted up to " + TimeUnit.NANOSECONDS.toMicros(maxSubmissionDelay)
+					+ " us behind schedule. This delay is included in their latency.");
+		}
+
+		return new CallExecutionResults(collector.latencies, collector.samples, collector.numberOfErrors, elapsedNanos);
+	}
+
+	/**
+	 * Park the current thread until {@link System#nanoTime()} reaches <tt>deadline</tt>. Returns immediately if it has
+	 * already passed.
+	 */
+	private static void waitUntil(final long deadline) throws InterruptedException {
+		long remaining;
+
+		while ((remaining = deadline - System.nanoTime()) > 0) {
+			LockSupport.parkNanos(remaining);
+
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+		}
+	}
+
+	/**
+	 * A call that has been submitted, along with when it was meant to start and when it actually did.
+	 */
+	private static class SubmittedCall {
+		private final long intendedStartTime;
+		private final long submissionTime;
+		private final CallFuture future;
+
+		SubmittedCall(final long intendedStartTime, final long submissionTime, final CallFuture future) {
+			this.intendedStartTime = intendedStartTime;
+			this.submissionTime = submissionTime;
+			this.future = future;
+		}
+	}
+
+	/**
+	 * Waits for each submitted call in turn and records its latency, so the submitting thread never blocks on a call and
+	 * completed calls don't have to be held until the end of the run.
+	 */
+	private static class Collector extends Thread {
+		private final BlockingQueue<SubmittedCall> submittedCalls;
+
+		private final LatencyHistogram latencies = new LatencyHistogram();
+
+		private final LatencySamples samples = new LatencySamples();
+
+		private int numberOfErrors = 0;
+
+		Collector(final BlockingQueue<SubmittedCall> submittedCalls) {
+			super("OpenLoopCallCollector");
+			this.submittedCalls = submittedCalls;
+		}
+
+		@Override
+		public void run() {
+			try {
+				SubmittedCall call;
+
+				while ((call = submittedCalls.take()) != END_OF_CALLS) {
+					call.future.waitForCompletion();
+
+					try {
+						final long latency = call.submissionTime - call.intendedStartTime + call.future.getStartDelay()
+								+ call.future.getExecutionTime();
+
+						latencies.recordValue(latency);
+						samples.recordValue(latency);
+					} catch (final ExecutionException e) {
+						LOGGER.log(Level.FINE, "Call failed.", e);
+						numberOfErrors++;
+					}
+				}
+			} catch (final InterruptedException e) {
+				LOGGER.log(Level.WARNING, "Interrupted while waiting for calls to complete.", e);
+			}
+		}
+	}
+}
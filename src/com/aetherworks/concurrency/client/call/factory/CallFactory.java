@@ -4,23 +4,49 @@
 
 package com.aetherworks.concurrency.client.call.factory;
 
+import java.io.Closeable;
 import java.util.concurrent.Future;
 
+import javax.annotation.Nullable;
+
 import com.aetherworks.concurrency.client.call.future.CallFuture;
+import com.aetherworks.concurrency.stats.LatencyHistogram;
 
 /**
  * Factory for the creation of tasks that's output can later be queried through a related {@link CallFuture} instance.
  * <p>
  * This factory creates the task and starts its execution, and the provided {@link CallFuture} is used to query it's
  * result (similar to the java {@link Future} class).
+ * <p>
+ * Factories are closed once every task they created has completed, to release any resources they hold.
  * 
  * @author Angus Macdonald (amacdonald@aetherworks.com)
  */
-public interface CallFactory {
+public interface CallFactory extends Closeable {
 
 	/**
 	 * Create a {@link CallFuture}, start it's execution
 	 */
-	CallFuture createAndSubmitTask();
+	default CallFuture createAndSubmitTask() {
+		return createAndSubmitTask(null);
+	}
+
+	/**
+	 * Create a {@link CallFuture} and start its execution, but hold the call itself back until <tt>startGate</tt> is
+	 * opened.
+	 * 
+	 * @param startGate
+	 *        The gate to wait at, or null to make the call as soon as possible.
+	 */
+	CallFuture createAndSubmitTask(@Nullable StartGate startGate);
+
+	/**
+	 * How long each process this factory started took to start up and become ready to make calls, in nanoseconds, or
+	 * null if it makes its calls without starting processes.
+	 */
+	@Nullable
+	default LatencyHistogram getStartupTimes() {
+		return null;
+	}
 
 }
\ No newline at end of file
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client.call.factory;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Creates the thread pools used by {@link SingleProcessCallFactory} to run calls, for each {@link ThreadModel}.
+ * <p>
+ * Where the model allows it, every thread is started before the pool is returned, so that the cost of creating threads
+ * is paid before any call is made rather than during the run.
+ */
+public class ClientExecutors {
+	private final static Logger LOGGER = Logger.getLogger(ClientExecutors.class.getName());
+
+	/**
+	 * How long idle threads in a {@link ThreadModel#BOUNDED_CACHED} pool are kept.
+	 */
+	private static final long CACHED_THREAD_KEEP_ALIVE_SECONDS = 60;
+
+	/**
+	 * How long to wait for every thread of a {@link ThreadModel#WORK_STEALING} pool to start.
+	 */
+	private static final long WARM_UP_TIMEOUT_SECONDS = 10;
+
+	/**
+	 * Create a pool of the given model.
+	 * 
+	 * @param numberOfThreads
+	 *        The number of threads in the pool, or the maximum number for {@link ThreadModel#BOUNDED_CACHED}. Ignored for
+	 *        {@link ThreadModel#VIRTUAL}, which starts a thread per call.
+	 */
+	public static ExecutorService create(final ThreadModel model, final int numberOfThreads) {
+		Preconditions.checkArgument(numberOfThreads > 0, "A client pool needs at least one thread.");
+
+		switch (model) {
+			case FIXED:
+				return createFixedPool(numberOfThreads);
+			case WORK_STEALING:
+				return createWorkStealingPool(numberOfThreads);
+			case BOUNDED_CACHED:
+				return createBoundedCachedPool(numberOfThreads);
+			case VIRTUAL:
+				return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("rmi-client-virtual-", 0).factory());
+			default:
+				throw new IllegalArgumentException("Unknown thread model: " + model);
+		}
+	}
+
+	/**
+	 * Shut down the pool and wait for calls that are already running to finish.
+	 */
+	public static void shutdown(final ExecutorService executor, final long timeout, final TimeUnit unit) {
+		executor.shutdown();
+
+		try {
+			if (!executor.awaitTermination(timeout, unit)) {
+				LOGGER.log(Level.WARNING, "Client threads did not finish within " + timeout + " " + unit + "; interrupting them.");
+				executor.shutdownNow();
+			}
+		} catch (final InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static ExecutorService createFixedPool(final int numberOfThreads) {
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 0, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(), createThreadFactory("fixed"));
+		executor.prestartAllCoreThreads();
+
+		return executor;
+	}
+
+	/**
+	 * A pool that hands each call to an idle thread if there is one, starts a new thread if not, up to
+	 * <tt>maxThreads</tt>, and queues calls once every thread is busy. Idle threads exit after
+	 * {@link #CACHED_THREAD_KEEP_ALIVE_SECONDS}.
+	 * <p>
+	 * A {@link ThreadPoolExecutor} starts a new thread for every task while it has fewer than its core size, idle or not,
+	 * so the core size is zero. With no core threads it only starts a thread when the queue refuses a task, so the queue
+	 * only takes a task that an idle thread takes straight away, and the pool's rejection handler queues the tasks that
+	 * arrive once it is at the cap.
+	 */
+	private static ExecutorService createBoundedCachedPool(final int maxThreads) {
+		final HandOffQueue queue = new HandOffQueue();
+
+		return new ThreadPoolExecutor(0, maxThreads, CACHED_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, queue,
+				createThreadFactory("cached"), new RejectedExecutionHandler() {
+					@Override
+					public void rejectedExecution(final Runnable task, final ThreadPoolExecutor executor) {
+						if (executor.isShutdown()) {
+							throw new RejectedExecutionException("The client pool has been shut down.");
+						}
+
+						queue.enqueue(task);
+					}
+				});
+	}
+
+	private static ExecutorService createWorkStealingPool(final int parallelism) {
+		final AtomicInteger threadNumber = new AtomicInteger();
+
+		final ForkJoinPool pool = new ForkJoinPool(parallelism, new ForkJoinWorkerThreadFactory() {
+			@Override
+			public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+				final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				thread.setName("rmi-client-work-stealing-" + threadNumber.getAndIncrement());
+				return thread;
+			}
+		}, null, true);
+
+		warmUp(pool, parallelism);
+
+		return pool;
+	}
+
+	/**
+	 * Force the pool to start <tt>parallelism</tt> threads, by submitting that many tasks that each wait until all of
+	 * them are running.
+	 */
+	private static void warmUp(final ForkJoinPool pool, final int parallelism) {
+		final CountDownLatch allRunning = new CountDownLatch(parallelism);
+
+		for (int i = 0; i < parallelism; i++) {
+			pool.execute(new Runnable() {
+				@Override
+				public void run() {
+					allRunning.countDown();
+
+					try {
+						allRunning.await(WARM_UP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+		}
+
+		try {
+			if (!allRunning.await(WARM_UP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				LOGGER.log(Level.WARNING, "Not every work-stealing client thread started during warm-up.");
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static ThreadFactory createThreadFactory(final String poolName) {
+		return new ThreadFactoryBuilder().setNameFormat("rmi-client-" + poolName + "-%d").setDaemon(true).build();
+	}
+
+	/**
+	 * A queue that {@link #offer(Runnable)} only adds to if a thread is waiting to take the task, so that a pool starts
+	 * a thread instead of queueing while it is under its maximum size.
+	 */
+	private static class HandOffQueue extends LinkedTransferQueue<Runnable> {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public boolean offer(final Runnable task) {
+			return tryTransfer(task);
+		}
+
+		/**
+		 * Queue a task whether or not a thread is waiting for it.
+		 */
+		void enqueue(final Runnable task) {
+			super.offer(task);
+		}
+	}
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client.call.factory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+import com.aetherworks.concurrency.client.CallWorker;
+import com.aetherworks.concurrency.client.RemoteCallFailedException;
+import com.aetherworks.concurrency.client.call.future.PooledProcessCallFuture;
+import com.aetherworks.concurrency.stats.LatencyHistogram;
+import com.aetherworks.concurrency.util.DeadProcessException;
+import com.aetherworks.concurrency.util.JavaProcess;
+import com.aetherworks.concurrency.util.JvmOptions;
+import com.google.common.base.Preconditions;
+
+/**
+ * Hands calls to a fixed pool of long-lived {@link CallWorker} processes, rather than starting a new process for every
+ * call like {@link SeparateProcessCallFactory}.
+ * <p>
+ * Each worker connects back to this process over a loopback socket when it starts. A thread in this process owns each
+ * connection: it takes the next queued call, waits at the call's start gate if it has one, sends the call to its worker
+ * and completes the call's future with the reply. A worker makes one call at a time, so at most as many calls run at
+ * once as there are workers, and the rest wait in the queue.
+ */
+public class PooledProcessCallFactory implements CallFactory {
+	private final static Logger LOGGER = Logger.getLogger(PooledProcessCallFactory.class.getName());
+
+	/**
+	 * How long to wait for all of the workers to start and connect.
+	 */
+	private static final long CONNECT_TIMEOUT_SECONDS = 60;
+
+	/**
+	 * How often to check whether the workers that have not yet connected have died, while waiting for connections.
+	 */
+	private static final int ACCEPT_POLL_INTERVAL_MILLIS = 100;
+
+	/**
+	 * How long {@link #close()} waits for each worker to exit before killing it.
+	 */
+	private static final long STOP_TIMEOUT_SECONDS = 10;
+
+	/**
+	 * Queued once for each worker connection by {@link #close()}, to tell it to stop its worker.
+	 */
+	private static final PooledProcessCallFuture STOP_WORKER = new PooledProcessCallFuture(null);
+
+	private final BlockingQueue<PooledProcessCallFuture> pendingCalls = new LinkedBlockingQueue<>();
+
+	private final List<JavaProcess> processes = new ArrayList<>();
+
+	private final List<WorkerConnection> connections = new ArrayList<>();
+
+	private final AtomicInteger liveWorkers = new AtomicInteger();
+
+	/**
+	 * The {@link System#nanoTime()} each worker was started at, by worker number.
+	 */
+	private final long[] launchTimes;
+
+	/**
+	 * How long each worker took from being started to connecting.
+	 */
+	private final LatencyHistogram startupTimes = new LatencyHistogram();
+
+	/**
+	 * Start <tt>numberOfWorkers</tt> workers, and wait for them to connect.
+	 * 
+	 * @param argsToWorkers
+	 *        Arguments for {@link CallWorker}, describing the server and the call to make.
+	 * @throws IOException
+	 *         If no worker managed to start and connect.
+	 */
+	public PooledProcessCallFactory(final List<String> argsToWorkers, final int numberOfWorkers) throws IOException {
+		this(argsToWorkers, numberOfWorkers, JvmOptions.defaults());
+	}
+
+	/**
+	 * Start <tt>numberOfWorkers</tt> workers, and wait for them to connect.
+	 * 
+	 * @param argsToWorkers
+	 *        Arguments for {@link CallWorker}, describing the server and the call to make.
+	 * @param jvmOptions
+	 *        How to start each worker's JVM. Workers are long-lived, so options that only speed up startup, such as
+	 *        stopping at a low compilation tier, may slow down the calls they make.
+	 * @throws IOException
+	 *         If no worker managed to start and connect.
+	 */
+	public PooledProcessCallFactory(final List<String> argsToWorkers, final int numberOfWorkers, final JvmOptions jvmOptions)
+			throws IOException {
+		Preconditions.checkArgument(numberOfWorkers > 0, "At least one worker is needed.");
+
+		launchTimes = new long[numberOfWorkers];
+
+		try (final ServerSocket listener = new ServerSocket(0, numberOfWorkers, InetAddress.getLoopbackAddress())) {
+			for (int i = 0; i < numberOfWorkers; i++) {
+				final List<String> args = new LinkedList<>(argsToWorkers);
+				args.add("-c" + listener.getLocalPort());
+				args.add("-i" + i);
+
+				final JavaProcess process = new JavaProcess(CallWorker.class, args, jvmOptions);
+				launchTimes[i] = System.nanoTime();
+				process.executeProcess("worker " + i + ": ");
+				processes.add(process);
+			}
+
+			acceptConnections(listener);
+		} catch (final IOException e) {
+			abandon();
+			throw e;
+		}
+
+		if (connections.isEmpty()) {
+			abandon();
+			throw new IOException("None of the " + numberOfWorkers + " workers connected.");
+		}
+
+		if (connections.size() < numberOfWorkers) {
+			LOGGER.log(Level.WARNING, "Only " + connections.size() + " of " + numberOfWorkers + " workers connected.");
+		}
+
+		liveWorkers.set(connections.size());
+
+		for (final WorkerConnection connection : connections) {
+			connection.start();
+		}
+
+		LOGGER.log(Level.FINE, "Started " + connections.size() + " worker processes.");
+	}
+
+	private void acceptConnections(final ServerSocket listener) throws IOException {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(CONNECT_TIMEOUT_SECONDS);
+
+		listener.setSoTimeout(ACCEPT_POLL_INTERVAL_MILLIS);
+
+		while (connections.size() < processes.size()) {
+			final Socket socket;
+			try {
+				socket = listener.accept();
+			} catch (final SocketTimeoutException e) {
+				if (System.nanoTime() - deadline >= 0 || connections.size() + countDeadWorkers() >= processes.size()) {
+					return;
+				}
+
+				continue;
+			}
+
+			socket.setTcpNoDelay(true);
+
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			final int workerNumber = in.readInt();
+
+			if (workerNumber >= 0 && workerNumber < launchTimes.length) {
+				startupTimes.recordValue(System.nanoTime() - launchTimes[workerNumber]);
+			}
+
+			connections.add(new WorkerConnection(workerNumber, socket, in));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * A worker is ready once it has connected back to this process.
+	 */
+	@Override
+	public LatencyHistogram getStartupTimes() {
+		final LatencyHistogram copy = new LatencyHistogram();
+		copy.add(startupTimes);
+		return copy;
+	}
+
+	/**
+	 * The number of workers that have exited. A worker that has connected stays alive until it is stopped, so these are
+	 * workers that failed before connecting.
+	 */
+	private int countDeadWorkers() {
+		int dead = 0;
+
+		for (final JavaProcess process : processes) {
+			if (!process.isAlive()) {
+				dead++;
+			}
+		}
+
+		return dead;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * A gated call occupies a worker while it waits, so there must be at least as many workers as there are calls
+	 * waiting at the gate, or the gate will never see them all arrive.
+	 */
+	@Override
+	public PooledProcessCallFuture createAndSubmitTask(@Nullable final StartGate startGate) {
+		final PooledProcessCallFuture call = new PooledProcessCallFuture(startGate);
+
+		pendingCalls.add(call);
+
+		// The last worker may have exited just before the call was queued.
+		if (liveWorkers.get() == 0) {
+			failPendingCalls();
+		}
+
+		return call;
+	}
+
+	/**
+	 * Stops every worker once the calls already queued have been made, killing any that don't exit in time.
+	 * <p>
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() {
+		for (int i = 0; i < connections.size(); i++) {
+			pendingCalls.add(STOP_WORKER);
+		}
+
+		for (final JavaProcess process : processes) {
+			try {
+				process.onExit().get(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			} catch (final TimeoutException e) {
+				LOGGER.log(Level.WARNING, "Worker process did not exit. Killing it.");
+				killWorker(process);
+			} catch (final InterruptedException e) {
+				killWorker(process);
+				Thread.currentThread().interrupt();
+			} catch (final ExecutionException e) {
+				LOGGER.log(Level.WARNING, "Failed to wait for worker process to exit.", e);
+			}
+		}
+	}
+
+	/**
+	 * Kill every worker when the pool could not be started. No connection threads are running yet, so the workers are
+	 * not sent a stop command.
+	 */
+	private void abandon() {
+		for (final WorkerConnection connection : connections) {
+			try {
+				connection.socket.close();
+			} catch (final IOException e) {
+				LOGGER.log(Level.FINE, "Failed to close connection to worker.", e);
+			}
+		}
+
+		for (final JavaProcess process : processes) {
+			if (process.isAlive()) {
+				killWorker(process);
+			}
+		}
+	}
+
+	private static void killWorker(final JavaProcess process) {
+		try {
+			process.killProcess();
+		} catch (final DeadProcessException e) {
+			// It exited anyway.
+		}
+	}
+
+	/**
+	 * Fail every queued call, once there are no workers left to make them.
+	 */
+	private void failPendingCalls() {
+		PooledProcessCallFuture call;
+
+		while ((call = pendingCalls.poll()) != null) {
+			if (call != STOP_WORKER) {
+				call.fail(new RemoteCallFailedException("Every worker process has exited."));
+			}
+		}
+	}
+
+	/**
+	 * Sends queued calls to a single worker, one at a time.
+	 */
+	private class WorkerConnection extends Thread {
+		private final Socket socket;
+		private final DataInputStream in;
+
+		WorkerConnection(final int workerNumber, final Socket socket, final DataInputStream in) {
+			super("rmi-call-worker-" + workerNumber);
+			setDaemon(true);
+
+			this.socket = socket;
+			this.in = in;
+		}
+
+		@Override
+		public void run() {
+			try (final Socket s = socket) {
+				final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+
+				PooledProcessCallFuture call;
+
+				while ((call = pendingCalls.take()) != STOP_WORKER) {
+					try {
+						call.start();
+
+						out.writeByte(CallWorker.COMMAND_CALL);
+						out.flush();
+
+						final boolean failed = in.readBoolean();
+						final int callNumber = in.readInt();
+						final long executionNanos = in.readLong();
+
+						if (failed) {
+							call.fail(new RemoteCallFailedException("Call in worker process " + getName() + " failed."));
+						} else {
+							LOGGER.log(Level.FINE, "Call number: " + callNumber + " (" + executionNanos + " ns)");
+							call.complete(executionNanos);
+						}
+					} catch (final IOException | InterruptedException e) {
+						call.fail(e);
+						throw e;
+					}
+				}
+
+				out.writeByte(CallWorker.COMMAND_STOP);
+				out.flush();
+			} catch (final IOException e) {
+				LOGGER.log(Level.WARNING, "Lost connection to worker process " + getName() + ".", e);
+			} catch (final InterruptedException e) {
+				LOGGER.log(Level.WARNING, "Interrupted while waiting for calls for worker " + getName() + ".", e);
+			} finally {
+				if (liveWorkers.decrementAndGet() == 0) {
+					failPendingCalls();
+				}
+			}
+		}
+	}
+}
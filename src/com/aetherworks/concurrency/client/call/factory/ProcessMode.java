@@ -0,0 +1,29 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client.call.factory;
+
+/**
+ * Where the client makes its calls from, and so which {@link CallFactory} it uses.
+ */
+public enum ProcessMode {
+
+	/**
+	 * Every call runs on a thread in the client's own process, through {@link SingleProcessCallFactory}.
+	 */
+	SINGLE_PROCESS,
+
+	/**
+	 * Every call runs in a new JVM started for that call, through {@link SeparateProcessCallFactory}. Calls are fully
+	 * isolated from each other, but each one pays for JVM startup, class loading and a registry lookup.
+	 */
+	SEPARATE_PROCESS,
+
+	/**
+	 * Calls are handed to a fixed pool of long-lived worker JVMs, through {@link PooledProcessCallFactory}. Calls still
+	 * come from separate processes, but the startup cost is paid once per worker rather than once per call, and each
+	 * worker's stub and compiled code are reused.
+	 */
+	PROCESS_POOL
+}
@@ -5,46 +5,167 @@
 package com.aetherworks.concurrency.client.call.factory;
 
 import java.io.IOException;
+import java.util.LinkedList;
 import java.util.List;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+
+import javax.annotation.Nullable;
 
 import com.aetherworks.concurrency.client.TimedFunctionExecutor;
 import com.aetherworks.concurrency.client.call.future.CallFuture;
 import com.aetherworks.concurrency.client.call.future.SeparateProcessCallFuture;
+import com.aetherworks.concurrency.client.call.result.ResultChannel;
+import com.aetherworks.concurrency.stats.LatencyHistogram;
 import com.aetherworks.concurrency.util.JavaProcess;
+import com.aetherworks.concurrency.util.JvmOptions;
+import com.aetherworks.concurrency.util.ProcessLauncher;
 
 /**
  * Creates a process that executes the specified call in a new java process.
+ * <p>
+ * Each process is given its own slot in a shared {@link ResultChannel}, through which it reports the call's execution
+ * time back to this process. Gated calls are started straight away, and wait inside the child until the gate is opened,
+ * so process startup is not part of the synchronised start.
+ * <p>
+ * Processes are started in the background by a {@link ProcessLauncher}, a few at a time, so that submitting a task
+ * returns straight away and children don't all start up at once. A child counts as started once it has connected to the
+ * server and marked its slot ready, and the launcher records how long that took.
  * 
  * @author Angus Macdonald (amacdonald@aetherworks.com)
  */
 public class SeparateProcessCallFactory implements CallFactory {
-	private final static Logger LOGGER = Logger.getLogger(SeparateProcessCallFactory.class.getName());
 
 	private static int creationNumber = 0;
 
+	/**
+	 * The number of result slots created by {@link #SeparateProcessCallFactory(List)}, and so the number of processes
+	 * that can be running at once.
+	 */
+	public static final int DEFAULT_MAX_CONCURRENT_PROCESSES = 4096;
+
+	/**
+	 * The number of children started up at once by {@link #SeparateProcessCallFactory(List)}.
+	 */
+	public static final int DEFAULT_LAUNCH_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
 	private final List<String> argsToProcess;
 
-	public SeparateProcessCallFactory(final List<String> argsToProcess) {
+	private final ResultChannel resultChannel;
+
+	private final JvmOptions jvmOptions;
+
+	private final ProcessLauncher launcher;
+
+	/**
+	 * The gate most recently passed to {@link #createAndSubmitTask(StartGate)}, and the generation of the channel's gate
+	 * that it opens.
+	 */
+	private StartGate currentGate;
+	private int currentGateGeneration = 0;
+
+	public SeparateProcessCallFactory(final List<String> argsToProcess) throws IOException {
+		this(argsToProcess, DEFAULT_MAX_CONCURRENT_PROCESSES, JvmOptions.defaults(), DEFAULT_LAUNCH_PARALLELISM);
+	}
+
+	/**
+	 * @param maxConcurrentProcesses
+	 *        The maximum number of processes created by this factory that can be running at the same time.
+	 * @param jvmOptions
+	 *        How to start each child's JVM.
+	 * @param launchParallelism
+	 *        The most children that can be starting up at the same time.
+	 */
+	public SeparateProcessCallFactory(final List<String> argsToProcess, final int maxConcurrentProcesses, final JvmOptions jvmOptions,
+			final int launchParallelism) throws IOException {
 		this.argsToProcess = argsToProcess;
+		this.jvmOptions = jvmOptions;
+		resultChannel = ResultChannel.create(maxConcurrentProcesses);
+		launcher = new ProcessLauncher(launchParallelism);
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public CallFuture createAndSubmitTask() {
+	public CallFuture createAndSubmitTask(@Nullable final StartGate startGate) {
+
+		final long submissionTime = System.nanoTime();
+
+		final int slot = resultChannel.allocateSlot();
+
+		final List<String> args = new LinkedList<>(argsToProcess);
+		args.add("-f" + resultChannel.getFile().getAbsolutePath());
+		args.add("-s" + slot);
+
+		if (startGate != null) {
+			args.add("-g" + getGateGeneration(startGate));
+		}
+
+		final JavaProcess process = new JavaProcess(TimedFunctionExecutor.class, args, jvmOptions);
 
-		final JavaProcess process = new JavaProcess(TimedFunctionExecutor.class, argsToProcess);
+		final CompletableFuture<Long> launched = launcher.launch(process, nextConsolePrefix(), new BooleanSupplier() {
+			@Override
+			public boolean getAsBoolean() {
+				return resultChannel.isReady(slot);
+			}
+		});
 
-		try {
-			process.executeProcess(creationNumber++ + ": ");
-		} catch (final IOException e) {
-			LOGGER.log(Level.WARNING, "Failed to execute process.", e);
+		if (startGate != null) {
+			startGate.addParty(new BooleanSupplier() {
+				@Override
+				public boolean getAsBoolean() {
+					// A child that failed to start, or died before reaching the gate, will never arrive, so don't wait for it.
+					return resultChannel.isReady(slot) || launched.isCompletedExceptionally() || (launched.isDone() && !process.isAlive());
+				}
+			});
 		}
 
-		return new SeparateProcessCallFuture(process);
+		return new SeparateProcessCallFuture(process, submissionTime, launched, resultChannel, slot);
+	}
+
+	private static synchronized String nextConsolePrefix() {
+		return creationNumber++ + ": ";
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * A child is ready once it has connected to the server and marked its result slot.
+	 */
+	@Override
+	public LatencyHistogram getStartupTimes() {
+		return launcher.getStartupTimes();
+	}
+
+	/**
+	 * The channel gate generation that children waiting at <tt>startGate</tt> should wait for. A new generation is
+	 * assigned the first time a gate is seen, and opened in the channel when the gate itself is opened.
+	 */
+	private synchronized int getGateGeneration(final StartGate startGate) {
+		if (startGate != currentGate) {
+			currentGate = startGate;
+
+			final int generation = ++currentGateGeneration;
+
+			startGate.onOpen(new Runnable() {
+				@Override
+				public void run() {
+					resultChannel.openGate(generation);
+				}
+			});
+		}
+
+		return currentGateGeneration;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() {
+		launcher.close();
+		resultChannel.close();
 	}
 
 }
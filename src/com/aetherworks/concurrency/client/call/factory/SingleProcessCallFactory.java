@@ -4,8 +4,11 @@
 
 package com.aetherworks.concurrency.client.call.factory;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
 
 import com.aetherworks.concurrency.client.TimedFunctionExecutor;
 import com.aetherworks.concurrency.client.call.future.SameProcessCallFuture;
@@ -13,18 +16,70 @@ import com.aetherworks.concurrency.server.ServerRemote;
 import com.google.common.base.Function;
 
 /**
- * Creates a task that executes the provided call in a new thread within the current process.
+ * Creates a task that executes the provided call on a pool of threads within the current process.
+ * <p>
+ * The pool is either shared, in which case it is owned and shut down by whoever created it, or created by this factory
+ * and shut down when the factory is closed.
  * 
  * @author Angus Macdonald (amacdonald@aetherworks.com)
  */
 public class SingleProcessCallFactory implements CallFactory {
 
+	/**
+	 * The thread model used by {@link #SingleProcessCallFactory(ServerRemote, Function)}.
+	 */
+	public static final ThreadModel DEFAULT_THREAD_MODEL = ThreadModel.BOUNDED_CACHED;
+
+	/**
+	 * The maximum number of threads used by {@link #SingleProcessCallFactory(ServerRemote, Function)}, and so the
+	 * maximum number of calls it runs at once.
+	 */
+	public static final int DEFAULT_MAX_THREADS = 256;
+
+	/**
+	 * How long {@link #close()} waits for running calls to finish before interrupting them.
+	 */
+	private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
 	private final ServerRemote server;
 	private final Function<ServerRemote, Integer> call;
 
+	private final ExecutorService executor;
+
+	/**
+	 * Whether this factory created {@link #executor}, and so should shut it down.
+	 */
+	private final boolean ownsExecutor;
+
+	/**
+	 * Run calls on a {@link #DEFAULT_THREAD_MODEL} pool of up to {@link #DEFAULT_MAX_THREADS} threads, owned by this
+	 * factory.
+	 */
 	public SingleProcessCallFactory(final ServerRemote server, final Function<ServerRemote, Integer> call) {
+		this(server, call, DEFAULT_THREAD_MODEL, DEFAULT_MAX_THREADS);
+	}
+
+	/**
+	 * Run calls on a new pool of the given model, owned by this factory.
+	 */
+	public SingleProcessCallFactory(final ServerRemote server, final Function<ServerRemote, Integer> call, final ThreadModel threadModel,
+			final int numberOfThreads) {
+		this(server, call, ClientExecutors.create(threadModel, numberOfThreads), true);
+	}
+
+	/**
+	 * Run calls on a shared pool. The pool is not shut down when this factory is closed.
+	 */
+	public SingleProcessCallFactory(final ServerRemote server, final Function<ServerRemote, Integer> call, final ExecutorService executor) {
+		this(server, call, executor, false);
+	}
+
+	private SingleProcessCallFactory(final ServerRemote server, final Function<ServerRemote, Integer> call, final ExecutorService executor,
+			final boolean ownsExecutor) {
 		this.server = server;
 		this.call = call;
+		this.executor = executor;
+		this.ownsExecutor = ownsExecutor;
 	}
 
 	/**
@@ -32,9 +87,44 @@ public class SingleProcessCallFactory implements CallFactory {
 	 */
 	@Override
 	public SameProcessCallFuture createAndSubmitTask() {
-		final TimedFunctionExecutor clientRunner = new TimedFunctionExecutor(server, call);
-		final Future<Long> future = Executors.newSingleThreadExecutor().submit(clientRunner);
-		return new SameProcessCallFuture(future);
+		return createAndSubmitTask(null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * A gated call occupies a pool thread while it waits, so the pool must have at least as many threads as there are
+	 * calls waiting at the gate, or the gate will never see them all arrive.
+	 */
+	@Override
+	public SameProcessCallFuture createAndSubmitTask(@Nullable final StartGate startGate) {
+		final TimedFunctionExecutor clientRunner = new TimedFunctionExecutor(server, call, startGate);
+		final CompletableFuture<Long> future = new CompletableFuture<>();
+
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					future.complete(clientRunner.call());
+				} catch (final Exception e) {
+					future.completeExceptionally(e);
+				}
+			}
+		});
+
+		return new SameProcessCallFuture(future, clientRunner);
+	}
+
+	/**
+	 * Shuts down the pool if it was created by this factory, waiting for running calls to finish.
+	 * <p>
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() {
+		if (ownsExecutor) {
+			ClientExecutors.shutdown(executor, SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		}
 	}
 
 }
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client.call.factory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A one-shot barrier that holds back the calls created by a {@link CallFactory} until they are all ready, then releases
+ * them at the same instant, so that they really do reach the server at the same time.
+ * <p>
+ * Calls running in this process wait in {@link #arriveAndAwait()}. Calls running elsewhere (such as in a child process)
+ * register a readiness check with {@link #addParty(BooleanSupplier)}, and are released by an action registered with
+ * {@link #onOpen(Runnable)}. The executor waits for every party with {@link #awaitParties(int, long, TimeUnit)}, then
+ * calls {@link #open()}.
+ */
+public class StartGate {
+
+	/**
+	 * How often {@link #awaitParties(int, long, TimeUnit)} checks for new arrivals. Readiness is only checked before the
+	 * gate opens, so this does not affect measured latency.
+	 */
+	private static final long READINESS_POLL_INTERVAL_MILLIS = 1;
+
+	private final CountDownLatch openLatch = new CountDownLatch(1);
+
+	private final AtomicInteger arrivals = new AtomicInteger();
+
+	private final List<BooleanSupplier> externalParties = new CopyOnWriteArrayList<>();
+
+	private final List<Runnable> openActions = new CopyOnWriteArrayList<>();
+
+	private volatile long openTime;
+
+	/**
+	 * Register as ready, then wait until the gate is opened. Called by calls running in this process.
+	 */
+	public void arriveAndAwait() throws InterruptedException {
+		arrivals.incrementAndGet();
+		openLatch.await();
+	}
+
+	/**
+	 * Wait at the gate on behalf of a call submitted at <tt>submissionTime</tt>, unless the gate is already open.
+	 * 
+	 * @return The time the call became free to start: when the gate opened, or when the call was submitted if the gate
+	 *         was already open by then. A call's start delay is measured from this time.
+	 */
+	public long awaitStart(final long submissionTime) throws InterruptedException {
+		if (!isOpen()) {
+			arriveAndAwait();
+		}
+
+		return openTime - submissionTime > 0 ? openTime : submissionTime;
+	}
+
+	/**
+	 * Register a party that waits outside this process. <tt>isReady</tt> is polled until it returns true.
+	 */
+	public void addParty(final BooleanSupplier isReady) {
+		externalParties.add(isReady);
+	}
+
+	/**
+	 * Register an action to run when the gate opens, to release parties that are waiting outside this process. If the
+	 * gate is already open the action is run immediately.
+	 */
+	public void onOpen(final Runnable action) {
+		openActions.add(action);
+
+		if (isOpen() && openActions.remove(action)) {
+			action.run();
+		}
+	}
+
+	/**
+	 * Wait until at least <tt>parties</tt> calls are ready to start, or until no further call has become ready for
+	 * <tt>stallTimeout</tt>. The timeout restarts whenever another call arrives, so slow but steady arrivals (such as
+	 * child processes starting up) are waited for, while calls that will never arrive (such as those queued behind a
+	 * full thread pool, or in a child that died) are not.
+	 * 
+	 * @return True if every party was ready.
+	 */
+	public boolean awaitParties(final int parties, final long stallTimeout, final TimeUnit unit) throws InterruptedException {
+		int ready = getReadyParties();
+		long lastArrival = System.nanoTime();
+
+		while (ready < parties) {
+			Thread.sleep(READINESS_POLL_INTERVAL_MILLIS);
+
+			final int nowReady = getReadyParties();
+
+			if (nowReady > ready) {
+				ready = nowReady;
+				lastArrival = System.nanoTime();
+			} else if (System.nanoTime() - lastArrival >= unit.toNanos(stallTimeout)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * The number of calls currently waiting at the gate.
+	 */
+	public int getReadyParties() {
+		int ready = arrivals.get();
+
+		for (final BooleanSupplier party : externalParties) {
+			if (party.getAsBoolean()) {
+				ready++;
+			}
+		}
+
+		return ready;
+	}
+
+	/**
+	 * Release every waiting call. Has no effect if the gate is already open.
+	 */
+	public synchronized void open() {
+		if (isOpen()) {
+			return;
+		}
+
+		openTime = System.nanoTime();
+		openLatch.countDown();
+
+		for (final Runnable action : openActions) {
+			if (openActions.remove(action)) {
+				action.run();
+			}
+		}
+	}
+
+	public boolean isOpen() {
+		return openLatch.getCount() == 0;
+	}
+
+	/**
+	 * The value of {@link System#nanoTime()} when the gate was opened, or zero if it is not yet open.
+	 */
+	public long getOpenTime() {
+		return openTime;
+	}
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client.call.factory;
+
+/**
+ * The kinds of thread pool that {@link SingleProcessCallFactory} can run calls on. See
+ * {@link ClientExecutors#create(ThreadModel, int)}.
+ */
+public enum ThreadModel {
+	/**
+	 * A fixed number of threads, all started up front, sharing one queue of calls.
+	 */
+	FIXED,
+
+	/**
+	 * A work-stealing {@link java.util.concurrent.ForkJoinPool}, with one queue per thread.
+	 */
+	WORK_STEALING,
+
+	/**
+	 * Calls go to an idle thread if there is one, or to a new thread up to a cap, and queue once every thread is busy.
+	 * Threads are retired after being idle for a while.
+	 */
+	BOUNDED_CACHED,
+
+	/**
+	 * A new virtual thread for every call, with no limit on how many run at once. Blocking calls park the virtual thread
+	 * rather than holding a platform thread, unless the virtual thread is pinned to its carrier.
+	 */
+	VIRTUAL
+}
@@ -16,13 +16,26 @@ import java.util.concurrent.Future;
 public interface CallFuture {
 
 	/**
-	 * Block until the call has finished.
+	 * Block until the call has finished. Returns early, with the thread's interrupt status set, if the thread is
+	 * interrupted.
 	 */
 	void waitForCompletion();
 
 	/**
-	 * The time it took to execute the given call in milliseconds.
+	 * Run <tt>callback</tt> once the call has finished, whether or not it succeeded. The callback is run immediately if
+	 * the call has already finished, and may otherwise be run on any thread.
+	 */
+	void onCompletion(Runnable callback);
+
+	/**
+	 * The time it took to execute the given call in nanoseconds.
 	 */
 	long getExecutionTime() throws InterruptedException, ExecutionException;
 
+	/**
+	 * The time in nanoseconds between the task being submitted and the call starting, for example while it waited for a
+	 * free client thread. This is not included in {@link #getExecutionTime()}.
+	 */
+	long getStartDelay() throws InterruptedException, ExecutionException;
+
 }
\ No newline at end of file
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client.call.future;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+
+import javax.annotation.Nullable;
+
+import com.aetherworks.concurrency.client.call.factory.StartGate;
+
+/**
+ * A call queued for one of a pool of worker processes. The worker connection that takes the call marks it started with
+ * {@link #start()}, and then completes it with the execution time reported by the worker.
+ */
+public class PooledProcessCallFuture implements CallFuture {
+
+	private final CompletableFuture<Long> future = new CompletableFuture<>();
+
+	@Nullable
+	private final StartGate startGate;
+
+	private final long submissionTime = System.nanoTime();
+
+	private volatile long startDelay;
+
+	public PooledProcessCallFuture(@Nullable final StartGate startGate) {
+		this.startGate = startGate;
+	}
+
+	/**
+	 * Called by a worker connection just before it sends the call to its worker. Waits at the start gate, if there is
+	 * one, and records how long the call waited for a free worker.
+	 */
+	public void start() throws InterruptedException {
+		final long readyTime = startGate == null ? submissionTime : startGate.awaitStart(submissionTime);
+
+		startDelay = System.nanoTime() - readyTime;
+	}
+
+	/**
+	 * Record the execution time reported by the worker.
+	 */
+	public void complete(final long executionNanos) {
+		future.complete(executionNanos);
+	}
+
+	/**
+	 * Record that the call failed, or could not be made.
+	 */
+	public void fail(final Throwable cause) {
+		future.completeExceptionally(cause);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void waitForCompletion() {
+		try {
+			future.get();
+		} catch (final ExecutionException e) {
+			// The call has finished. The failure is reported by getExecutionTime().
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onCompletion(final Runnable callback) {
+		future.whenComplete(new BiConsumer<Long, Throwable>() {
+			@Override
+			public void accept(final Long executionTime, final Throwable failure) {
+				callback.run();
+			}
+		});
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getExecutionTime() throws InterruptedException, ExecutionException {
+		return future.get();
+	}
+
+	/**
+	 * The time the call was queued before a worker took it, measured from the start gate opening if it had one.
+	 * <p>
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getStartDelay() throws InterruptedException, ExecutionException {
+		future.get();
+
+		return startDelay;
+	}
+}
@@ -4,20 +4,30 @@
 
 package com.aetherworks.concurrency.client.call.future;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+
+import com.aetherworks.concurrency.client.TimedFunctionExecutor;
 
 /**
  * Wrapper around a {@link Future} class to provide compatibility with multi-process calls.
+ * <p>
+ * The future is a {@link CompletableFuture}, so that waiting for the call blocks on the result and callbacks are run by
+ * the thread that completes it, rather than polling.
  * 
  * @author Angus Macdonald (amacdonald@aetherworks.com)
  */
 public class SameProcessCallFuture implements CallFuture {
 
-	private final Future<Long> future;
+	private final CompletableFuture<Long> future;
+
+	private final TimedFunctionExecutor task;
 
-	public SameProcessCallFuture(final Future<Long> future) {
+	public SameProcessCallFuture(final CompletableFuture<Long> future, final TimedFunctionExecutor task) {
 		this.future = future;
+		this.task = task;
 	}
 
 	/**
@@ -25,14 +35,28 @@ public class SameProcessCallFuture implements CallFuture {
 	 */
 	@Override
 	public void waitForCompletion() {
-		while (!future.isDone()) {
-			try {
-				Thread.sleep(1);
-			} catch (final InterruptedException e) {
-			}
+		try {
+			future.get();
+		} catch (final ExecutionException e) {
+			// The call has finished. The failure is reported by getExecutionTime().
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void onCompletion(final Runnable callback) {
+		future.whenComplete(new BiConsumer<Long, Throwable>() {
+			@Override
+			public void accept(final Long executionTime, final Throwable failure) {
+				callback.run();
+			}
+		});
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -41,4 +65,14 @@ public class SameProcessCallFuture implements CallFuture {
 		return future.get();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getStartDelay() throws InterruptedException, ExecutionException {
+		future.get();
+
+		return task.getStartDelay();
+	}
+
 }
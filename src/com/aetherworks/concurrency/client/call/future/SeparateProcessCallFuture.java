@@ -4,14 +4,19 @@
 
 package com.aetherworks.concurrency.client.call.future;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
 
+import com.aetherworks.concurrency.client.call.result.CallResult;
+import com.aetherworks.concurrency.client.call.result.ResultChannel;
 import com.aetherworks.concurrency.util.DeadProcessException;
 import com.aetherworks.concurrency.util.JavaProcess;
 
 /**
- * Wrapper around a {@link JavaProcess}, which waits for the completion of the process and returns its result through
- * the exit value of the process.
+ * Wrapper around a {@link JavaProcess}, which waits for the completion of the process and returns the result it wrote
+ * into its {@link ResultChannel} slot.
  * 
  * @author Angus Macdonald (amacdonald@aetherworks.com)
  */
@@ -19,8 +24,51 @@ public class SeparateProcessCallFuture implements CallFuture {
 
 	private final JavaProcess process;
 
-	public SeparateProcessCallFuture(final JavaProcess process) {
+	private final long submissionTime;
+
+	/**
+	 * Completes with the time the process was started at, once it has started up, or exceptionally if it couldn't be
+	 * started.
+	 */
+	private final CompletableFuture<Long> launched;
+
+	private final ResultChannel resultChannel;
+
+	private final int slot;
+
+	/**
+	 * The slot's contents, read once the process has finished, or when first asked for if that is sooner.
+	 */
+	private CallResult result;
+
+	private boolean slotReleased = false;
+
+	/**
+	 * @param submissionTime
+	 *        The {@link System#nanoTime()} the call was submitted at.
+	 * @param launched
+	 *        From {@link com.aetherworks.concurrency.util.ProcessLauncher#launch}, for <tt>process</tt>.
+	 */
+	public SeparateProcessCallFuture(final JavaProcess process, final long submissionTime, final CompletableFuture<Long> launched,
+			final ResultChannel resultChannel, final int slot) {
 		this.process = process;
+		this.submissionTime = submissionTime;
+		this.launched = launched;
+		this.resultChannel = resultChannel;
+		this.slot = slot;
+
+		// Release the slot only once the process can no longer write to it: once it has exited, or if it never started.
+		launched.whenComplete(new BiConsumer<Long, Throwable>() {
+			@Override
+			public void accept(final Long launchTime, final Throwable launchFailure) {
+				process.onExit().whenComplete(new BiConsumer<Integer, Throwable>() {
+					@Override
+					public void accept(final Integer exitValue, final Throwable failure) {
+						releaseSlot();
+					}
+				});
+			}
+		});
 	}
 
 	/**
@@ -29,8 +77,12 @@ public class SeparateProcessCallFuture implements CallFuture {
 	@Override
 	public void waitForCompletion() {
 		try {
+			launched.join();
 			process.waitForProcessToComplete();
-		} catch (DeadProcessException | InterruptedException e) {
+		} catch (final CompletionException | DeadProcessException e) {
+			// The process never started. getExecutionTime() reports this as a failed call.
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
 		}
 	}
 
@@ -38,8 +90,74 @@ public class SeparateProcessCallFuture implements CallFuture {
 	 * {@inheritDoc}
 	 */
 	@Override
+	public void onCompletion(final Runnable callback) {
+		launched.whenComplete(new BiConsumer<Long, Throwable>() {
+			@Override
+			public void accept(final Long launchTime, final Throwable launchFailure) {
+				if (launchFailure != null) {
+					callback.run();
+					return;
+				}
+
+				process.onExit().whenComplete(new BiConsumer<Integer, Throwable>() {
+					@Override
+					public void accept(final Integer exitValue, final Throwable failure) {
+						callback.run();
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @throws ExecutionException
+	 *         If the process failed to report a result, or reported that the call failed.
+	 */
+	@Override
 	public long getExecutionTime() throws InterruptedException, ExecutionException {
-		return process.exitValue();
+		final CallResult callResult = getResult();
+
+		if (!callResult.isComplete()) {
+			throw new ExecutionException("Call in separate process " + (callResult.isFailed() ? "failed" : "did not report a result") + ".",
+					null);
+		}
+
+		return callResult.getExecutionNanos();
+	}
+
+	/**
+	 * The time the call waited for a launcher to start its process. Neither the child's own startup time nor any time
+	 * spent waiting at a start gate is counted as part of the call.
+	 * <p>
+	 * {@inheritDoc}
+	 * 
+	 * @throws ExecutionException
+	 *         If the process couldn't be started.
+	 */
+	@Override
+	public long getStartDelay() throws InterruptedException, ExecutionException {
+		return launched.get() - submissionTime;
 	}
 
+	private synchronized CallResult getResult() {
+		if (result == null) {
+			result = resultChannel.readResult(slot);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Read the result, if it hasn't been read yet, and give the slot back to the channel.
+	 */
+	private synchronized void releaseSlot() {
+		getResult();
+
+		if (!slotReleased) {
+			slotReleased = true;
+			resultChannel.releaseSlot(slot);
+		}
+	}
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client.call.result;
+
+/**
+ * The contents of a single {@link ResultChannel} slot.
+ */
+public class CallResult {
+
+	private final int state;
+	private final int callNumber;
+	private final long executionNanos;
+
+	CallResult(final int state, final int callNumber, final long executionNanos) {
+		this.state = state;
+		this.callNumber = callNumber;
+		this.executionNanos = executionNanos;
+	}
+
+	/**
+	 * True if the child wrote a result and the call succeeded.
+	 */
+	public boolean isComplete() {
+		return state == ResultChannel.STATE_COMPLETE;
+	}
+
+	/**
+	 * True if the child wrote a result but the call failed.
+	 */
+	public boolean isFailed() {
+		return state == ResultChannel.STATE_FAILED;
+	}
+
+	/**
+	 * The call number returned by the server.
+	 */
+	public int getCallNumber() {
+		return callNumber;
+	}
+
+	/**
+	 * Time taken to execute the call, in nanoseconds.
+	 */
+	public long getExecutionNanos() {
+		return executionNanos;
+	}
+}
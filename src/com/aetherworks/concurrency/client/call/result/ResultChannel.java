@@ -0,0 +1,298 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client.call.result;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A memory-mapped file through which child processes report the result of their call to the parent.
+ * <p>
+ * The file is divided into fixed-size slots, one per running child. The parent creates the channel with
+ * {@link #create(int)} and hands out slots with {@link #allocateSlot()}; each child opens the same file with
+ * {@link #open(File)} and writes its result into its slot with {@link #writeResult(int, int, long, boolean)}. The parent
+ * reads the slot once the child has exited, and then returns it with {@link #releaseSlot(int)} so it can be reused.
+ * <p>
+ * The channel also carries a start gate, so that children can be started ahead of time and then released together:
+ * a child marks its slot ready with {@link #markReady(int)} and waits in {@link #awaitGate(int)} until the parent calls
+ * {@link #openGate(int)} with the child's gate generation. Generations only ever increase, so one channel can be used
+ * for many gated rounds of calls.
+ * <p>
+ * Header layout, in the default big-endian order of {@link MappedByteBuffer}:
+ * 
+ * <pre>
+ * offset 0  int   magic number
+ * offset 4  int   number of slots
+ * offset 8  int   latest gate generation opened by the parent
+ * offset 12 int   reserved
+ * </pre>
+ * 
+ * Slot layout:
+ * 
+ * <pre>
+ * offset 0  int   state (EMPTY, READY, COMPLETE, FAILED)
+ * offset 4  int   call number returned by the server
+ * offset 8  long  execution time in nanoseconds
+ * offset 16 long  reserved
+ * offset 24 long  reserved
+ * </pre>
+ */
+public class ResultChannel implements Closeable {
+	private final static Logger LOGGER = Logger.getLogger(ResultChannel.class.getName());
+
+	/**
+	 * Identifies a file created by this class, so a child doesn't write into an unrelated file.
+	 */
+	private static final int MAGIC = 0x524d4943;
+
+	private static final int HEADER_SIZE = 16;
+
+	private static final int OPENED_GENERATION_OFFSET = 8;
+
+	private static final int SLOT_SIZE = 32;
+
+	private static final int STATE_OFFSET = 0;
+	private static final int CALL_NUMBER_OFFSET = 4;
+	private static final int EXECUTION_TIME_OFFSET = 8;
+
+	static final int STATE_EMPTY = 0;
+	static final int STATE_COMPLETE = 1;
+	static final int STATE_FAILED = 2;
+	static final int STATE_READY = 3;
+
+	/**
+	 * How long a child parks between checks of the gate. Short enough that children are released within a few tens of
+	 * microseconds of each other, while the parent starts them all.
+	 */
+	private static final long GATE_POLL_INTERVAL_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+	/**
+	 * Volatile access to the ints shared with other processes. Plain buffer reads could be hoisted out of a polling
+	 * loop, and plain writes reordered ahead of the result they publish.
+	 */
+	private static final VarHandle SHARED_INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+	private final File file;
+
+	private final MappedByteBuffer buffer;
+
+	private final int numberOfSlots;
+
+	/**
+	 * Slots not currently allocated to a child. Only used by the parent.
+	 */
+	private final Deque<Integer> freeSlots = new ArrayDeque<>();
+
+	private final boolean isOwner;
+
+	private ResultChannel(final File file, final MappedByteBuffer buffer, final int numberOfSlots, final boolean isOwner) {
+		this.file = file;
+		this.buffer = buffer;
+		this.numberOfSlots = numberOfSlots;
+		this.isOwner = isOwner;
+
+		if (isOwner) {
+			for (int i = 0; i < numberOfSlots; i++) {
+				freeSlots.add(i);
+			}
+		}
+	}
+
+	/**
+	 * Create a new channel backed by a temporary file, with room for <tt>numberOfSlots</tt> concurrently running
+	 * children. The file is deleted when the channel is closed.
+	 */
+	public static ResultChannel create(final int numberOfSlots) throws IOException {
+		Preconditions.checkArgument(numberOfSlots > 0, "A result channel needs at least one slot.");
+
+		final File file = File.createTempFile("rmi-call-results", ".dat");
+		file.deleteOnExit();
+
+		final MappedByteBuffer buffer = map(file, HEADER_SIZE + (long) numberOfSlots * SLOT_SIZE);
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, numberOfSlots);
+
+		LOGGER.log(Level.FINE, "Created result channel with " + numberOfSlots + " slots at '" + file.getAbsolutePath() + "'.");
+
+		return new ResultChannel(file, buffer, numberOfSlots, true);
+	}
+
+	/**
+	 * Open an existing channel created by the parent process through {@link #create(int)}.
+	 * 
+	 * @throws IOException
+	 *         If the file can't be mapped, or wasn't created by {@link #create(int)}.
+	 */
+	public static ResultChannel open(final File file) throws IOException {
+		final MappedByteBuffer header = map(file, HEADER_SIZE);
+
+		if (header.getInt(0) != MAGIC) {
+			throw new IOException("'" + file.getAbsolutePath() + "' is not a result channel file.");
+		}
+
+		final int numberOfSlots = header.getInt(4);
+
+		return new ResultChannel(file, map(file, HEADER_SIZE + (long) numberOfSlots * SLOT_SIZE), numberOfSlots, false);
+	}
+
+	private static MappedByteBuffer map(final File file, final long size) throws IOException {
+		try (final RandomAccessFile raf = new RandomAccessFile(file, "rw"); final FileChannel channel = raf.getChannel()) {
+			// The mapping stays valid after the channel is closed.
+			return channel.map(MapMode.READ_WRITE, 0, size);
+		}
+	}
+
+	/**
+	 * Reserve an empty slot for a new child.
+	 * 
+	 * @throws IllegalStateException
+	 *         If every slot is in use.
+	 */
+	public synchronized int allocateSlot() {
+		Preconditions.checkState(isOwner, "Only the process that created the channel can allocate slots.");
+
+		final Integer slot = freeSlots.poll();
+
+		if (slot == null) {
+			throw new IllegalStateException("All " + numberOfSlots + " result slots are in use.");
+		}
+
+		SHARED_INT.setVolatile(buffer, getSlotOffset(slot) + STATE_OFFSET, STATE_EMPTY);
+
+		return slot;
+	}
+
+	/**
+	 * Return a slot once its result has been read, so that it can be given to another child.
+	 * 
+	 * @throws IllegalStateException
+	 *         If the slot is already free, since releasing it twice could give it to two children at once.
+	 */
+	public synchronized void releaseSlot(final int slot) {
+		checkSlot(slot);
+		Preconditions.checkState(!freeSlots.contains(slot), "Result slot " + slot + " is already free.");
+
+		freeSlots.add(slot);
+	}
+
+	/**
+	 * Write the result of a call into the given slot. Called by the child process.
+	 * 
+	 * @param failed
+	 *        True if the call did not complete successfully, in which case the timing should not be used.
+	 */
+	public void writeResult(final int slot, final int callNumber, final long executionNanos, final boolean failed) {
+		checkSlot(slot);
+
+		final int offset = getSlotOffset(slot);
+
+		buffer.putInt(offset + CALL_NUMBER_OFFSET, callNumber);
+		buffer.putLong(offset + EXECUTION_TIME_OFFSET, executionNanos);
+
+		// Written last, so the parent never sees a complete state with a partial result.
+		SHARED_INT.setVolatile(buffer, offset + STATE_OFFSET, failed ? STATE_FAILED : STATE_COMPLETE);
+	}
+
+	/**
+	 * Mark the given slot as ready to make its call. Called by a child process before it waits at the gate.
+	 */
+	public void markReady(final int slot) {
+		checkSlot(slot);
+
+		SHARED_INT.setVolatile(buffer, getSlotOffset(slot) + STATE_OFFSET, STATE_READY);
+	}
+
+	/**
+	 * Whether the child using the given slot has reached the gate, or has already gone past it.
+	 */
+	public boolean isReady(final int slot) {
+		checkSlot(slot);
+
+		return (int) SHARED_INT.getVolatile(buffer, getSlotOffset(slot) + STATE_OFFSET) != STATE_EMPTY;
+	}
+
+	/**
+	 * Release every child waiting for the given gate generation, or an earlier one. Called by the parent.
+	 */
+	public void openGate(final int generation) {
+		Preconditions.checkState(isOwner, "Only the process that created the channel can open the gate.");
+
+		synchronized (this) {
+			if (generation > (int) SHARED_INT.getVolatile(buffer, OPENED_GENERATION_OFFSET)) {
+				SHARED_INT.setVolatile(buffer, OPENED_GENERATION_OFFSET, generation);
+			}
+		}
+	}
+
+	/**
+	 * Wait until the parent opens the given gate generation. Called by a child process.
+	 */
+	public void awaitGate(final int generation) throws InterruptedException {
+		while ((int) SHARED_INT.getVolatile(buffer, OPENED_GENERATION_OFFSET) < generation) {
+			LockSupport.parkNanos(GATE_POLL_INTERVAL_NANOS);
+
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+		}
+	}
+
+	/**
+	 * Read the result currently held in the given slot.
+	 */
+	public CallResult readResult(final int slot) {
+		checkSlot(slot);
+
+		final int offset = getSlotOffset(slot);
+
+		return new CallResult((int) SHARED_INT.getVolatile(buffer, offset + STATE_OFFSET), buffer.getInt(offset + CALL_NUMBER_OFFSET),
+				buffer.getLong(offset + EXECUTION_TIME_OFFSET));
+	}
+
+	/**
+	 * The file backing this channel, to be passed to child processes.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	public int getNumberOfSlots() {
+		return numberOfSlots;
+	}
+
+	/**
+	 * Deletes the backing file if this is the process that created it.
+	 */
+	@Override
+	public void close() {
+		if (isOwner && !file.delete()) {
+			LOGGER.log(Level.WARNING, "Failed to delete result channel file: '" + file.getAbsolutePath() + "'.");
+		}
+	}
+
+	private void checkSlot(final int slot) {
+		Preconditions.checkElementIndex(slot, numberOfSlots, "slot");
+	}
+
+	private static int getSlotOffset(final int slot) {
+		return HEADER_SIZE + slot * SLOT_SIZE;
+	}
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client.sweep;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import com.aetherworks.concurrency.client.call.executor.CallExecutionResults;
+import com.aetherworks.concurrency.server.metrics.ServerMetricsSnapshot;
+import com.aetherworks.concurrency.stats.LatencyHistogram;
+import com.aetherworks.concurrency.stats.LatencySamples;
+import com.aetherworks.concurrency.stats.SampleStatistics;
+import com.aetherworks.concurrency.transport.SocketStatistics;
+
+/**
+ * The measured iterations of one {@link SweepCell}, from one client process or combined from several forks. Warmup
+ * iterations are never included.
+ */
+public class CellResults {
+
+	private final List<CallExecutionResults> iterations;
+
+	private final int forks;
+
+	private final long lostUpdates;
+
+	private final SocketStatistics.Snapshot sockets;
+
+	private final long pinnedCount;
+
+	@Nullable
+	private final ServerMetricsSnapshot server;
+
+	private final LatencyHistogram firstByteTimes;
+
+	private final long clientPeakHeapBytes;
+
+	private final long serverPeakHeapBytes;
+
+	/**
+	 * @param forks
+	 *        The number of client processes the iterations came from, or zero if they ran in the sweep's own process.
+	 * @param lostUpdates
+	 *        Successful calls in the measured iterations that the server's counter doesn't account for.
+	 * @param sockets
+	 *        The client's RMI socket traffic during the measured iterations.
+	 * @param pinnedCount
+	 *        Times a virtual thread blocked while pinned during the measured iterations.
+	 * @param server
+	 *        What the measured iterations cost the server, or null if its metrics couldn't be read.
+	 * @param firstByteTimes
+	 *        How long the transfer calls made in this process during the measured iterations waited for their first byte.
+	 * @param clientPeakHeapBytes
+	 *        The client's peak heap usage during the measured iterations, or -1 if the calls were made in other processes.
+	 * @param serverPeakHeapBytes
+	 *        The server's peak heap usage during the measured iterations, or -1 if it couldn't be read.
+	 */
+	public CellResults(final List<CallExecutionResults> iterations, final int forks, final long lostUpdates,
+			final SocketStatistics.Snapshot sockets, final long pinnedCount, @Nullable final ServerMetricsSnapshot server,
+			final LatencyHistogram firstByteTimes, final long clientPeakHeapBytes, final long serverPeakHeapBytes) {
+		this.iterations = Collections.unmodifiableList(new ArrayList<>(iterations));
+		this.forks = forks;
+		this.lostUpdates = lostUpdates;
+		this.sockets = sockets;
+		this.pinnedCount = pinnedCount;
+		this.server = server;
+		this.firstByteTimes = firstByteTimes;
+		this.clientPeakHeapBytes = clientPeakHeapBytes;
+		this.serverPeakHeapBytes = serverPeakHeapBytes;
+	}
+
+	/**
+	 * Combine the results of forks that each ran the same cell.
+	 */
+	public static CellResults combineForks(final List<CellResults> forkResults) {
+		final List<CallExecutionResults> iterations = new ArrayList<>();
+		long lostUpdates = 0;
+		SocketStatistics.Snapshot sockets = new SocketStatistics().snapshot();
+		long pinnedCount = 0;
+		ServerMetricsSnapshot server = null;
+		final LatencyHistogram firstByteTimes = new LatencyHistogram();
+		long clientPeakHeapBytes = -1;
+		long serverPeakHeapBytes = -1;
+
+		for (final CellResults fork : forkResults) {
+			iterations.addAll(fork.iterations);
+			lostUpdates += fork.lostUpdates;
+			sockets = sockets.plus(fork.sockets);
+			pinnedCount += fork.pinnedCount;
+
+			if (fork.server != null) {
+				server = server == null ? fork.server : server.plus(fork.server);
+			}
+
+			firstByteTimes.add(fork.firstByteTimes);
+
+			// Each fork has a heap of its own, so the highest is the peak any one client reached.
+			clientPeakHeapBytes = Math.max(clientPeakHeapBytes, fork.clientPeakHeapBytes);
+			serverPeakHeapBytes = Math.max(serverPeakHeapBytes, fork.serverPeakHeapBytes);
+		}
+
+		return new CellResults(iterations, forkResults.size(), lostUpdates, sockets, pinnedCount, server, firstByteTimes,
+				clientPeakHeapBytes, serverPeakHeapBytes);
+	}
+
+	public List<CallExecutionResults> getIterations() {
+		return iterations;
+	}
+
+	public int getForks() {
+		return forks;
+	}
+
+	public long getLostUpdates() {
+		return lostUpdates;
+	}
+
+	public SocketStatistics.Snapshot getSockets() {
+		return sockets;
+	}
+
+	public long getPinnedCount() {
+		return pinnedCount;
+	}
+
+	/**
+	 * The calls the server handled, the time it spent running them and the blocking of its dispatching threads during the
+	 * measured iterations, from every client, or null if the server's metrics couldn't be read.
+	 */
+	@Nullable
+	public ServerMetricsSnapshot getServer() {
+		return server;
+	}
+
+	/**
+	 * How long each transfer call made in this process, or in the forks, waited for the first byte of its result, in
+	 * nanoseconds. Empty for other call types, or calls made in separate processes.
+	 */
+	public LatencyHistogram getFirstByteTimes() {
+		return firstByteTimes;
+	}
+
+	/**
+	 * The client's peak heap usage during the measured iterations, in bytes, or -1 if the calls were made in other
+	 * processes.
+	 */
+	public long getClientPeakHeapBytes() {
+		return clientPeakHeapBytes;
+	}
+
+	/**
+	 * The server's peak heap usage during the measured iterations, in bytes, or -1 if it couldn't be read.
+	 */
+	public long getServerPeakHeapBytes() {
+		return serverPeakHeapBytes;
+	}
+
+	/**
+	 * Every measured iteration as if it were one run: the latencies and samples of all of them, and their elapsed times
+	 * added up, as they ran one after another.
+	 */
+	public CallExecutionResults getCombined() {
+		final LatencyHistogram latencies = new LatencyHistogram();
+		final LatencySamples samples = new LatencySamples();
+		int numberOfErrors = 0;
+		long elapsedNanos = 0;
+
+		for (final CallExecutionResults iteration : iterations) {
+			latencies.add(iteration.getLatencies());
+			samples.add(iteration.getSamples());
+			numberOfErrors += iteration.getNumberOfErrors();
+			elapsedNanos += iteration.getElapsedNanos();
+		}
+
+		return new CallExecutionResults(latencies, samples, numberOfErrors, elapsedNanos);
+	}
+
+	/**
+	 * The throughput of each measured iteration, in calls per second.
+	 */
+	public SampleStatistics getThroughputStatistics() {
+		final SampleStatistics statistics = new SampleStatistics();
+
+		for (final CallExecutionResults iteration : iterations) {
+			statistics.add(iteration.getThroughput());
+		}
+
+		return statistics;
+	}
+
+	/**
+	 * The mean latency of each measured iteration, in nanoseconds.
+	 */
+	public SampleStatistics getMeanLatencyStatistics() {
+		final SampleStatistics statistics = new SampleStatistics();
+
+		for (final CallExecutionResults iteration : iterations) {
+			statistics.add(iteration.getLatencies().getMean());
+		}
+
+		return statistics;
+	}
+
+	/**
+	 * A percentile of each measured iteration's latencies, in nanoseconds.
+	 */
+	public SampleStatistics getPercentileStatistics(final double percentile) {
+		final SampleStatistics statistics = new SampleStatistics();
+
+		for (final CallExecutionResults iteration : iterations) {
+			statistics.add(iteration.getLatencies().getValueAtPercentile(percentile));
+		}
+
+		return statistics;
+	}
+
+	/**
+	 * A single line summary of the spread between iterations, with latencies in milliseconds.
+	 */
+	public String toSummaryString() {
+		final SampleStatistics meanLatency = new SampleStatistics();
+		final SampleStatistics p99 = new SampleStatistics();
+
+		for (final double nanos : getMeanLatencyStatistics().getSamples()) {
+			meanLatency.add(nanos / TimeUnit.MILLISECONDS.toNanos(1));
+		}
+		for (final double nanos : getPercentileStatistics(99).getSamples()) {
+			p99.add(nanos / TimeUnit.MILLISECONDS.toNanos(1));
+		}
+
+		return "throughput=" + getThroughputStatistics().toSummaryString("%.1f") + " calls/s, mean=" + meanLatency.toSummaryString("%.3f")
+				+ " ms, p99=" + p99.toSummaryString("%.3f") + " ms";
+	}
+
+	/**
+	 * Write these results so that {@link #read(DataInput)} can recreate them in another process.
+	 */
+	public void write(final DataOutput out) throws IOException {
+		out.writeInt(iterations.size());
+
+		for (final CallExecutionResults iteration : iterations) {
+			iteration.getLatencies().write(out);
+			iteration.getSamples().write(out);
+			out.writeInt(iteration.getNumberOfErrors());
+			out.writeLong(iteration.getElapsedNanos());
+		}
+
+		out.writeInt(forks);
+		out.writeLong(lostUpdates);
+		sockets.write(out);
+		out.writeLong(pinnedCount);
+
+		out.writeBoolean(server != null);
+		if (server != null) {
+			server.write(out);
+		}
+
+		firstByteTimes.write(out);
+		out.writeLong(clientPeakHeapBytes);
+		out.writeLong(serverPeakHeapBytes);
+	}
+
+	public static CellResults read(final DataInput in) throws IOException {
+		final int size = in.readInt();
+
+		if (size < 0) {
+			throw new IOException("Invalid number of iterations: " + size);
+		}
+
+		final List<CallExecutionResults> iterations = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			iterations.add(new CallExecutionResults(LatencyHistogram.read(in), LatencySamples.read(in), in.readInt(), in.readLong()));
+		}
+
+		return new CellResults(iterations, in.readInt(), in.readLong(), SocketStatistics.Snapshot.read(in), in.readLong(),
+				in.readBoolean() ? ServerMetricsSnapshot.read(in) : null, LatencyHistogram.read(in), in.readLong(), in.readLong());
+	}
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client.sweep;
+
+import java.io.IOException;
+import java.rmi.NotBoundException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+import com.aetherworks.concurrency.client.FirstByteTimes;
+import com.aetherworks.concurrency.client.LoopSettings;
+import com.aetherworks.concurrency.client.LoopingTimedFunctionExecutor;
+import com.aetherworks.concurrency.client.RemoteCalls;
+import com.aetherworks.concurrency.client.Transport;
+import com.aetherworks.concurrency.client.VirtualThreadPinningMonitor;
+import com.aetherworks.concurrency.client.call.executor.CallExecutionResults;
+import com.aetherworks.concurrency.client.call.executor.CallExecutor;
+import com.aetherworks.concurrency.client.call.executor.ClosedLoopCallExecutor;
+import com.aetherworks.concurrency.client.call.executor.OpenLoopCallExecutor;
+import com.aetherworks.concurrency.client.call.factory.CallFactory;
+import com.aetherworks.concurrency.client.call.factory.PooledProcessCallFactory;
+import com.aetherworks.concurrency.client.call.factory.ProcessMode;
+import com.aetherworks.concurrency.client.call.factory.SeparateProcessCallFactory;
+import com.aetherworks.concurrency.client.call.factory.SingleProcessCallFactory;
+import com.aetherworks.concurrency.client.call.factory.ThreadModel;
+import com.aetherworks.concurrency.server.ServerRemote;
+import com.aetherworks.concurrency.server.metrics.ServerMetricsConnection;
+import com.aetherworks.concurrency.server.metrics.ServerMetricsSnapshot;
+import com.aetherworks.concurrency.stats.HeapPeak;
+import com.aetherworks.concurrency.stats.LatencyHistogram;
+import com.aetherworks.concurrency.transport.InstrumentedClientSocketFactory;
+import com.aetherworks.concurrency.transport.SocketStatistics;
+import com.aetherworks.concurrency.util.CommandLineArgs;
+
+/**
+ * Runs one {@link SweepCell} in this process: its warmup iterations, whose results are thrown away, and then its
+ * measured iterations.
+ * <p>
+ * Every iteration of a cell goes through the same {@link CallFactory}, so the warmup iterations load and compile the
+ * code, create the stubs and open the connections that the measured iterations then use. The server's counters are
+ * reset before each measured iteration, to check it for lost updates.
+ * <p>
+ * The server's metrics are read over JMX immediately before and after each measured iteration, so they cover only the
+ * calls the iteration made, from whichever processes made them. If they can't be read the cell still runs, without
+ * them.
+ * <p>
+ * The peak heap usage of the client and the server is measured over the measured iterations together. The client's is
+ * only measured when the calls are made in this process.
+ * <p>
+ * If agents are configured, the calls are made from that many {@link LoadAgent} processes instead, each making its share
+ * of them as this process would, through a {@link LoadCoordinator}.
+ */
+class CellRunner {
+	private final static Logger LOGGER = Logger.getLogger(CellRunner.class.getName());
+
+	private final SweepSettings settings;
+
+	CellRunner(final SweepSettings settings) {
+		this.settings = settings;
+	}
+
+	/**
+	 * @param server
+	 *        Used to reset and read the server's counters, and to make the calls in single-process mode. It stays open
+	 *        after the cell.
+	 * @param clientExecutor
+	 *        The pool calls run on in single-process mode, with at least as many threads as the cell.
+	 */
+	CellResults run(final SweepCell cell, final ServerRemote server, final ExecutorService clientExecutor) throws IOException,
+			NotBoundException, InterruptedException, ExecutionException {
+		final boolean useAgents = settings.getAgents() > 0;
+
+		try (final CallFactory callFactory = useAgents || settings.getClosedLoopIterations() > 0 ? null : createNewCall(cell, server,
+				clientExecutor);
+				final LoadCoordinator coordinator = useAgents ? LoadCoordinator.start(settings, cell) : null) {
+			for (int i = 0; i < settings.getWarmupIterations(); i++) {
+				final CallExecutionResults results = execute(cell, callFactory, coordinator);
+
+				LOGGER.log(Level.FINE, cell + " warmup " + i + ": " + results.toSummaryString());
+			}
+
+			final VirtualThreadPinningMonitor pinningMonitor = settings.getThreadModel() == ThreadModel.VIRTUAL ? new VirtualThreadPinningMonitor(
+					Duration.ofMillis(settings.getPinningThresholdMillis())) : null;
+
+			final List<CallExecutionResults> iterations = new ArrayList<>();
+			long lostUpdates = 0;
+			ServerMetricsSnapshot serverCost = null;
+
+			// Only this process's sockets are counted, so calls made from separate processes show no traffic.
+			SocketStatistics.Snapshot sockets = new SocketStatistics().snapshot();
+
+			final ServerMetricsConnection serverMetrics = connectMetrics();
+			final HeapPeak serverHeap = serverMetrics == null ? null : getServerHeap(serverMetrics);
+			long serverPeakHeapBytes = -1;
+
+			// Only calls made in this process use its heap, or record their time to first byte here.
+			final boolean callsInThisProcess = coordinator == null
+					&& (callFactory == null || cell.getProcessMode() == ProcessMode.SINGLE_PROCESS);
+			final HeapPeak clientHeap = HeapPeak.local();
+
+			FirstByteTimes.drain();
+			clientHeap.reset();
+			if (serverHeap != null) {
+				serverHeap.reset();
+			}
+
+			try {
+				for (int i = 0; i < settings.getIterations(); i++) {
+					server.resetCounters();
+
+					final ServerMetricsSnapshot serverBefore = serverMetrics == null ? null : serverMetrics.getSnapshot();
+					final SocketStatistics.Snapshot socketsBefore = InstrumentedClientSocketFactory.getStatistics().snapshot();
+
+					final CallExecutionResults results = execute(cell, callFactory, coordinator);
+
+					sockets = sockets.plus(InstrumentedClientSocketFactory.getStatistics().snapshot().minus(socketsBefore));
+
+					if (serverMetrics != null) {
+						final ServerMetricsSnapshot iterationCost = serverMetrics.getSnapshot().minus(serverBefore);
+						serverCost = serverCost == null ? iterationCost : serverCost.plus(iterationCost);
+					}
+
+					// Each successful call should have incremented the counter once.
+					lostUpdates += results.getLatencies().getTotalCount() - server.readCounter(cell.getCallType().getCounter());
+
+					iterations.add(results);
+
+					LOGGER.log(Level.FINE, cell + " iteration " + i + ": " + results.toSummaryString());
+				}
+
+				if (serverHeap != null) {
+					serverPeakHeapBytes = serverHeap.getPeakBytes();
+				}
+			} finally {
+				if (pinningMonitor != null) {
+					pinningMonitor.close();
+				}
+				if (serverMetrics != null) {
+					serverMetrics.close();
+				}
+			}
+
+			if (callFactory != null && callFactory.getStartupTimes() != null && callFactory.getStartupTimes().getTotalCount() > 0) {
+				LOGGER.log(Level.INFO, cell + " client process startup: " + toStartupSummary(callFactory.getStartupTimes()));
+			}
+
+			return new CellResults(iterations, 0, lostUpdates, sockets, pinningMonitor == null ? 0 : pinningMonitor.getPinnedCount(),
+					serverCost, FirstByteTimes.drain(), callsInThisProcess ? clientHeap.getPeakBytes() : -1, serverPeakHeapBytes);
+		}
+	}
+
+	private CallExecutionResults execute(final SweepCell cell, @Nullable final CallFactory callFactory,
+			@Nullable final LoadCoordinator coordinator) throws IOException, NotBoundException, InterruptedException, ExecutionException {
+		return coordinator != null ? coordinator.runIteration() : runIteration(cell, callFactory, null);
+	}
+
+	/**
+	 * Run one iteration of the cell's calls in this process.
+	 * 
+	 * @param callFactory
+	 *        The factory to make the calls through, or null to run closed loops.
+	 * @param beforeStart
+	 *        Run once everything is set up, just before the first call is made, or null to start straight away.
+	 */
+	CallExecutionResults runIteration(final SweepCell cell, @Nullable final CallFactory callFactory, @Nullable final Runnable beforeStart)
+			throws IOException, NotBoundException, InterruptedException, ExecutionException {
+		if (callFactory == null) {
+			return executeClosedLoop(cell, beforeStart);
+		} else if (settings.getOpenLoopCallsPerSecond() > 0) {
+			if (beforeStart != null) {
+				beforeStart.run();
+			}
+
+			return OpenLoopCallExecutor.execute(settings.getOpenLoopCallsPerSecond(), settings.getOpenLoopDurationSeconds(),
+					TimeUnit.SECONDS, callFactory);
+		} else {
+			return CallExecutor.execute(cell.getThreads(), callFactory, beforeStart);
+		}
+	}
+
+	private CallExecutionResults executeClosedLoop(final SweepCell cell, @Nullable final Runnable beforeStart) throws IOException,
+			NotBoundException, InterruptedException, ExecutionException {
+		final LoopSettings loopSettings = LoopSettings.forIterations(settings.getClosedLoopIterations()).withThinkTime(
+				settings.getClosedLoopThinkTimeMillis(), TimeUnit.MILLISECONDS);
+
+		// Each worker is a separate client, with its own connection for the iteration.
+		final List<ServerRemote> servers = new ArrayList<>();
+		final List<LoopingTimedFunctionExecutor> workers = new LinkedList<>();
+
+		final List<CallExecutionResults> workerResults;
+		try {
+			for (int i = 0; i < cell.getThreads(); i++) {
+				final ServerRemote server = connect();
+				servers.add(server);
+				workers.add(new LoopingTimedFunctionExecutor(server, RemoteCalls.getCall(cell.getCallType(), server, cell.getPayloadSize(),
+						settings.getTransferChunkKilobytes()), loopSettings));
+			}
+
+			if (beforeStart != null) {
+				beforeStart.run();
+			}
+
+			workerResults = ClosedLoopCallExecutor.execute(workers, settings.getThreadModel());
+		} finally {
+			for (final ServerRemote server : servers) {
+				Transport.disconnect(server);
+			}
+		}
+
+		int workerNumber = 0;
+		for (final CallExecutionResults workerResult : workerResults) {
+			LOGGER.log(Level.FINE, cell + " worker " + workerNumber++ + ": " + workerResult.toSummaryString());
+		}
+
+		return ClosedLoopCallExecutor.combine(workerResults);
+	}
+
+	/**
+	 * @param server
+	 *        The connection calls are made through in single-process mode. Closing the factory leaves it open.
+	 */
+	CallFactory createNewCall(final SweepCell cell, final ServerRemote server, final ExecutorService clientExecutor) throws IOException {
+		if (cell.getProcessMode() == ProcessMode.SINGLE_PROCESS) {
+			return new SingleProcessCallFactory(server, RemoteCalls.getCall(cell.getCallType(), server, cell.getPayloadSize(), settings
+					.getTransferChunkKilobytes(), settings.getBatchSize(), settings.getBatchLingerMicros(), TimeUnit.MICROSECONDS),
+					clientExecutor);
+		}
+
+		final CommandLineArgs args = new CommandLineArgs();
+		args.put('p', settings.getServerPort());
+		args.put('h', settings.getServerHost());
+		args.put('r', settings.getTransport().name());
+		args.put('n', settings.getServiceName());
+		args.put('t', cell.getCallType().name());
+		args.put('z', cell.getPayloadSize());
+		args.put('k', settings.getTransferChunkKilobytes());
+
+		if (cell.getProcessMode() == ProcessMode.PROCESS_POOL) {
+			return new PooledProcessCallFactory(args.getArgsAsList(), cell.getThreads(), settings.getChildJvmOptions());
+		} else {
+			return new SeparateProcessCallFactory(args.getArgsAsList(), SeparateProcessCallFactory.DEFAULT_MAX_CONCURRENT_PROCESSES,
+					settings.getChildJvmOptions(), settings.getChildLaunchParallelism());
+		}
+	}
+
+	/**
+	 * The count and spread of process startup times, in milliseconds.
+	 */
+	private static String toStartupSummary(final LatencyHistogram startupTimes) {
+		final double nanosPerMilli = TimeUnit.MILLISECONDS.toNanos(1);
+
+		return String.format("processes=%d, min=%.1f ms, p50=%.1f ms, p99=%.1f ms, max=%.1f ms", startupTimes.getTotalCount(),
+				startupTimes.getMinValue() / nanosPerMilli, startupTimes.getValueAtPercentile(50) / nanosPerMilli, startupTimes
+						.getValueAtPercentile(99) / nanosPerMilli, startupTimes.getMaxValue() / nanosPerMilli);
+	}
+
+	/**
+	 * Connect to the server's metrics, or return null if they can't be reached, such as from a server that doesn't
+	 * publish them.
+	 */
+	@Nullable
+	private ServerMetricsConnection connectMetrics() {
+		try {
+			return ServerMetricsConnection.connect(settings.getServerHost(), settings.getRegistryPort());
+		} catch (final IOException e) {
+			LOGGER.log(Level.WARNING, "Server metrics unavailable, continuing without them: " + e.getMessage());
+
+			return null;
+		}
+	}
+
+	/**
+	 * The server's heap, or null if its memory pools can't be read.
+	 */
+	@Nullable
+	private static HeapPeak getServerHeap(final ServerMetricsConnection serverMetrics) {
+		try {
+			return serverMetrics.getHeapPeak();
+		} catch (final IOException e) {
+			LOGGER.log(Level.WARNING, "Server heap unavailable, continuing without it: " + e.getMessage());
+
+			return null;
+		}
+	}
+
+	/**
+	 * Open a new connection to the server, to be released with {@link Transport#disconnect(ServerRemote)}.
+	 */
+	ServerRemote connect() throws IOException, NotBoundException {
+		return settings.getTransport().connect(settings.getServerHost(), settings.getServerPort(), settings.getServiceName());
+	}
+}
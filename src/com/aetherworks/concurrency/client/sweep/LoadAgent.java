@@ -0,0 +1,190 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client.sweep;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.aetherworks.concurrency.client.RemoteCalls.CallType;
+import com.aetherworks.concurrency.client.Transport;
+import com.aetherworks.concurrency.client.call.executor.CallExecutionResults;
+import com.aetherworks.concurrency.client.call.factory.CallFactory;
+import com.aetherworks.concurrency.client.call.factory.ClientExecutors;
+import com.aetherworks.concurrency.client.call.factory.ProcessMode;
+import com.aetherworks.concurrency.server.ServerRemote;
+import com.aetherworks.concurrency.util.CommandLineArgs;
+import com.aetherworks.concurrency.util.ConsoleMultiplexer;
+import com.aetherworks.concurrency.util.ConsoleOutput;
+
+/**
+ * A client JVM that makes one share of a cell's calls for a {@link LoadCoordinator}, at the same time as the other
+ * agents make theirs.
+ * <p>
+ * The agent connects back to the coordinator over a loopback socket and sends its number. For each {@link #COMMAND_RUN}
+ * it sets up an iteration of its share of the calls exactly as a {@link CellRunner} would, replies
+ * {@link #REPLY_READY}, waits for {@link #COMMAND_GO} before making the first call, and then replies
+ * {@link #REPLY_RESULTS} with the iteration's latency histogram and samples, number of errors and elapsed
+ * nanoseconds. If anything fails it replies {@link #REPLY_FAILED} with a message and exits with a non-zero status. It
+ * exits on {@link #COMMAND_STOP} or when the coordinator closes the connection.
+ */
+public class LoadAgent {
+	private final static Logger LOGGER = Logger.getLogger(LoadAgent.class.getName());
+
+	/**
+	 * Sent by the coordinator to ask the agent to set up an iteration.
+	 */
+	static final byte COMMAND_RUN = 1;
+
+	/**
+	 * Sent by the coordinator, once every agent is ready, to start the iteration's calls.
+	 */
+	static final byte COMMAND_GO = 2;
+
+	/**
+	 * Sent by the coordinator to ask the agent to exit.
+	 */
+	static final byte COMMAND_STOP = 0;
+
+	/**
+	 * Sent by the agent once an iteration is set up and waiting for {@link #COMMAND_GO}.
+	 */
+	static final byte REPLY_READY = 1;
+
+	/**
+	 * Sent by the agent, followed by the results, once an iteration has finished.
+	 */
+	static final byte REPLY_RESULTS = 2;
+
+	/**
+	 * Sent by the agent, followed by a message, if it couldn't run an iteration.
+	 */
+	static final byte REPLY_FAILED = 3;
+
+	private static final long CLIENT_SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+	/**
+	 * Expects the arguments: <tt>-s</tt> the settings file, <tt>-e</tt> repetition, <tt>-m</tt> process mode,
+	 * <tt>-t</tt> this agent's share of the threads, <tt>-c</tt> call type, <tt>-z</tt> payload size, <tt>-p</tt> the
+	 * coordinator's loopback port, <tt>-i</tt> this agent's number, and optionally <tt>-r</tt> this agent's share of an
+	 * open loop's rate.
+	 */
+	public static void main(final String[] args) {
+		final CommandLineArgs parsedArgs = CommandLineArgs.parseArgs(args);
+
+		final int agentNumber = Integer.parseInt(parsedArgs.getNotNull('i'));
+
+		try (final Socket socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(parsedArgs.getNotNull('p')))) {
+			socket.setTcpNoDelay(true);
+
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+			out.writeInt(agentNumber);
+			out.flush();
+
+			try {
+				SweepSettings settings = SweepSettings.load(Path.of(parsedArgs.getNotNull('s')));
+
+				if (parsedArgs.get('r') != null) {
+					settings = settings.withProperty("openLoop.callsPerSecond", parsedArgs.get('r'));
+				}
+
+				// The coordinator relays this agent's output, and samples it there, so only dropping is done here.
+				if (settings.getConsoleOutput() == ConsoleOutput.DROP) {
+					ConsoleMultiplexer.getInstance().setOutput(ConsoleOutput.DROP, 1);
+				}
+
+				final SweepCell cell = new SweepCell(Integer.parseInt(parsedArgs.getNotNull('e')), ProcessMode.valueOf(parsedArgs.getNotNull('m')),
+						Integer.parseInt(parsedArgs.getNotNull('t')), CallType.valueOf(parsedArgs.getNotNull('c')), Integer.parseInt(parsedArgs
+								.getNotNull('z')));
+
+				final ExecutorService clientExecutor = ClientExecutors.create(settings.getThreadModel(), cell.getThreads());
+
+				try {
+					serve(settings, cell, clientExecutor, in, out);
+				} finally {
+					ClientExecutors.shutdown(clientExecutor, CLIENT_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+				}
+			} catch (final Exception e) {
+				LOGGER.log(Level.SEVERE, "Agent " + agentNumber + " failed.", e);
+
+				out.writeByte(REPLY_FAILED);
+				out.writeUTF(String.valueOf(e));
+				out.flush();
+
+				System.exit(1);
+			}
+		} catch (final IOException e) {
+			LOGGER.log(Level.SEVERE, "Agent " + agentNumber + " lost its connection to the coordinator.", e);
+
+			System.exit(1);
+		}
+
+		System.exit(0);
+	}
+
+	private static void serve(final SweepSettings settings, final SweepCell cell, final ExecutorService clientExecutor,
+			final DataInputStream in, final DataOutputStream out) throws Exception {
+		final CellRunner runner = new CellRunner(settings);
+
+		final ServerRemote server = settings.getClosedLoopIterations() > 0 ? null : runner.connect();
+
+		try (final CallFactory callFactory = server == null ? null : runner.createNewCall(cell, server, clientExecutor)) {
+			while (true) {
+				final byte command;
+				try {
+					command = in.readByte();
+				} catch (final EOFException e) {
+					return;
+				}
+
+				if (command == COMMAND_STOP) {
+					return;
+				} else if (command != COMMAND_RUN) {
+					throw new IOException("Unknown command: " + command);
+				}
+
+				final CallExecutionResults results = runner.runIteration(cell, callFactory, new Runnable() {
+					@Override
+					public void run() {
+						try {
+							out.writeByte(REPLY_READY);
+							out.flush();
+
+							final byte go = in.readByte();
+
+							if (go != COMMAND_GO) {
+								throw new IOException("Expected the command to start, but got: " + go);
+							}
+						} catch (final IOException e) {
+							throw new UncheckedIOException(e);
+						}
+					}
+				});
+
+				out.writeByte(REPLY_RESULTS);
+				results.getLatencies().write(out);
+				results.getSamples().write(out);
+				out.writeInt(results.getNumberOfErrors());
+				out.writeLong(results.getElapsedNanos());
+				out.flush();
+			}
+		} finally {
+			Transport.disconnect(server);
+		}
+	}
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client.sweep;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.aetherworks.concurrency.client.call.executor.CallExecutionResults;
+import com.aetherworks.concurrency.stats.LatencyHistogram;
+import com.aetherworks.concurrency.stats.LatencySamples;
+import com.aetherworks.concurrency.util.CommandLineArgs;
+import com.aetherworks.concurrency.util.DeadProcessException;
+import com.aetherworks.concurrency.util.JavaProcess;
+
+/**
+ * Makes a cell's calls from several {@link LoadAgent} JVMs at once, for when a single client process can't drive the
+ * server hard enough by itself.
+ * <p>
+ * The cell's callers are split as evenly as possible between the agents, and an open loop's rate is split evenly between
+ * them, so together they make the calls the cell would have made from one process. Each agent connects back to the
+ * coordinator over a loopback socket, and keeps its call factory, and so its connections and worker processes, for
+ * every iteration of the cell.
+ * <p>
+ * An iteration starts in two phases: each agent is told to run, sets up its calls and reports that it is ready, and
+ * only once every agent is ready are they all told to go. The agents' latencies are merged into one histogram, and the
+ * iteration's elapsed time is that of the slowest agent.
+ */
+class LoadCoordinator implements Closeable {
+	private final static Logger LOGGER = Logger.getLogger(LoadCoordinator.class.getName());
+
+	/**
+	 * How long to wait for all of the agents to start and connect.
+	 */
+	private static final long CONNECT_TIMEOUT_SECONDS = 60;
+
+	/**
+	 * How often to check whether the agents that have not yet connected have died, while waiting for connections.
+	 */
+	private static final int ACCEPT_POLL_INTERVAL_MILLIS = 100;
+
+	/**
+	 * How long {@link #close()} waits for each agent to exit before killing it.
+	 */
+	private static final long STOP_TIMEOUT_SECONDS = 10;
+
+	private final Path settingsFile;
+
+	private final List<JavaProcess> processes = new ArrayList<>();
+
+	/**
+	 * The connection to each agent, by agent number.
+	 */
+	private final AgentConnection[] connections;
+
+	private LoadCoordinator(final Path settingsFile, final int numberOfAgents) {
+		this.settingsFile = settingsFile;
+		connections = new AgentConnection[numberOfAgents];
+	}
+
+	/**
+	 * Start an agent for each share of the cell's callers, up to {@link SweepSettings#getAgents()} of them, and wait for
+	 * them all to connect.
+	 * 
+	 * @throws IOException
+	 *         If any agent failed to start and connect.
+	 */
+	static LoadCoordinator start(final SweepSettings settings, final SweepCell cell) throws IOException {
+		final int numberOfAgents = Math.min(settings.getAgents(), cell.getThreads());
+
+		final LoadCoordinator coordinator = new LoadCoordinator(Files.createTempFile("sweep-settings", ".properties"), numberOfAgents);
+
+		try (final ServerSocket listener = new ServerSocket(0, numberOfAgents, InetAddress.getLoopbackAddress())) {
+			settings.store(coordinator.settingsFile);
+
+			for (int i = 0; i < numberOfAgents; i++) {
+				final CommandLineArgs args = new CommandLineArgs();
+				args.put('s', coordinator.settingsFile.toAbsolutePath());
+				args.put('e', cell.getRepetition());
+				args.put('m', cell.getProcessMode().name());
+				args.put('t', cell.getThreads() / numberOfAgents + (i < cell.getThreads() % numberOfAgents ? 1 : 0));
+				args.put('c', cell.getCallType().name());
+				args.put('z', cell.getPayloadSize());
+				args.put('p', listener.getLocalPort());
+				args.put('i', i);
+
+				if (settings.getOpenLoopCallsPerSecond() > 0) {
+					args.put('r', settings.getOpenLoopCallsPerSecond() / numberOfAgents);
+				}
+
+				final JavaProcess process = new JavaProcess(LoadAgent.class, args.getArgsAsList(), settings.getForkJvmArgs());
+				process.executeProcess("agent " + i + ": ");
+				coordinator.processes.add(process);
+			}
+
+			coordinator.acceptConnections(listener);
+		} catch (final IOException e) {
+			coordinator.close();
+			throw e;
+		}
+
+		LOGGER.log(Level.FINE, "Started " + numberOfAgents + " agents for " + cell + ".");
+
+		return coordinator;
+	}
+
+	private void acceptConnections(final ServerSocket listener) throws IOException {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(CONNECT_TIMEOUT_SECONDS);
+
+		listener.setSoTimeout(ACCEPT_POLL_INTERVAL_MILLIS);
+
+		int connected = 0;
+
+		while (connected < connections.length) {
+			final Socket socket;
+			try {
+				socket = listener.accept();
+			} catch (final SocketTimeoutException e) {
+				if (System.nanoTime() - deadline >= 0) {
+					throw new IOException("Only " + connected + " of " + connections.length + " agents connected within "
+							+ CONNECT_TIMEOUT_SECONDS + " seconds.");
+				}
+
+				for (final JavaProcess process : processes) {
+					if (!process.isAlive()) {
+						throw new IOException("An agent exited before connecting, with exit value " + process.exitValue() + ".");
+					}
+				}
+
+				continue;
+			}
+
+			socket.setTcpNoDelay(true);
+
+			final AgentConnection connection = new AgentConnection(socket);
+			final int agentNumber = connection.in.readInt();
+
+			if (agentNumber < 0 || agentNumber >= connections.length || connections[agentNumber] != null) {
+				socket.close();
+				throw new IOException("Unexpected agent number: " + agentNumber);
+			}
+
+			connections[agentNumber] = connection;
+			connected++;
+		}
+	}
+
+	/**
+	 * Run one iteration of the cell's calls from every agent at once.
+	 * 
+	 * @return The results of every agent's calls together.
+	 * @throws IOException
+	 *         If an agent failed or lost its connection.
+	 */
+	CallExecutionResults runIteration() throws IOException {
+		for (final AgentConnection connection : connections) {
+			connection.send(LoadAgent.COMMAND_RUN);
+		}
+
+		for (int i = 0; i < connections.length; i++) {
+			connections[i].expect(i, LoadAgent.REPLY_READY);
+		}
+
+		for (final AgentConnection connection : connections) {
+			connection.send(LoadAgent.COMMAND_GO);
+		}
+
+		final LatencyHistogram latencies = new LatencyHistogram();
+		final LatencySamples samples = new LatencySamples();
+		int numberOfErrors = 0;
+		long elapsedNanos = 0;
+
+		for (int i = 0; i < connections.length; i++) {
+			connections[i].expect(i, LoadAgent.REPLY_RESULTS);
+
+			final DataInputStream in = connections[i].in;
+			final CallExecutionResults results = new CallExecutionResults(LatencyHistogram.read(in), LatencySamples.read(in), in.readInt(),
+					in.readLong());
+
+			LOGGER.log(Level.FINE, "Agent " + i + ": " + results.toSummaryString());
+
+			latencies.add(results.getLatencies());
+			samples.add(results.getSamples());
+			numberOfErrors += results.getNumberOfErrors();
+			elapsedNanos = Math.max(elapsedNanos, results.getElapsedNanos());
+		}
+
+		return new CallExecutionResults(latencies, samples, numberOfErrors, elapsedNanos);
+	}
+
+	/**
+	 * Stops every agent, killing any that don't exit in time.
+	 * <p>
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() throws IOException {
+		for (final AgentConnection connection : connections) {
+			if (connection != null) {
+				try {
+					connection.send(LoadAgent.COMMAND_STOP);
+				} catch (final IOException e) {
+					LOGGER.log(Level.FINE, "Failed to stop agent.", e);
+				}
+			}
+		}
+
+		for (final JavaProcess process : processes) {
+			try {
+				process.onExit().get(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			} catch (final TimeoutException e) {
+				LOGGER.log(Level.WARNING, "Agent process did not exit. Killing it.");
+				killAgent(process);
+			} catch (final InterruptedException e) {
+				killAgent(process);
+				Thread.currentThread().interrupt();
+			} catch (final ExecutionException e) {
+				LOGGER.log(Level.WARNING, "Failed to wait for agent process to exit.", e);
+			}
+		}
+
+		for (final AgentConnection connection : connections) {
+			if (connection != null) {
+				connection.socket.close();
+			}
+		}
+
+		Files.deleteIfExists(settingsFile);
+	}
+
+	private static void killAgent(final JavaProcess process) {
+		try {
+			process.killProcess();
+		} catch (final DeadProcessException e) {
+			// It exited anyway.
+		}
+	}
+
+	private static class AgentConnection {
+		private final Socket socket;
+		private final DataInputStream in;
+		private final DataOutputStream out;
+
+		AgentConnection(final Socket socket) throws IOException {
+			this.socket = socket;
+			in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		}
+
+		void send(final byte command) throws IOException {
+			out.writeByte(command);
+			out.flush();
+		}
+
+		/**
+		 * Read the agent's next reply, and fail if it isn't the one expected.
+		 */
+		void expect(final int agentNumber, final byte expectedReply) throws IOException {
+			final byte reply = in.readByte();
+
+			if (reply == LoadAgent.REPLY_FAILED) {
+				throw new IOException("Agent " + agentNumber + " failed: " + in.readUTF());
+			} else if (reply != expectedReply) {
+				throw new IOException("Unexpected reply from agent " + agentNumber + ": " + reply);
+			}
+		}
+	}
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client.sweep;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * How a sweep's rows are written. Each row is written and flushed as soon as its cell finishes, so the rows of a sweep
+ * that is stopped part way through are still usable.
+ */
+public enum ResultFormat {
+
+	/**
+	 * Comma-separated values, with a header line naming the columns.
+	 */
+	CSV {
+		@Override
+		public ResultWriter open(final Writer out) {
+			return new ResultWriter(out) {
+				private boolean headerWritten = false;
+
+				@Override
+				protected void write(final Map<String, Object> columns) throws IOException {
+					if (!headerWritten) {
+						out.write(String.join(",", columns.keySet()));
+						out.write(System.lineSeparator());
+						headerWritten = true;
+					}
+
+					boolean first = true;
+					for (final Object value : columns.values()) {
+						if (!first) {
+							out.write(',');
+						}
+						first = false;
+
+						out.write(value instanceof String ? quoteCsv((String) value) : formatNumber(value, ""));
+					}
+
+					out.write(System.lineSeparator());
+				}
+			};
+		}
+	},
+
+	/**
+	 * One JSON object per line, with a member for each column.
+	 */
+	JSON {
+		@Override
+		public ResultWriter open(final Writer out) {
+			return new ResultWriter(out) {
+				@Override
+				protected void write(final Map<String, Object> columns) throws IOException {
+					out.write('{');
+
+					boolean first = true;
+					for (final Entry<String, Object> column : columns.entrySet()) {
+						if (!first) {
+							out.write(',');
+						}
+						first = false;
+
+						out.write(quoteJson(column.getKey()));
+						out.write(':');
+						out.write(column.getValue() instanceof String ? quoteJson((String) column.getValue()) : formatNumber(column.getValue(), "null"));
+					}
+
+					out.write('}');
+					out.write(System.lineSeparator());
+				}
+			};
+		}
+	};
+
+	/**
+	 * Start writing rows to <tt>out</tt>. Closing the returned writer closes <tt>out</tt>.
+	 */
+	public abstract ResultWriter open(Writer out);
+
+	private static String quoteCsv(final String value) {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+			return value;
+		}
+
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+
+	private static String quoteJson(final String value) {
+		final StringBuilder quoted = new StringBuilder("\"");
+
+		for (final char c : value.toCharArray()) {
+			if (c == '"' || c == '\\') {
+				quoted.append('\\').append(c);
+			} else if (c < 0x20) {
+				quoted.append(String.format("\\u%04x", (int) c));
+			} else {
+				quoted.append(c);
+			}
+		}
+
+		return quoted.append('"').toString();
+	}
+
+	/**
+	 * Write fractional values in plain notation, which every reader accepts.
+	 * 
+	 * @param missing
+	 *        Written for infinity or NaN, which a cell with no successful calls can produce.
+	 */
+	private static String formatNumber(final Object value, final String missing) {
+		if (!(value instanceof Double)) {
+			return value.toString();
+		}
+
+		final double number = (Double) value;
+
+		return Double.isNaN(number) || Double.isInfinite(number) ? missing : String.format(Locale.ROOT, "%.3f", number);
+	}
+
+	/**
+	 * Writes the rows of one sweep in one format.
+	 */
+	public static abstract class ResultWriter implements AutoCloseable {
+
+		protected final Writer out;
+
+		protected ResultWriter(final Writer out) {
+			this.out = out;
+		}
+
+		/**
+		 * Write one row, and flush it.
+		 */
+		public void write(final SweepRow row) throws IOException {
+			write(row.getColumns());
+			out.flush();
+		}
+
+		protected abstract void write(Map<String, Object> columns) throws IOException;
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void close() throws IOException {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client.sweep;
+
+import com.aetherworks.concurrency.client.RemoteCalls.CallType;
+import com.aetherworks.concurrency.client.call.factory.ProcessMode;
+
+/**
+ * One point in a sweep: a call type run at one concurrency level from one process mode, in one repetition, with one
+ * payload size if the call type sends a payload.
+ */
+public class SweepCell {
+
+	private final int repetition;
+	private final ProcessMode processMode;
+	private final int threads;
+	private final CallType callType;
+	private final int payloadSize;
+
+	public SweepCell(final int repetition, final ProcessMode processMode, final int threads, final CallType callType) {
+		this(repetition, processMode, threads, callType, 0);
+	}
+
+	/**
+	 * @param payloadSize
+	 *        The payload size for {@link com.aetherworks.concurrency.client.RemoteCalls#getCall}, or zero if the call
+	 *        type sends no payload.
+	 */
+	public SweepCell(final int repetition, final ProcessMode processMode, final int threads, final CallType callType,
+			final int payloadSize) {
+		this.repetition = repetition;
+		this.processMode = processMode;
+		this.threads = threads;
+		this.callType = callType;
+		this.payloadSize = payloadSize;
+	}
+
+	/**
+	 * Which repetition of the sweep this cell belongs to, counting from zero.
+	 */
+	public int getRepetition() {
+		return repetition;
+	}
+
+	public ProcessMode getProcessMode() {
+		return processMode;
+	}
+
+	/**
+	 * The number of concurrent callers.
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	public CallType getCallType() {
+		return callType;
+	}
+
+	/**
+	 * KB for {@link CallType#BYTES_PAYLOAD}, the tree depth for the other payload call types, or zero for call types
+	 * without a payload.
+	 */
+	public int getPayloadSize() {
+		return payloadSize;
+	}
+
+	@Override
+	public String toString() {
+		return callType.name() + " (" + processMode + ", threads=" + threads + (payloadSize > 0 ? ", payload=" + payloadSize : "")
+				+ ", repetition=" + repetition + ")";
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client.sweep;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.aetherworks.concurrency.client.RemoteCalls.CallType;
+import com.aetherworks.concurrency.client.Transport;
+import com.aetherworks.concurrency.client.call.factory.ClientExecutors;
+import com.aetherworks.concurrency.client.call.factory.ProcessMode;
+import com.aetherworks.concurrency.server.ServerRemote;
+import com.aetherworks.concurrency.util.CommandLineArgs;
+import com.aetherworks.concurrency.util.ConsoleMultiplexer;
+import com.aetherworks.concurrency.util.ConsoleOutput;
+
+/**
+ * A fresh client JVM that runs a single {@link SweepCell} for a {@link SweepRunner}, so that each fork of a cell starts
+ * from cold, with its own class loading, compilation and connections, and one fork's state can't carry over into
+ * another's.
+ * <p>
+ * The fork writes its {@link CellResults} to a file named by the parent, and exits with a non-zero status if the cell
+ * failed.
+ */
+public class SweepFork {
+	private final static Logger LOGGER = Logger.getLogger(SweepFork.class.getName());
+
+	private static final long CLIENT_SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+	/**
+	 * Expects the arguments: <tt>-s</tt> the settings file, <tt>-e</tt> repetition, <tt>-m</tt> process mode,
+	 * <tt>-t</tt> threads, <tt>-c</tt> call type, <tt>-z</tt> payload size, and <tt>-o</tt> the file to write the results
+	 * to.
+	 */
+	public static void main(final String[] args) {
+		final CommandLineArgs parsedArgs = CommandLineArgs.parseArgs(args);
+
+		try {
+			final SweepSettings settings = SweepSettings.load(Path.of(parsedArgs.getNotNull('s')));
+
+			// The sweep relays this fork's output in turn, and samples it there, so only dropping is done here.
+			if (settings.getConsoleOutput() == ConsoleOutput.DROP) {
+				ConsoleMultiplexer.getInstance().setOutput(ConsoleOutput.DROP, 1);
+			}
+
+			final SweepCell cell = new SweepCell(Integer.parseInt(parsedArgs.getNotNull('e')), ProcessMode.valueOf(parsedArgs.getNotNull('m')),
+					Integer.parseInt(parsedArgs.getNotNull('t')), CallType.valueOf(parsedArgs.getNotNull('c')), Integer.parseInt(parsedArgs
+							.getNotNull('z')));
+
+			final CellRunner runner = new CellRunner(settings);
+
+			final ExecutorService clientExecutor = ClientExecutors.create(settings.getThreadModel(), cell.getThreads());
+
+			final ServerRemote server = runner.connect();
+
+			final CellResults results;
+			try {
+				results = runner.run(cell, server, clientExecutor);
+			} finally {
+				ClientExecutors.shutdown(clientExecutor, CLIENT_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+				Transport.disconnect(server);
+			}
+
+			try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Path.of(parsedArgs
+					.getNotNull('o')))))) {
+				results.write(out);
+			}
+		} catch (final Exception e) {
+			LOGGER.log(Level.SEVERE, "Forked client failed.", e);
+
+			System.exit(1);
+		}
+
+		System.exit(0);
+	}
+}
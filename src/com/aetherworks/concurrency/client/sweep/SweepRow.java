@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client.sweep;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.aetherworks.concurrency.client.RemoteCalls;
+import com.aetherworks.concurrency.client.RemoteCalls.CallType;
+import com.aetherworks.concurrency.client.call.executor.CallExecutionResults;
+import com.aetherworks.concurrency.server.metrics.ServerMetricsSnapshot;
+import com.aetherworks.concurrency.stats.LatencyHistogram;
+import com.aetherworks.concurrency.stats.SampleStatistics;
+import com.aetherworks.concurrency.transport.SocketStatistics;
+
+/**
+ * The measurements for one {@link SweepCell}, as named columns in a fixed order so that every row of a sweep has the
+ * same columns. Latencies are in nanoseconds and throughput in calls per second.
+ * <p>
+ * The call counts and latency percentiles cover every measured iteration together. The <tt>Mean</tt>,
+ * <tt>StdDev</tt> and <tt>Ci95</tt> columns give the spread between iterations, where <tt>Ci95</tt> is half the width
+ * of the 95% confidence interval for the mean; they are empty with a single iteration.
+ * <p>
+ * <tt>payloadBytes</tt> is the serialized size of the payload each call sends and gets back, and <tt>bytesPerCall</tt>
+ * the RMI traffic in both directions per call, including the calls' own framing.
+ * <p>
+ * <tt>firstByte</tt> is how long the transfer call types waited for the first bytes of their results, which for a
+ * one-shot transfer is the whole call, and is empty for other call types or calls made in separate processes. The peak
+ * heap columns cover the measured iterations together, and include garbage not yet collected; the client's is empty
+ * when the calls were made in other processes.
+ * <p>
+ * The <tt>server</tt> and <tt>dispatch</tt> columns are measured by the server itself, and are empty if its metrics
+ * couldn't be read.
+ */
+public class SweepRow {
+
+	private static final String[] SERVER_COLUMNS = { "serverCalls", "serverServiceNanos", "serverMeanServiceNanos", "dispatchBlockedCount",
+			"dispatchBlockedMillis", "rmiDispatchThreads" };
+
+	private final Map<String, Object> columns = new LinkedHashMap<>();
+
+	public SweepRow(final SweepCell cell, final SweepSettings settings, final CellResults cellResults) {
+		final CallExecutionResults results = cellResults.getCombined();
+		final LatencyHistogram latencies = results.getLatencies();
+		final SocketStatistics.Snapshot sockets = cellResults.getSockets();
+		final LatencyHistogram firstByteTimes = cellResults.getFirstByteTimes();
+
+		columns.put("repetition", cell.getRepetition());
+		columns.put("processMode", cell.getProcessMode().name());
+		columns.put("threads", cell.getThreads());
+		columns.put("callType", cell.getCallType().name());
+		columns.put("payloadSize", cell.getPayloadSize());
+		columns.put("payloadBytes", RemoteCalls.getPayloadBytes(cell.getCallType(), cell.getPayloadSize()));
+		columns.put("chunkKilobytes", cell.getCallType() == CallType.CHUNKED_TRANSFER ? (Object) settings.getTransferChunkKilobytes()
+				: (Object) Double.NaN);
+		columns.put("transport", settings.getTransport().name());
+		columns.put("threadModel", settings.getThreadModel().name());
+		columns.put("workload", settings.getWorkload(cell.getCallType()) == null ? "" : settings.getWorkload(cell.getCallType()).toString());
+		columns.put("forks", cellResults.getForks());
+		columns.put("agents", settings.getAgents());
+		columns.put("iterations", cellResults.getIterations().size());
+		columns.put("calls", latencies.getTotalCount());
+		columns.put("errors", results.getNumberOfErrors());
+		columns.put("lostUpdates", cellResults.getLostUpdates());
+		columns.put("elapsedNanos", results.getElapsedNanos());
+		columns.put("throughput", results.getThroughput());
+		columns.put("meanNanos", latencies.getMean());
+		columns.put("minNanos", latencies.getMinValue());
+		columns.put("p50Nanos", latencies.getValueAtPercentile(50));
+		columns.put("p90Nanos", latencies.getValueAtPercentile(90));
+		columns.put("p99Nanos", latencies.getValueAtPercentile(99));
+		columns.put("p999Nanos", latencies.getValueAtPercentile(99.9));
+		columns.put("maxNanos", latencies.getMaxValue());
+		columns.put("connectionsOpened", sockets.getConnectionsOpened());
+		columns.put("connectionsReused", sockets.getConnectionsReused());
+		columns.put("bytesRead", sockets.getBytesRead());
+		columns.put("bytesWritten", sockets.getBytesWritten());
+		// Empty when the calls came from other processes, whose sockets this process can't see.
+		columns.put("bytesPerCall", sockets.getBytesRead() + sockets.getBytesWritten() == 0 || latencies.getTotalCount() == 0 ? Double.NaN
+				: (sockets.getBytesRead() + sockets.getBytesWritten()) / (double) latencies.getTotalCount());
+		columns.put("pinned", cellResults.getPinnedCount());
+		columns.put("firstByteP50Nanos", firstByteTimes.getTotalCount() == 0 ? (Object) Double.NaN : (Object) firstByteTimes
+				.getValueAtPercentile(50));
+		columns.put("firstByteP99Nanos", firstByteTimes.getTotalCount() == 0 ? (Object) Double.NaN : (Object) firstByteTimes
+				.getValueAtPercentile(99));
+		columns.put("clientPeakHeapBytes", cellResults.getClientPeakHeapBytes() < 0 ? (Object) Double.NaN : (Object) cellResults
+				.getClientPeakHeapBytes());
+		columns.put("serverPeakHeapBytes", cellResults.getServerPeakHeapBytes() < 0 ? (Object) Double.NaN : (Object) cellResults
+				.getServerPeakHeapBytes());
+
+		final ServerMetricsSnapshot server = cellResults.getServer();
+		if (server != null) {
+			columns.put("serverCalls", server.getTotalCalls());
+			columns.put("serverServiceNanos", server.getTotalServiceNanos());
+			columns.put("serverMeanServiceNanos", server.getTotalServiceNanos() / (double) server.getTotalCalls());
+			columns.put("dispatchBlockedCount", server.getDispatchBlockedCount());
+			// -1 if the server doesn't measure blocked time.
+			columns.put("dispatchBlockedMillis", server.getDispatchBlockedTimeMillis() < 0 ? (Object) Double.NaN : (Object) server
+					.getDispatchBlockedTimeMillis());
+			columns.put("rmiDispatchThreads", server.getRmiDispatchThreads());
+		} else {
+			for (final String column : SERVER_COLUMNS) {
+				columns.put(column, Double.NaN);
+			}
+		}
+
+		putStatistics("throughput", cellResults.getThroughputStatistics());
+		putStatistics("meanNanos", cellResults.getMeanLatencyStatistics());
+		putStatistics("p50Nanos", cellResults.getPercentileStatistics(50));
+		putStatistics("p99Nanos", cellResults.getPercentileStatistics(99));
+	}
+
+	private void putStatistics(final String name, final SampleStatistics statistics) {
+		columns.put(name + "Mean", statistics.getMean());
+		columns.put(name + "StdDev", statistics.getStandardDeviation());
+		columns.put(name + "Ci95", statistics.getConfidenceInterval95());
+	}
+
+	/**
+	 * The column values by name, in column order. Values are strings or numbers.
+	 */
+	public Map<String, Object> getColumns() {
+		return Collections.unmodifiableMap(columns);
+	}
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client.sweep;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.rmi.NotBoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+import com.aetherworks.concurrency.client.RemoteCalls.CallType;
+import com.aetherworks.concurrency.client.Transport;
+import com.aetherworks.concurrency.client.call.factory.ClientExecutors;
+import com.aetherworks.concurrency.client.call.factory.ProcessMode;
+import com.aetherworks.concurrency.client.sweep.ResultFormat.ResultWriter;
+import com.aetherworks.concurrency.history.BaselineComparison;
+import com.aetherworks.concurrency.history.ResultStore;
+import com.aetherworks.concurrency.history.ResultStoreReader;
+import com.aetherworks.concurrency.history.StoredCell;
+import com.aetherworks.concurrency.history.StoredRun;
+import com.aetherworks.concurrency.server.Counter;
+import com.aetherworks.concurrency.server.ServerRemote;
+import com.aetherworks.concurrency.server.Workload;
+import com.aetherworks.concurrency.util.CommandLineArgs;
+import com.aetherworks.concurrency.util.ConsoleMultiplexer;
+import com.aetherworks.concurrency.util.JavaProcess;
+import com.google.common.base.Preconditions;
+
+/**
+ * Runs every cell in the cross product of a {@link SweepSettings}' concurrency levels, process modes and call types,
+ * once per repetition, and writes a {@link SweepRow} for each.
+ * <p>
+ * The whole cross product is run once before the next repetition starts, rather than repeating each cell back to back,
+ * so slow drift in the machine or the server is spread across every cell instead of landing on a few.
+ * <p>
+ * Each run, and every cell's measured iterations, are appended to the settings' {@link ResultStore}, if it has one, so
+ * they can be compared with later runs. If the settings name a baseline, each cell is compared with the same cell in the
+ * latest stored run with that label, once the whole sweep has run, and the sweep fails if any has regressed.
+ * <p>
+ * Each cell runs its warmup and measured iterations in this process or, if forks are configured, in that many fresh
+ * client JVMs one after another, each running the warmup and measured iterations in full. The forks' measured
+ * iterations are pooled.
+ */
+public class SweepRunner {
+	private final static Logger LOGGER = Logger.getLogger(SweepRunner.class.getName());
+
+	private static final long CLIENT_SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+	private final SweepSettings settings;
+
+	private final CellRunner cellRunner;
+
+	public SweepRunner(final SweepSettings settings) {
+		this.settings = settings;
+		cellRunner = new CellRunner(settings);
+	}
+
+	/**
+	 * Run the sweep, writing each row to the settings' output file, if there is one, as soon as its cell finishes.
+	 * 
+	 * @return False if any cell regressed against the settings' baseline, or true if none did or there is no baseline.
+	 * @throws java.net.ConnectException
+	 *         If the server is not running.
+	 * @throws IllegalArgumentException
+	 *         If the store has no baseline with the settings' label.
+	 */
+	public boolean run() throws IOException, NotBoundException, InterruptedException, ExecutionException {
+		LOGGER.log(Level.INFO, "Running sweep of " + settings.getCellsPerRepetition() * settings.getRepetitions() + " cells: " + settings
+				+ ".");
+
+		ConsoleMultiplexer.getInstance().setOutput(settings.getConsoleOutput(), settings.getConsoleSampleEvery());
+
+		// Read the baseline before this run is stored, in case it has the same label.
+		final BaselineComparison comparison = loadBaseline();
+
+		final StoredRun run = StoredRun.startingNow(settings.getStoreLabel(), settings.getConfiguration());
+
+		// One connection serves the whole sweep, for setting up the server and for every single-process cell's calls.
+		final ServerRemote server = cellRunner.connect();
+
+		try (final ResultWriter writer = openOutput(); final ResultStore store = openStore(run)) {
+			if (!settings.getWorkloads().isEmpty()) {
+				for (final Map.Entry<Counter, Workload> workload : settings.getWorkloads().entrySet()) {
+					server.setWorkload(workload.getKey(), workload.getValue());
+				}
+
+				LOGGER.log(Level.INFO, "Server workloads set: " + settings.getWorkloads() + ".");
+			}
+
+			for (int repetition = 0; repetition < settings.getRepetitions(); repetition++) {
+				for (final ProcessMode processMode : settings.getProcessModes()) {
+					for (final int threads : settings.getThreadCounts()) {
+						runCells(repetition, processMode, threads, server, writer, store, run.getRunId(), comparison);
+					}
+				}
+			}
+		} finally {
+			Transport.disconnect(server);
+		}
+
+		return comparison == null || comparison.compare().isEmpty();
+	}
+
+	/**
+	 * Run every call type, at each of its payload sizes, at one concurrency level, sharing one client pool.
+	 * 
+	 * @param runId
+	 *        The id each cell is stored under, if there is a store.
+	 * @param comparison
+	 *        Where stored cells are added to be compared with the baseline, if there is one.
+	 */
+	private void runCells(final int repetition, final ProcessMode processMode, final int threads, final ServerRemote server,
+			@Nullable final ResultWriter writer, @Nullable final ResultStore store, final long runId,
+			@Nullable final BaselineComparison comparison) throws IOException, NotBoundException, InterruptedException, ExecutionException {
+		final ExecutorService clientExecutor = ClientExecutors.create(settings.getThreadModel(), threads);
+
+		try {
+			for (final CallType callType : settings.getCallTypes()) {
+				for (final int payloadSize : settings.getPayloadSizes(callType)) {
+					final SweepCell cell = new SweepCell(repetition, processMode, threads, callType, payloadSize);
+
+					final CellResults results = settings.getForks() > 0 ? runForks(cell) : cellRunner.run(cell, server, clientExecutor);
+
+					LOGGER.log(Level.INFO, cell + ": " + results.getCombined().toSummaryString() + ", lost updates=" + results.getLostUpdates()
+							+ ", " + results.getSockets().toSummaryString());
+
+					if (results.getServer() != null) {
+						LOGGER.log(Level.INFO, cell + ": " + results.getServer().toSummaryString());
+					}
+
+					if (results.getIterations().size() > 1) {
+						LOGGER.log(Level.INFO, cell + " over " + results.getIterations().size() + " measured iterations: "
+								+ results.toSummaryString());
+					}
+
+					if (writer != null) {
+						writer.write(new SweepRow(cell, settings, results));
+					}
+
+					if (store != null) {
+						final StoredCell storedCell = new StoredCell(runId, repetition, processMode.name(), threads, callType.name(),
+								payloadSize, results.getForks(), results.getLostUpdates(), results.getIterations());
+
+						store.append(storedCell);
+
+						if (comparison != null) {
+							comparison.add(storedCell);
+						}
+					}
+				}
+			}
+		} finally {
+			ClientExecutors.shutdown(clientExecutor, CLIENT_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Run a cell in each of {@link SweepSettings#getForks()} fresh client JVMs in turn, and combine their results.
+	 */
+	private CellResults runForks(final SweepCell cell) throws IOException, InterruptedException, ExecutionException {
+		final Path settingsFile = Files.createTempFile("sweep-settings", ".properties");
+
+		try {
+			settings.store(settingsFile);
+
+			final List<CellResults> forkResults = new ArrayList<>();
+			for (int fork = 0; fork < settings.getForks(); fork++) {
+				forkResults.add(runFork(cell, fork, settingsFile));
+			}
+
+			return CellResults.combineForks(forkResults);
+		} finally {
+			Files.deleteIfExists(settingsFile);
+		}
+	}
+
+	private CellResults runFork(final SweepCell cell, final int fork, final Path settingsFile) throws IOException, InterruptedException,
+			ExecutionException {
+		final Path resultsFile = Files.createTempFile("sweep-fork", ".bin");
+
+		try {
+			final CommandLineArgs args = new CommandLineArgs();
+			args.put('s', settingsFile.toAbsolutePath());
+			args.put('e', cell.getRepetition());
+			args.put('m', cell.getProcessMode().name());
+			args.put('t', cell.getThreads());
+			args.put('c', cell.getCallType().name());
+			args.put('z', cell.getPayloadSize());
+			args.put('o', resultsFile.toAbsolutePath());
+
+			final JavaProcess process = new JavaProcess(SweepFork.class, args.getArgsAsList(), settings.getForkJvmArgs());
+			process.executeProcess("fork " + fork + ": ");
+
+			final int exitValue = process.onExit().get();
+
+			if (exitValue != 0) {
+				throw new IOException("Fork " + fork + " of " + cell + " failed with exit value " + exitValue + ".");
+			}
+
+			try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(resultsFile)))) {
+				return CellResults.read(in);
+			}
+		} finally {
+			Files.deleteIfExists(resultsFile);
+		}
+	}
+
+	/**
+	 * Read the settings' baseline from the result store, if there is one to compare with.
+	 */
+	@Nullable
+	private BaselineComparison loadBaseline() throws IOException {
+		final String label = settings.getCompareBaseline();
+
+		if (label == null) {
+			return null;
+		}
+
+		final Path storeFile = settings.getStoreFile();
+
+		Preconditions.checkArgument(storeFile != null && Files.exists(storeFile), "There is no result store to read the baseline '" + label
+				+ "' from.");
+
+		try (final ResultStoreReader reader = ResultStoreReader.open(storeFile)) {
+			final BaselineComparison comparison = BaselineComparison.load(reader, label, settings.getCompareThresholdPercent(), settings
+					.getCompareAlpha());
+
+			LOGGER.log(Level.INFO, "Comparing every cell with baseline " + comparison.getBaseline() + ".");
+
+			return comparison;
+		}
+	}
+
+	/**
+	 * Open the settings' result store, if there is one, and add the run to it.
+	 */
+	@Nullable
+	private ResultStore openStore(final StoredRun run) throws IOException {
+		final Path storeFile = settings.getStoreFile();
+
+		if (storeFile == null) {
+			return null;
+		}
+
+		final ResultStore store = ResultStore.open(storeFile);
+
+		try {
+			store.append(run);
+		} catch (final IOException e) {
+			store.close();
+			throw e;
+		}
+
+		LOGGER.log(Level.INFO, "Storing run " + run + " in " + storeFile.toAbsolutePath() + ".");
+
+		return store;
+	}
+
+	@Nullable
+	private ResultWriter openOutput() throws IOException {
+		final Path outputFile = settings.getOutputFile();
+
+		if (outputFile == null) {
+			return null;
+		}
+
+		if (outputFile.toAbsolutePath().getParent() != null) {
+			Files.createDirectories(outputFile.toAbsolutePath().getParent());
+		}
+
+		LOGGER.log(Level.INFO, "Writing " + settings.getOutputFormat() + " results to " + outputFile.toAbsolutePath() + ".");
+
+		return settings.getOutputFormat().open(Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8));
+	}
+}
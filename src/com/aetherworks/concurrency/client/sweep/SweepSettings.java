@@ -0,0 +1,680 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.client.sweep;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+import com.aetherworks.concurrency.client.CallBatcher;
+import com.aetherworks.concurrency.client.RemoteCalls;
+import com.aetherworks.concurrency.client.RemoteCalls.CallType;
+import com.aetherworks.concurrency.client.Transport;
+import com.aetherworks.concurrency.client.call.factory.ProcessMode;
+import com.aetherworks.concurrency.client.call.factory.ThreadModel;
+import com.aetherworks.concurrency.server.Counter;
+import com.aetherworks.concurrency.server.RemoteCursor;
+import com.aetherworks.concurrency.server.Workload;
+import com.aetherworks.concurrency.server.payload.Payloads;
+import com.aetherworks.concurrency.util.ConsoleOutput;
+import com.aetherworks.concurrency.util.JvmOptions;
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Ints;
+
+/**
+ * Everything a {@link SweepRunner} needs to know: where the server is, which cells to run, how to run each one and where
+ * to write the results. Read from a properties file, where every key is optional:
+ * 
+ * <pre>
+ * server.host=localhost              # the server's host
+ * server.port=1099                   # the RMI registry port
+ * server.binding=server-remote       # the name the server is bound to in the registry
+ * transport=RMI                      # RMI, or NIO to call the server's NioServer instead
+ * nio.port=1100                      # the NIO server port, used with transport=NIO
+ * 
+ * threads=1,2,4,8                    # concurrency levels: concurrent callers, or worker processes in a pool
+ * processModes=SINGLE_PROCESS        # ProcessMode names
+ * callTypes=BASIC,ATOMIC             # CallType names; every call type if empty
+ * repetitions=3                      # how many times to run the whole cross product
+ * 
+ * warmupIterations=0                 # iterations of each cell to run and discard before measuring it
+ * iterations=1                       # measured iterations of each cell
+ * forks=0                            # if positive, run each cell in this many fresh client JVMs, one after another
+ * fork.jvmArgs=                      # any other arguments for forked client JVMs
+ * 
+ * threadModel=FIXED                  # the client pool's ThreadModel in single-process mode and for closed loops
+ * pinningThresholdMillis=1           # with threadModel=VIRTUAL, report virtual threads pinned for this long
+ * openLoop.callsPerSecond=0          # if positive, issue calls at this rate instead of one burst
+ * openLoop.durationSeconds=60
+ * closedLoop.iterations=0            # if positive, each caller makes this many calls in a loop, in SINGLE_PROCESS
+ * closedLoop.thinkTimeMillis=0
+ * batch.size=16                      # for the batched call types in single-process mode
+ * batch.lingerMicros=200
+ * payload.kilobytes=1,16,256         # array sizes for BYTES_PAYLOAD, each its own cell
+ * payload.depths=2,6,10              # tree depths for SERIALIZABLE_PAYLOAD and EXTERNALIZABLE_PAYLOAD
+ * transfer.kilobytes=1024            # result sizes for ONE_SHOT_TRANSFER and CHUNKED_TRANSFER, each its own cell
+ * transfer.chunkKilobytes=64         # the chunks CHUNKED_TRANSFER pulls its result in
+ * 
+ * workload.SLEEP=lognormal:2000:0.5  # the server's Workload for a call type, in place of its default
+ * workload.SLEEP.insideLock=false    # run the workload inside the counter's critical section
+ * 
+ * agents=0                           # if positive, split each cell's callers between this many agent JVMs
+ * 
+ * child.tieredStopAtLevel=0         # if positive, client JVMs stop compiling at this tier; 1 starts fastest
+ * child.heapMegabytes=0              # if positive, client JVMs get a fixed heap of this size
+ * child.appCds=true                  # share an AppCDS archive of the classpath between client JVMs
+ * child.launchParallelism=8          # how many separate-process clients can be starting up at once
+ * child.jvmArgs=                     # any other arguments for client JVMs
+ * 
+ * console.output=ALL                 # ALL, SAMPLE or DROP the console output of client processes
+ * console.sampleEvery=100            # with console.output=SAMPLE, copy one line in this many
+ * 
+ * output.file=results/sweep.csv      # one row per cell; rows are only logged if empty
+ * output.format=CSV                  # CSV, or JSON for one object per line
+ * 
+ * store.file=results/history.bin     # every run is appended to this ResultStore; nothing is stored if empty
+ * store.label=                       # a name for the run, such as a baseline's
+ * 
+ * compare.baseline=                  # compare every cell with the latest stored run with this label
+ * compare.thresholdPercent=10        # how much slower a cell's p50 or p99 must be to count as a regression
+ * compare.alpha=0.01                 # the significance level a regression must also reach
+ * </pre>
+ * 
+ * Lists are separated by commas. Without a file, {@link #defaults()} gives a single cold iteration of every call type,
+ * with two callers from separate processes, over RMI to the local host.
+ * <p>
+ * An iteration is one run of a cell's calls: a burst of one call per caller, an open loop, or a closed loop. The mean,
+ * standard deviation and confidence interval of a cell are taken over its measured iterations, from every fork.
+ * <p>
+ * Closed loops always run their callers as threads of one client process, so with <tt>closedLoop.iterations</tt> set the
+ * process modes collapse to {@link ProcessMode#SINGLE_PROCESS} alone, and the cells are labelled as such.
+ * <p>
+ * With a baseline to compare with, a sweep reports whether each cell is slower than the same cell was in the baseline,
+ * and {@link com.aetherworks.concurrency.client.StartClient} exits with a non-zero status if any is.
+ */
+public class SweepSettings {
+	private final static Logger LOGGER = Logger.getLogger(SweepSettings.class.getName());
+
+	/**
+	 * The result size of the transfer call types when none is given, in KB.
+	 */
+	private static final int DEFAULT_TRANSFER_KILOBYTES = 1024;
+
+	private static final String DEFAULT_STORE_FILE = "results/history.bin";
+
+	private final String serverHost;
+	private final int serverPort;
+	private final String serviceName;
+	private final Transport transport;
+	private final int nioServerPort;
+
+	private final List<Integer> threadCounts;
+	private final List<ProcessMode> processModes;
+	private final List<CallType> callTypes;
+	private final int repetitions;
+
+	private final int warmupIterations;
+	private final int iterations;
+	private final int forks;
+	private final String forkJvmArgs;
+	private final int agents;
+
+	private final ThreadModel threadModel;
+	private final long pinningThresholdMillis;
+	private final double openLoopCallsPerSecond;
+	private final long openLoopDurationSeconds;
+	private final long closedLoopIterations;
+	private final long closedLoopThinkTimeMillis;
+	private final int batchSize;
+	private final long batchLingerMicros;
+	private final List<Integer> payloadKilobytes;
+	private final List<Integer> payloadDepths;
+	private final List<Integer> transferKilobytes;
+	private final int transferChunkKilobytes;
+	private final Map<Counter, Workload> workloads;
+
+	private final JvmOptions childJvmOptions;
+	private final int childLaunchParallelism;
+
+	private final ConsoleOutput consoleOutput;
+	private final int consoleSampleEvery;
+
+	private final Path outputFile;
+	private final ResultFormat outputFormat;
+
+	private final Path storeFile;
+	private final String storeLabel;
+
+	private final String compareBaseline;
+	private final double compareThresholdPercent;
+	private final double compareAlpha;
+
+	/**
+	 * The properties these settings were read from, so they can be handed to forked clients.
+	 */
+	private final Properties properties = new Properties();
+
+	private SweepSettings(final Properties properties) {
+		this.properties.putAll(properties);
+
+		serverHost = properties.getProperty("server.host", "localhost").trim();
+		serverPort = getInt(properties, "server.port", 1099);
+		serviceName = properties.getProperty("server.binding", "server-remote").trim();
+		transport = getEnum(properties, "transport", Transport.class, Transport.RMI);
+		nioServerPort = getInt(properties, "nio.port", 1100);
+
+		threadCounts = getIntList(properties, "threads", 2);
+		final List<ProcessMode> configuredProcessModes = getEnumList(properties, "processModes", ProcessMode.class,
+				Collections.singletonList(ProcessMode.SEPARATE_PROCESS));
+		callTypes = getEnumList(properties, "callTypes", CallType.class, Arrays.asList(CallType.values()));
+		repetitions = getInt(properties, "repetitions", 1);
+
+		warmupIterations = getInt(properties, "warmupIterations", 0);
+		iterations = getInt(properties, "iterations", 1);
+		forks = getInt(properties, "forks", 0);
+		forkJvmArgs = properties.getProperty("fork.jvmArgs", "").trim();
+		agents = getInt(properties, "agents", 0);
+
+		threadModel = getEnum(properties, "threadModel", ThreadModel.class, ThreadModel.FIXED);
+		pinningThresholdMillis = getLong(properties, "pinningThresholdMillis", 1);
+		openLoopCallsPerSecond = getDouble(properties, "openLoop.callsPerSecond", 0);
+		openLoopDurationSeconds = getLong(properties, "openLoop.durationSeconds", 60);
+		closedLoopIterations = getLong(properties, "closedLoop.iterations", 0);
+		closedLoopThinkTimeMillis = getLong(properties, "closedLoop.thinkTimeMillis", 0);
+
+		if (closedLoopIterations > 0 && !configuredProcessModes.equals(Collections.singletonList(ProcessMode.SINGLE_PROCESS))) {
+			LOGGER.log(Level.WARNING, "Closed loops only run in a single process, so 'processModes' " + configuredProcessModes
+					+ " is replaced by " + ProcessMode.SINGLE_PROCESS + ".");
+		}
+		processModes = closedLoopIterations > 0 ? Collections.singletonList(ProcessMode.SINGLE_PROCESS) : configuredProcessModes;
+		batchSize = getInt(properties, "batch.size", CallBatcher.DEFAULT_MAX_BATCH_SIZE);
+		batchLingerMicros = getLong(properties, "batch.lingerMicros", CallBatcher.DEFAULT_LINGER_MICROS);
+
+		payloadKilobytes = getIntList(properties, "payload.kilobytes", RemoteCalls.DEFAULT_PAYLOAD_SIZE);
+		payloadDepths = getIntList(properties, "payload.depths", RemoteCalls.DEFAULT_PAYLOAD_SIZE);
+		transferKilobytes = getIntList(properties, "transfer.kilobytes", DEFAULT_TRANSFER_KILOBYTES);
+		transferChunkKilobytes = getInt(properties, "transfer.chunkKilobytes", RemoteCalls.DEFAULT_CHUNK_KILOBYTES);
+		workloads = getWorkloads(properties);
+
+		childJvmOptions = JvmOptions.defaults().withTieredStopAtLevel(getInt(properties, "child.tieredStopAtLevel", 0)).withHeapMegabytes(
+				getInt(properties, "child.heapMegabytes", 0)).withAppCds(getBoolean(properties, "child.appCds", true)).withExtraArguments(
+				properties.getProperty("child.jvmArgs", ""));
+		childLaunchParallelism = getInt(properties, "child.launchParallelism", Runtime.getRuntime().availableProcessors());
+
+		consoleOutput = getEnum(properties, "console.output", ConsoleOutput.class, ConsoleOutput.ALL);
+		consoleSampleEvery = getInt(properties, "console.sampleEvery", 100);
+
+		final String output = properties.getProperty("output.file", "").trim();
+		outputFile = output.isEmpty() ? null : Path.of(output);
+		outputFormat = getEnum(properties, "output.format", ResultFormat.class, ResultFormat.CSV);
+
+		final String store = properties.getProperty("store.file", DEFAULT_STORE_FILE).trim();
+		storeFile = store.isEmpty() ? null : Path.of(store);
+		storeLabel = properties.getProperty("store.label", "").trim();
+
+		compareBaseline = properties.getProperty("compare.baseline", "").trim();
+		compareThresholdPercent = getDouble(properties, "compare.thresholdPercent", 10);
+		compareAlpha = getDouble(properties, "compare.alpha", 0.01);
+
+		for (final int threads : threadCounts) {
+			Preconditions.checkArgument(threads > 0, "Every concurrency level in 'threads' must be positive.");
+		}
+		Preconditions.checkArgument(repetitions > 0, "'repetitions' must be positive.");
+		Preconditions.checkArgument(warmupIterations >= 0, "'warmupIterations' can't be negative.");
+		Preconditions.checkArgument(iterations > 0, "'iterations' must be positive.");
+		Preconditions.checkArgument(forks >= 0, "'forks' can't be negative.");
+		Preconditions.checkArgument(agents >= 0, "'agents' can't be negative.");
+		Preconditions.checkArgument(batchSize > 0, "'batch.size' must be positive.");
+		for (final int kilobytes : payloadKilobytes) {
+			Preconditions.checkArgument(kilobytes >= 0, "Every size in 'payload.kilobytes' must be zero or more.");
+		}
+		for (final int depth : payloadDepths) {
+			Preconditions.checkArgument(depth > 0 && depth <= Payloads.MAX_DEPTH, "Every depth in 'payload.depths' must be between 1 and "
+					+ Payloads.MAX_DEPTH + ".");
+		}
+		for (final int kilobytes : transferKilobytes) {
+			Preconditions.checkArgument(kilobytes >= 0, "Every size in 'transfer.kilobytes' must be zero or more.");
+		}
+		Preconditions.checkArgument(transferChunkKilobytes > 0 && transferChunkKilobytes * 1024L <= RemoteCursor.MAX_CHUNK_BYTES,
+				"'transfer.chunkKilobytes' must be between 1 and " + RemoteCursor.MAX_CHUNK_BYTES / 1024 + ".");
+		Preconditions.checkArgument(childLaunchParallelism > 0, "'child.launchParallelism' must be positive.");
+		Preconditions.checkArgument(consoleSampleEvery > 0, "'console.sampleEvery' must be positive.");
+		Preconditions.checkArgument(compareBaseline.isEmpty() || storeFile != null,
+				"'compare.baseline' needs a 'store.file' to read it from.");
+		Preconditions.checkArgument(compareThresholdPercent >= 0, "'compare.thresholdPercent' can't be negative.");
+		Preconditions.checkArgument(compareAlpha > 0 && compareAlpha < 1, "'compare.alpha' must be between 0 and 1.");
+	}
+
+	/**
+	 * The settings used when no file is given.
+	 */
+	public static SweepSettings defaults() {
+		return new SweepSettings(new Properties());
+	}
+
+	/**
+	 * Read the settings from a properties file. Keys that are missing take their default values.
+	 * 
+	 * @throws IllegalArgumentException
+	 *         If a value can't be parsed.
+	 */
+	public static SweepSettings load(final Path file) throws IOException {
+		final Properties properties = new Properties();
+
+		try (final Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			properties.load(reader);
+		}
+
+		return fromProperties(properties);
+	}
+
+	public static SweepSettings fromProperties(final Properties properties) {
+		return new SweepSettings(properties);
+	}
+
+	/**
+	 * These settings with one property changed, as if it had been read from the file.
+	 */
+	SweepSettings withProperty(final String key, final String value) {
+		final Properties changed = new Properties();
+		changed.putAll(properties);
+		changed.setProperty(key, value);
+
+		return new SweepSettings(changed);
+	}
+
+	/**
+	 * Write these settings to a properties file that {@link #load(Path)} reads back as the same settings.
+	 */
+	public void store(final Path file) throws IOException {
+		try (final Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			properties.store(writer, "Sweep settings");
+		}
+	}
+
+	public String getServerHost() {
+		return serverHost;
+	}
+
+	/**
+	 * The port calls are made through: the registry port over RMI, or the NIO server port over NIO.
+	 */
+	public int getServerPort() {
+		return transport == Transport.NIO ? nioServerPort : serverPort;
+	}
+
+	/**
+	 * The port of the server's RMI registry, which also serves its metrics, whatever transport the calls use.
+	 */
+	public int getRegistryPort() {
+		return serverPort;
+	}
+
+	public String getServiceName() {
+		return serviceName;
+	}
+
+	public Transport getTransport() {
+		return transport;
+	}
+
+	public List<Integer> getThreadCounts() {
+		return threadCounts;
+	}
+
+	public List<ProcessMode> getProcessModes() {
+		return processModes;
+	}
+
+	public List<CallType> getCallTypes() {
+		return callTypes;
+	}
+
+	public int getRepetitions() {
+		return repetitions;
+	}
+
+	public int getWarmupIterations() {
+		return warmupIterations;
+	}
+
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * The number of fresh client JVMs each cell is run in, or zero to run every cell in the sweep's own process.
+	 */
+	public int getForks() {
+		return forks;
+	}
+
+	/**
+	 * Extra JVM arguments for forked clients, or null if there are none.
+	 */
+	@Nullable
+	public String getForkJvmArgs() {
+		return forkJvmArgs.isEmpty() ? null : forkJvmArgs;
+	}
+
+	/**
+	 * The number of agent JVMs that make each cell's calls between them, all at once, or zero to make them from the
+	 * process running the cell.
+	 */
+	public int getAgents() {
+		return agents;
+	}
+
+	public ThreadModel getThreadModel() {
+		return threadModel;
+	}
+
+	public long getPinningThresholdMillis() {
+		return pinningThresholdMillis;
+	}
+
+	public double getOpenLoopCallsPerSecond() {
+		return openLoopCallsPerSecond;
+	}
+
+	public long getOpenLoopDurationSeconds() {
+		return openLoopDurationSeconds;
+	}
+
+	public long getClosedLoopIterations() {
+		return closedLoopIterations;
+	}
+
+	public long getClosedLoopThinkTimeMillis() {
+		return closedLoopThinkTimeMillis;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public long getBatchLingerMicros() {
+		return batchLingerMicros;
+	}
+
+	/**
+	 * The payload sizes to run a call type at, each in its own cell: KB for {@link CallType#BYTES_PAYLOAD}, tree depths
+	 * for the other payload call types, KB of result for the transfer call types, or just zero for call types without a
+	 * payload.
+	 */
+	public List<Integer> getPayloadSizes(final CallType callType) {
+		switch (callType) {
+			case BYTES_PAYLOAD:
+				return payloadKilobytes;
+			case SERIALIZABLE_PAYLOAD:
+			case EXTERNALIZABLE_PAYLOAD:
+				return payloadDepths;
+			case ONE_SHOT_TRANSFER:
+			case CHUNKED_TRANSFER:
+				return transferKilobytes;
+			default:
+				return Collections.singletonList(0);
+		}
+	}
+
+	/**
+	 * The size of the chunks {@link CallType#CHUNKED_TRANSFER} pulls, in KB.
+	 */
+	public int getTransferChunkKilobytes() {
+		return transferChunkKilobytes;
+	}
+
+	/**
+	 * The workloads to set on the server before the sweep, by counter. Counters that aren't listed keep whatever workload
+	 * the server already has.
+	 */
+	public Map<Counter, Workload> getWorkloads() {
+		return workloads;
+	}
+
+	/**
+	 * The workload set on the server for a call type, or null if the sweep leaves it as it was.
+	 */
+	@Nullable
+	public Workload getWorkload(final CallType callType) {
+		return workloads.get(callType.getCounter());
+	}
+
+	/**
+	 * How to start the JVMs of clients in separate processes and process pools. Forks are started with
+	 * {@link #getForkJvmArgs()} instead.
+	 */
+	public JvmOptions getChildJvmOptions() {
+		return childJvmOptions;
+	}
+
+	/**
+	 * How many separate-process clients can be starting up at the same time.
+	 */
+	public int getChildLaunchParallelism() {
+		return childLaunchParallelism;
+	}
+
+	/**
+	 * What to do with the console output of the client processes this sweep starts.
+	 */
+	public ConsoleOutput getConsoleOutput() {
+		return consoleOutput;
+	}
+
+	public int getConsoleSampleEvery() {
+		return consoleSampleEvery;
+	}
+
+	/**
+	 * The file results are written to, or null if they are only logged.
+	 */
+	@Nullable
+	public Path getOutputFile() {
+		return outputFile;
+	}
+
+	public ResultFormat getOutputFormat() {
+		return outputFormat;
+	}
+
+	/**
+	 * The {@link com.aetherworks.concurrency.history.ResultStore} every run is appended to, or null if runs aren't
+	 * stored.
+	 */
+	@Nullable
+	public Path getStoreFile() {
+		return storeFile;
+	}
+
+	/**
+	 * The name the run is stored under, or empty if it has none.
+	 */
+	public String getStoreLabel() {
+		return storeLabel;
+	}
+
+	/**
+	 * The label of the stored run to compare every cell with, or null if cells aren't compared.
+	 */
+	@Nullable
+	public String getCompareBaseline() {
+		return compareBaseline.isEmpty() ? null : compareBaseline;
+	}
+
+	/**
+	 * How much slower, in percent, a cell's median or 99th percentile latency must be than the baseline's to count as a
+	 * regression.
+	 */
+	public double getCompareThresholdPercent() {
+		return compareThresholdPercent;
+	}
+
+	/**
+	 * The significance level at which a cell's latencies must also be shown to be slower than the baseline's.
+	 */
+	public double getCompareAlpha() {
+		return compareAlpha;
+	}
+
+	/**
+	 * The settings as they were given, by key, without the defaults of those that weren't.
+	 */
+	Map<String, String> getConfiguration() {
+		final Map<String, String> configuration = new TreeMap<>();
+
+		for (final String key : properties.stringPropertyNames()) {
+			configuration.put(key, properties.getProperty(key));
+		}
+
+		return configuration;
+	}
+
+	/**
+	 * The number of cells in one repetition of the sweep.
+	 */
+	public int getCellsPerRepetition() {
+		int cellsPerThreadCount = 0;
+		for (final CallType callType : callTypes) {
+			cellsPerThreadCount += getPayloadSizes(callType).size();
+		}
+
+		return threadCounts.size() * processModes.size() * cellsPerThreadCount;
+	}
+
+	@Override
+	public String toString() {
+		return "threads=" + threadCounts + ", process modes=" + processModes + ", call types=" + callTypes + ", repetitions="
+				+ repetitions + ", warmup iterations=" + warmupIterations + ", iterations=" + iterations + ", forks=" + forks + ", agents="
+				+ agents + ", transport=" + transport + ", thread model=" + threadModel;
+	}
+
+	private static int getInt(final Properties properties, final String key, final int defaultValue) {
+		return Ints.checkedCast(getLong(properties, key, defaultValue));
+	}
+
+	private static long getLong(final Properties properties, final String key, final long defaultValue) {
+		final String value = properties.getProperty(key, "").trim();
+
+		try {
+			return value.isEmpty() ? defaultValue : Long.parseLong(value);
+		} catch (final NumberFormatException e) {
+			throw new IllegalArgumentException("'" + key + "' must be a whole number, not '" + value + "'.", e);
+		}
+	}
+
+	private static boolean getBoolean(final Properties properties, final String key, final boolean defaultValue) {
+		final String value = properties.getProperty(key, "").trim();
+
+		if (value.isEmpty()) {
+			return defaultValue;
+		} else if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false")) {
+			return Boolean.parseBoolean(value);
+		} else {
+			throw new IllegalArgumentException("'" + key + "' must be true or false, not '" + value + "'.");
+		}
+	}
+
+	/**
+	 * Read <tt>workload.&lt;call type&gt;</tt> and <tt>workload.&lt;call type&gt;.insideLock</tt> for every call type.
+	 */
+	private static Map<Counter, Workload> getWorkloads(final Properties properties) {
+		final Map<Counter, Workload> workloads = new EnumMap<>(Counter.class);
+
+		for (final CallType callType : CallType.values()) {
+			final String key = "workload." + callType.name();
+			final String value = properties.getProperty(key, "").trim();
+
+			if (value.isEmpty()) {
+				continue;
+			}
+
+			final Workload workload = Workload.parse(value).withInsideLock(getBoolean(properties, key + ".insideLock", false));
+			final Workload previous = workloads.put(callType.getCounter(), workload);
+
+			Preconditions.checkArgument(previous == null || previous.equals(workload), "'" + key
+					+ "' uses the same server counter as another call type, with a different workload.");
+		}
+
+		return Collections.unmodifiableMap(workloads);
+	}
+
+	private static double getDouble(final Properties properties, final String key, final double defaultValue) {
+		final String value = properties.getProperty(key, "").trim();
+
+		try {
+			return value.isEmpty() ? defaultValue : Double.parseDouble(value);
+		} catch (final NumberFormatException e) {
+			throw new IllegalArgumentException("'" + key + "' must be a number, not '" + value + "'.", e);
+		}
+	}
+
+	private static <E extends Enum<E>> E getEnum(final Properties properties, final String key, final Class<E> type, final E defaultValue) {
+		final String value = properties.getProperty(key, "").trim();
+
+		return value.isEmpty() ? defaultValue : parseEnum(key, type, value);
+	}
+
+	private static List<Integer> getIntList(final Properties properties, final String key, final int defaultValue) {
+		final List<Integer> values = new ArrayList<>();
+
+		for (final String value : split(properties, key)) {
+			try {
+				values.add(Integer.parseInt(value));
+			} catch (final NumberFormatException e) {
+				throw new IllegalArgumentException("'" + key + "' must list whole numbers, not '" + value + "'.", e);
+			}
+		}
+
+		return values.isEmpty() ? Collections.singletonList(defaultValue) : Collections.unmodifiableList(values);
+	}
+
+	private static <E extends Enum<E>> List<E> getEnumList(final Properties properties, final String key, final Class<E> type,
+			final List<E> defaultValues) {
+		final List<E> values = new ArrayList<>();
+
+		for (final String value : split(properties, key)) {
+			values.add(parseEnum(key, type, value));
+		}
+
+		return Collections.unmodifiableList(values.isEmpty() ? defaultValues : values);
+	}
+
+	private static List<String> split(final Properties properties, final String key) {
+		final List<String> values = new ArrayList<>();
+
+		for (final String value : properties.getProperty(key, "").split(",")) {
+			if (!value.trim().isEmpty()) {
+				values.add(value.trim());
+			}
+		}
+
+		return values;
+	}
+
+	private static <E extends Enum<E>> E parseEnum(final String key, final Class<E> type, final String value) {
+		try {
+			return Enum.valueOf(type, value.toUpperCase());
+		} catch (final IllegalArgumentException e) {
+			throw new IllegalArgumentException("'" + key + "' must be one of " + Arrays.toString(type.getEnumConstants()) + ", not '"
+					+ value + "'.", e);
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.history;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.aetherworks.concurrency.stats.LatencyComparison;
+import com.aetherworks.concurrency.stats.LatencySamples;
+import com.google.common.base.Preconditions;
+
+/**
+ * Compares the cells of a run, as they are stored, with the same cells of the latest run with a baseline's label, and
+ * reports those whose median or 99th percentile latency has regressed; see {@link LatencyComparison} for the tests.
+ * <p>
+ * Cells are matched by {@link StoredCell#getKey()}, and the samples of every repetition and iteration of a cell are
+ * pooled on each side. Cells the baseline doesn't have are skipped with a warning.
+ */
+public class BaselineComparison {
+	private final static Logger LOGGER = Logger.getLogger(BaselineComparison.class.getName());
+
+	private final StoredRun baseline;
+
+	private final Map<String, LatencySamples> baselineSamples;
+
+	private final Map<String, LatencySamples> currentSamples = new LinkedHashMap<>();
+
+	private final double thresholdPercent;
+
+	private final double alpha;
+
+	private BaselineComparison(final StoredRun baseline, final Map<String, LatencySamples> baselineSamples, final double thresholdPercent,
+			final double alpha) {
+		this.baseline = baseline;
+		this.baselineSamples = baselineSamples;
+		this.thresholdPercent = thresholdPercent;
+		this.alpha = alpha;
+	}
+
+	/**
+	 * Read the latest run with the given label from a store, to compare later cells with.
+	 * 
+	 * @param thresholdPercent
+	 *        How much slower, in percent, the median or 99th percentile must be to count as a regression.
+	 * @param alpha
+	 *        The significance level of the tests.
+	 * @throws IllegalArgumentException
+	 *         If the store has no run with the label.
+	 */
+	public static BaselineComparison load(final ResultStoreReader reader, final String label, final double thresholdPercent,
+			final double alpha) throws IOException {
+		final StoredRun baseline = reader.getLatestRun(label);
+
+		Preconditions.checkArgument(baseline != null, "There is no run labelled '" + label + "' to compare with.");
+
+		final Map<String, LatencySamples> baselineSamples = new LinkedHashMap<>();
+		for (final StoredCell cell : reader.getCells(baseline.getRunId())) {
+			pool(baselineSamples, cell);
+		}
+
+		return new BaselineComparison(baseline, baselineSamples, thresholdPercent, alpha);
+	}
+
+	private static void pool(final Map<String, LatencySamples> samples, final StoredCell cell) {
+		LatencySamples pooled = samples.get(cell.getKey());
+
+		if (pooled == null) {
+			pooled = new LatencySamples();
+			samples.put(cell.getKey(), pooled);
+		}
+
+		pooled.add(cell.getCombined().getSamples());
+	}
+
+	public StoredRun getBaseline() {
+		return baseline;
+	}
+
+	/**
+	 * Add a cell of the run being compared.
+	 */
+	public void add(final StoredCell cell) {
+		pool(currentSamples, cell);
+	}
+
+	/**
+	 * Compare every cell added so far with the baseline, logging the result for each.
+	 * 
+	 * @return The keys of the cells that regressed, in the order they were first added.
+	 */
+	public List<String> compare() {
+		final List<String> regressions = new ArrayList<>();
+
+		for (final Map.Entry<String, LatencySamples> current : currentSamples.entrySet()) {
+			final LatencySamples baselineCell = baselineSamples.get(current.getKey());
+
+			if (baselineCell == null || baselineCell.size() == 0) {
+				LOGGER.log(Level.WARNING, current.getKey() + ": not in baseline " + baseline + ".");
+				continue;
+			} else if (current.getValue().size() == 0) {
+				LOGGER.log(Level.WARNING, current.getKey() + ": no samples to compare.");
+				continue;
+			}
+
+			final LatencyComparison comparison = new LatencyComparison(baselineCell.getValues(), current.getValue().getValues(), alpha);
+
+			if (comparison.isRegression(thresholdPercent)) {
+				regressions.add(current.getKey());
+
+				LOGGER.log(Level.WARNING, current.getKey() + " regressed" + (comparison.isP50Regression(thresholdPercent) ? " at p50" : "")
+						+ (comparison.isP99Regression(thresholdPercent) ? " at p99" : "") + ": " + comparison.toSummaryString());
+			} else {
+				LOGGER.log(Level.INFO, current.getKey() + ": " + comparison.toSummaryString());
+			}
+		}
+
+		LOGGER.log(regressions.isEmpty() ? Level.INFO : Level.WARNING, regressions.size() + " of " + currentSamples.size()
+				+ " cells regressed by more than " + thresholdPercent + "% against " + baseline + ".");
+
+		return regressions;
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.history;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only file of benchmark runs, each a {@link StoredRun} followed by its {@link StoredCell}s, kept across
+ * sweeps so that runs can be compared months apart. Read it with a {@link ResultStoreReader}.
+ * 
+ * <pre>
+ * file:   int magic | int version | record*
+ * record: int length | int CRC-32 of the body | body
+ * body:   byte type | long run id | the rest of the run or cell
+ * </pre>
+ * 
+ * Records are only ever added to the end. If a sweep dies part way through writing a record, the store is cut back to
+ * the last whole record the next time it is opened for writing. Only one writer may have the store open at a time.
+ */
+public class ResultStore implements Closeable {
+	private final static Logger LOGGER = Logger.getLogger(ResultStore.class.getName());
+
+	/**
+	 * "AWRS", at the start of every store.
+	 */
+	static final int MAGIC = 0x41575253;
+
+	static final int VERSION = 1;
+
+	static final int FILE_HEADER_BYTES = 4 + 4;
+
+	static final int RECORD_HEADER_BYTES = 4 + 4;
+
+	static final byte TYPE_RUN = 1;
+
+	static final byte TYPE_CELL = 2;
+
+	private final FileChannel channel;
+
+	private final FileLock lock;
+
+	private ResultStore(final FileChannel channel, final FileLock lock) {
+		this.channel = channel;
+		this.lock = lock;
+	}
+
+	/**
+	 * Open a store for appending, creating it and its directory if need be.
+	 * 
+	 * @throws IOException
+	 *         If the file isn't a store, or another writer has it open.
+	 */
+	public static ResultStore open(final Path file) throws IOException {
+		if (file.toAbsolutePath().getParent() != null) {
+			Files.createDirectories(file.toAbsolutePath().getParent());
+		}
+
+		final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		try {
+			final FileLock lock;
+			try {
+				lock = channel.tryLock();
+			} catch (final OverlappingFileLockException e) {
+				throw new IOException("Result store " + file + " is already open for writing.", e);
+			}
+
+			if (lock == null) {
+				throw new IOException("Result store " + file + " is already open for writing.");
+			}
+
+			// Only scan for a torn tail once no other writer can be appending, or its whole records would be cut off too.
+			long validLength = 0;
+			if (channel.size() > 0) {
+				try (final ResultStoreReader reader = ResultStoreReader.open(file)) {
+					validLength = reader.getValidLength();
+				}
+			}
+
+			final ResultStore store = new ResultStore(channel, lock);
+
+			if (validLength == 0) {
+				channel.truncate(0);
+
+				final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+				header.putInt(MAGIC);
+				header.putInt(VERSION);
+				header.flip();
+				store.writeFully(header);
+			} else if (channel.size() > validLength) {
+				LOGGER.log(Level.WARNING, "Result store " + file + " ends in an incomplete record. Discarding the last "
+						+ (channel.size() - validLength) + " bytes.");
+
+				channel.truncate(validLength);
+			}
+
+			channel.position(channel.size());
+
+			return store;
+		} catch (final IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	public void append(final StoredRun run) throws IOException {
+		final ByteArrayOutputStream body = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(body);
+
+		out.writeByte(TYPE_RUN);
+		run.write(out);
+		out.flush();
+
+		appendRecord(body.toByteArray());
+	}
+
+	public void append(final StoredCell cell) throws IOException {
+		final ByteArrayOutputStream body = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(body);
+
+		out.writeByte(TYPE_CELL);
+		cell.write(out);
+		out.flush();
+
+		appendRecord(body.toByteArray());
+	}
+
+	/**
+	 * Write a record in a single write, so a reader sees either all of it or a short record it knows to ignore.
+	 */
+	private void appendRecord(final byte[] body) throws IOException {
+		final CRC32 crc = new CRC32();
+		crc.update(body);
+
+		final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + body.length);
+		record.putInt(body.length);
+		record.putInt((int) crc.getValue());
+		record.put(body);
+		record.flip();
+
+		writeFully(record);
+	}
+
+	private void writeFully(final ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Force the records written to disk, and release the store.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			channel.force(true);
+			lock.release();
+		} finally {
+			channel.close();
+		}
+	}
+}
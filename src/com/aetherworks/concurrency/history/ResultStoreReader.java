@@ -0,0 +1,310 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.history;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nullable;
+
+/**
+ * Reads a {@link ResultStore} through memory-mapped windows of the file, so a store of months of runs can be searched
+ * without reading it into the heap. Only the records asked for are decoded.
+ * <p>
+ * Opening the reader walks the record headers to index each record by type and run id. The reader sees the records
+ * that were in the file when it was opened. A record's checksum is checked when it is decoded.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class ResultStoreReader implements Closeable {
+	private final static Logger LOGGER = Logger.getLogger(ResultStoreReader.class.getName());
+
+	/**
+	 * How much of the file is mapped at once, unless a single record is larger.
+	 */
+	private static final int WINDOW_BYTES = 64 * 1024 * 1024;
+
+	private final Path file;
+
+	private final FileChannel channel;
+
+	private final long fileSize;
+
+	/**
+	 * The mapped windows of the file, by the offset each starts at.
+	 */
+	private final TreeMap<Long, MappedByteBuffer> windows = new TreeMap<>();
+
+	private final List<Entry> entries = new ArrayList<>();
+
+	private long validLength;
+
+	private ResultStoreReader(final Path file, final FileChannel channel) throws IOException {
+		this.file = file;
+		this.channel = channel;
+		fileSize = channel.size();
+	}
+
+	/**
+	 * @throws IOException
+	 *         If the file can't be read, or isn't a store.
+	 */
+	public static ResultStoreReader open(final Path file) throws IOException {
+		final ResultStoreReader reader = new ResultStoreReader(file, FileChannel.open(file, StandardOpenOption.READ));
+
+		try {
+			reader.index();
+		} catch (final IOException e) {
+			reader.close();
+			throw e;
+		}
+
+		return reader;
+	}
+
+	private void index() throws IOException {
+		if (fileSize < ResultStore.FILE_HEADER_BYTES) {
+			throw new IOException(file + " is not a result store.");
+		}
+
+		final ByteBuffer header = map(0, ResultStore.FILE_HEADER_BYTES);
+
+		if (header.getInt() != ResultStore.MAGIC) {
+			throw new IOException(file + " is not a result store.");
+		}
+
+		final int version = header.getInt();
+		if (version != ResultStore.VERSION) {
+			throw new IOException(file + " is a version " + version + " result store; only version " + ResultStore.VERSION
+					+ " can be read.");
+		}
+
+		long position = ResultStore.FILE_HEADER_BYTES;
+
+		while (position + ResultStore.RECORD_HEADER_BYTES <= fileSize) {
+			final int length = map(position, ResultStore.RECORD_HEADER_BYTES).getInt();
+			final long bodyOffset = position + ResultStore.RECORD_HEADER_BYTES;
+
+			// The type and run id start every body.
+			if (length < 1 + 8 || bodyOffset + length > fileSize) {
+				break;
+			}
+
+			final ByteBuffer prefix = map(bodyOffset, 1 + 8);
+			entries.add(new Entry(position, length, prefix.get(), prefix.getLong()));
+
+			position = bodyOffset + length;
+		}
+
+		validLength = position;
+
+		if (validLength < fileSize) {
+			LOGGER.log(Level.WARNING, "Ignoring an incomplete record at the end of " + file + ".");
+		}
+	}
+
+	/**
+	 * The length of the store up to the end of its last whole record.
+	 */
+	long getValidLength() {
+		return validLength;
+	}
+
+	/**
+	 * The number of runs and cells in the store.
+	 */
+	public int getRecordCount() {
+		return entries.size();
+	}
+
+	/**
+	 * Every run in the store, oldest first, without their cells.
+	 */
+	public List<StoredRun> getRuns() throws IOException {
+		final List<StoredRun> runs = new ArrayList<>();
+
+		for (final Entry entry : entries) {
+			if (entry.type == ResultStore.TYPE_RUN) {
+				runs.add(StoredRun.read(decode(entry)));
+			}
+		}
+
+		return runs;
+	}
+
+	/**
+	 * The run with the given id, or null if there is none.
+	 */
+	@Nullable
+	public StoredRun getRun(final long runId) throws IOException {
+		for (final Entry entry : entries) {
+			if (entry.type == ResultStore.TYPE_RUN && entry.runId == runId) {
+				return StoredRun.read(decode(entry));
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * The most recent run with the given label, or null if there is none.
+	 */
+	@Nullable
+	public StoredRun getLatestRun(final String label) throws IOException {
+		for (int i = entries.size() - 1; i >= 0; i--) {
+			if (entries.get(i).type == ResultStore.TYPE_RUN) {
+				final StoredRun run = StoredRun.read(decode(entries.get(i)));
+
+				if (run.getLabel().equals(label)) {
+					return run;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * The cells of a run, in the order they were run. Only these records are decoded.
+	 */
+	public List<StoredCell> getCells(final long runId) throws IOException {
+		final List<StoredCell> cells = new ArrayList<>();
+
+		for (final Entry entry : entries) {
+			if (entry.type == ResultStore.TYPE_CELL && entry.runId == runId) {
+				cells.add(StoredCell.read(decode(entry)));
+			}
+		}
+
+		return cells;
+	}
+
+	/**
+	 * The number of cells stored for each run, by run id, without decoding any of them.
+	 */
+	public Map<Long, Integer> getCellCounts() {
+		final Map<Long, Integer> counts = new TreeMap<>();
+
+		for (final Entry entry : entries) {
+			if (entry.type == ResultStore.TYPE_CELL) {
+				final Integer count = counts.get(entry.runId);
+				counts.put(entry.runId, count == null ? 1 : count + 1);
+			}
+		}
+
+		return Collections.unmodifiableMap(counts);
+	}
+
+	/**
+	 * Check a record's checksum, and return its body after the type.
+	 */
+	private DataInputStream decode(final Entry entry) throws IOException {
+		final ByteBuffer header = map(entry.offset, ResultStore.RECORD_HEADER_BYTES);
+		header.getInt();
+		final int expectedCrc = header.getInt();
+
+		final ByteBuffer body = map(entry.offset + ResultStore.RECORD_HEADER_BYTES, entry.length);
+
+		final CRC32 crc = new CRC32();
+		crc.update(body.duplicate());
+
+		if ((int) crc.getValue() != expectedCrc) {
+			throw new IOException("Corrupt record at offset " + entry.offset + " of " + file + ".");
+		}
+
+		body.get();
+
+		return new DataInputStream(new ByteBufferInputStream(body));
+	}
+
+	/**
+	 * A buffer over <tt>length</tt> bytes of the file from <tt>offset</tt>, from a window already mapped if one covers
+	 * them, or else from a new one starting at <tt>offset</tt>.
+	 */
+	private ByteBuffer map(final long offset, final int length) throws IOException {
+		Map.Entry<Long, MappedByteBuffer> window = windows.floorEntry(offset);
+
+		if (window == null || offset + length > window.getKey() + window.getValue().capacity()) {
+			final long size = Math.min(Math.max(length, WINDOW_BYTES), fileSize - offset);
+
+			windows.put(offset, channel.map(FileChannel.MapMode.READ_ONLY, offset, size));
+			window = windows.floorEntry(offset);
+		}
+
+		final ByteBuffer buffer = window.getValue().duplicate();
+		buffer.position((int) (offset - window.getKey()));
+		buffer.limit(buffer.position() + length);
+
+		return buffer.slice();
+	}
+
+	/**
+	 * The mapped windows are released once they are garbage collected, since they can't be unmapped any sooner.
+	 * <p>
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() throws IOException {
+		windows.clear();
+		channel.close();
+	}
+
+	/**
+	 * Where a record is, and what it is, read from the start of its body.
+	 */
+	private static class Entry {
+		private final long offset;
+		private final int length;
+		private final byte type;
+		private final long runId;
+
+		Entry(final long offset, final int length, final byte type, final long runId) {
+			this.offset = offset;
+			this.length = length;
+			this.type = type;
+			this.runId = runId;
+		}
+	}
+
+	private static class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(final ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(final byte[] bytes, final int offset, final int length) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+
+			final int count = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, count);
+
+			return count;
+		}
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.history;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Map;
+
+import com.aetherworks.concurrency.client.call.executor.CallExecutionResults;
+import com.aetherworks.concurrency.util.CommandLineArgs;
+
+/**
+ * Prints what a {@link ResultStore} holds: every run, or with a run id, the summary of each of that run's cells.
+ */
+public class ShowHistory {
+
+	/**
+	 * Expects the arguments: <tt>-f</tt> the store file, and optionally <tt>-r</tt> the id of a run, in hex as listed.
+	 */
+	public static void main(final String[] args) throws IOException {
+		final CommandLineArgs parsedArgs = CommandLineArgs.parseArgs(args);
+
+		try (final ResultStoreReader reader = ResultStoreReader.open(Path.of(parsedArgs.getNotNull('f')))) {
+			if (parsedArgs.get('r') == null) {
+				printRuns(reader);
+			} else {
+				printCells(reader, Long.parseUnsignedLong(parsedArgs.get('r'), 16));
+			}
+		}
+	}
+
+	private static void printRuns(final ResultStoreReader reader) throws IOException {
+		final Map<Long, Integer> cellCounts = reader.getCellCounts();
+
+		for (final StoredRun run : reader.getRuns()) {
+			final Integer cells = cellCounts.get(run.getRunId());
+
+			System.out.println(Long.toHexString(run.getRunId()) + "  " + Instant.ofEpochMilli(run.getStartMillis()) + "  "
+					+ (run.getLabel().isEmpty() ? "-" : run.getLabel()) + "  java " + run.getMetadata().get("java.version") + " on "
+					+ run.getMetadata().get("host") + "  " + (cells == null ? 0 : cells) + " cells");
+		}
+	}
+
+	private static void printCells(final ResultStoreReader reader, final long runId) throws IOException {
+		final StoredRun run = reader.getRun(runId);
+
+		if (run == null) {
+			System.err.println("No run " + Long.toHexString(runId) + " in the store.");
+			System.exit(1);
+		}
+
+		System.out.println(run + " at " + Instant.ofEpochMilli(run.getStartMillis()) + ": " + run.getMetadata());
+		System.out.println("configuration: " + run.getConfiguration());
+
+		for (final StoredCell cell : reader.getCells(runId)) {
+			final CallExecutionResults combined = cell.getCombined();
+
+			System.out.println(cell + ": " + combined.toSummaryString() + ", samples=" + combined.getSamples().size());
+		}
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.history;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.aetherworks.concurrency.client.call.executor.CallExecutionResults;
+import com.aetherworks.concurrency.stats.LatencyHistogram;
+import com.aetherworks.concurrency.stats.LatencySamples;
+
+/**
+ * The measured iterations of one cell of a {@link StoredRun}, as kept in a {@link ResultStore}: each iteration's latency
+ * histogram and per-call samples, errors and elapsed time.
+ * <p>
+ * The process mode and call type are kept by name rather than as enums, so that a store still reads after either enum
+ * changes.
+ */
+public class StoredCell {
+
+	private final long runId;
+
+	private final int repetition;
+
+	private final String processMode;
+
+	private final int threads;
+
+	private final String callType;
+
+	private final int payloadSize;
+
+	private final int forks;
+
+	private final long lostUpdates;
+
+	private final List<CallExecutionResults> iterations;
+
+	public StoredCell(final long runId, final int repetition, final String processMode, final int threads, final String callType,
+			final int payloadSize, final int forks, final long lostUpdates, final List<CallExecutionResults> iterations) {
+		this.runId = runId;
+		this.repetition = repetition;
+		this.processMode = processMode;
+		this.threads = threads;
+		this.callType = callType;
+		this.payloadSize = payloadSize;
+		this.forks = forks;
+		this.lostUpdates = lostUpdates;
+		this.iterations = Collections.unmodifiableList(new ArrayList<>(iterations));
+	}
+
+	/**
+	 * The id of the {@link StoredRun} this cell belongs to.
+	 */
+	public long getRunId() {
+		return runId;
+	}
+
+	public int getRepetition() {
+		return repetition;
+	}
+
+	public String getProcessMode() {
+		return processMode;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public String getCallType() {
+		return callType;
+	}
+
+	public int getPayloadSize() {
+		return payloadSize;
+	}
+
+	public int getForks() {
+		return forks;
+	}
+
+	public long getLostUpdates() {
+		return lostUpdates;
+	}
+
+	public List<CallExecutionResults> getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * What the cell measured, without the run or repetition, so the same cell can be matched across runs: the process
+	 * mode, threads, call type and payload size.
+	 */
+	public String getKey() {
+		return processMode + "/" + threads + "/" + callType + "/" + payloadSize;
+	}
+
+	/**
+	 * Every iteration as if it were one run, as {@link com.aetherworks.concurrency.client.sweep.CellResults#getCombined()}
+	 * gives it.
+	 */
+	public CallExecutionResults getCombined() {
+		final LatencyHistogram latencies = new LatencyHistogram();
+		final LatencySamples samples = new LatencySamples();
+		int numberOfErrors = 0;
+		long elapsedNanos = 0;
+
+		for (final CallExecutionResults iteration : iterations) {
+			latencies.add(iteration.getLatencies());
+			samples.add(iteration.getSamples());
+			numberOfErrors += iteration.getNumberOfErrors();
+			elapsedNanos += iteration.getElapsedNanos();
+		}
+
+		return new CallExecutionResults(latencies, samples, numberOfErrors, elapsedNanos);
+	}
+
+	/**
+	 * Write this cell so that {@link #read(DataInput)} can recreate it. The run id comes first.
+	 */
+	public void write(final DataOutput out) throws IOException {
+		out.writeLong(runId);
+		out.writeInt(repetition);
+		out.writeUTF(processMode);
+		out.writeInt(threads);
+		out.writeUTF(callType);
+		out.writeInt(payloadSize);
+		out.writeInt(forks);
+		out.writeLong(lostUpdates);
+
+		out.writeInt(iterations.size());
+		for (final CallExecutionResults iteration : iterations) {
+			iteration.getLatencies().write(out);
+			iteration.getSamples().write(out);
+			out.writeInt(iteration.getNumberOfErrors());
+			out.writeLong(iteration.getElapsedNanos());
+		}
+	}
+
+	public static StoredCell read(final DataInput in) throws IOException {
+		final long runId = in.readLong();
+		final int repetition = in.readInt();
+		final String processMode = in.readUTF();
+		final int threads = in.readInt();
+		final String callType = in.readUTF();
+		final int payloadSize = in.readInt();
+		final int forks = in.readInt();
+		final long lostUpdates = in.readLong();
+
+		final int size = in.readInt();
+
+		if (size < 0) {
+			throw new IOException("Invalid number of iterations: " + size);
+		}
+
+		final List<CallExecutionResults> iterations = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			iterations.add(new CallExecutionResults(LatencyHistogram.read(in), LatencySamples.read(in), in.readInt(), in.readLong()));
+		}
+
+		return new StoredCell(runId, repetition, processMode, threads, callType, payloadSize, forks, lostUpdates, iterations);
+	}
+
+	@Override
+	public String toString() {
+		return getKey() + " (repetition " + repetition + ")";
+	}
+}
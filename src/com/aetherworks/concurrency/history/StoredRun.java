@@ -0,0 +1,151 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.history;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * One run of a sweep as kept in a {@link ResultStore}: when and where it ran, and the configuration it ran with. The
+ * run's cells are stored separately, as {@link StoredCell}s with the same run id.
+ * <p>
+ * The metadata records the host and the JVM, so runs before and after a JDK upgrade, say, can be told apart. The
+ * configuration is the settings the sweep was given; anything left at its default is not listed.
+ */
+public class StoredRun {
+
+	private final long runId;
+
+	private final long startMillis;
+
+	private final String label;
+
+	private final Map<String, String> metadata;
+
+	private final Map<String, String> configuration;
+
+	/**
+	 * @param label
+	 *        A name for the run, such as a baseline's, or empty.
+	 */
+	public StoredRun(final long runId, final long startMillis, final String label, final Map<String, String> metadata,
+			final Map<String, String> configuration) {
+		Preconditions.checkNotNull(label, "The label can't be null; use an empty string.");
+
+		this.runId = runId;
+		this.startMillis = startMillis;
+		this.label = label;
+		this.metadata = Collections.unmodifiableMap(new TreeMap<>(metadata));
+		this.configuration = Collections.unmodifiableMap(new TreeMap<>(configuration));
+	}
+
+	/**
+	 * A new run starting now in this JVM, with a random id and the metadata of this host and JVM.
+	 */
+	public static StoredRun startingNow(final String label, final Map<String, String> configuration) {
+		final Map<String, String> metadata = new TreeMap<>();
+
+		try {
+			metadata.put("host", InetAddress.getLocalHost().getHostName());
+		} catch (final UnknownHostException e) {
+			metadata.put("host", "unknown");
+		}
+
+		for (final String property : new String[] { "java.version", "java.vendor", "java.vm.name", "java.vm.version", "os.name",
+				"os.arch", "os.version" }) {
+			metadata.put(property, System.getProperty(property, ""));
+		}
+
+		metadata.put("availableProcessors", String.valueOf(Runtime.getRuntime().availableProcessors()));
+		metadata.put("maxHeapBytes", String.valueOf(Runtime.getRuntime().maxMemory()));
+
+		return new StoredRun(ThreadLocalRandom.current().nextLong(), System.currentTimeMillis(), label, metadata, configuration);
+	}
+
+	public long getRunId() {
+		return runId;
+	}
+
+	/**
+	 * When the run started, in milliseconds since the epoch.
+	 */
+	public long getStartMillis() {
+		return startMillis;
+	}
+
+	/**
+	 * The run's name, or empty if it has none.
+	 */
+	public String getLabel() {
+		return label;
+	}
+
+	/**
+	 * The host and JVM the run was made from, by name, such as <tt>java.version</tt>.
+	 */
+	public Map<String, String> getMetadata() {
+		return metadata;
+	}
+
+	/**
+	 * The settings the run was given, by key.
+	 */
+	public Map<String, String> getConfiguration() {
+		return configuration;
+	}
+
+	/**
+	 * Write this run so that {@link #read(DataInput)} can recreate it. The run id comes first.
+	 */
+	public void write(final DataOutput out) throws IOException {
+		out.writeLong(runId);
+		out.writeLong(startMillis);
+		out.writeUTF(label);
+		writeMap(out, metadata);
+		writeMap(out, configuration);
+	}
+
+	public static StoredRun read(final DataInput in) throws IOException {
+		return new StoredRun(in.readLong(), in.readLong(), in.readUTF(), readMap(in), readMap(in));
+	}
+
+	private static void writeMap(final DataOutput out, final Map<String, String> map) throws IOException {
+		out.writeInt(map.size());
+
+		for (final Map.Entry<String, String> entry : map.entrySet()) {
+			out.writeUTF(entry.getKey());
+			out.writeUTF(entry.getValue());
+		}
+	}
+
+	private static Map<String, String> readMap(final DataInput in) throws IOException {
+		final int size = in.readInt();
+
+		if (size < 0) {
+			throw new IOException("Invalid number of entries: " + size);
+		}
+
+		final Map<String, String> map = new TreeMap<>();
+		for (int i = 0; i < size; i++) {
+			map.put(in.readUTF(), in.readUTF());
+		}
+
+		return map;
+	}
+
+	@Override
+	public String toString() {
+		return Long.toHexString(runId) + (label.isEmpty() ? "" : " '" + label + "'");
+	}
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.server;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records the calls {@link ServerRemoteImpl} counts without slowing them down: each event is written as primitives into
+ * a preallocated ring buffer, and a background thread drains the buffer to a binary file.
+ * <p>
+ * Recording never allocates, never takes a lock and never waits for I/O, so it can sit inside the critical sections being
+ * measured. If the flusher falls so far behind that the buffer is full, events are dropped and counted rather than
+ * waiting for space. Only one call in every {@link #getSampleEvery()}, by call number, is recorded, and once
+ * {@link #getMaxEvents()} have been recorded the rest are skipped, so a long run can't fill the disk.
+ * <p>
+ * A batch of calls is a single event, recorded if any call number in the batch would be sampled, and carries the number
+ * of calls in the batch so that it isn't mistaken for one call.
+ * <p>
+ * The file starts with {@link #MAGIC} and a version, followed by one fixed size record per event: the counter's ordinal
+ * as a byte, the thread ID as a long, the call number as an int, the number of calls as an int and the
+ * {@link System#nanoTime()} timestamp as a long. Read it back with {@link #read(Path)}.
+ */
+public class CallEventLog implements Closeable {
+	private final static Logger LOGGER = Logger.getLogger(CallEventLog.class.getName());
+
+	public static final int MAGIC = 0x43455654;
+
+	private static final int VERSION = 2;
+
+	/**
+	 * The size of an event in the file, in bytes.
+	 */
+	public static final int EVENT_BYTES = 25;
+
+	/**
+	 * How long the flusher sleeps when it finds the buffer empty.
+	 */
+	private static final long IDLE_SLEEP_MILLIS = 10;
+
+	private static final Counter[] COUNTERS = Counter.values();
+
+	private final int sampleEvery;
+
+	private final long maxEvents;
+
+	private final int mask;
+
+	private final byte[] counters;
+	private final long[] threadIds;
+	private final int[] callNumbers;
+	private final int[] callCounts;
+	private final long[] timestamps;
+
+	/**
+	 * The sequence number of the event in each slot, set once the slot's fields have been written, so the flusher knows
+	 * the event is complete.
+	 */
+	private final AtomicLongArray published;
+
+	/**
+	 * The sequence number the next recorded event will be given.
+	 */
+	private final AtomicLong head = new AtomicLong();
+
+	/**
+	 * The sequence number of the next event the flusher will write. Only the flusher updates it.
+	 */
+	private final AtomicLong tail = new AtomicLong();
+
+	private final LongAdder dropped = new LongAdder();
+
+	private final LongAdder skipped = new LongAdder();
+
+	private final DataOutputStream out;
+
+	private final Thread flusher;
+
+	private volatile boolean running = true;
+
+	/**
+	 * Open <tt>file</tt>, replacing anything already there, and start draining events to it.
+	 * 
+	 * @param capacity
+	 *        The number of events the buffer holds, rounded up to a power of two.
+	 * @param maxEvents
+	 *        The most events the file will hold.
+	 * @param sampleEvery
+	 *        Record only the calls whose call number is a multiple of this. 1 records every call.
+	 */
+	public CallEventLog(final Path file, final int capacity, final long maxEvents, final int sampleEvery) throws IOException {
+		checkArgument(capacity > 0, "The capacity must be positive.");
+		checkArgument(maxEvents > 0, "The log must hold at least one event.");
+		checkArgument(sampleEvery > 0, "Must sample at least one call in every %s.", sampleEvery);
+
+		this.sampleEvery = sampleEvery;
+		this.maxEvents = maxEvents;
+
+		final int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+		mask = size - 1;
+
+		counters = new byte[size];
+		threadIds = new long[size];
+		callNumbers = new int[size];
+		callCounts = new int[size];
+		timestamps = new long[size];
+
+		published = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			published.set(i, -1);
+		}
+
+		if (file.toAbsolutePath().getParent() != null) {
+			Files.createDirectories(file.toAbsolutePath().getParent());
+		}
+
+		out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+
+		flusher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				flush();
+			}
+		}, "call-event-flusher");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	/**
+	 * Record a call, if it is sampled and there is room for it.
+	 */
+	public void record(final Counter counter, final int callNumber) {
+		record(counter, callNumber, 1);
+	}
+
+	/**
+	 * Record a batch of calls, numbered up to <tt>callNumber</tt>, if any of them is sampled and there is room for it.
+	 */
+	public void record(final Counter counter, final int callNumber, final int calls) {
+		if (Math.floorDiv(callNumber, sampleEvery) == Math.floorDiv(callNumber - calls, sampleEvery)) {
+			return;
+		}
+
+		final long timestamp = System.nanoTime();
+
+		long sequence;
+		do {
+			sequence = head.get();
+
+			if (sequence >= maxEvents) {
+				skipped.increment();
+				return;
+			} else if (sequence - tail.get() > mask) {
+				dropped.increment();
+				return;
+			}
+		} while (!head.compareAndSet(sequence, sequence + 1));
+
+		final int slot = (int) sequence & mask;
+		counters[slot] = (byte) counter.ordinal();
+		threadIds[slot] = Thread.currentThread().threadId();
+		callNumbers[slot] = callNumber;
+		callCounts[slot] = calls;
+		timestamps[slot] = timestamp;
+
+		// Publishes the plain writes above to the flusher.
+		published.lazySet(slot, sequence);
+	}
+
+	/**
+	 * Write out events as they are published, until closed and the buffer is empty.
+	 */
+	private void flush() {
+		try {
+			while (true) {
+				final long sequence = tail.get();
+				final int slot = (int) sequence & mask;
+
+				if (published.get(slot) == sequence) {
+					out.writeByte(counters[slot]);
+					out.writeLong(threadIds[slot]);
+					out.writeInt(callNumbers[slot]);
+					out.writeInt(callCounts[slot]);
+					out.writeLong(timestamps[slot]);
+
+					tail.lazySet(sequence + 1);
+				} else if (running || head.get() != sequence) {
+					// Push out what has been written while there is nothing else to do.
+					out.flush();
+					Thread.sleep(IDLE_SLEEP_MILLIS);
+				} else {
+					break;
+				}
+			}
+		} catch (final IOException e) {
+			LOGGER.log(Level.SEVERE, "Stopped writing call events.", e);
+		} catch (final InterruptedException e) {
+			LOGGER.log(Level.WARNING, "Call event flusher interrupted.");
+		} finally {
+			try {
+				out.close();
+			} catch (final IOException e) {
+				LOGGER.log(Level.WARNING, "Failed to close the call event log.", e);
+			}
+		}
+	}
+
+	public int getSampleEvery() {
+		return sampleEvery;
+	}
+
+	/**
+	 * The most events the log will hold.
+	 */
+	public long getMaxEvents() {
+		return maxEvents;
+	}
+
+	/**
+	 * The number of sampled events dropped because the buffer was full.
+	 */
+	public long getDroppedCount() {
+		return dropped.sum();
+	}
+
+	/**
+	 * The number of sampled events skipped because the log already held {@link #getMaxEvents()}.
+	 */
+	public long getSkippedCount() {
+		return skipped.sum();
+	}
+
+	/**
+	 * Write out every event already recorded and close the file. Events recorded while closing may be lost.
+	 */
+	@Override
+	public void close() throws IOException {
+		running = false;
+
+		try {
+			flusher.join(TimeUnit.SECONDS.toMillis(10));
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (getDroppedCount() > 0) {
+			LOGGER.log(Level.WARNING, "Dropped " + getDroppedCount() + " call events because the buffer was full.");
+		}
+		if (getSkippedCount() > 0) {
+			LOGGER.log(Level.WARNING, "Skipped " + getSkippedCount() + " call events once the log held " + maxEvents + ".");
+		}
+	}
+
+	/**
+	 * Read back every event in a file written by a call event log.
+	 */
+	public static List<CallEvent> read(final Path file) throws IOException {
+		try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException(file + " is not a call event log.");
+			}
+
+			final int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported call event log version: " + version);
+			}
+
+			final List<CallEvent> events = new ArrayList<>();
+			while (true) {
+				final int counter;
+				try {
+					counter = in.readUnsignedByte();
+				} catch (final EOFException e) {
+					return events;
+				}
+
+				if (counter >= COUNTERS.length) {
+					throw new IOException("Unknown counter: " + counter);
+				}
+
+				events.add(new CallEvent(COUNTERS[counter], in.readLong(), in.readInt(), in.readInt(), in.readLong()));
+			}
+		}
+	}
+
+	/**
+	 * One recorded call, or batch of calls.
+	 */
+	public static class CallEvent {
+		private final Counter counter;
+		private final long threadId;
+		private final int callNumber;
+		private final int calls;
+		private final long timestampNanos;
+
+		public CallEvent(final Counter counter, final long threadId, final int callNumber, final int calls,
+				final long timestampNanos) {
+			this.counter = counter;
+			this.threadId = threadId;
+			this.callNumber = callNumber;
+			this.calls = calls;
+			this.timestampNanos = timestampNanos;
+		}
+
+		public Counter getCounter() {
+			return counter;
+		}
+
+		public long getThreadId() {
+			return threadId;
+		}
+
+		/**
+		 * The call's number, or the number of the last call in a batch.
+		 */
+		public int getCallNumber() {
+			return callNumber;
+		}
+
+		/**
+		 * The number of calls in the batch, or 1 for a single call.
+		 */
+		public int getCalls() {
+			return calls;
+		}
+
+		/**
+		 * The server's {@link System#nanoTime()} when the call was counted.
+		 */
+		public long getTimestampNanos() {
+			return timestampNanos;
+		}
+
+		@Override
+		public String toString() {
+			return counter + " #" + callNumber + (calls > 1 ? " (" + calls + " calls)" : "") + " on thread " + threadId + " at "
+					+ timestampNanos;
+		}
+	}
+}
@@ -0,0 +1,13 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.server;
+
+/**
+ * The call counters kept by {@link ServerRemoteImpl}, one for each counting method on {@link ServerRemote}. Used to
+ * read back a counter's value with {@link ServerRemote#readCounter(Counter)}.
+ */
+public enum Counter {
+	BASIC, SYNC, SLEEP, SYNC_SLEEP, ATOMIC, LONG_ADDER, STRIPED, LOCK, STAMPED_LOCK, BATCH, BYTES, SERIALIZABLE, EXTERNALIZABLE, FETCH_ALL, CURSOR
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.server;
+
+import java.rmi.NoSuchObjectException;
+import java.rmi.server.UnicastRemoteObject;
+import java.rmi.server.Unreferenced;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A {@link RemoteCursor} over generated data, so that the server holds only the chunk being sent, never the whole
+ * result. The data is the same as {@link #fill(byte[], long)} gives for the whole result at once, so a one-shot
+ * transfer and a chunked one move exactly the same bytes.
+ */
+class DataCursor implements RemoteCursor, Unreferenced {
+
+	private final long size;
+
+	private long position;
+
+	private boolean closed;
+
+	/**
+	 * @param size
+	 *        The length of the result in bytes.
+	 */
+	DataCursor(final long size) {
+		this.size = size;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@Nullable
+	public synchronized byte[] next(final int maxBytes) {
+		Preconditions.checkArgument(maxBytes > 0 && maxBytes <= MAX_CHUNK_BYTES, "A chunk must be between 1 and " + MAX_CHUNK_BYTES
+				+ " bytes.");
+		Preconditions.checkState(!closed, "The cursor is closed.");
+
+		if (position >= size) {
+			return null;
+		}
+
+		final byte[] chunk = new byte[(int) Math.min(maxBytes, size - position)];
+		fill(chunk, position);
+		position += chunk.length;
+
+		return chunk;
+	}
+
+	/**
+	 * Unexports the cursor, if it was exported.
+	 * <p>
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized void close() {
+		if (closed) {
+			return;
+		}
+
+		closed = true;
+
+		try {
+			UnicastRemoteObject.unexportObject(this, true);
+		} catch (final NoSuchObjectException e) {
+			// It was only used locally.
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void unreferenced() {
+		close();
+	}
+
+	/**
+	 * Fill <tt>buffer</tt> with the generated data starting at <tt>offset</tt> bytes into the result.
+	 */
+	static void fill(final byte[] buffer, final long offset) {
+		for (int i = 0; i < buffer.length; i++) {
+			buffer[i] = (byte) ((offset + i) * 0x9E3779B97F4A7C15L >>> 56);
+		}
+	}
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.server;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+import javax.annotation.Nullable;
+
+/**
+ * A result too large to return in one piece, exported by the server and pulled by the client a chunk at a time, so that
+ * neither side ever holds more than a chunk of it.
+ * <p>
+ * Close the cursor once it is no longer needed. A cursor whose client goes away without closing it is closed once RMI's
+ * distributed garbage collector sees it is no longer referenced.
+ */
+public interface RemoteCursor extends Remote {
+
+	/**
+	 * The next chunk of the result, of at most <tt>maxBytes</tt> bytes, or null once the whole result has been read.
+	 * 
+	 * @throws IllegalArgumentException
+	 *         If <tt>maxBytes</tt> is not positive, or larger than {@link #MAX_CHUNK_BYTES}.
+	 */
+	@Nullable
+	byte[] next(int maxBytes) throws RemoteException;
+
+	/**
+	 * Release the cursor. Any later call fails.
+	 */
+	void close() throws RemoteException;
+
+	/**
+	 * The largest chunk a client may ask for.
+	 */
+	int MAX_CHUNK_BYTES = 16 * 1024 * 1024;
+}
@@ -6,6 +6,11 @@ package com.aetherworks.concurrency.server;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
+
+import com.aetherworks.concurrency.server.payload.ExternalizableNode;
+import com.aetherworks.concurrency.server.payload.PayloadReply;
+import com.aetherworks.concurrency.server.payload.SerializableNode;
 
 /**
  * @author Angus Macdonald (amacdonald@aetherworks.com)
@@ -18,4 +23,103 @@ public interface ServerRemote extends Remote {
 	int countCallsWithSleep() throws RemoteException;
 
 	int countCallsWithSleepAndSynchronization() throws RemoteException;
+
+	/**
+	 * Count calls with an {@link java.util.concurrent.atomic.AtomicInteger}.
+	 */
+	int countCallsWithAtomicInteger() throws RemoteException;
+
+	/**
+	 * Count calls with a {@link java.util.concurrent.atomic.LongAdder}. The value returned is the adder's sum, which
+	 * may include increments from concurrent calls.
+	 */
+	int countCallsWithLongAdder() throws RemoteException;
+
+	/**
+	 * Count calls with a cache-line-padded {@link StripedCounter}. The value returned is the counter's sum, which may
+	 * include increments from concurrent calls.
+	 */
+	int countCallsWithStripedCounter() throws RemoteException;
+
+	/**
+	 * Count calls while holding a {@link java.util.concurrent.locks.ReentrantLock}.
+	 */
+	int countCallsWithReentrantLock() throws RemoteException;
+
+	/**
+	 * Count calls while holding the write lock of a {@link java.util.concurrent.locks.StampedLock}.
+	 */
+	int countCallsWithStampedLock() throws RemoteException;
+
+	/**
+	 * Count <tt>calls</tt> calls at once with an {@link java.util.concurrent.atomic.AtomicInteger}, so that many calls
+	 * cost a single round trip.
+	 * 
+	 * @return The call number of the last call in the batch. The batch's calls are numbered consecutively up to it.
+	 * @throws IllegalArgumentException
+	 *         If <tt>calls</tt> is not positive.
+	 */
+	int countCallsBatch(int calls) throws RemoteException;
+
+	/**
+	 * Count calls with an {@link java.util.concurrent.atomic.AtomicInteger}, and send the payload back, so that the call
+	 * marshals the same array in both directions.
+	 */
+	PayloadReply<byte[]> echoBytes(byte[] payload) throws RemoteException;
+
+	/**
+	 * Count calls with an {@link java.util.concurrent.atomic.AtomicInteger}, and send the tree back, so that the call
+	 * serializes the same object graph in both directions.
+	 */
+	PayloadReply<SerializableNode> echoSerializable(SerializableNode tree) throws RemoteException;
+
+	/**
+	 * As {@link #echoSerializable(SerializableNode)}, for a tree that writes itself.
+	 */
+	PayloadReply<ExternalizableNode> echoExternalizable(ExternalizableNode tree) throws RemoteException;
+
+	/**
+	 * Count calls with an {@link java.util.concurrent.atomic.AtomicInteger}, and send back a result of
+	 * <tt>kilobytes</tt> KB in one piece, so that both ends hold all of it at once.
+	 * 
+	 * @throws IllegalArgumentException
+	 *         If <tt>kilobytes</tt> is negative.
+	 */
+	PayloadReply<byte[]> fetchAll(int kilobytes) throws RemoteException;
+
+	/**
+	 * Count calls with an {@link java.util.concurrent.atomic.AtomicInteger}, and send back a cursor over the same result
+	 * {@link #fetchAll(int)} would have sent, for the client to pull in chunks of the size it chooses.
+	 * 
+	 * @throws IllegalArgumentException
+	 *         If <tt>kilobytes</tt> is negative.
+	 */
+	PayloadReply<RemoteCursor> openCursor(int kilobytes) throws RemoteException;
+
+	/**
+	 * Run a list of counting operations in a single round trip, in order, each exactly as if it had been called on its
+	 * own: each still runs its counter's {@link Workload}, and {@link Counter#SYNC} still takes the lock, once per operation.
+	 * 
+	 * @return The call number returned by each operation, in the same order.
+	 * @throws IllegalArgumentException
+	 *         If an operation needs a payload, which a batch can't carry.
+	 */
+	int[] executeBatch(List<Counter> operations) throws RemoteException;
+
+	/**
+	 * The current value of the given counter. Comparing this against the number of calls made shows how many updates
+	 * were lost.
+	 */
+	int readCounter(Counter counter) throws RemoteException;
+
+	/**
+	 * Set the work that calls to a counter's method do besides counting, in place of what they did before. The workload
+	 * of a counter is kept when the counters are reset.
+	 */
+	void setWorkload(Counter counter, Workload workload) throws RemoteException;
+
+	/**
+	 * Set every counter back to zero.
+	 */
+	void resetCounters() throws RemoteException;
 }
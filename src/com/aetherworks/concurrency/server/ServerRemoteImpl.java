@@ -1,23 +1,129 @@
 package com.aetherworks.concurrency.server;
 
+import java.nio.file.Path;
 import java.rmi.RemoteException;
+import java.rmi.server.RMIClientSocketFactory;
+import java.rmi.server.RMIServerSocketFactory;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.annotation.Nullable;
+
+import com.aetherworks.concurrency.server.payload.ExternalizableNode;
+import com.aetherworks.concurrency.server.payload.PayloadReply;
+import com.aetherworks.concurrency.server.payload.SerializableNode;
+import com.google.common.base.Preconditions;
+
+/**
+ * Counts calls in a different way for each method, to compare how each copes with concurrent callers. Given a
+ * {@link CallEventLog}, each counted call is recorded in it rather than logged, so that recording it doesn't add I/O to
+ * the critical sections being compared.
+ * <p>
+ * Each counter also runs a {@link Workload}, set with {@link #setWorkload(Counter, Workload)}, either inside its critical
+ * section or before entering it. By default the sleeping counters sleep for a second, the sleep inside the <tt>synch</tt>
+ * lock for {@link Counter#SYNC_SLEEP}, and the others do no work.
+ * <p>
+ * The cursors returned by {@link #openCursor(int)} are exported with the same socket factories as the server, so they
+ * are reached over the same kind of connection.
+ */
 public class ServerRemoteImpl implements ServerRemote {
 	private final static Logger LOGGER = Logger.getLogger(ServerRemoteImpl.class.getName());
 
+	/**
+	 * Where file workloads create their files.
+	 */
+	private static final Path SCRATCH_DIRECTORY = Path.of(System.getProperty("java.io.tmpdir"));
+
+	private static final Workload DEFAULT_SLEEP = Workload.sleep(TimeUnit.SECONDS.toMicros(1));
+
+	@Nullable
+	private final CallEventLog events;
+
+	@Nullable
+	private final RMIClientSocketFactory cursorClientSocketFactory;
+
+	@Nullable
+	private final RMIServerSocketFactory cursorServerSocketFactory;
+
+	/**
+	 * The workload of each counter, by ordinal, read on every call without locking.
+	 */
+	private final AtomicReferenceArray<Workload> workloads = new AtomicReferenceArray<>(Counter.values().length);
+
 	int countCalls = 0;
 	int countCallsWithSynch = 0;
 	int countCallsWithSleep = 0;
 	int countCallsWithSleepAndSynch = 0;
+	int countCallsWithReentrantLock = 0;
+	int countCallsWithStampedLock = 0;
+
+	final AtomicInteger countCallsWithAtomicInteger = new AtomicInteger();
+	final LongAdder countCallsWithLongAdder = new LongAdder();
+	final StripedCounter countCallsWithStripedCounter = new StripedCounter();
+	final AtomicInteger countCallsInBatches = new AtomicInteger();
+	final AtomicInteger countCallsWithBytes = new AtomicInteger();
+	final AtomicInteger countCallsWithSerializable = new AtomicInteger();
+	final AtomicInteger countCallsWithExternalizable = new AtomicInteger();
+	final AtomicInteger countCallsFetchingAll = new AtomicInteger();
+	final AtomicInteger countCallsOpeningCursors = new AtomicInteger();
 
 	Object synch = new Object();
 
+	final ReentrantLock reentrantLock = new ReentrantLock();
+	final StampedLock stampedLock = new StampedLock();
+
+	/**
+	 * A server that records no calls, whose cursors are exported with RMI's default sockets.
+	 */
+	public ServerRemoteImpl() {
+		this(null, null, null);
+	}
+
+	/**
+	 * A server whose cursors are exported with RMI's default sockets.
+	 * 
+	 * @param events
+	 *        Where to record calls, or null to record nothing.
+	 */
+	public ServerRemoteImpl(@Nullable final CallEventLog events) {
+		this(events, null, null);
+	}
+
+	/**
+	 * @param events
+	 *        Where to record calls, or null to record nothing.
+	 * @param cursorClientSocketFactory
+	 *        The client socket factory cursors are exported with, or null for RMI's default.
+	 * @param cursorServerSocketFactory
+	 *        The server socket factory cursors are exported with, or null for RMI's default.
+	 */
+	public ServerRemoteImpl(@Nullable final CallEventLog events, @Nullable final RMIClientSocketFactory cursorClientSocketFactory,
+			@Nullable final RMIServerSocketFactory cursorServerSocketFactory) {
+		this.events = events;
+		this.cursorClientSocketFactory = cursorClientSocketFactory;
+		this.cursorServerSocketFactory = cursorServerSocketFactory;
+
+		for (final Counter counter : Counter.values()) {
+			workloads.set(counter.ordinal(), Workload.none());
+		}
+		workloads.set(Counter.SLEEP.ordinal(), DEFAULT_SLEEP);
+		workloads.set(Counter.SYNC_SLEEP.ordinal(), DEFAULT_SLEEP.withInsideLock(true));
+	}
+
 	@Override
 	public int countCalls() throws RemoteException {
+		work(Counter.BASIC);
+
 		countCalls++;
-		LOGGER.log(Level.INFO, "Call number: " + countCalls);
+		record(Counter.BASIC, countCalls);
 
 		return countCalls;
 	}
@@ -27,10 +133,13 @@ public class ServerRemoteImpl implements ServerRemote {
 	 */
 	@Override
 	public int countCallsWithSynchronization() throws RemoteException {
+		work(Counter.SYNC, false);
+
 		synchronized (synch) {
+			work(Counter.SYNC, true);
 
 			countCallsWithSynch++;
-			LOGGER.log(Level.INFO, "Call number (synch): " + countCallsWithSynch);
+			record(Counter.SYNC, countCallsWithSynch);
 
 			return countCallsWithSynch;
 		}
@@ -41,14 +150,10 @@ public class ServerRemoteImpl implements ServerRemote {
 	 */
 	@Override
 	public int countCallsWithSleep() throws RemoteException {
-		try {
-			Thread.sleep(1000);
-		} catch (final InterruptedException e) {
-			e.printStackTrace();
-		}
+		work(Counter.SLEEP);
 
 		countCallsWithSleep++;
-		LOGGER.log(Level.INFO, "Call number (sleep): " + countCallsWithSleep);
+		record(Counter.SLEEP, countCallsWithSleep);
 
 		return countCallsWithSleep;
 	}
@@ -58,18 +163,372 @@ public class ServerRemoteImpl implements ServerRemote {
 	 */
 	@Override
 	public int countCallsWithSleepAndSynchronization() throws RemoteException {
+		work(Counter.SYNC_SLEEP, false);
+
+		synchronized (synch) {
+			work(Counter.SYNC_SLEEP, true);
+
+			countCallsWithSleepAndSynch++;
+			record(Counter.SYNC_SLEEP, countCallsWithSleepAndSynch);
+
+			return countCallsWithSleepAndSynch;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCallsWithAtomicInteger() throws RemoteException {
+		work(Counter.ATOMIC);
+
+		final int callNumber = countCallsWithAtomicInteger.incrementAndGet();
+		record(Counter.ATOMIC, callNumber);
+
+		return callNumber;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCallsWithLongAdder() throws RemoteException {
+		work(Counter.LONG_ADDER);
+
+		countCallsWithLongAdder.increment();
+
+		final int callNumber = countCallsWithLongAdder.intValue();
+		record(Counter.LONG_ADDER, callNumber);
+
+		return callNumber;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCallsWithStripedCounter() throws RemoteException {
+		work(Counter.STRIPED);
+
+		countCallsWithStripedCounter.increment();
+
+		final int callNumber = (int) countCallsWithStripedCounter.sum();
+		record(Counter.STRIPED, callNumber);
+
+		return callNumber;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCallsWithReentrantLock() throws RemoteException {
+		work(Counter.LOCK, false);
+
+		reentrantLock.lock();
+		try {
+			work(Counter.LOCK, true);
+
+			countCallsWithReentrantLock++;
+			record(Counter.LOCK, countCallsWithReentrantLock);
+
+			return countCallsWithReentrantLock;
+		} finally {
+			reentrantLock.unlock();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCallsWithStampedLock() throws RemoteException {
+		work(Counter.STAMPED_LOCK, false);
+
+		final long stamp = stampedLock.writeLock();
+		try {
+			work(Counter.STAMPED_LOCK, true);
+
+			countCallsWithStampedLock++;
+			record(Counter.STAMPED_LOCK, countCallsWithStampedLock);
+
+			return countCallsWithStampedLock;
+		} finally {
+			stampedLock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCallsBatch(final int calls) throws RemoteException {
+		if (calls <= 0) {
+			throw new IllegalArgumentException("A batch must contain at least one call.");
+		}
+
+		work(Counter.BATCH);
+
+		final int callNumber = countCallsInBatches.addAndGet(calls);
+		record(Counter.BATCH, callNumber, calls);
+
+		return callNumber;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public PayloadReply<byte[]> echoBytes(final byte[] payload) throws RemoteException {
+		work(Counter.BYTES);
+
+		final int callNumber = countCallsWithBytes.incrementAndGet();
+		record(Counter.BYTES, callNumber);
+
+		return new PayloadReply<>(callNumber, payload);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public PayloadReply<SerializableNode> echoSerializable(final SerializableNode tree) throws RemoteException {
+		work(Counter.SERIALIZABLE);
+
+		final int callNumber = countCallsWithSerializable.incrementAndGet();
+		record(Counter.SERIALIZABLE, callNumber);
+
+		return new PayloadReply<>(callNumber, tree);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public PayloadReply<ExternalizableNode> echoExternalizable(final ExternalizableNode tree) throws RemoteException {
+		work(Counter.EXTERNALIZABLE);
+
+		final int callNumber = countCallsWithExternalizable.incrementAndGet();
+		record(Counter.EXTERNALIZABLE, callNumber);
+
+		return new PayloadReply<>(callNumber, tree);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public PayloadReply<byte[]> fetchAll(final int kilobytes) throws RemoteException {
+		Preconditions.checkArgument(kilobytes >= 0, "The size of a result can't be negative.");
+
+		work(Counter.FETCH_ALL);
+
+		final byte[] result = new byte[kilobytes * 1024];
+		DataCursor.fill(result, 0);
+
+		final int callNumber = countCallsFetchingAll.incrementAndGet();
+		record(Counter.FETCH_ALL, callNumber);
+
+		return new PayloadReply<>(callNumber, result);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public PayloadReply<RemoteCursor> openCursor(final int kilobytes) throws RemoteException {
+		Preconditions.checkArgument(kilobytes >= 0, "The size of a result can't be negative.");
+
+		work(Counter.CURSOR);
+
+		final DataCursor cursor = new DataCursor(kilobytes * 1024L);
+		UnicastRemoteObject.exportObject(cursor, 0, cursorClientSocketFactory, cursorServerSocketFactory);
+
+		final int callNumber = countCallsOpeningCursors.incrementAndGet();
+		record(Counter.CURSOR, callNumber);
+
+		// RMI sends the cursor's stub in its place.
+		return new PayloadReply<RemoteCursor>(callNumber, cursor);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int[] executeBatch(final List<Counter> operations) throws RemoteException {
+		final int[] callNumbers = new int[operations.size()];
+
+		for (int i = 0; i < callNumbers.length; i++) {
+			callNumbers[i] = count(operations.get(i));
+		}
+
+		return callNumbers;
+	}
+
+	private int count(final Counter operation) throws RemoteException {
+		switch (operation) {
+			case BASIC:
+				return countCalls();
+			case SYNC:
+				return countCallsWithSynchronization();
+			case SLEEP:
+				return countCallsWithSleep();
+			case SYNC_SLEEP:
+				return countCallsWithSleepAndSynchronization();
+			case ATOMIC:
+				return countCallsWithAtomicInteger();
+			case LONG_ADDER:
+				return countCallsWithLongAdder();
+			case STRIPED:
+				return countCallsWithStripedCounter();
+			case LOCK:
+				return countCallsWithReentrantLock();
+			case STAMPED_LOCK:
+				return countCallsWithStampedLock();
+			case BATCH:
+				return countCallsBatch(1);
+			case BYTES:
+			case SERIALIZABLE:
+			case EXTERNALIZABLE:
+			case FETCH_ALL:
+			case CURSOR:
+				throw new IllegalArgumentException(operation + " calls carry a payload, so they can't be batched.");
+			default:
+				throw new IllegalArgumentException("Unknown counter: " + operation);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int readCounter(final Counter counter) throws RemoteException {
+		switch (counter) {
+			case BASIC:
+				return countCalls;
+			case SYNC:
+				synchronized (synch) {
+					return countCallsWithSynch;
+				}
+			case SLEEP:
+				return countCallsWithSleep;
+			case SYNC_SLEEP:
+				synchronized (synch) {
+					return countCallsWithSleepAndSynch;
+				}
+			case ATOMIC:
+				return countCallsWithAtomicInteger.get();
+			case LONG_ADDER:
+				return countCallsWithLongAdder.intValue();
+			case STRIPED:
+				return (int) countCallsWithStripedCounter.sum();
+			case LOCK:
+				reentrantLock.lock();
+				try {
+					return countCallsWithReentrantLock;
+				} finally {
+					reentrantLock.unlock();
+				}
+			case STAMPED_LOCK:
+				final long stamp = stampedLock.readLock();
+				try {
+					return countCallsWithStampedLock;
+				} finally {
+					stampedLock.unlockRead(stamp);
+				}
+			case BATCH:
+				return countCallsInBatches.get();
+			case BYTES:
+				return countCallsWithBytes.get();
+			case SERIALIZABLE:
+				return countCallsWithSerializable.get();
+			case EXTERNALIZABLE:
+				return countCallsWithExternalizable.get();
+			case FETCH_ALL:
+				return countCallsFetchingAll.get();
+			case CURSOR:
+				return countCallsOpeningCursors.get();
+			default:
+				throw new IllegalArgumentException("Unknown counter: " + counter);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setWorkload(final Counter counter, final Workload workload) throws RemoteException {
+		workloads.set(counter.ordinal(), workload);
+
+		LOGGER.log(Level.INFO, counter + " workload set to " + workload + ".");
+	}
+
+	/**
+	 * Run a counter's workload, if it belongs on this side of the counter's critical section.
+	 */
+	private void work(final Counter counter, final boolean insideLock) {
+		final Workload workload = workloads.get(counter.ordinal());
+
+		if (workload.isInsideLock() == insideLock) {
+			workload.run(SCRATCH_DIRECTORY);
+		}
+	}
+
+	/**
+	 * Run the workload of a counter with no critical section, wherever it was asked to run.
+	 */
+	private void work(final Counter counter) {
+		workloads.get(counter.ordinal()).run(SCRATCH_DIRECTORY);
+	}
+
+	private void record(final Counter counter, final int callNumber) {
+		if (events != null) {
+			events.record(counter, callNumber);
+		}
+	}
+
+	private void record(final Counter counter, final int callNumber, final int calls) {
+		if (events != null) {
+			events.record(counter, callNumber, calls);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void resetCounters() throws RemoteException {
 		synchronized (synch) {
-			try {
+			countCalls = 0;
+			countCallsWithSynch = 0;
+			countCallsWithSleep = 0;
+			countCallsWithSleepAndSynch = 0;
+		}
 
-				Thread.sleep(1000);
-			} catch (final InterruptedException e) {
-				e.printStackTrace();
-			}
+		countCallsWithAtomicInteger.set(0);
+		countCallsWithLongAdder.reset();
+		countCallsWithStripedCounter.reset();
+		countCallsInBatches.set(0);
+		countCallsWithBytes.set(0);
+		countCallsWithSerializable.set(0);
+		countCallsWithExternalizable.set(0);
+		countCallsFetchingAll.set(0);
+		countCallsOpeningCursors.set(0);
 
-			countCallsWithSleep++;
-			LOGGER.log(Level.INFO, "Call number (sleep): " + countCallsWithSleep);
+		reentrantLock.lock();
+		try {
+			countCallsWithReentrantLock = 0;
+		} finally {
+			reentrantLock.unlock();
+		}
 
-			return countCallsWithSleep;
+		final long stamp = stampedLock.writeLock();
+		try {
+			countCallsWithStampedLock = 0;
+		} finally {
+			stampedLock.unlockWrite(stamp);
 		}
+
+		LOGGER.log(Level.INFO, "Counters reset.");
 	}
 }
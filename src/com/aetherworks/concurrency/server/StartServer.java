@@ -1,23 +1,113 @@
 package com.aetherworks.concurrency.server;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
 import java.rmi.AlreadyBoundException;
-import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.remote.JMXConnectorServerFactory;
+
+import com.aetherworks.concurrency.server.metrics.MeteredServerRemote;
+import com.aetherworks.concurrency.server.metrics.ServerMetrics;
+import com.aetherworks.concurrency.server.metrics.ServerMetricsConnection;
+import com.aetherworks.concurrency.transport.InstrumentedClientSocketFactory;
+import com.aetherworks.concurrency.transport.InstrumentedServerSocketFactory;
+import com.aetherworks.concurrency.transport.NioServer;
+import com.aetherworks.concurrency.transport.SocketSettings;
+import com.aetherworks.concurrency.util.CommandLineArgs;
+
 public class StartServer {
 	private final static Logger LOGGER = Logger.getLogger(StartServer.class.getName());
 
-	public static void main(final String[] args) throws RemoteException, InterruptedException, AlreadyBoundException {
-		final ServerRemoteImpl server = new ServerRemoteImpl();
+	/**
+	 * The port of the {@link NioServer}, which serves the same object as the RMI registry, over a different transport.
+	 */
+	private static final int NIO_SERVER_PORT = 1100;
+
+	/**
+	 * The options for the sockets that carry RMI calls to the server, in both directions. The registry itself uses RMI's
+	 * default sockets.
+	 */
+	private static final SocketSettings SOCKET_SETTINGS = SocketSettings.defaults().withTcpNoDelay(true);
+
+	/**
+	 * The port of the RMI registry, which also serves the JMX connector for the server's metrics.
+	 */
+	private static final int REGISTRY_PORT = 1099;
+
+	/**
+	 * Events held before the flusher must catch up. At 25 bytes per event this is about 25MB of buffer.
+	 */
+	private static final int EVENT_BUFFER_CAPACITY = 1 << 20;
+
+	/**
+	 * The most the call event log grows to when no limit is given, in MB.
+	 */
+	private static final int DEFAULT_EVENT_FILE_MEGABYTES = 256;
+
+	/**
+	 * Accepts the optional arguments: <tt>-e</tt> the file to record call events to, if any, <tt>-s</tt> to record only
+	 * one call in that many, <tt>-m</tt> the most MB of events to record, and <tt>-b</tt> to measure how long the threads
+	 * dispatching calls spend blocked, at some cost to every contended lock.
+	 */
+	public static void main(final String[] args) throws IOException, InterruptedException, AlreadyBoundException, JMException {
+		final CommandLineArgs parsedArgs = CommandLineArgs.parseArgs(args);
+
+		final CallEventLog events = parsedArgs.get('e') == null ? null : openEventLog(parsedArgs);
+
+		final ServerMetrics metrics = new ServerMetrics(parsedArgs.get('b') != null);
+		final InstrumentedClientSocketFactory clientSocketFactory = new InstrumentedClientSocketFactory(SOCKET_SETTINGS);
+		final InstrumentedServerSocketFactory serverSocketFactory = new InstrumentedServerSocketFactory(SOCKET_SETTINGS);
 
-		final ServerRemote exportedServer = (ServerRemote) UnicastRemoteObject.exportObject(server, 0);
+		final ServerRemote server = new MeteredServerRemote(new ServerRemoteImpl(events, clientSocketFactory, serverSocketFactory), metrics);
 
-		final Registry registry = LocateRegistry.createRegistry(1099);
+		final ServerRemote exportedServer = (ServerRemote) UnicastRemoteObject.exportObject(server, 0, clientSocketFactory,
+				serverSocketFactory);
+
+		final Registry registry = LocateRegistry.createRegistry(REGISTRY_PORT);
 		registry.bind("server-remote", exportedServer);
-		LOGGER.log(Level.INFO, "Server exported.");
+		LOGGER.log(Level.INFO, "Server exported with sockets: " + SOCKET_SETTINGS + ".");
+
+		// The connector binds itself in the registry just created, so clients need no port beyond the registry's.
+		final MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+		mbeanServer.registerMBean(metrics, ServerMetrics.OBJECT_NAME);
+		JMXConnectorServerFactory.newJMXConnectorServer(ServerMetricsConnection.getServiceUrl("localhost", REGISTRY_PORT), null,
+				mbeanServer).start();
+		LOGGER.log(Level.INFO, "Server metrics available over JMX at " + ServerMetricsConnection.getServiceUrl(null, REGISTRY_PORT) + ".");
+
+		new NioServer(server, NIO_SERVER_PORT).start();
+	}
+
+	private static CallEventLog openEventLog(final CommandLineArgs parsedArgs) throws IOException {
+		final Path eventFile = Path.of(parsedArgs.getNotNull('e'));
+		final int sampleEvery = parsedArgs.get('s') == null ? 1 : Integer.parseInt(parsedArgs.get('s'));
+		final long megabytes = parsedArgs.get('m') == null ? DEFAULT_EVENT_FILE_MEGABYTES : Long.parseLong(parsedArgs.get('m'));
+
+		final long maxEvents = megabytes * 1024 * 1024 / CallEventLog.EVENT_BYTES;
+
+		final CallEventLog events = new CallEventLog(eventFile, EVENT_BUFFER_CAPACITY, maxEvents, sampleEvery);
+		LOGGER.log(Level.INFO, "Recording one call in " + sampleEvery + ", up to " + megabytes + "MB, to "
+				+ eventFile.toAbsolutePath() + ".");
+
+		// The server runs until it is killed, so write out the buffered events on the way down.
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				try {
+					events.close();
+				} catch (final IOException e) {
+					LOGGER.log(Level.WARNING, "Failed to close the call event log.", e);
+				}
+			}
+		});
+
+		return events;
 	}
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.server;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter split into several independently updated cells, so that threads incrementing at the same time usually
+ * update different cells. Each cell is padded onto its own pair of cache lines, so that updates to neighbouring cells
+ * don't invalidate each other (false sharing).
+ * <p>
+ * Threads are mapped to cells by thread ID. Unlike {@link java.util.concurrent.atomic.LongAdder}, the number of cells is
+ * fixed and there is no retry on contention, which makes the cost of the striping itself easy to see.
+ */
+public class StripedCounter {
+
+	/**
+	 * Distance between cells, in longs: 128 bytes, which covers adjacent-line prefetching as well as a single 64 byte
+	 * cache line.
+	 */
+	private static final int CELL_STRIDE = 16;
+
+	private final AtomicLongArray cells;
+
+	private final int mask;
+
+	/**
+	 * Create a counter with two cells per available processor, rounded up to a power of two, so that threads running at
+	 * the same time rarely share a cell.
+	 */
+	public StripedCounter() {
+		this(Runtime.getRuntime().availableProcessors() * 2);
+	}
+
+	public StripedCounter(final int minimumNumberOfCells) {
+		final int numberOfCells = Integer.highestOneBit(Math.max(minimumNumberOfCells - 1, 1)) << 1;
+
+		cells = new AtomicLongArray(numberOfCells * CELL_STRIDE);
+		mask = numberOfCells - 1;
+	}
+
+	/**
+	 * Add one to the calling thread's cell.
+	 */
+	public void increment() {
+		cells.incrementAndGet(getCellIndex());
+	}
+
+	/**
+	 * The total of every cell. Increments made while this is running may or may not be included.
+	 */
+	public long sum() {
+		long sum = 0;
+
+		for (int i = 0; i < cells.length(); i += CELL_STRIDE) {
+			sum += cells.get(i);
+		}
+
+		return sum;
+	}
+
+	/**
+	 * Set every cell to zero. Increments made while this is running may or may not be kept.
+	 */
+	public void reset() {
+		for (int i = 0; i < cells.length(); i += CELL_STRIDE) {
+			cells.set(i, 0);
+		}
+	}
+
+	private int getCellIndex() {
+		// Spread sequential thread IDs across the cells.
+		final int hash = (int) Thread.currentThread().threadId() * 0x9E3779B9;
+
+		return ((hash >>> 16) & mask) * CELL_STRIDE;
+	}
+}
@@ -0,0 +1,343 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.server;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The work a counting call does on the server besides counting, standing in for the service time of a real call: sleeping
+ * for a fixed or random time, spinning on the CPU, allocating memory, or reading and writing a local file.
+ * <p>
+ * A workload runs either inside the counter's critical section, such as the <tt>synch</tt> lock, so that it holds up
+ * every other caller of the same counter, or outside it, so that only the caller waits. Counters with no critical section
+ * run it in the same place either way.
+ * <p>
+ * Workloads are written as <tt>kind[:amount[:sigma]]</tt>, as read by {@link #parse(String)}, where the amount is in
+ * microseconds for the timed kinds and bytes for the others:
+ * 
+ * <pre>
+ * none
+ * sleep:1000000         # sleep for exactly one second
+ * exponential:2000      # sleep for an exponentially distributed time with a mean of 2 ms
+ * lognormal:2000:0.5    # sleep for a lognormally distributed time with a median of 2 ms and a shape of 0.5
+ * spin:50               # spin on the CPU for 50 microseconds
+ * allocate:65536        # allocate and touch 64KB
+ * file:4096             # write 4KB to a new local file, force it to disk, read it back and delete it
+ * </pre>
+ */
+public final class Workload implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	public enum Kind {
+		NONE, SLEEP, EXPONENTIAL, LOGNORMAL, SPIN, ALLOCATE, FILE
+	}
+
+	/**
+	 * Allocations are touched once per page, so that the memory is really used rather than just reserved.
+	 */
+	private static final int PAGE_SIZE = 4096;
+
+	private static final Workload NONE = new Workload(Kind.NONE, 0, 0, false);
+
+	/**
+	 * Holds the last allocation, so the allocation can't be optimized away.
+	 */
+	@SuppressWarnings("unused")
+	private static volatile byte[] allocationSink;
+
+	private final Kind kind;
+
+	private final long amount;
+
+	private final double sigma;
+
+	private final boolean insideLock;
+
+	private Workload(final Kind kind, final long amount, final double sigma, final boolean insideLock) {
+		checkValid(kind, amount, sigma);
+
+		this.kind = kind;
+		this.amount = amount;
+		this.sigma = sigma;
+		this.insideLock = insideLock;
+	}
+
+	/**
+	 * Check the fields of a workload, however it was made, since a server runs whatever workload it is sent.
+	 * 
+	 * @throws IllegalArgumentException
+	 *         If any is out of range.
+	 */
+	private static void checkValid(final Kind kind, final long amount, final double sigma) {
+		Preconditions.checkArgument(kind != null, "A workload must have a kind.");
+		Preconditions.checkArgument(amount >= 0, "A workload's amount can't be negative.");
+		Preconditions.checkArgument(sigma >= 0 && !Double.isInfinite(sigma), "A workload's sigma must be finite and can't be "
+				+ "negative.");
+		Preconditions.checkArgument(kind != Kind.ALLOCATE || amount <= Integer.MAX_VALUE, "Can't allocate more than 2GB at once.");
+		Preconditions.checkArgument(kind != Kind.FILE || amount <= Integer.MAX_VALUE, "Can't write more than 2GB at once.");
+	}
+
+	/**
+	 * Reject a workload sent with fields that the factory methods would have refused.
+	 */
+	private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+
+		try {
+			checkValid(kind, amount, sigma);
+		} catch (final IllegalArgumentException e) {
+			final InvalidObjectException invalid = new InvalidObjectException(e.getMessage());
+			invalid.initCause(e);
+			throw invalid;
+		}
+	}
+
+	/**
+	 * A workload of any kind, outside the lock.
+	 * 
+	 * @param sigma
+	 *        The shape of a lognormal sleep, ignored by other kinds.
+	 */
+	public static Workload of(final Kind kind, final long amount, final double sigma) {
+		return new Workload(kind, amount, kind == Kind.LOGNORMAL ? sigma : 0, false);
+	}
+
+	/**
+	 * No work at all.
+	 */
+	public static Workload none() {
+		return NONE;
+	}
+
+	public static Workload sleep(final long micros) {
+		return new Workload(Kind.SLEEP, micros, 0, false);
+	}
+
+	public static Workload exponentialSleep(final long meanMicros) {
+		return new Workload(Kind.EXPONENTIAL, meanMicros, 0, false);
+	}
+
+	/**
+	 * Sleep for <tt>medianMicros * exp(sigma * Z)</tt>, where <tt>Z</tt> is a standard normal variable, giving the long
+	 * right tail typical of real service times.
+	 */
+	public static Workload lognormalSleep(final long medianMicros, final double sigma) {
+		return new Workload(Kind.LOGNORMAL, medianMicros, sigma, false);
+	}
+
+	public static Workload spin(final long micros) {
+		return new Workload(Kind.SPIN, micros, 0, false);
+	}
+
+	public static Workload allocate(final long bytes) {
+		return new Workload(Kind.ALLOCATE, bytes, 0, false);
+	}
+
+	public static Workload fileIo(final long bytes) {
+		return new Workload(Kind.FILE, bytes, 0, false);
+	}
+
+	/**
+	 * This workload, run inside the counter's critical section if <tt>insideLock</tt> is true, or outside it otherwise.
+	 */
+	public Workload withInsideLock(final boolean insideLock) {
+		return new Workload(kind, amount, sigma, insideLock);
+	}
+
+	/**
+	 * Read a workload written as <tt>kind[:amount[:sigma]]</tt>, where the kind is a {@link Kind} name in any case. The
+	 * workload runs outside the lock.
+	 * 
+	 * @throws IllegalArgumentException
+	 *         If it can't be parsed.
+	 */
+	public static Workload parse(final String value) {
+		final String[] parts = value.trim().split(":");
+
+		final Kind kind;
+		try {
+			kind = Kind.valueOf(parts[0].trim().toUpperCase(Locale.ROOT));
+		} catch (final IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown workload: '" + value + "'.", e);
+		}
+
+		final int expectedParts = kind == Kind.NONE ? 1 : kind == Kind.LOGNORMAL ? 3 : 2;
+		Preconditions.checkArgument(parts.length == expectedParts, "Expected " + (expectedParts - 1) + " arguments for a " + kind
+				+ " workload: '" + value + "'.");
+
+		try {
+			switch (kind) {
+				case NONE:
+					return none();
+				case SLEEP:
+					return sleep(Long.parseLong(parts[1].trim()));
+				case EXPONENTIAL:
+					return exponentialSleep(Long.parseLong(parts[1].trim()));
+				case LOGNORMAL:
+					return lognormalSleep(Long.parseLong(parts[1].trim()), Double.parseDouble(parts[2].trim()));
+				case SPIN:
+					return spin(Long.parseLong(parts[1].trim()));
+				case ALLOCATE:
+					return allocate(Long.parseLong(parts[1].trim()));
+				case FILE:
+					return fileIo(Long.parseLong(parts[1].trim()));
+				default:
+					throw new IllegalArgumentException("Unknown workload: '" + value + "'.");
+			}
+		} catch (final NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid workload: '" + value + "'.", e);
+		}
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Microseconds for the sleeping and spinning kinds, or bytes for the allocating and file kinds.
+	 */
+	public long getAmount() {
+		return amount;
+	}
+
+	/**
+	 * The shape of a lognormal sleep, or zero for other kinds.
+	 */
+	public double getSigma() {
+		return sigma;
+	}
+
+	public boolean isInsideLock() {
+		return insideLock;
+	}
+
+	/**
+	 * Do the work on the calling thread.
+	 * 
+	 * @param scratchDirectory
+	 *        Where file workloads create their files.
+	 * @throws UncheckedIOException
+	 *         If a file workload fails.
+	 */
+	public void run(final Path scratchDirectory) {
+		switch (kind) {
+			case NONE:
+				break;
+			case SLEEP:
+				sleepMicros(amount);
+				break;
+			case EXPONENTIAL:
+				sleepMicros((long) (-amount * Math.log(1 - ThreadLocalRandom.current().nextDouble())));
+				break;
+			case LOGNORMAL:
+				sleepMicros((long) (amount * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian())));
+				break;
+			case SPIN:
+				spinMicros(amount);
+				break;
+			case ALLOCATE:
+				allocateBytes((int) amount);
+				break;
+			case FILE:
+				writeAndReadFile(scratchDirectory, (int) amount);
+				break;
+			default:
+				throw new IllegalStateException("Unknown workload: " + kind);
+		}
+	}
+
+	private static void sleepMicros(final long micros) {
+		try {
+			TimeUnit.MICROSECONDS.sleep(micros);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void spinMicros(final long micros) {
+		final long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(micros);
+
+		while (System.nanoTime() - deadline < 0) {
+			Thread.onSpinWait();
+		}
+	}
+
+	private static void allocateBytes(final int bytes) {
+		final byte[] allocation = new byte[bytes];
+
+		for (int i = 0; i < bytes; i += PAGE_SIZE) {
+			allocation[i] = 1;
+		}
+
+		allocationSink = allocation;
+	}
+
+	private static void writeAndReadFile(final Path scratchDirectory, final int bytes) {
+		try {
+			final Path file = Files.createTempFile(scratchDirectory, "workload", ".bin");
+
+			try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				final ByteBuffer buffer = ByteBuffer.allocate(bytes);
+				ThreadLocalRandom.current().nextBytes(buffer.array());
+
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				channel.force(false);
+
+				buffer.clear();
+				while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) >= 0) {
+					// Read until the buffer is full.
+				}
+			} finally {
+				Files.deleteIfExists(file);
+			}
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (!(obj instanceof Workload)) {
+			return false;
+		}
+
+		final Workload other = (Workload) obj;
+
+		return kind == other.kind && amount == other.amount && Double.compare(sigma, other.sigma) == 0 && insideLock == other.insideLock;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(kind, amount, sigma, insideLock);
+	}
+
+	/**
+	 * The workload as {@link #parse(String)} reads it, followed by where it runs.
+	 */
+	@Override
+	public String toString() {
+		final String spec = kind == Kind.NONE ? "none" : kind.name().toLowerCase(Locale.ROOT) + ":" + amount + (kind == Kind.LOGNORMAL ? ":"
+				+ sigma : "");
+
+		return spec + (insideLock ? " (inside lock)" : " (outside lock)");
+	}
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.server.metrics;
+
+import java.rmi.RemoteException;
+import java.util.List;
+
+import com.aetherworks.concurrency.server.Counter;
+import com.aetherworks.concurrency.server.RemoteCursor;
+import com.aetherworks.concurrency.server.ServerRemote;
+import com.aetherworks.concurrency.server.Workload;
+import com.aetherworks.concurrency.server.payload.ExternalizableNode;
+import com.aetherworks.concurrency.server.payload.PayloadReply;
+import com.aetherworks.concurrency.server.payload.SerializableNode;
+
+/**
+ * Records every call made to a {@link ServerRemote} in {@link ServerMetrics}. Export this in place of the server
+ * itself, and serve it over the other transports, so that every call is measured the same way however it arrives.
+ * <p>
+ * The service time of a call covers only the server's own method, not the time spent reading the request or writing the
+ * response. Nothing else is measured on the call's own path; monitor blocking is sampled by {@link ServerMetrics} only when
+ * its figures are read.
+ */
+public class MeteredServerRemote implements ServerRemote {
+
+	private final ServerRemote server;
+
+	private final ServerMetrics metrics;
+
+	public MeteredServerRemote(final ServerRemote server, final ServerMetrics metrics) {
+		this.server = server;
+		this.metrics = metrics;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCalls() throws RemoteException {
+		final long start = System.nanoTime();
+		try {
+			return server.countCalls();
+		} finally {
+			metrics.record("countCalls", start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCallsWithSynchronization() throws RemoteException {
+		final long start = System.nanoTime();
+		try {
+			return server.countCallsWithSynchronization();
+		} finally {
+			metrics.record("countCallsWithSynchronization", start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCallsWithSleep() throws RemoteException {
+		final long start = System.nanoTime();
+		try {
+			return server.countCallsWithSleep();
+		} finally {
+			metrics.record("countCallsWithSleep", start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCallsWithSleepAndSynchronization() throws RemoteException {
+		final long start = System.nanoTime();
+		try {
+			return server.countCallsWithSleepAndSynchronization();
+		} finally {
+			metrics.record("countCallsWithSleepAndSynchronization", start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCallsWithAtomicInteger() throws RemoteException {
+		final long start = System.nanoTime();
+		try {
+			return server.countCallsWithAtomicInteger();
+		} finally {
+			metrics.record("countCallsWithAtomicInteger", start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCallsWithLongAdder() throws RemoteException {
+		final long start = System.nanoTime();
+		try {
+			return server.countCallsWithLongAdder();
+		} finally {
+			metrics.record("countCallsWithLongAdder", start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCallsWithStripedCounter() throws RemoteException {
+		final long start = System.nanoTime();
+		try {
+			return server.countCallsWithStripedCounter();
+		} finally {
+			metrics.record("countCallsWithStripedCounter", start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCallsWithReentrantLock() throws RemoteException {
+		final long start = System.nanoTime();
+		try {
+			return server.countCallsWithReentrantLock();
+		} finally {
+			metrics.record("countCallsWithReentrantLock", start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCallsWithStampedLock() throws RemoteException {
+		final long start = System.nanoTime();
+		try {
+			return server.countCallsWithStampedLock();
+		} finally {
+			metrics.record("countCallsWithStampedLock", start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCallsBatch(final int calls) throws RemoteException {
+		final long start = System.nanoTime();
+		try {
+			return server.countCallsBatch(calls);
+		} finally {
+			metrics.record("countCallsBatch", start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public PayloadReply<byte[]> echoBytes(final byte[] payload) throws RemoteException {
+		final long start = System.nanoTime();
+		try {
+			return server.echoBytes(payload);
+		} finally {
+			metrics.record("echoBytes", start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public PayloadReply<SerializableNode> echoSerializable(final SerializableNode tree) throws RemoteException {
+		final long start = System.nanoTime();
+		try {
+			return server.echoSerializable(tree);
+		} finally {
+			metrics.record("echoSerializable", start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public PayloadReply<ExternalizableNode> echoExternalizable(final ExternalizableNode tree) throws RemoteException {
+		final long start = System.nanoTime();
+		try {
+			return server.echoExternalizable(tree);
+		} finally {
+			metrics.record("echoExternalizable", start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public PayloadReply<byte[]> fetchAll(final int kilobytes) throws RemoteException {
+		final long start = System.nanoTime();
+		try {
+			return server.fetchAll(kilobytes);
+		} finally {
+			metrics.record("fetchAll", start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Only opening the cursor is recorded. The calls that pull its chunks go straight to the cursor.
+	 */
+	@Override
+	public PayloadReply<RemoteCursor> openCursor(final int kilobytes) throws RemoteException {
+		final long start = System.nanoTime();
+		try {
+			return server.openCursor(kilobytes);
+		} finally {
+			metrics.record("openCursor", start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * A batch is recorded as a single call, since it is a single call over the network.
+	 */
+	@Override
+	public int[] executeBatch(final List<Counter> operations) throws RemoteException {
+		final long start = System.nanoTime();
+		try {
+			return server.executeBatch(operations);
+		} finally {
+			metrics.record("executeBatch", start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int readCounter(final Counter counter) throws RemoteException {
+		final long start = System.nanoTime();
+		try {
+			return server.readCounter(counter);
+		} finally {
+			metrics.record("readCounter", start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setWorkload(final Counter counter, final Workload workload) throws RemoteException {
+		final long start = System.nanoTime();
+		try {
+			server.setWorkload(counter, workload);
+		} finally {
+			metrics.record("setWorkload", start);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void resetCounters() throws RemoteException {
+		final long start = System.nanoTime();
+		try {
+			server.resetCounters();
+		} finally {
+			metrics.record("resetCounters", start);
+		}
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.server.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * The calls made to one {@link com.aetherworks.concurrency.server.ServerRemote} method and how long the server spent
+ * running them, excluding the time RMI spent reading the request and writing the response.
+ * <p>
+ * The call count and total service time only ever grow, so two snapshots can be subtracted to find the cost of the calls
+ * made between them. The percentiles and maximum cover every call since the metrics were last reset.
+ */
+public class MethodMetrics {
+
+	private final String name;
+	private final long calls;
+	private final long totalServiceNanos;
+	private final long p50ServiceNanos;
+	private final long p99ServiceNanos;
+	private final long maxServiceNanos;
+
+	@ConstructorProperties({ "name", "calls", "totalServiceNanos", "p50ServiceNanos", "p99ServiceNanos", "maxServiceNanos" })
+	public MethodMetrics(final String name, final long calls, final long totalServiceNanos, final long p50ServiceNanos,
+			final long p99ServiceNanos, final long maxServiceNanos) {
+		this.name = name;
+		this.calls = calls;
+		this.totalServiceNanos = totalServiceNanos;
+		this.p50ServiceNanos = p50ServiceNanos;
+		this.p99ServiceNanos = p99ServiceNanos;
+		this.maxServiceNanos = maxServiceNanos;
+	}
+
+	/**
+	 * The method's name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	public long getCalls() {
+		return calls;
+	}
+
+	public long getTotalServiceNanos() {
+		return totalServiceNanos;
+	}
+
+	public long getP50ServiceNanos() {
+		return p50ServiceNanos;
+	}
+
+	public long getP99ServiceNanos() {
+		return p99ServiceNanos;
+	}
+
+	public long getMaxServiceNanos() {
+		return maxServiceNanos;
+	}
+
+	/**
+	 * The mean service time, in nanoseconds, or zero if there have been no calls.
+	 */
+	public double getMeanServiceNanos() {
+		return calls == 0 ? 0 : totalServiceNanos / (double) calls;
+	}
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.server.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import com.aetherworks.concurrency.stats.LatencyHistogram;
+
+/**
+ * Server-side measurements of the calls made to the server: how many calls each method has had and how long they took
+ * to run, how often the threads dispatching calls blocked on a monitor, and how many of those threads there are.
+ * <p>
+ * Service times are recorded into a small, fixed set of histograms per method, chosen by thread, so that recording a
+ * call never makes otherwise lock-free methods contend with each other. Nothing else is done on a call's path.
+ * <p>
+ * Blocking is sampled out of band instead: whenever the figures are read, such as immediately before and after an
+ * iteration of a sweep, each dispatching thread's blocked count and time so far are read from the JVM, and what each
+ * has added since the last sample is added to the totals. The figures cover every monitor those threads block on, not
+ * only the <tt>synch</tt> lock, and lose whatever a thread blocked between its last sample and its exit. Blocked time
+ * needs the JVM's thread contention monitoring, which adds to the cost of every contended monitor, so it is only
+ * switched on if asked for.
+ */
+public class ServerMetrics implements ServerMetricsMXBean {
+	private final static Logger LOGGER = Logger.getLogger(ServerMetrics.class.getName());
+
+	/**
+	 * The name the metrics are registered under in the platform MBean server.
+	 */
+	public static final ObjectName OBJECT_NAME;
+
+	static {
+		try {
+			OBJECT_NAME = new ObjectName("com.aetherworks.concurrency:type=ServerMetrics");
+		} catch (final MalformedObjectNameException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**
+	 * The name prefix of the threads RMI creates to read calls from each connection and dispatch them.
+	 */
+	private static final String RMI_DISPATCH_THREAD_PREFIX = "RMI TCP Connection(";
+
+	private static final String NIO_WORKER_THREAD_PREFIX = "nio-server-worker-";
+
+	/**
+	 * The longest service time recorded at full precision. Longer calls are still counted.
+	 */
+	private static final long HIGHEST_SERVICE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+	/**
+	 * Two significant digits keep each histogram to a few tens of kilobytes.
+	 */
+	private static final int SIGNIFICANT_DIGITS = 2;
+
+	private static final int STRIPES = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	/**
+	 * Sorted by name, so methods are always listed in the same order.
+	 */
+	private final ConcurrentMap<String, MethodRecorder> methods = new ConcurrentSkipListMap<>();
+
+	/**
+	 * Each dispatching thread's blocked count and time at the last sample, by thread id. Guards the totals too.
+	 */
+	private final Map<Long, long[]> lastBlocking = new HashMap<>();
+
+	private long dispatchBlockedCount = 0;
+
+	private long dispatchBlockedTimeMillis = 0;
+
+	private final boolean blockedTimeMeasured;
+
+	/**
+	 * Measure how often dispatching threads block, but not for how long.
+	 */
+	public ServerMetrics() {
+		this(false);
+	}
+
+	/**
+	 * @param measureBlockedTime
+	 *        Switch on the JVM's thread contention monitoring, if it supports it, to measure how long dispatching threads
+	 *        block as well as how often.
+	 */
+	public ServerMetrics(final boolean measureBlockedTime) {
+		if (measureBlockedTime) {
+			if (threads.isThreadContentionMonitoringSupported()) {
+				threads.setThreadContentionMonitoringEnabled(true);
+			} else {
+				LOGGER.log(Level.WARNING, "This JVM can't measure the time threads spend blocked; only blocked counts will be reported.");
+			}
+		}
+
+		blockedTimeMeasured = measureBlockedTime && threads.isThreadContentionMonitoringEnabled();
+	}
+
+	/**
+	 * Record a call to a method.
+	 * 
+	 * @param startNanos
+	 *        The value of {@link System#nanoTime()} when the method started running.
+	 */
+	public void record(final String method, final long startNanos) {
+		final long serviceNanos = System.nanoTime() - startNanos;
+
+		MethodRecorder recorder = methods.get(method);
+		if (recorder == null) {
+			final MethodRecorder created = new MethodRecorder(method);
+			recorder = methods.putIfAbsent(method, created);
+
+			if (recorder == null) {
+				recorder = created;
+			}
+		}
+
+		recorder.record(serviceNanos);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ServerMetricsSnapshot getSnapshot() {
+		final ThreadInfo[] allThreads = getAllThreads();
+
+		synchronized (lastBlocking) {
+			sampleBlocking(allThreads);
+
+			return new ServerMetricsSnapshot(getMethods(), dispatchBlockedCount, blockedTimeMeasured ? dispatchBlockedTimeMillis : -1,
+					countLiveThreads(allThreads, RMI_DISPATCH_THREAD_PREFIX), countLiveThreads(allThreads, NIO_WORKER_THREAD_PREFIX));
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<MethodMetrics> getMethods() {
+		final List<MethodMetrics> metrics = new ArrayList<>();
+
+		for (final MethodRecorder recorder : methods.values()) {
+			metrics.add(recorder.getMetrics());
+		}
+
+		return metrics;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getDispatchBlockedCount() {
+		synchronized (lastBlocking) {
+			sampleBlocking(getAllThreads());
+
+			return dispatchBlockedCount;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getDispatchBlockedTimeMillis() {
+		synchronized (lastBlocking) {
+			sampleBlocking(getAllThreads());
+
+			return blockedTimeMeasured ? dispatchBlockedTimeMillis : -1;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getRmiDispatchThreads() {
+		return countLiveThreads(getAllThreads(), RMI_DISPATCH_THREAD_PREFIX);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getNioWorkerThreads() {
+		return countLiveThreads(getAllThreads(), NIO_WORKER_THREAD_PREFIX);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void reset() {
+		for (final MethodRecorder recorder : methods.values()) {
+			recorder.reset();
+		}
+
+		synchronized (lastBlocking) {
+			// Sample first, so only blocking after the reset is counted.
+			sampleBlocking(getAllThreads());
+
+			dispatchBlockedCount = 0;
+			dispatchBlockedTimeMillis = 0;
+		}
+
+		LOGGER.log(Level.INFO, "Server metrics reset.");
+	}
+
+	private ThreadInfo[] getAllThreads() {
+		return threads.getThreadInfo(threads.getAllThreadIds(), 0);
+	}
+
+	/**
+	 * Add what each dispatching thread has blocked since the last sample, or since it started if it is new, to the
+	 * totals. Must hold the lock on {@link #lastBlocking}.
+	 */
+	private void sampleBlocking(final ThreadInfo[] allThreads) {
+		final Map<Long, long[]> blocking = new HashMap<>();
+
+		for (final ThreadInfo thread : allThreads) {
+			if (thread == null || !isDispatchThread(thread)) {
+				continue;
+			}
+
+			final long[] last = lastBlocking.get(thread.getThreadId());
+			final long[] current = { thread.getBlockedCount(), blockedTimeMeasured ? thread.getBlockedTime() : 0 };
+
+			dispatchBlockedCount += current[0] - (last == null ? 0 : last[0]);
+			dispatchBlockedTimeMillis += current[1] - (last == null ? 0 : last[1]);
+
+			blocking.put(thread.getThreadId(), current);
+		}
+
+		// Forget threads that have exited.
+		lastBlocking.clear();
+		lastBlocking.putAll(blocking);
+	}
+
+	private static boolean isDispatchThread(final ThreadInfo thread) {
+		return thread.getThreadName().startsWith(RMI_DISPATCH_THREAD_PREFIX) || thread.getThreadName().startsWith(NIO_WORKER_THREAD_PREFIX);
+	}
+
+	private static int countLiveThreads(final ThreadInfo[] allThreads, final String namePrefix) {
+		int count = 0;
+
+		for (final ThreadInfo thread : allThreads) {
+			if (thread != null && thread.getThreadName().startsWith(namePrefix)) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * The calls to one method. The histograms are striped by thread, and each is locked only while it is recorded into
+	 * or read, so two threads contend only if their ids fall in the same stripe.
+	 */
+	private static class MethodRecorder {
+		private final String name;
+
+		private final LongAdder calls = new LongAdder();
+
+		private final LongAdder totalServiceNanos = new LongAdder();
+
+		private final LatencyHistogram[] stripes = new LatencyHistogram[STRIPES];
+
+		MethodRecorder(final String name) {
+			this.name = name;
+
+			for (int i = 0; i < stripes.length; i++) {
+				stripes[i] = new LatencyHistogram(HIGHEST_SERVICE_NANOS, SIGNIFICANT_DIGITS);
+			}
+		}
+
+		void record(final long serviceNanos) {
+			final LatencyHistogram stripe = stripes[(int) Thread.currentThread().threadId() & (STRIPES - 1)];
+
+			synchronized (stripe) {
+				stripe.recordValue(serviceNanos);
+			}
+
+			calls.increment();
+			totalServiceNanos.add(serviceNanos);
+		}
+
+		MethodMetrics getMetrics() {
+			final LatencyHistogram merged = new LatencyHistogram(HIGHEST_SERVICE_NANOS, SIGNIFICANT_DIGITS);
+
+			for (final LatencyHistogram stripe : stripes) {
+				synchronized (stripe) {
+					merged.add(stripe);
+				}
+			}
+
+			return new MethodMetrics(name, calls.sum(), totalServiceNanos.sum(), merged.getValueAtPercentile(50), merged
+					.getValueAtPercentile(99), merged.getMaxValue());
+		}
+
+		void reset() {
+			for (final LatencyHistogram stripe : stripes) {
+				synchronized (stripe) {
+					stripe.reset();
+				}
+			}
+
+			calls.reset();
+			totalServiceNanos.reset();
+		}
+	}
+}
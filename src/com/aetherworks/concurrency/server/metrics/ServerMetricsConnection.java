@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.server.metrics;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.MalformedURLException;
+
+import javax.annotation.Nullable;
+import javax.management.JMX;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+
+import com.aetherworks.concurrency.stats.HeapPeak;
+
+/**
+ * A client's connection to the {@link ServerMetrics} of a running server, through the JMX connector that
+ * {@link com.aetherworks.concurrency.server.StartServer} binds in its RMI registry.
+ */
+public class ServerMetricsConnection implements Closeable {
+
+	/**
+	 * The name the JMX connector is bound to in the server's RMI registry, the same name the JVM's own management agent
+	 * uses.
+	 */
+	public static final String JMX_BINDING = "jmxrmi";
+
+	private final JMXConnector connector;
+
+	private final ServerMetricsMXBean metrics;
+
+	private ServerMetricsConnection(final JMXConnector connector) throws IOException {
+		this.connector = connector;
+		metrics = JMX.newMXBeanProxy(connector.getMBeanServerConnection(), ServerMetrics.OBJECT_NAME, ServerMetricsMXBean.class);
+	}
+
+	/**
+	 * Connect to the metrics of the server whose RMI registry is at <tt>host</tt> and <tt>registryPort</tt>.
+	 * 
+	 * @param host
+	 *        The server's host, or null for the local host.
+	 * @throws IOException
+	 *         If the server can't be reached, or doesn't serve JMX through its registry.
+	 */
+	public static ServerMetricsConnection connect(@Nullable final String host, final int registryPort) throws IOException {
+		return new ServerMetricsConnection(JMXConnectorFactory.connect(getServiceUrl(host, registryPort)));
+	}
+
+	/**
+	 * The address of the JMX connector bound in the RMI registry at <tt>host</tt> and <tt>registryPort</tt>.
+	 */
+	public static JMXServiceURL getServiceUrl(@Nullable final String host, final int registryPort) throws MalformedURLException {
+		return new JMXServiceURL("service:jmx:rmi:///jndi/rmi://" + (host == null ? "localhost" : host) + ":" + registryPort + "/"
+				+ JMX_BINDING);
+	}
+
+	public ServerMetricsSnapshot getSnapshot() {
+		return metrics.getSnapshot();
+	}
+
+	public ServerMetricsMXBean getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * The peak heap usage of the server's JVM.
+	 */
+	public HeapPeak getHeapPeak() throws IOException {
+		return HeapPeak.remote(connector.getMBeanServerConnection());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() throws IOException {
+		connector.close();
+	}
+}
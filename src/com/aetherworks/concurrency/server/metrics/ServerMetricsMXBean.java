@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.server.metrics;
+
+import java.util.List;
+
+/**
+ * The management interface of {@link ServerMetrics}, registered by
+ * {@link com.aetherworks.concurrency.server.StartServer} under {@link ServerMetrics#OBJECT_NAME}. Being an MXBean, it
+ * can be read by any JMX client, such as JConsole, as well as through {@link ServerMetricsConnection}.
+ */
+public interface ServerMetricsMXBean {
+
+	/**
+	 * Every figure at once, read as close together as possible.
+	 */
+	ServerMetricsSnapshot getSnapshot();
+
+	List<MethodMetrics> getMethods();
+
+	long getDispatchBlockedCount();
+
+	long getDispatchBlockedTimeMillis();
+
+	int getRmiDispatchThreads();
+
+	int getNioWorkerThreads();
+
+	/**
+	 * Clear every method's calls and service times, and the blocking figures.
+	 */
+	void reset();
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.server.metrics;
+
+import java.beans.ConstructorProperties;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * Everything {@link ServerMetrics} knows at one moment. Use {@link #minus(ServerMetricsSnapshot)} on snapshots taken
+ * before and after a run to see what the run cost the server.
+ */
+public class ServerMetricsSnapshot {
+
+	private final List<MethodMetrics> methods;
+	private final long dispatchBlockedCount;
+	private final long dispatchBlockedTimeMillis;
+	private final int rmiDispatchThreads;
+	private final int nioWorkerThreads;
+
+	@ConstructorProperties({ "methods", "dispatchBlockedCount", "dispatchBlockedTimeMillis", "rmiDispatchThreads", "nioWorkerThreads" })
+	public ServerMetricsSnapshot(final List<MethodMetrics> methods, final long dispatchBlockedCount, final long dispatchBlockedTimeMillis,
+			final int rmiDispatchThreads, final int nioWorkerThreads) {
+		this.methods = Collections.unmodifiableList(new ArrayList<>(methods));
+		this.dispatchBlockedCount = dispatchBlockedCount;
+		this.dispatchBlockedTimeMillis = dispatchBlockedTimeMillis;
+		this.rmiDispatchThreads = rmiDispatchThreads;
+		this.nioWorkerThreads = nioWorkerThreads;
+	}
+
+	/**
+	 * The metrics of every method that has been called.
+	 */
+	public List<MethodMetrics> getMethods() {
+		return methods;
+	}
+
+	/**
+	 * The number of times the threads dispatching calls blocked waiting to enter a monitor, any monitor, such as the
+	 * server's <tt>synch</tt> lock or one inside RMI.
+	 */
+	public long getDispatchBlockedCount() {
+		return dispatchBlockedCount;
+	}
+
+	/**
+	 * The time, in milliseconds, the threads dispatching calls spent blocked waiting to enter a monitor, or -1 if the
+	 * server wasn't measuring it.
+	 */
+	public long getDispatchBlockedTimeMillis() {
+		return dispatchBlockedTimeMillis;
+	}
+
+	/**
+	 * The number of live threads RMI has created to read and dispatch calls, one per open connection.
+	 */
+	public int getRmiDispatchThreads() {
+		return rmiDispatchThreads;
+	}
+
+	/**
+	 * The number of live worker threads in the NIO server.
+	 */
+	public int getNioWorkerThreads() {
+		return nioWorkerThreads;
+	}
+
+	/**
+	 * The total number of calls to every method.
+	 */
+	public long getTotalCalls() {
+		long calls = 0;
+		for (final MethodMetrics method : methods) {
+			calls += method.getCalls();
+		}
+		return calls;
+	}
+
+	/**
+	 * The total time spent running every method, in nanoseconds.
+	 */
+	public long getTotalServiceNanos() {
+		long nanos = 0;
+		for (final MethodMetrics method : methods) {
+			nanos += method.getTotalServiceNanos();
+		}
+		return nanos;
+	}
+
+	/**
+	 * The calls, service time and blocking between <tt>earlier</tt> and this snapshot, with this snapshot's thread
+	 * counts, percentiles and maxima. Methods not called in between are left out.
+	 */
+	public ServerMetricsSnapshot minus(final ServerMetricsSnapshot earlier) {
+		final List<MethodMetrics> difference = new ArrayList<>();
+
+		for (final MethodMetrics method : methods) {
+			final MethodMetrics earlierMethod = earlier.getMethod(method.getName());
+			final long earlierCalls = earlierMethod == null ? 0 : earlierMethod.getCalls();
+			final long earlierNanos = earlierMethod == null ? 0 : earlierMethod.getTotalServiceNanos();
+
+			if (method.getCalls() != earlierCalls) {
+				difference.add(new MethodMetrics(method.getName(), method.getCalls() - earlierCalls, method.getTotalServiceNanos()
+						- earlierNanos, method.getP50ServiceNanos(), method.getP99ServiceNanos(), method.getMaxServiceNanos()));
+			}
+		}
+
+		final long blockedTime = dispatchBlockedTimeMillis < 0 || earlier.dispatchBlockedTimeMillis < 0 ? -1 : dispatchBlockedTimeMillis
+				- earlier.dispatchBlockedTimeMillis;
+
+		return new ServerMetricsSnapshot(difference, dispatchBlockedCount - earlier.dispatchBlockedCount, blockedTime, rmiDispatchThreads,
+				nioWorkerThreads);
+	}
+
+	/**
+	 * These metrics added to <tt>other</tt>'s, as if both sets of calls had been made between the same two snapshots, with
+	 * the larger of the two thread counts. The percentiles and maxima are also the larger of the two.
+	 */
+	public ServerMetricsSnapshot plus(final ServerMetricsSnapshot other) {
+		final List<MethodMetrics> sum = new ArrayList<>();
+
+		for (final MethodMetrics method : methods) {
+			final MethodMetrics otherMethod = other.getMethod(method.getName());
+
+			if (otherMethod == null) {
+				sum.add(method);
+			} else {
+				sum.add(new MethodMetrics(method.getName(), method.getCalls() + otherMethod.getCalls(), method.getTotalServiceNanos()
+						+ otherMethod.getTotalServiceNanos(), Math.max(method.getP50ServiceNanos(), otherMethod.getP50ServiceNanos()), Math.max(
+						method.getP99ServiceNanos(), otherMethod.getP99ServiceNanos()), Math.max(method.getMaxServiceNanos(),
+						otherMethod.getMaxServiceNanos())));
+			}
+		}
+
+		for (final MethodMetrics otherMethod : other.methods) {
+			if (getMethod(otherMethod.getName()) == null) {
+				sum.add(otherMethod);
+			}
+		}
+
+		final long blockedTime = dispatchBlockedTimeMillis < 0 || other.dispatchBlockedTimeMillis < 0 ? -1 : dispatchBlockedTimeMillis
+				+ other.dispatchBlockedTimeMillis;
+
+		return new ServerMetricsSnapshot(sum, dispatchBlockedCount + other.dispatchBlockedCount, blockedTime, Math.max(rmiDispatchThreads,
+				other.rmiDispatchThreads), Math.max(nioWorkerThreads, other.nioWorkerThreads));
+	}
+
+	/**
+	 * The metrics of the named method, or null if it hasn't been called.
+	 */
+	@Nullable
+	public MethodMetrics getMethod(final String name) {
+		for (final MethodMetrics method : methods) {
+			if (method.getName().equals(name)) {
+				return method;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Write this snapshot so that {@link #read(DataInput)} can recreate it in another process.
+	 */
+	public void write(final DataOutput out) throws IOException {
+		out.writeInt(methods.size());
+
+		for (final MethodMetrics method : methods) {
+			out.writeUTF(method.getName());
+			out.writeLong(method.getCalls());
+			out.writeLong(method.getTotalServiceNanos());
+			out.writeLong(method.getP50ServiceNanos());
+			out.writeLong(method.getP99ServiceNanos());
+			out.writeLong(method.getMaxServiceNanos());
+		}
+
+		out.writeLong(dispatchBlockedCount);
+		out.writeLong(dispatchBlockedTimeMillis);
+		out.writeInt(rmiDispatchThreads);
+		out.writeInt(nioWorkerThreads);
+	}
+
+	public static ServerMetricsSnapshot read(final DataInput in) throws IOException {
+		final int size = in.readInt();
+
+		if (size < 0) {
+			throw new IOException("Invalid number of methods: " + size);
+		}
+
+		final List<MethodMetrics> methods = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			methods.add(new MethodMetrics(in.readUTF(), in.readLong(), in.readLong(), in.readLong(), in.readLong(), in.readLong()));
+		}
+
+		return new ServerMetricsSnapshot(methods, in.readLong(), in.readLong(), in.readInt(), in.readInt());
+	}
+
+	/**
+	 * A single line summary, in the same style as the call results it is logged beside.
+	 */
+	public String toSummaryString() {
+		final long calls = getTotalCalls();
+		final double meanServiceMillis = calls == 0 ? 0 : getTotalServiceNanos() / (double) calls / 1000000;
+
+		return String.format("server calls=%d, mean service=%.3f ms, dispatch blocked=%d times, %d ms, RMI dispatch threads=%d", calls,
+				meanServiceMillis, dispatchBlockedCount, dispatchBlockedTimeMillis, rmiDispatchThreads);
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.server.payload;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+import javax.annotation.Nullable;
+
+/**
+ * The same binary tree as {@link SerializableNode}, but written by hand: the whole tree goes into the stream as one
+ * object, with each node's fields and a flag for each child, and no class descriptors or back references below the
+ * root.
+ */
+public class ExternalizableNode implements Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	private int id;
+
+	private String label;
+
+	@Nullable
+	private ExternalizableNode left;
+
+	@Nullable
+	private ExternalizableNode right;
+
+	/**
+	 * Used by serialization, which then calls {@link #readExternal(ObjectInput)}.
+	 */
+	public ExternalizableNode() {
+	}
+
+	ExternalizableNode(final int id, final String label, @Nullable final ExternalizableNode left, @Nullable final ExternalizableNode right) {
+		this.id = id;
+		this.label = label;
+		this.left = left;
+		this.right = right;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public String getLabel() {
+		return label;
+	}
+
+	@Nullable
+	public ExternalizableNode getLeft() {
+		return left;
+	}
+
+	@Nullable
+	public ExternalizableNode getRight() {
+		return right;
+	}
+
+	/**
+	 * The number of nodes in the tree below and including this one.
+	 */
+	public int size() {
+		return 1 + (left == null ? 0 : left.size()) + (right == null ? 0 : right.size());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void writeExternal(final ObjectOutput out) throws IOException {
+		out.writeInt(id);
+		out.writeUTF(label);
+
+		out.writeBoolean(left != null);
+		if (left != null) {
+			left.writeExternal(out);
+		}
+
+		out.writeBoolean(right != null);
+		if (right != null) {
+			right.writeExternal(out);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void readExternal(final ObjectInput in) throws IOException {
+		id = in.readInt();
+		label = in.readUTF();
+
+		if (in.readBoolean()) {
+			left = new ExternalizableNode();
+			left.readExternal(in);
+		}
+
+		if (in.readBoolean()) {
+			right = new ExternalizableNode();
+			right.readExternal(in);
+		}
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.server.payload;
+
+import java.io.Serializable;
+
+/**
+ * What the payload methods of {@link com.aetherworks.concurrency.server.ServerRemote} return: the call number, as every
+ * counting method returns, along with the payload sent back to the caller.
+ */
+public class PayloadReply<T> implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final int callNumber;
+
+	/**
+	 * A byte array, a node graph or a remote object, all of which RMI can marshal, though <tt>T</tt> can't be bounded by
+	 * {@link Serializable} since a remote object is sent as its stub.
+	 */
+	@SuppressWarnings("serial")
+	private final T payload;
+
+	public PayloadReply(final int callNumber, final T payload) {
+		this.callNumber = callNumber;
+		this.payload = payload;
+	}
+
+	public int getCallNumber() {
+		return callNumber;
+	}
+
+	public T getPayload() {
+		return payload;
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.server.payload;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Builds the payloads sent to the server's payload methods: byte arrays of a given size, and complete binary trees of a
+ * given depth, as {@link SerializableNode}s or {@link ExternalizableNode}s.
+ */
+public final class Payloads {
+
+	/**
+	 * The deepest tree that can be built. A tree of depth <tt>d</tt> has <tt>2^d - 1</tt> nodes.
+	 */
+	public static final int MAX_DEPTH = 20;
+
+	private Payloads() {
+	}
+
+	/**
+	 * An array of <tt>kilobytes</tt> KB of random bytes, so that nothing along the way can compress it.
+	 */
+	public static byte[] bytes(final int kilobytes) {
+		Preconditions.checkArgument(kilobytes >= 0, "A payload's size can't be negative.");
+
+		final byte[] payload = new byte[kilobytes * 1024];
+		ThreadLocalRandom.current().nextBytes(payload);
+
+		return payload;
+	}
+
+	/**
+	 * A complete binary tree of the given depth, at least one.
+	 */
+	public static SerializableNode serializableTree(final int depth) {
+		checkDepth(depth);
+
+		return serializableTree(depth, 1);
+	}
+
+	@Nullable
+	private static SerializableNode serializableTree(final int depth, final int id) {
+		if (depth == 0) {
+			return null;
+		}
+
+		return new SerializableNode(id, "node-" + id, serializableTree(depth - 1, 2 * id), serializableTree(depth - 1, 2 * id + 1));
+	}
+
+	/**
+	 * A complete binary tree of the given depth, at least one.
+	 */
+	public static ExternalizableNode externalizableTree(final int depth) {
+		checkDepth(depth);
+
+		return externalizableTree(depth, 1);
+	}
+
+	@Nullable
+	private static ExternalizableNode externalizableTree(final int depth, final int id) {
+		if (depth == 0) {
+			return null;
+		}
+
+		return new ExternalizableNode(id, "node-" + id, externalizableTree(depth - 1, 2 * id), externalizableTree(depth - 1, 2 * id + 1));
+	}
+
+	private static void checkDepth(final int depth) {
+		Preconditions.checkArgument(depth >= 1 && depth <= MAX_DEPTH, "A tree's depth must be between 1 and " + MAX_DEPTH + ".");
+	}
+
+	/**
+	 * The length of an object's Java serialization, which is close to what RMI sends for it as an argument or result.
+	 */
+	public static int serializedSize(final Object payload) {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(payload);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return bytes.size();
+	}
+}
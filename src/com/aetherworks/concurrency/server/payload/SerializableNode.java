@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.server.payload;
+
+import java.io.Serializable;
+
+import javax.annotation.Nullable;
+
+/**
+ * A node in a binary tree sent with default Java serialization, which describes every class and field in the stream
+ * and reflects over each object as it is written and read.
+ */
+public class SerializableNode implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final int id;
+
+	private final String label;
+
+	@Nullable
+	private final SerializableNode left;
+
+	@Nullable
+	private final SerializableNode right;
+
+	SerializableNode(final int id, final String label, @Nullable final SerializableNode left, @Nullable final SerializableNode right) {
+		this.id = id;
+		this.label = label;
+		this.left = left;
+		this.right = right;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public String getLabel() {
+		return label;
+	}
+
+	@Nullable
+	public SerializableNode getLeft() {
+		return left;
+	}
+
+	@Nullable
+	public SerializableNode getRight() {
+		return right;
+	}
+
+	/**
+	 * The number of nodes in the tree below and including this one.
+	 */
+	public int size() {
+		return 1 + (left == null ? 0 : left.size()) + (right == null ? 0 : right.size());
+	}
+}
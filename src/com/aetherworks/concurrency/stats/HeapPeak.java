@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.stats;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MBeanServerConnection;
+
+/**
+ * The peak heap usage of a JVM since it was last reset, from its heap memory pools, either in this JVM or in another
+ * over JMX.
+ * <p>
+ * The peak is the sum of each pool's own peak, which the pools may not all have reached at the same moment, so it can
+ * overstate the true peak. It includes garbage that had not yet been collected.
+ */
+public class HeapPeak {
+
+	private final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+
+	private HeapPeak(final List<MemoryPoolMXBean> pools) {
+		for (final MemoryPoolMXBean pool : pools) {
+			if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+				heapPools.add(pool);
+			}
+		}
+	}
+
+	/**
+	 * The heap of this JVM.
+	 */
+	public static HeapPeak local() {
+		return new HeapPeak(ManagementFactory.getMemoryPoolMXBeans());
+	}
+
+	/**
+	 * The heap of the JVM at the other end of a JMX connection.
+	 */
+	public static HeapPeak remote(final MBeanServerConnection connection) throws IOException {
+		return new HeapPeak(ManagementFactory.getPlatformMXBeans(connection, MemoryPoolMXBean.class));
+	}
+
+	/**
+	 * Start measuring the peak again from the current usage.
+	 */
+	public void reset() {
+		for (final MemoryPoolMXBean pool : heapPools) {
+			pool.resetPeakUsage();
+		}
+	}
+
+	/**
+	 * The peak usage since the last {@link #reset()}, in bytes.
+	 */
+	public long getPeakBytes() {
+		long peakBytes = 0;
+
+		for (final MemoryPoolMXBean pool : heapPools) {
+			peakBytes += pool.getPeakUsage().getUsed();
+		}
+
+		return peakBytes;
+	}
+}
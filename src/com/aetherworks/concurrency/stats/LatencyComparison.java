@@ -0,0 +1,289 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.stats;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Whether one set of latency samples is slower than another, such as a cell's latencies against the same cell in a
+ * baseline run.
+ * <p>
+ * Two tests are made, since no one test suits both the middle and the tail of a distribution:
+ * <ul>
+ * <li>The one-sided Mann-Whitney U test, of whether a current latency tends to be larger than a baseline one. It uses
+ * the normal approximation with a correction for ties, which is close for the hundreds or thousands of samples a cell
+ * usually has, but not for a handful. It says nothing about how much slower, so it backs up the change in the median.
+ * <li>A bootstrap lower bound on the relative change of the median and the 99th percentile: both samples are resampled
+ * with replacement {@link #BOOTSTRAP_RESAMPLES} times, and the bound is the <tt>alpha</tt> quantile of the resampled
+ * changes. It backs up the change in the 99th percentile, which a rank test barely notices.
+ * </ul>
+ * Percentiles are taken by the nearest rank of the samples themselves, rather than from a {@link LatencyHistogram}, so
+ * that the resampled percentiles are taken the same way.
+ */
+public class LatencyComparison {
+
+	/**
+	 * The number of times both samples are resampled for the bootstrap bounds.
+	 */
+	public static final int BOOTSTRAP_RESAMPLES = 1000;
+
+	private final int baselineSize;
+
+	private final int currentSize;
+
+	private final long baselineP50;
+
+	private final long baselineP99;
+
+	private final long currentP50;
+
+	private final long currentP99;
+
+	private final double mannWhitneyP;
+
+	private final double p50ChangeLowerBound;
+
+	private final double p99ChangeLowerBound;
+
+	private final double alpha;
+
+	/**
+	 * Compare two sets of samples.
+	 * 
+	 * @param alpha
+	 *        The significance level of both tests, such as 0.01.
+	 * @throws IllegalArgumentException
+	 *         If either set is empty.
+	 */
+	public LatencyComparison(final long[] baseline, final long[] current, final double alpha) {
+		Preconditions.checkArgument(baseline.length > 0 && current.length > 0, "Can't compare an empty set of samples.");
+		Preconditions.checkArgument(alpha > 0 && alpha < 1, "alpha must be between 0 and 1.");
+
+		final long[] sortedBaseline = baseline.clone();
+		final long[] sortedCurrent = current.clone();
+		Arrays.sort(sortedBaseline);
+		Arrays.sort(sortedCurrent);
+
+		this.alpha = alpha;
+		baselineSize = sortedBaseline.length;
+		currentSize = sortedCurrent.length;
+		baselineP50 = sortedBaseline[rank(baselineSize, 50)];
+		baselineP99 = sortedBaseline[rank(baselineSize, 99)];
+		currentP50 = sortedCurrent[rank(currentSize, 50)];
+		currentP99 = sortedCurrent[rank(currentSize, 99)];
+
+		mannWhitneyP = mannWhitneyGreater(sortedBaseline, sortedCurrent);
+
+		final double[] p50Changes = new double[BOOTSTRAP_RESAMPLES];
+		final double[] p99Changes = new double[BOOTSTRAP_RESAMPLES];
+		final long[] baselineResample = new long[2];
+		final long[] currentResample = new long[2];
+		final int[] counts = new int[Math.max(baselineSize, currentSize)];
+
+		for (int i = 0; i < BOOTSTRAP_RESAMPLES; i++) {
+			resamplePercentiles(sortedBaseline, counts, baselineResample);
+			resamplePercentiles(sortedCurrent, counts, currentResample);
+
+			p50Changes[i] = change(baselineResample[0], currentResample[0]);
+			p99Changes[i] = change(baselineResample[1], currentResample[1]);
+		}
+
+		Arrays.sort(p50Changes);
+		Arrays.sort(p99Changes);
+
+		final int lowerIndex = (int) Math.floor(alpha * BOOTSTRAP_RESAMPLES);
+		p50ChangeLowerBound = p50Changes[lowerIndex];
+		p99ChangeLowerBound = p99Changes[lowerIndex];
+	}
+
+	/**
+	 * The index of a percentile in <tt>size</tt> sorted samples, by nearest rank.
+	 */
+	private static int rank(final int size, final double percentile) {
+		return Math.max(0, (int) Math.ceil(percentile / 100 * size) - 1);
+	}
+
+	/**
+	 * The relative change from <tt>baseline</tt> to <tt>current</tt>, positive if <tt>current</tt> is slower.
+	 */
+	private static double change(final long baseline, final long current) {
+		if (baseline == 0) {
+			return current == 0 ? 0 : Double.POSITIVE_INFINITY;
+		}
+
+		return (current - baseline) / (double) baseline;
+	}
+
+	/**
+	 * Put the median and 99th percentile of a resample of the sorted samples, drawn with replacement, in
+	 * <tt>percentiles</tt>. Only how often each sample is drawn matters, so the resample is counted rather than sorted.
+	 */
+	private static void resamplePercentiles(final long[] sorted, final int[] counts, final long[] percentiles) {
+		final int size = sorted.length;
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+
+		Arrays.fill(counts, 0, size, 0);
+		for (int i = 0; i < size; i++) {
+			counts[random.nextInt(size)]++;
+		}
+
+		final int p50Rank = rank(size, 50);
+		final int p99Rank = rank(size, 99);
+
+		int drawn = 0;
+		for (int i = 0; i < size; i++) {
+			final int before = drawn;
+			drawn += counts[i];
+
+			if (before <= p50Rank && p50Rank < drawn) {
+				percentiles[0] = sorted[i];
+			}
+			if (before <= p99Rank && p99Rank < drawn) {
+				percentiles[1] = sorted[i];
+				return;
+			}
+		}
+	}
+
+	/**
+	 * The one-sided p-value of the Mann-Whitney U test that a current sample tends to be larger than a baseline one.
+	 */
+	private static double mannWhitneyGreater(final long[] sortedBaseline, final long[] sortedCurrent) {
+		final double n = sortedBaseline.length;
+		final double m = sortedCurrent.length;
+
+		// Merge the two sorted samples, giving each run of ties their average rank.
+		double currentRankSum = 0;
+		double tieCorrection = 0;
+		int b = 0;
+		int c = 0;
+
+		while (b < sortedBaseline.length || c < sortedCurrent.length) {
+			final boolean baselineNext = c == sortedCurrent.length || b < sortedBaseline.length && sortedBaseline[b] < sortedCurrent[c];
+			final long value = baselineNext ? sortedBaseline[b] : sortedCurrent[c];
+
+			final int firstRank = b + c + 1;
+			int tiedCurrent = 0;
+
+			while (b < sortedBaseline.length && sortedBaseline[b] == value) {
+				b++;
+			}
+			while (c < sortedCurrent.length && sortedCurrent[c] == value) {
+				c++;
+				tiedCurrent++;
+			}
+
+			final double ties = b + c + 1 - firstRank;
+			currentRankSum += tiedCurrent * (firstRank + (ties - 1) / 2);
+			tieCorrection += ties * ties * ties - ties;
+		}
+
+		final double u = currentRankSum - m * (m + 1) / 2;
+		final double mean = n * m / 2;
+		final double variance = n * m / 12 * (n + m + 1 - tieCorrection / ((n + m) * (n + m - 1)));
+
+		if (!(variance > 0)) {
+			return 1;
+		}
+
+		final double z = (u - mean - 0.5) / Math.sqrt(variance);
+
+		return 0.5 * erfc(z / Math.sqrt(2));
+	}
+
+	/**
+	 * The complementary error function, to within about 1.2e-7 (Numerical Recipes' <tt>erfcc</tt>).
+	 */
+	private static double erfc(final double x) {
+		final double t = 1 / (1 + 0.5 * Math.abs(x));
+		final double y = t
+				* Math.exp(-x * x - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418 + t * (-0.18628806 + t
+						* (0.27886807 + t * (-1.13520398 + t * (1.48851587 + t * (-0.82215223 + t * 0.17087277)))))))));
+
+		return x >= 0 ? y : 2 - y;
+	}
+
+	public int getBaselineSize() {
+		return baselineSize;
+	}
+
+	public int getCurrentSize() {
+		return currentSize;
+	}
+
+	/**
+	 * The relative change in the median, such as 0.1 for 10% slower.
+	 */
+	public double getP50Change() {
+		return change(baselineP50, currentP50);
+	}
+
+	/**
+	 * The relative change in the 99th percentile, such as 0.1 for 10% slower.
+	 */
+	public double getP99Change() {
+		return change(baselineP99, currentP99);
+	}
+
+	/**
+	 * The one-sided p-value of the Mann-Whitney U test that the current latencies tend to be larger.
+	 */
+	public double getMannWhitneyP() {
+		return mannWhitneyP;
+	}
+
+	/**
+	 * The change in the median that the bootstrap gives with confidence <tt>1 - alpha</tt> as the least it could be.
+	 */
+	public double getP50ChangeLowerBound() {
+		return p50ChangeLowerBound;
+	}
+
+	/**
+	 * The change in the 99th percentile that the bootstrap gives with confidence <tt>1 - alpha</tt> as the least it could
+	 * be.
+	 */
+	public double getP99ChangeLowerBound() {
+		return p99ChangeLowerBound;
+	}
+
+	/**
+	 * Whether the median is slower by more than the threshold, and the Mann-Whitney test agrees that the latencies are
+	 * larger.
+	 */
+	public boolean isP50Regression(final double thresholdPercent) {
+		return getP50Change() * 100 > thresholdPercent && mannWhitneyP < alpha;
+	}
+
+	/**
+	 * Whether the 99th percentile is slower by more than the threshold, and the bootstrap agrees that it is slower at all.
+	 */
+	public boolean isP99Regression(final double thresholdPercent) {
+		return getP99Change() * 100 > thresholdPercent && p99ChangeLowerBound > 0;
+	}
+
+	public boolean isRegression(final double thresholdPercent) {
+		return isP50Regression(thresholdPercent) || isP99Regression(thresholdPercent);
+	}
+
+	/**
+	 * A summary such as <tt>p50 1.234 -> 1.301 ms (+5.4%, at least +2.1%), p99 ..., Mann-Whitney p=1.0e-04, n=10000/10000</tt>,
+	 * with the baseline's latency first.
+	 */
+	public String toSummaryString() {
+		return String.format(Locale.ROOT, "p50 %.3f -> %.3f ms (%+.1f%%, at least %+.1f%%), p99 %.3f -> %.3f ms (%+.1f%%, at least %+.1f%%), "
+				+ "Mann-Whitney p=%.2g, n=%d/%d", toMillis(baselineP50), toMillis(currentP50), getP50Change() * 100,
+				p50ChangeLowerBound * 100, toMillis(baselineP99), toMillis(currentP99), getP99Change() * 100, p99ChangeLowerBound * 100,
+				mannWhitneyP, baselineSize, currentSize);
+	}
+
+	private static double toMillis(final long nanos) {
+		return nanos / 1e6;
+	}
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.stats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Records latency values (in nanoseconds) into a fixed set of log-linear buckets, in the style of HdrHistogram.
+ * <p>
+ * Values are grouped into buckets whose width doubles with each power of two, and each bucket is split into enough
+ * linear sub-buckets to keep the requested number of significant decimal digits. Memory use is therefore bounded by the
+ * range and precision of the histogram, not by the number of values recorded.
+ * <p>
+ * Values larger than the highest trackable value are counted in the top bucket, but the exact maximum is still
+ * reported by {@link #getMaxValue()}.
+ * <p>
+ * This class is not thread-safe. Record into one histogram per thread and {@link #add(LatencyHistogram)} them
+ * together if values are produced concurrently.
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Default highest trackable value: one hour, in nanoseconds.
+	 */
+	public static final long DEFAULT_HIGHEST_TRACKABLE_VALUE = TimeUnit.HOURS.toNanos(1);
+
+	/**
+	 * Default number of significant decimal digits kept for each recorded value.
+	 */
+	public static final int DEFAULT_SIGNIFICANT_DIGITS = 3;
+
+	private final long highestTrackableValue;
+	private final int significantDigits;
+
+	private final int subBucketHalfCountMagnitude;
+	private final int subBucketHalfCount;
+	private final int subBucketCount;
+	private final long subBucketMask;
+	private final int leadingZeroCountBase;
+
+	private final long[] counts;
+
+	private long totalCount = 0;
+	private long totalValue = 0;
+	private long minValue = Long.MAX_VALUE;
+	private long maxValue = 0;
+
+	/**
+	 * Create a histogram that tracks values up to {@link #DEFAULT_HIGHEST_TRACKABLE_VALUE} with
+	 * {@link #DEFAULT_SIGNIFICANT_DIGITS} significant digits.
+	 */
+	public LatencyHistogram() {
+		this(DEFAULT_HIGHEST_TRACKABLE_VALUE, DEFAULT_SIGNIFICANT_DIGITS);
+	}
+
+	/**
+	 * @param highestTrackableValue
+	 *        The largest value (in nanoseconds) that will be recorded at full precision. Must be at least 2.
+	 * @param significantDigits
+	 *        The number of significant decimal digits to keep for each value, between 1 and 5.
+	 */
+	public LatencyHistogram(final long highestTrackableValue, final int significantDigits) {
+		Preconditions.checkArgument(highestTrackableValue >= 2, "The highest trackable value must be at least 2.");
+		Preconditions.checkArgument(significantDigits >= 1 && significantDigits <= 5, "Significant digits must be between 1 and 5.");
+
+		this.highestTrackableValue = highestTrackableValue;
+		this.significantDigits = significantDigits;
+
+		final long largestValueWithSingleUnitResolution = 2 * (long) Math.pow(10, significantDigits);
+		final int subBucketCountMagnitude = (int) Math.ceil(Math.log(largestValueWithSingleUnitResolution) / Math.log(2));
+
+		subBucketHalfCountMagnitude = Math.max(subBucketCountMagnitude, 1) - 1;
+		subBucketCount = 1 << (subBucketHalfCountMagnitude + 1);
+		subBucketHalfCount = subBucketCount / 2;
+		subBucketMask = subBucketCount - 1;
+		leadingZeroCountBase = 64 - subBucketHalfCountMagnitude - 1;
+
+		counts = new long[(getBucketsNeeded(highestTrackableValue) + 1) * subBucketHalfCount];
+	}
+
+	/**
+	 * Record a single value, in nanoseconds. Negative values are recorded as zero.
+	 */
+	public void recordValue(final long value) {
+		recordValue(value, 1);
+	}
+
+	/**
+	 * Record <tt>count</tt> occurrences of the same value, in nanoseconds.
+	 */
+	public void recordValue(final long value, final long count) {
+		final long boundedValue = Math.max(value, 0);
+
+		counts[getCountsIndex(Math.min(boundedValue, highestTrackableValue))] += count;
+
+		totalCount += count;
+		totalValue += boundedValue * count;
+		minValue = Math.min(minValue, boundedValue);
+		maxValue = Math.max(maxValue, boundedValue);
+	}
+
+	/**
+	 * Add every value recorded by <tt>other</tt> to this histogram.
+	 * 
+	 * @throws IllegalArgumentException
+	 *         If the two histograms were not created with the same range and precision.
+	 */
+	public void add(final LatencyHistogram other) {
+		Preconditions.checkArgument(other.highestTrackableValue == highestTrackableValue && other.significantDigits == significantDigits,
+				"Histograms must have the same range and precision to be added together.");
+
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] += other.counts[i];
+		}
+
+		totalCount += other.totalCount;
+		totalValue += other.totalValue;
+		minValue = Math.min(minValue, other.minValue);
+		maxValue = Math.max(maxValue, other.maxValue);
+	}
+
+	/**
+	 * Write this histogram so that {@link #read(DataInput)} can recreate it in another process. Only the buckets that
+	 * hold values are written, so a histogram of a few thousand calls takes a few kilobytes.
+	 */
+	public void write(final DataOutput out) throws IOException {
+		out.writeLong(highestTrackableValue);
+		out.writeInt(significantDigits);
+		out.writeLong(totalCount);
+		out.writeLong(totalValue);
+		out.writeLong(minValue);
+		out.writeLong(maxValue);
+
+		int usedBuckets = 0;
+		for (final long count : counts) {
+			if (count != 0) {
+				usedBuckets++;
+			}
+		}
+
+		out.writeInt(usedBuckets);
+
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] != 0) {
+				out.writeInt(i);
+				out.writeLong(counts[i]);
+			}
+		}
+	}
+
+	/**
+	 * Read a histogram written by {@link #write(DataOutput)}.
+	 * 
+	 * @throws IOException
+	 *         If the input can't be read, or doesn't hold a histogram.
+	 */
+	public static LatencyHistogram read(final DataInput in) throws IOException {
+		final LatencyHistogram histogram;
+
+		try {
+			histogram = new LatencyHistogram(in.readLong(), in.readInt());
+		} catch (final IllegalArgumentException e) {
+			throw new IOException("Invalid histogram range or precision.", e);
+		}
+
+		histogram.totalCount = in.readLong();
+		histogram.totalValue = in.readLong();
+		histogram.minValue = in.readLong();
+		histogram.maxValue = in.readLong();
+
+		final int usedBuckets = in.readInt();
+
+		for (int i = 0; i < usedBuckets; i++) {
+			final int index = in.readInt();
+
+			if (index < 0 || index >= histogram.counts.length) {
+				throw new IOException("Invalid histogram bucket: " + index);
+			}
+
+			histogram.counts[index] = in.readLong();
+		}
+
+		return histogram;
+	}
+
+	/**
+	 * Remove all recorded values.
+	 */
+	public void reset() {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = 0;
+		}
+
+		totalCount = 0;
+		totalValue = 0;
+		minValue = Long.MAX_VALUE;
+		maxValue = 0;
+	}
+
+	/**
+	 * The value (in nanoseconds) below which the given percentage of recorded values fall.
+	 * <p>
+	 * The result is the highest value that is equivalent to the recorded value at this histogram's precision, and is
+	 * never larger than {@link #getMaxValue()}.
+	 * 
+	 * @param percentile
+	 *        A percentile between 0 and 100.
+	 */
+	public long getValueAtPercentile(final double percentile) {
+		if (totalCount == 0) {
+			return 0;
+		}
+
+		final double boundedPercentile = Math.min(Math.max(percentile, 0), 100);
+		final long countAtPercentile = Math.max(1, (long) Math.ceil(boundedPercentile / 100 * totalCount));
+
+		if (countAtPercentile >= totalCount) {
+			return maxValue;
+		}
+
+		long runningCount = 0;
+		for (int i = 0; i < counts.length; i++) {
+			runningCount += counts[i];
+
+			if (runningCount >= countAtPercentile) {
+				return Math.min(highestEquivalentValue(getValueFromIndex(i)), maxValue);
+			}
+		}
+
+		return maxValue;
+	}
+
+	/**
+	 * The smallest recorded value, in nanoseconds, or zero if nothing has been recorded.
+	 */
+	public long getMinValue() {
+		return totalCount == 0 ? 0 : minValue;
+	}
+
+	/**
+	 * The largest recorded value, in nanoseconds.
+	 */
+	public long getMaxValue() {
+		return maxValue;
+	}
+
+	/**
+	 * The arithmetic mean of all recorded values, in nanoseconds.
+	 */
+	public double getMean() {
+		return totalCount == 0 ? 0 : (double) totalValue / totalCount;
+	}
+
+	/**
+	 * The number of values recorded.
+	 */
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	public long getHighestTrackableValue() {
+		return highestTrackableValue;
+	}
+
+	public int getSignificantDigits() {
+		return significantDigits;
+	}
+
+	private int getBucketsNeeded(final long value) {
+		long smallestUntrackableValue = (long) subBucketCount;
+		int bucketsNeeded = 1;
+
+		while (smallestUntrackableValue <= value) {
+			if (smallestUntrackableValue > Long.MAX_VALUE / 2) {
+				return bucketsNeeded + 1;
+			}
+			smallestUntrackableValue <<= 1;
+			bucketsNeeded++;
+		}
+
+		return bucketsNeeded;
+	}
+
+	private int getCountsIndex(final long value) {
+		final int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(value | subBucketMask);
+		final int subBucketIndex = (int) (value >>> bucketIndex);
+
+		return ((bucketIndex + 1) << subBucketHalfCountMagnitude) + (subBucketIndex - subBucketHalfCount);
+	}
+
+	private long getValueFromIndex(final int index) {
+		int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+		int subBucketIndex = (index & (subBucketHalfCount - 1)) + subBucketHalfCount;
+
+		if (bucketIndex < 0) {
+			subBucketIndex -= subBucketHalfCount;
+			bucketIndex = 0;
+		}
+
+		return ((long) subBucketIndex) << bucketIndex;
+	}
+
+	/**
+	 * The largest value that falls into the same bucket as <tt>value</tt>.
+	 */
+	private long highestEquivalentValue(final long value) {
+		final int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(value | subBucketMask);
+		final int subBucketIndex = (int) (value >>> bucketIndex);
+		final int adjustedBucket = subBucketIndex >= subBucketCount ? bucketIndex + 1 : bucketIndex;
+
+		final long lowestEquivalentValue = ((long) subBucketIndex) << bucketIndex;
+
+		return lowestEquivalentValue + (1L << adjustedBucket) - 1;
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.stats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The individual latencies (in nanoseconds) of a run's calls, kept alongside its {@link LatencyHistogram} for tests that
+ * need the samples themselves rather than their distribution.
+ * <p>
+ * Every value is kept, in the order recorded, until the capacity is reached. From then on the samples are a uniform
+ * random sample of every value recorded (reservoir sampling), so memory use is bounded however long a run goes on.
+ * <p>
+ * This class is not thread-safe. Record into one set of samples per thread and {@link #add(LatencySamples)} them
+ * together if values are produced concurrently.
+ */
+public class LatencySamples {
+
+	/**
+	 * Default number of values kept.
+	 */
+	public static final int DEFAULT_CAPACITY = 10000;
+
+	private final int capacity;
+
+	private long[] values;
+
+	private int size = 0;
+
+	/**
+	 * The number of values ever recorded, kept or not.
+	 */
+	private long count = 0;
+
+	/**
+	 * Keep up to {@link #DEFAULT_CAPACITY} values.
+	 */
+	public LatencySamples() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public LatencySamples(final int capacity) {
+		Preconditions.checkArgument(capacity > 0, "Capacity must be positive.");
+
+		this.capacity = capacity;
+		values = new long[Math.min(capacity, 16)];
+	}
+
+	public void recordValue(final long value) {
+		count++;
+
+		if (size < capacity) {
+			append(value);
+		} else {
+			final long slot = ThreadLocalRandom.current().nextLong(count);
+
+			if (slot < capacity) {
+				values[(int) slot] = value;
+			}
+		}
+	}
+
+	/**
+	 * Add the values recorded by <tt>other</tt>, as if they had been recorded here. If the two together hold more than
+	 * this capacity, each contributes in proportion to the number of values it recorded, so the result is still a
+	 * uniform sample of both.
+	 */
+	public void add(final LatencySamples other) {
+		if (other.count == 0) {
+			return;
+		}
+
+		if (count == size && other.count == other.size && size + other.size <= capacity) {
+			for (int i = 0; i < other.size; i++) {
+				append(other.values[i]);
+			}
+
+			count += other.count;
+
+			return;
+		}
+
+		final long totalCount = count + other.count;
+		final int keep = (int) Math.min(capacity, size + (long) other.size);
+
+		int fromThis = (int) Math.round(keep * (count / (double) totalCount));
+		fromThis = Math.max(keep - other.size, Math.min(size, fromThis));
+
+		final long[] merged = new long[Math.max(keep, 16)];
+		System.arraycopy(choose(values, size, fromThis), 0, merged, 0, fromThis);
+		System.arraycopy(choose(other.values, other.size, keep - fromThis), 0, merged, fromThis, keep - fromThis);
+
+		values = merged;
+		size = keep;
+		count = totalCount;
+	}
+
+	/**
+	 * <tt>n</tt> of the first <tt>size</tt> values, chosen at random, in their original order.
+	 */
+	private static long[] choose(final long[] values, final int size, final int n) {
+		final int[] indexes = new int[size];
+		for (int i = 0; i < size; i++) {
+			indexes[i] = i;
+		}
+
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (int i = 0; i < n; i++) {
+			final int j = i + random.nextInt(size - i);
+			final int swap = indexes[i];
+			indexes[i] = indexes[j];
+			indexes[j] = swap;
+		}
+
+		Arrays.sort(indexes, 0, n);
+
+		final long[] chosen = new long[n];
+		for (int i = 0; i < n; i++) {
+			chosen[i] = values[indexes[i]];
+		}
+
+		return chosen;
+	}
+
+	private void append(final long value) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, (int) Math.min(capacity, values.length * 2L));
+		}
+
+		values[size++] = value;
+	}
+
+	/**
+	 * A copy of the values kept.
+	 */
+	public long[] getValues() {
+		return Arrays.copyOf(values, size);
+	}
+
+	/**
+	 * The number of values kept, at most the capacity.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * The number of values ever recorded, including those not kept.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Write these samples so that {@link #read(DataInput)} can recreate them in another process. Each value is written in
+	 * as few bytes as it needs, so a typical latency takes three or four.
+	 */
+	public void write(final DataOutput out) throws IOException {
+		out.writeInt(capacity);
+		out.writeLong(count);
+		out.writeInt(size);
+
+		for (int i = 0; i < size; i++) {
+			writeVarLong(out, values[i]);
+		}
+	}
+
+	/**
+	 * Read samples written by {@link #write(DataOutput)}.
+	 * 
+	 * @throws IOException
+	 *         If the input can't be read, or doesn't hold samples.
+	 */
+	public static LatencySamples read(final DataInput in) throws IOException {
+		final int capacity = in.readInt();
+		final long count = in.readLong();
+		final int size = in.readInt();
+
+		if (capacity <= 0 || size < 0 || size > capacity || count < size) {
+			throw new IOException("Invalid samples: capacity=" + capacity + ", size=" + size + ", count=" + count);
+		}
+
+		final LatencySamples samples = new LatencySamples(capacity);
+		samples.values = new long[Math.max(size, 16)];
+
+		for (int i = 0; i < size; i++) {
+			samples.values[i] = readVarLong(in);
+		}
+
+		samples.size = size;
+		samples.count = count;
+
+		return samples;
+	}
+
+	/**
+	 * Write a non-negative value seven bits at a time, least significant first, with the top bit of each byte set if
+	 * more follow.
+	 */
+	private static void writeVarLong(final DataOutput out, final long value) throws IOException {
+		long remaining = value;
+
+		while ((remaining & ~0x7FL) != 0) {
+			out.writeByte((int) ((remaining & 0x7F) | 0x80));
+			remaining >>>= 7;
+		}
+
+		out.writeByte((int) remaining);
+	}
+
+	private static long readVarLong(final DataInput in) throws IOException {
+		long value = 0;
+
+		for (int shift = 0; shift < 64; shift += 7) {
+			final byte b = in.readByte();
+			value |= (long) (b & 0x7F) << shift;
+
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+
+		throw new IOException("Invalid variable-length value.");
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.stats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The mean, standard deviation and 95% confidence interval of a small set of measurements, such as the throughput of
+ * each iteration of a benchmark.
+ * <p>
+ * The confidence interval uses Student's t-distribution, since there are usually only a handful of samples, and
+ * assumes the samples are independent. With fewer than two samples the spread is unknown, and is reported as NaN.
+ */
+public class SampleStatistics {
+
+	/**
+	 * Two-sided 95% critical values of Student's t-distribution, for 1 to 30 degrees of freedom.
+	 */
+	private static final double[] T_95 = { 12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228, 2.201, 2.179, 2.160,
+			2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086, 2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042 };
+
+	private final List<Double> samples = new ArrayList<>();
+
+	public void add(final double sample) {
+		samples.add(sample);
+	}
+
+	public List<Double> getSamples() {
+		return Collections.unmodifiableList(samples);
+	}
+
+	public int getCount() {
+		return samples.size();
+	}
+
+	/**
+	 * The arithmetic mean of the samples, or NaN if there are none.
+	 */
+	public double getMean() {
+		if (samples.isEmpty()) {
+			return Double.NaN;
+		}
+
+		double sum = 0;
+		for (final double sample : samples) {
+			sum += sample;
+		}
+
+		return sum / samples.size();
+	}
+
+	/**
+	 * The sample standard deviation, with Bessel's correction.
+	 */
+	public double getStandardDeviation() {
+		if (samples.size() < 2) {
+			return Double.NaN;
+		}
+
+		final double mean = getMean();
+
+		double sumOfSquares = 0;
+		for (final double sample : samples) {
+			sumOfSquares += (sample - mean) * (sample - mean);
+		}
+
+		return Math.sqrt(sumOfSquares / (samples.size() - 1));
+	}
+
+	/**
+	 * Half the width of the 95% confidence interval for the mean, so the interval is the mean plus or minus this value.
+	 */
+	public double getConfidenceInterval95() {
+		if (samples.size() < 2) {
+			return Double.NaN;
+		}
+
+		return getCriticalValue95(samples.size() - 1) * getStandardDeviation() / Math.sqrt(samples.size());
+	}
+
+	/**
+	 * A summary such as <tt>1234.5 +/- 12.3 (sd 20.1, n=5)</tt>, with values in the given format.
+	 */
+	public String toSummaryString(final String format) {
+		return String.format(Locale.ROOT, format + " +/- " + format + " (sd " + format + ", n=%d)", getMean(), getConfidenceInterval95(),
+				getStandardDeviation(), getCount());
+	}
+
+	/**
+	 * Beyond the table, the critical value for the next tabulated degrees of freedom below is used, which slightly
+	 * widens the interval rather than narrowing it.
+	 */
+	private static double getCriticalValue95(final int degreesOfFreedom) {
+		if (degreesOfFreedom <= T_95.length) {
+			return T_95[degreesOfFreedom - 1];
+		} else if (degreesOfFreedom < 40) {
+			return T_95[T_95.length - 1];
+		} else if (degreesOfFreedom < 60) {
+			return 2.021;
+		} else if (degreesOfFreedom < 120) {
+			return 2.000;
+		} else {
+			return 1.980;
+		}
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.transport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/**
+ * A socket that counts its traffic in a {@link SocketStatistics}, and optionally buffers its streams, as configured by
+ * its {@link SocketSettings}.
+ * <p>
+ * Reuse is recognised from the JRMP messages written. A write that follows a read starts a new exchange, and RMI flushes
+ * each message whole, so the first byte of the exchange is the message type. On the client, a call written on a new
+ * connection follows the handshake in the same exchange, so every call that starts an exchange reuses the connection.
+ * On the server, every return after the first does.
+ */
+class CountingSocket extends Socket {
+
+	/**
+	 * The JRMP message type of a call, written by the client.
+	 */
+	static final byte JRMP_CALL = 0x50;
+
+	/**
+	 * The JRMP message type of a call's return, written by the server.
+	 */
+	static final byte JRMP_RETURN = 0x51;
+
+	private final SocketSettings settings;
+
+	private final SocketStatistics statistics;
+
+	private final byte messageType;
+
+	private final int messagesBeforeReuse;
+
+	private InputStream in;
+
+	private OutputStream out;
+
+	/**
+	 * Exchanges so far on this connection that started with <tt>messageType</tt>. Guarded by <tt>this</tt>.
+	 */
+	private int messages = 0;
+
+	/**
+	 * Whether the last thing done on the connection was a read, so the next write starts a new exchange. Guarded by
+	 * <tt>this</tt>.
+	 */
+	private boolean readSinceLastWrite = true;
+
+	/**
+	 * An unconnected socket with the settings applied. The caller connects it, or a server socket accepts into it.
+	 * 
+	 * @param messageType
+	 *        The JRMP message this end writes for each call, {@link #JRMP_CALL} or {@link #JRMP_RETURN}.
+	 * @param messagesBeforeReuse
+	 *        How many exchanges starting with <tt>messageType</tt> the connection carries before it counts as reused.
+	 */
+	CountingSocket(final SocketSettings settings, final SocketStatistics statistics, final byte messageType, final int messagesBeforeReuse)
+			throws IOException {
+		this.settings = settings;
+		this.statistics = statistics;
+		this.messageType = messageType;
+		this.messagesBeforeReuse = messagesBeforeReuse;
+
+		settings.apply(this);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized InputStream getInputStream() throws IOException {
+		if (in == null) {
+			final InputStream counting = new CountingInputStream(super.getInputStream());
+
+			in = settings.getStreamBufferSize() > 0 ? new BufferedInputStream(counting, settings.getStreamBufferSize()) : counting;
+		}
+
+		return in;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public synchronized OutputStream getOutputStream() throws IOException {
+		if (out == null) {
+			final OutputStream counting = new CountingOutputStream(super.getOutputStream());
+
+			out = settings.getStreamBufferSize() > 0 ? new BufferedOutputStream(counting, settings.getStreamBufferSize()) : counting;
+		}
+
+		return out;
+	}
+
+	private void countRead(final int bytes) {
+		statistics.readCalls.increment();
+
+		if (bytes > 0) {
+			statistics.bytesRead.add(bytes);
+
+			synchronized (this) {
+				readSinceLastWrite = true;
+			}
+		}
+	}
+
+	/**
+	 * @param firstByte
+	 *        The first byte written.
+	 */
+	private void countWrite(final int bytes, final int firstByte) {
+		statistics.writeCalls.increment();
+		statistics.bytesWritten.add(bytes);
+
+		if (bytes == 0) {
+			return;
+		}
+
+		synchronized (this) {
+			if (readSinceLastWrite) {
+				readSinceLastWrite = false;
+
+				if (firstByte == messageType && ++messages > messagesBeforeReuse) {
+					statistics.connectionsReused.increment();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Counts the calls to the socket's own stream, beneath any buffering, so the read calls are the reads made of the
+	 * socket.
+	 */
+	private class CountingInputStream extends FilterInputStream {
+		CountingInputStream(final InputStream in) {
+			super(in);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int read() throws IOException {
+			final int value = super.read();
+			countRead(value < 0 ? 0 : 1);
+
+			return value;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			final int bytes = super.read(b, off, len);
+			countRead(bytes);
+
+			return bytes;
+		}
+	}
+
+	/**
+	 * Counts the calls to the socket's own stream, beneath any buffering, so the write calls are the writes made to the
+	 * socket.
+	 */
+	private class CountingOutputStream extends FilterOutputStream {
+		CountingOutputStream(final OutputStream out) {
+			super(out);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void write(final int b) throws IOException {
+			out.write(b);
+			countWrite(1, (byte) b);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void write(final byte[] b, final int off, final int len) throws IOException {
+			// FilterOutputStream would write the array a byte at a time.
+			out.write(b, off, len);
+			countWrite(len, len > 0 ? b[off] : 0);
+		}
+	}
+}
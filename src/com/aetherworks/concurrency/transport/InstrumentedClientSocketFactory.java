@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.transport;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.rmi.server.RMIClientSocketFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Creates the sockets RMI clients use to call an exported object, applying {@link SocketSettings} and counting the
+ * traffic.
+ * <p>
+ * The factory is sent to clients inside each stub, so every stub holds its own deserialized copy. The counts are
+ * therefore kept for the whole JVM, in {@link #getStatistics()}. RMI only shares connections between stubs whose
+ * factories are equal, so factories with the same settings are equal.
+ */
+public class InstrumentedClientSocketFactory implements RMIClientSocketFactory, Serializable {
+
+	private static final long serialVersionUID = -3357916409180475617L;
+
+	private static final SocketStatistics STATISTICS = new SocketStatistics();
+
+	private final SocketSettings settings;
+
+	public InstrumentedClientSocketFactory(final SocketSettings settings) {
+		this.settings = Preconditions.checkNotNull(settings);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Socket createSocket(final String host, final int port) throws IOException {
+		final CountingSocket socket = new CountingSocket(settings, STATISTICS, CountingSocket.JRMP_CALL, 0);
+
+		try {
+			socket.connect(new InetSocketAddress(host, port));
+		} catch (final IOException e) {
+			socket.close();
+			throw e;
+		}
+
+		STATISTICS.connectionsOpened.increment();
+
+		return socket;
+	}
+
+	/**
+	 * The traffic on every socket created by an instrumented client factory in this JVM.
+	 */
+	public static SocketStatistics getStatistics() {
+		return STATISTICS;
+	}
+
+	public SocketSettings getSettings() {
+		return settings;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		return obj instanceof InstrumentedClientSocketFactory && settings.equals(((InstrumentedClientSocketFactory) obj).settings);
+	}
+
+	@Override
+	public int hashCode() {
+		return settings.hashCode();
+	}
+}
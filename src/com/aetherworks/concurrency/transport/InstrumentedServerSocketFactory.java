@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.transport;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.server.RMIServerSocketFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Creates the server sockets RMI listens on for calls to an exported object. Accepted connections have the
+ * {@link SocketSettings} applied and their traffic counted in {@link #getStatistics()}.
+ * <p>
+ * RMI shares a listening socket between objects exported with equal factories, so factories with the same settings are
+ * equal. Counts are kept per factory instance.
+ */
+public class InstrumentedServerSocketFactory implements RMIServerSocketFactory {
+
+	private final SocketSettings settings;
+
+	private final SocketStatistics statistics = new SocketStatistics();
+
+	public InstrumentedServerSocketFactory(final SocketSettings settings) {
+		this.settings = Preconditions.checkNotNull(settings);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ServerSocket createServerSocket(final int port) throws IOException {
+		final ServerSocket serverSocket = new ServerSocket() {
+			/**
+			 * {@inheritDoc}
+			 */
+			@Override
+			public Socket accept() throws IOException {
+				final Socket socket = new CountingSocket(settings, statistics, CountingSocket.JRMP_RETURN, 1);
+
+				implAccept(socket);
+				statistics.connectionsOpened.increment();
+
+				return socket;
+			}
+		};
+
+		// Set before binding, so accepted sockets inherit a receive buffer large enough for the window they negotiate.
+		if (settings.getReceiveBufferSize() > 0) {
+			serverSocket.setReceiveBufferSize(settings.getReceiveBufferSize());
+		}
+
+		serverSocket.bind(new InetSocketAddress(port));
+
+		return serverSocket;
+	}
+
+	/**
+	 * The traffic on every connection accepted by sockets from this factory.
+	 */
+	public SocketStatistics getStatistics() {
+		return statistics;
+	}
+
+	public SocketSettings getSettings() {
+		return settings;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		return obj instanceof InstrumentedServerSocketFactory && settings.equals(((InstrumentedServerSocketFactory) obj).settings);
+	}
+
+	@Override
+	public int hashCode() {
+		return settings.hashCode();
+	}
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+
+import com.aetherworks.concurrency.server.Counter;
+import com.aetherworks.concurrency.server.Workload;
+
+/**
+ * The framed binary protocol spoken by {@link NioServer} and {@link NioServerRemote}.
+ * <p>
+ * Every frame starts with an int giving the length of the rest of the frame, followed by a long request id chosen by
+ * the client. Requests then carry a one byte operation code and its arguments; responses carry a one byte status and
+ * either the result or an error message. A client may have many requests outstanding on one connection, and responses
+ * may come back in any order, matched to their request by id.
+ * 
+ * <pre>
+ * request:  int length | long id | byte operation | arguments
+ * response: int length | long id | byte status    | result, or UTF-8 error message
+ * </pre>
+ * 
+ * Integers are big-endian. An int array is sent as its length followed by its elements, and a {@link Counter} as its
+ * ordinal in a single byte. A {@link Workload} is sent as its kind's ordinal in a single byte, its amount as a long, its
+ * sigma as a double, and whether it runs inside the lock as a byte.
+ * <p>
+ * A byte array is sent as its length followed by its bytes, and a payload object as the byte array of its Java
+ * serialization, so objects cost the same to marshal as they do over RMI. Payload replies carry the call number as an
+ * int before the payload.
+ * <p>
+ * A cursor is opened with {@link #OPEN_CURSOR}, whose reply carries the call number and a long cursor id chosen by the
+ * server. Each {@link #CURSOR_NEXT} sends the id and the largest chunk wanted, and gets back the next chunk as a byte
+ * array, or a length of -1 once the result has all been read. {@link #CURSOR_CLOSE} sends the id.
+ */
+final class NioProtocol {
+
+	/**
+	 * The largest frame either side will accept, so a corrupt length can't make the reader allocate without bound.
+	 */
+	static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+	/**
+	 * Size of the length prefix.
+	 */
+	static final int LENGTH_SIZE = 4;
+
+	/**
+	 * Size of the id and operation or status that start every frame body.
+	 */
+	static final int FRAME_HEADER_SIZE = 8 + 1;
+
+	/*
+	 * Operation codes, one for each method of ServerRemote.
+	 */
+	static final byte COUNT_CALLS = 1;
+	static final byte COUNT_CALLS_WITH_SYNCHRONIZATION = 2;
+	static final byte COUNT_CALLS_WITH_SLEEP = 3;
+	static final byte COUNT_CALLS_WITH_SLEEP_AND_SYNCHRONIZATION = 4;
+	static final byte COUNT_CALLS_WITH_ATOMIC_INTEGER = 5;
+	static final byte COUNT_CALLS_WITH_LONG_ADDER = 6;
+	static final byte COUNT_CALLS_WITH_STRIPED_COUNTER = 7;
+	static final byte COUNT_CALLS_WITH_REENTRANT_LOCK = 8;
+	static final byte COUNT_CALLS_WITH_STAMPED_LOCK = 9;
+	static final byte COUNT_CALLS_BATCH = 10;
+	static final byte EXECUTE_BATCH = 11;
+	static final byte READ_COUNTER = 12;
+	static final byte RESET_COUNTERS = 13;
+	static final byte SET_WORKLOAD = 14;
+	static final byte ECHO_BYTES = 15;
+	static final byte ECHO_SERIALIZABLE = 16;
+	static final byte ECHO_EXTERNALIZABLE = 17;
+	static final byte FETCH_ALL = 18;
+	static final byte OPEN_CURSOR = 19;
+	static final byte CURSOR_NEXT = 20;
+	static final byte CURSOR_CLOSE = 21;
+
+	static final byte STATUS_OK = 0;
+	static final byte STATUS_ERROR = 1;
+
+	/**
+	 * Size of an encoded {@link Workload}.
+	 */
+	static final int WORKLOAD_SIZE = 1 + 8 + 8 + 1;
+
+	private static final Counter[] COUNTERS = Counter.values();
+
+	private static final Workload.Kind[] WORKLOAD_KINDS = Workload.Kind.values();
+
+	/**
+	 * Only the payload classes, and the strings and primitive arrays inside them, may be deserialized from the wire.
+	 */
+	private static final ObjectInputFilter PAYLOAD_FILTER = ObjectInputFilter.Config
+			.createFilter("com.aetherworks.concurrency.server.payload.*;java.lang.String;!*");
+
+	private NioProtocol() {
+	}
+
+	/**
+	 * Allocate a frame with room for <tt>payloadSize</tt> bytes after the header, with the length, id and operation or
+	 * status already written. The caller writes the payload and flips the buffer.
+	 */
+	static ByteBuffer allocateFrame(final long id, final byte operationOrStatus, final int payloadSize) {
+		final ByteBuffer frame = ByteBuffer.allocate(LENGTH_SIZE + FRAME_HEADER_SIZE + payloadSize);
+
+		frame.putInt(FRAME_HEADER_SIZE + payloadSize);
+		frame.putLong(id);
+		frame.put(operationOrStatus);
+
+		return frame;
+	}
+
+	static void putIntArray(final ByteBuffer buffer, final int[] values) {
+		buffer.putInt(values.length);
+
+		for (final int value : values) {
+			buffer.putInt(value);
+		}
+	}
+
+	static int[] getIntArray(final ByteBuffer buffer) {
+		final int[] values = new int[buffer.getInt()];
+
+		for (int i = 0; i < values.length; i++) {
+			values[i] = buffer.getInt();
+		}
+
+		return values;
+	}
+
+	static Counter getCounter(final ByteBuffer buffer) {
+		final int ordinal = buffer.get();
+
+		if (ordinal < 0 || ordinal >= COUNTERS.length) {
+			throw new IllegalArgumentException("Unknown counter: " + ordinal);
+		}
+
+		return COUNTERS[ordinal];
+	}
+
+	static void putWorkload(final ByteBuffer buffer, final Workload workload) {
+		buffer.put((byte) workload.getKind().ordinal());
+		buffer.putLong(workload.getAmount());
+		buffer.putDouble(workload.getSigma());
+		buffer.put((byte) (workload.isInsideLock() ? 1 : 0));
+	}
+
+	static Workload getWorkload(final ByteBuffer buffer) {
+		final int ordinal = buffer.get();
+
+		if (ordinal < 0 || ordinal >= WORKLOAD_KINDS.length) {
+			throw new IllegalArgumentException("Unknown workload: " + ordinal);
+		}
+
+		return Workload.of(WORKLOAD_KINDS[ordinal], buffer.getLong(), buffer.getDouble()).withInsideLock(buffer.get() != 0);
+	}
+
+	static void putBytes(final ByteBuffer buffer, final byte[] values) {
+		buffer.putInt(values.length);
+		buffer.put(values);
+	}
+
+	static byte[] getBytes(final ByteBuffer buffer) {
+		final int length = buffer.getInt();
+
+		if (length < 0 || length > buffer.remaining()) {
+			throw new IllegalArgumentException("Invalid byte array length: " + length);
+		}
+
+		final byte[] values = new byte[length];
+		buffer.get(values);
+
+		return values;
+	}
+
+	/**
+	 * The Java serialization of a payload object, to send with {@link #putBytes(ByteBuffer, byte[])}.
+	 */
+	static byte[] serialize(final Object payload) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(payload);
+		}
+
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Read a payload object sent as its Java serialization.
+	 * 
+	 * @throws IOException
+	 *         If it can't be deserialized, or isn't of the expected type.
+	 */
+	static <T> T getObject(final ByteBuffer buffer, final Class<T> type) throws IOException {
+		try (final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(getBytes(buffer)))) {
+			in.setObjectInputFilter(PAYLOAD_FILTER);
+
+			return type.cast(in.readObject());
+		} catch (final ClassNotFoundException | ClassCastException e) {
+			throw new IOException("Invalid payload.", e);
+		}
+	}
+
+	/**
+	 * Check a frame length read off the wire.
+	 * 
+	 * @throws IOException
+	 *         If it is too short to hold a header, or longer than {@link #MAX_FRAME_LENGTH}, in which case the stream
+	 *         can't be trusted and the connection should be closed.
+	 */
+	static void checkFrameLength(final int length) throws IOException {
+		if (length < FRAME_HEADER_SIZE || length > MAX_FRAME_LENGTH) {
+			throw new IOException("Invalid frame length: " + length);
+		}
+	}
+}
@@ -0,0 +1,502 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.aetherworks.concurrency.server.Counter;
+import com.aetherworks.concurrency.server.RemoteCursor;
+import com.aetherworks.concurrency.server.ServerRemote;
+import com.aetherworks.concurrency.server.payload.ExternalizableNode;
+import com.aetherworks.concurrency.server.payload.PayloadReply;
+import com.aetherworks.concurrency.server.payload.SerializableNode;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Serves the {@link ServerRemote} operations over {@link NioProtocol}, as an alternative to RMI, so the cost of RMI
+ * itself can be measured by running the same calls over both.
+ * <p>
+ * A single selector thread accepts connections, reads request frames and writes response frames, without blocking on
+ * any of them. Each request is run against the backend on a pool of worker threads, since some operations sleep or wait
+ * for locks, so the requests pipelined on one connection run concurrently just as RMI calls from separate connections
+ * do. Responses are written back in the order they complete.
+ * <p>
+ * Cursors opened by clients are kept by id until the client closes them, or the server is closed.
+ */
+public class NioServer implements Closeable {
+	private final static Logger LOGGER = Logger.getLogger(NioServer.class.getName());
+
+	private static final int INITIAL_READ_BUFFER_SIZE = 64 * 1024;
+
+	private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+	private final ServerRemote backend;
+
+	private final Selector selector;
+
+	private final ServerSocketChannel serverChannel;
+
+	private final ExecutorService workers = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat(
+			"nio-server-worker-%d").setDaemon(true).build());
+
+	/**
+	 * Connections that have new responses to write, and so need the selector to watch them for writability.
+	 */
+	private final Queue<Connection> connectionsToWrite = new ConcurrentLinkedQueue<>();
+
+	private final Thread selectorThread;
+
+	/**
+	 * The cursors clients have opened and not yet closed, by id.
+	 */
+	private final ConcurrentMap<Long, RemoteCursor> cursors = new ConcurrentHashMap<>();
+
+	private final AtomicLong nextCursorId = new AtomicLong();
+
+	private volatile boolean running = true;
+
+	/**
+	 * Bind to <tt>port</tt> on every interface. Call {@link #start()} to begin serving.
+	 * 
+	 * @param backend
+	 *        The object that handles each request, normally the same one that is exported over RMI.
+	 * @param port
+	 *        The port to listen on, or 0 for any free port.
+	 */
+	public NioServer(final ServerRemote backend, final int port) throws IOException {
+		this.backend = backend;
+
+		selector = Selector.open();
+
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.bind(new InetSocketAddress(port));
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+		selectorThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				serve();
+			}
+		}, "nio-server-selector");
+	}
+
+	public void start() {
+		selectorThread.start();
+
+		LOGGER.log(Level.INFO, "NIO server listening on port " + getPort() + ".");
+	}
+
+	public int getPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	/**
+	 * Stop accepting requests, close every connection and wait for running requests to finish.
+	 */
+	@Override
+	public void close() throws IOException {
+		running = false;
+		selector.wakeup();
+
+		try {
+			selectorThread.join();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		for (final SelectionKey key : selector.keys()) {
+			key.channel().close();
+		}
+
+		selector.close();
+
+		workers.shutdown();
+
+		try {
+			if (!workers.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				workers.shutdownNow();
+			}
+		} catch (final InterruptedException e) {
+			workers.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+
+		for (final Long id : cursors.keySet()) {
+			closeCursor(id);
+		}
+	}
+
+	private void serve() {
+		while (running) {
+			try {
+				selector.select();
+			} catch (final IOException e) {
+				LOGGER.log(Level.SEVERE, "Selector failed. The NIO server has stopped.", e);
+				return;
+			}
+
+			watchConnectionsToWrite();
+
+			final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+			while (keys.hasNext()) {
+				final SelectionKey key = keys.next();
+				keys.remove();
+
+				try {
+					if (key.isAcceptable()) {
+						accept();
+					} else {
+						final Connection connection = (Connection) key.attachment();
+
+						if (key.isReadable()) {
+							connection.read();
+						}
+
+						if (key.isValid() && key.isWritable()) {
+							connection.write();
+						}
+					}
+				} catch (final IOException e) {
+					LOGGER.log(Level.FINE, "Closing connection.", e);
+					close(key);
+				}
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		final SocketChannel channel = serverChannel.accept();
+
+		if (channel == null) {
+			return;
+		}
+
+		channel.configureBlocking(false);
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+		final Connection connection = new Connection(channel);
+		connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+
+		LOGGER.log(Level.FINE, "Accepted connection from " + channel.getRemoteAddress() + ".");
+	}
+
+	private void watchConnectionsToWrite() {
+		Connection connection;
+
+		while ((connection = connectionsToWrite.poll()) != null) {
+			if (connection.key.isValid()) {
+				connection.key.interestOps(connection.key.interestOps() | SelectionKey.OP_WRITE);
+			}
+		}
+	}
+
+	private static void close(final SelectionKey key) {
+		key.cancel();
+
+		try {
+			key.channel().close();
+		} catch (final IOException e) {
+			LOGGER.log(Level.FINE, "Failed to close connection.", e);
+		}
+	}
+
+	/**
+	 * Run a single request against the backend.
+	 * 
+	 * @param request
+	 *        The frame body, positioned at the request id.
+	 * @return The response frame, ready to write.
+	 */
+	private ByteBuffer handle(final ByteBuffer request) {
+		final long id = request.getLong();
+		final byte operation = request.get();
+
+		try {
+			switch (operation) {
+				case NioProtocol.COUNT_CALLS:
+					return intResponse(id, backend.countCalls());
+				case NioProtocol.COUNT_CALLS_WITH_SYNCHRONIZATION:
+					return intResponse(id, backend.countCallsWithSynchronization());
+				case NioProtocol.COUNT_CALLS_WITH_SLEEP:
+					return intResponse(id, backend.countCallsWithSleep());
+				case NioProtocol.COUNT_CALLS_WITH_SLEEP_AND_SYNCHRONIZATION:
+					return intResponse(id, backend.countCallsWithSleepAndSynchronization());
+				case NioProtocol.COUNT_CALLS_WITH_ATOMIC_INTEGER:
+					return intResponse(id, backend.countCallsWithAtomicInteger());
+				case NioProtocol.COUNT_CALLS_WITH_LONG_ADDER:
+					return intResponse(id, backend.countCallsWithLongAdder());
+				case NioProtocol.COUNT_CALLS_WITH_STRIPED_COUNTER:
+					return intResponse(id, backend.countCallsWithStripedCounter());
+				case NioProtocol.COUNT_CALLS_WITH_REENTRANT_LOCK:
+					return intResponse(id, backend.countCallsWithReentrantLock());
+				case NioProtocol.COUNT_CALLS_WITH_STAMPED_LOCK:
+					return intResponse(id, backend.countCallsWithStampedLock());
+				case NioProtocol.COUNT_CALLS_BATCH:
+					return intResponse(id, backend.countCallsBatch(request.getInt()));
+				case NioProtocol.EXECUTE_BATCH:
+					return executeBatch(id, request);
+				case NioProtocol.READ_COUNTER:
+					return intResponse(id, backend.readCounter(NioProtocol.getCounter(request)));
+				case NioProtocol.RESET_COUNTERS:
+					backend.resetCounters();
+					return emptyResponse(id);
+				case NioProtocol.ECHO_BYTES:
+					return echoBytes(id, request);
+				case NioProtocol.ECHO_SERIALIZABLE:
+					return echoObject(id, backend.echoSerializable(NioProtocol.getObject(request, SerializableNode.class)));
+				case NioProtocol.ECHO_EXTERNALIZABLE:
+					return echoObject(id, backend.echoExternalizable(NioProtocol.getObject(request, ExternalizableNode.class)));
+				case NioProtocol.FETCH_ALL:
+					return fetchAll(id, request);
+				case NioProtocol.OPEN_CURSOR:
+					return openCursor(id, request);
+				case NioProtocol.CURSOR_NEXT:
+					return nextChunk(id, request);
+				case NioProtocol.CURSOR_CLOSE:
+					closeCursor(request.getLong());
+					return emptyResponse(id);
+				case NioProtocol.SET_WORKLOAD:
+					backend.setWorkload(NioProtocol.getCounter(request), NioProtocol.getWorkload(request));
+					return emptyResponse(id);
+				default:
+					throw new IllegalArgumentException("Unknown operation: " + operation);
+			}
+		} catch (final Exception e) {
+			LOGGER.log(Level.FINE, "Request " + id + " failed.", e);
+
+			final byte[] message = e.toString().getBytes(StandardCharsets.UTF_8);
+			final ByteBuffer response = NioProtocol.allocateFrame(id, NioProtocol.STATUS_ERROR, message.length);
+			response.put(message);
+			response.flip();
+
+			return response;
+		}
+	}
+
+	private ByteBuffer executeBatch(final long id, final ByteBuffer request) throws IOException {
+		final int size = request.getInt();
+
+		if (size < 0 || size > request.remaining()) {
+			throw new IllegalArgumentException("Invalid batch size: " + size);
+		}
+
+		final List<Counter> operations = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			operations.add(NioProtocol.getCounter(request));
+		}
+
+		final int[] callNumbers = backend.executeBatch(operations);
+
+		final ByteBuffer response = NioProtocol.allocateFrame(id, NioProtocol.STATUS_OK, 4 + 4 * callNumbers.length);
+		NioProtocol.putIntArray(response, callNumbers);
+		response.flip();
+
+		return response;
+	}
+
+	private static ByteBuffer intResponse(final long id, final int result) {
+		final ByteBuffer response = NioProtocol.allocateFrame(id, NioProtocol.STATUS_OK, 4);
+		response.putInt(result);
+		response.flip();
+
+		return response;
+	}
+
+	private ByteBuffer echoBytes(final long id, final ByteBuffer request) throws IOException {
+		final PayloadReply<byte[]> reply = backend.echoBytes(NioProtocol.getBytes(request));
+
+		return payloadResponse(id, reply.getCallNumber(), reply.getPayload());
+	}
+
+	private static ByteBuffer echoObject(final long id, final PayloadReply<?> reply) throws IOException {
+		return payloadResponse(id, reply.getCallNumber(), NioProtocol.serialize(reply.getPayload()));
+	}
+
+	private ByteBuffer fetchAll(final long id, final ByteBuffer request) throws IOException {
+		final PayloadReply<byte[]> reply = backend.fetchAll(request.getInt());
+
+		return payloadResponse(id, reply.getCallNumber(), reply.getPayload());
+	}
+
+	private ByteBuffer openCursor(final long id, final ByteBuffer request) throws IOException {
+		final PayloadReply<RemoteCursor> reply = backend.openCursor(request.getInt());
+
+		final long cursorId = nextCursorId.incrementAndGet();
+		cursors.put(cursorId, reply.getPayload());
+
+		final ByteBuffer response = NioProtocol.allocateFrame(id, NioProtocol.STATUS_OK, 4 + 8);
+		response.putInt(reply.getCallNumber());
+		response.putLong(cursorId);
+		response.flip();
+
+		return response;
+	}
+
+	private ByteBuffer nextChunk(final long id, final ByteBuffer request) throws IOException {
+		final long cursorId = request.getLong();
+		final RemoteCursor cursor = cursors.get(cursorId);
+
+		if (cursor == null) {
+			throw new IllegalArgumentException("Unknown cursor: " + cursorId);
+		}
+
+		final byte[] chunk = cursor.next(request.getInt());
+
+		if (chunk == null) {
+			return intResponse(id, -1);
+		}
+
+		final ByteBuffer response = NioProtocol.allocateFrame(id, NioProtocol.STATUS_OK, 4 + chunk.length);
+		NioProtocol.putBytes(response, chunk);
+		response.flip();
+
+		return response;
+	}
+
+	/**
+	 * Close a cursor and forget it, if it is still open.
+	 */
+	private void closeCursor(final long cursorId) {
+		final RemoteCursor cursor = cursors.remove(cursorId);
+
+		if (cursor != null) {
+			try {
+				cursor.close();
+			} catch (final IOException e) {
+				LOGGER.log(Level.FINE, "Failed to close cursor " + cursorId + ".", e);
+			}
+		}
+	}
+
+	private static ByteBuffer payloadResponse(final long id, final int callNumber, final byte[] payload) {
+		final ByteBuffer response = NioProtocol.allocateFrame(id, NioProtocol.STATUS_OK, 4 + 4 + payload.length);
+		response.putInt(callNumber);
+		NioProtocol.putBytes(response, payload);
+		response.flip();
+
+		return response;
+	}
+
+	private static ByteBuffer emptyResponse(final long id) {
+		final ByteBuffer response = NioProtocol.allocateFrame(id, NioProtocol.STATUS_OK, 0);
+		response.flip();
+
+		return response;
+	}
+
+	/**
+	 * The state of one client connection. Reading and writing happen only on the selector thread; responses are queued
+	 * by the worker threads.
+	 */
+	private class Connection {
+		private final SocketChannel channel;
+
+		private SelectionKey key;
+
+		private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+
+		private final Queue<ByteBuffer> responses = new ConcurrentLinkedQueue<>();
+
+		Connection(final SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * Read whatever has arrived, and hand every complete request frame to a worker.
+		 */
+		void read() throws IOException {
+			if (channel.read(readBuffer) < 0) {
+				throw new IOException("Connection closed by client.");
+			}
+
+			readBuffer.flip();
+
+			while (readBuffer.remaining() >= NioProtocol.LENGTH_SIZE) {
+				final int length = readBuffer.getInt(readBuffer.position());
+				NioProtocol.checkFrameLength(length);
+
+				if (readBuffer.remaining() < NioProtocol.LENGTH_SIZE + length) {
+					break;
+				}
+
+				readBuffer.position(readBuffer.position() + NioProtocol.LENGTH_SIZE);
+
+				final ByteBuffer request = ByteBuffer.allocate(length);
+				request.put(readBuffer.slice(readBuffer.position(), length));
+				request.flip();
+				readBuffer.position(readBuffer.position() + length);
+
+				dispatch(request);
+			}
+
+			readBuffer.compact();
+
+			// Make room for a frame too large for the buffer; the length has already been checked.
+			if (!readBuffer.hasRemaining()) {
+				final ByteBuffer larger = ByteBuffer.allocate(Math.min(readBuffer.capacity() * 2, NioProtocol.LENGTH_SIZE
+						+ NioProtocol.MAX_FRAME_LENGTH));
+				readBuffer.flip();
+				larger.put(readBuffer);
+				readBuffer = larger;
+			}
+		}
+
+		private void dispatch(final ByteBuffer request) {
+			workers.execute(new Runnable() {
+				@Override
+				public void run() {
+					responses.add(handle(request));
+					connectionsToWrite.add(Connection.this);
+					selector.wakeup();
+				}
+			});
+		}
+
+		/**
+		 * Write as many queued responses as the socket will take, and stop watching for writability once they are all
+		 * written.
+		 */
+		void write() throws IOException {
+			ByteBuffer response;
+
+			while ((response = responses.peek()) != null) {
+				channel.write(response);
+
+				if (response.hasRemaining()) {
+					return;
+				}
+
+				responses.poll();
+			}
+
+			// A worker that queues a response after this point also queues this connection, so it will be watched again.
+			key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+		}
+	}
+}
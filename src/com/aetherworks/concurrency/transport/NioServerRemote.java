@@ -0,0 +1,475 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.transport;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.rmi.MarshalException;
+import java.rmi.RemoteException;
+import java.rmi.UnmarshalException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+import com.aetherworks.concurrency.server.Counter;
+import com.aetherworks.concurrency.server.RemoteCursor;
+import com.aetherworks.concurrency.server.ServerRemote;
+import com.aetherworks.concurrency.server.Workload;
+import com.aetherworks.concurrency.server.payload.ExternalizableNode;
+import com.aetherworks.concurrency.server.payload.PayloadReply;
+import com.aetherworks.concurrency.server.payload.SerializableNode;
+
+/**
+ * A {@link ServerRemote} that makes its calls to a {@link NioServer} rather than over RMI, so that any existing call
+ * can be run over either transport.
+ * <p>
+ * All calls share a single connection. Each caller writes its request and then waits for the response with the same
+ * id, so calls from many threads are pipelined on the connection rather than each needing a connection of its own, as
+ * they would with RMI. A single reader thread hands responses to their callers as they arrive.
+ */
+public class NioServerRemote implements ServerRemote, Closeable {
+	private final static Logger LOGGER = Logger.getLogger(NioServerRemote.class.getName());
+
+	private final SocketChannel channel;
+
+	/**
+	 * Held while writing a request, so frames from different callers are not interleaved.
+	 */
+	private final Object writeLock = new Object();
+
+	private final AtomicLong nextRequestId = new AtomicLong();
+
+	/**
+	 * Callers waiting for a response, by request id.
+	 */
+	private final ConcurrentMap<Long, CompletableFuture<ByteBuffer>> outstandingRequests = new ConcurrentHashMap<>();
+
+	/**
+	 * Why the connection was lost, or null while it is still open.
+	 */
+	private volatile IOException failure;
+
+	/**
+	 * Connect to a {@link NioServer}.
+	 * 
+	 * @param host
+	 *        The server's host name, or null for the loopback address.
+	 */
+	public NioServerRemote(@Nullable final String host, final int port) throws IOException {
+		final InetSocketAddress address = host == null ? new InetSocketAddress(InetAddress.getLoopbackAddress(), port)
+				: new InetSocketAddress(host, port);
+
+		channel = SocketChannel.open(address);
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+		final Thread reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				readResponses();
+			}
+		}, "nio-client-reader-" + channel.getLocalAddress());
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCalls() throws RemoteException {
+		return invokeForInt(NioProtocol.COUNT_CALLS);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCallsWithSynchronization() throws RemoteException {
+		return invokeForInt(NioProtocol.COUNT_CALLS_WITH_SYNCHRONIZATION);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCallsWithSleep() throws RemoteException {
+		return invokeForInt(NioProtocol.COUNT_CALLS_WITH_SLEEP);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCallsWithSleepAndSynchronization() throws RemoteException {
+		return invokeForInt(NioProtocol.COUNT_CALLS_WITH_SLEEP_AND_SYNCHRONIZATION);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCallsWithAtomicInteger() throws RemoteException {
+		return invokeForInt(NioProtocol.COUNT_CALLS_WITH_ATOMIC_INTEGER);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCallsWithLongAdder() throws RemoteException {
+		return invokeForInt(NioProtocol.COUNT_CALLS_WITH_LONG_ADDER);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCallsWithStripedCounter() throws RemoteException {
+		return invokeForInt(NioProtocol.COUNT_CALLS_WITH_STRIPED_COUNTER);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCallsWithReentrantLock() throws RemoteException {
+		return invokeForInt(NioProtocol.COUNT_CALLS_WITH_REENTRANT_LOCK);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCallsWithStampedLock() throws RemoteException {
+		return invokeForInt(NioProtocol.COUNT_CALLS_WITH_STAMPED_LOCK);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countCallsBatch(final int calls) throws RemoteException {
+		final long id = nextRequestId.incrementAndGet();
+
+		final ByteBuffer request = NioProtocol.allocateFrame(id, NioProtocol.COUNT_CALLS_BATCH, 4);
+		request.putInt(calls);
+
+		return invoke(id, request).getInt();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int[] executeBatch(final List<Counter> operations) throws RemoteException {
+		final long id = nextRequestId.incrementAndGet();
+
+		final ByteBuffer request = NioProtocol.allocateFrame(id, NioProtocol.EXECUTE_BATCH, 4 + operations.size());
+		request.putInt(operations.size());
+		for (final Counter operation : operations) {
+			request.put((byte) operation.ordinal());
+		}
+
+		return NioProtocol.getIntArray(invoke(id, request));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public PayloadReply<byte[]> echoBytes(final byte[] payload) throws RemoteException {
+		final long id = nextRequestId.incrementAndGet();
+
+		final ByteBuffer request = NioProtocol.allocateFrame(id, NioProtocol.ECHO_BYTES, 4 + payload.length);
+		NioProtocol.putBytes(request, payload);
+
+		final ByteBuffer response = invoke(id, request);
+
+		return new PayloadReply<>(response.getInt(), NioProtocol.getBytes(response));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public PayloadReply<SerializableNode> echoSerializable(final SerializableNode tree) throws RemoteException {
+		return echoObject(NioProtocol.ECHO_SERIALIZABLE, tree, SerializableNode.class);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public PayloadReply<ExternalizableNode> echoExternalizable(final ExternalizableNode tree) throws RemoteException {
+		return echoObject(NioProtocol.ECHO_EXTERNALIZABLE, tree, ExternalizableNode.class);
+	}
+
+	/**
+	 * Send an object in its Java serialization, as RMI would, and read back the one the server returns.
+	 */
+	private <T> PayloadReply<T> echoObject(final byte operation, final T payload, final Class<T> type) throws RemoteException {
+		final byte[] serialized;
+		try {
+			serialized = NioProtocol.serialize(payload);
+		} catch (final IOException e) {
+			throw new MarshalException("Failed to serialize payload.", e);
+		}
+
+		final long id = nextRequestId.incrementAndGet();
+
+		final ByteBuffer request = NioProtocol.allocateFrame(id, operation, 4 + serialized.length);
+		NioProtocol.putBytes(request, serialized);
+
+		final ByteBuffer response = invoke(id, request);
+
+		try {
+			return new PayloadReply<>(response.getInt(), NioProtocol.getObject(response, type));
+		} catch (final IOException e) {
+			throw new UnmarshalException("Failed to deserialize payload.", e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public PayloadReply<byte[]> fetchAll(final int kilobytes) throws RemoteException {
+		final long id = nextRequestId.incrementAndGet();
+
+		final ByteBuffer request = NioProtocol.allocateFrame(id, NioProtocol.FETCH_ALL, 4);
+		request.putInt(kilobytes);
+
+		final ByteBuffer response = invoke(id, request);
+
+		return new PayloadReply<>(response.getInt(), NioProtocol.getBytes(response));
+	}
+
+	/**
+	 * The cursor makes its calls over this connection.
+	 * <p>
+	 * {@inheritDoc}
+	 */
+	@Override
+	public PayloadReply<RemoteCursor> openCursor(final int kilobytes) throws RemoteException {
+		final long id = nextRequestId.incrementAndGet();
+
+		final ByteBuffer request = NioProtocol.allocateFrame(id, NioProtocol.OPEN_CURSOR, 4);
+		request.putInt(kilobytes);
+
+		final ByteBuffer response = invoke(id, request);
+		final int callNumber = response.getInt();
+
+		return new PayloadReply<RemoteCursor>(callNumber, new NioCursor(response.getLong()));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int readCounter(final Counter counter) throws RemoteException {
+		final long id = nextRequestId.incrementAndGet();
+
+		final ByteBuffer request = NioProtocol.allocateFrame(id, NioProtocol.READ_COUNTER, 1);
+		request.put((byte) counter.ordinal());
+
+		return invoke(id, request).getInt();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setWorkload(final Counter counter, final Workload workload) throws RemoteException {
+		final long id = nextRequestId.incrementAndGet();
+
+		final ByteBuffer request = NioProtocol.allocateFrame(id, NioProtocol.SET_WORKLOAD, 1 + NioProtocol.WORKLOAD_SIZE);
+		request.put((byte) counter.ordinal());
+		NioProtocol.putWorkload(request, workload);
+
+		invoke(id, request);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void resetCounters() throws RemoteException {
+		final long id = nextRequestId.incrementAndGet();
+
+		invoke(id, NioProtocol.allocateFrame(id, NioProtocol.RESET_COUNTERS, 0));
+	}
+
+	/**
+	 * Close the connection. Calls still waiting for a response fail.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private int invokeForInt(final byte operation) throws RemoteException {
+		final long id = nextRequestId.incrementAndGet();
+
+		return invoke(id, NioProtocol.allocateFrame(id, operation, 0)).getInt();
+	}
+
+	/**
+	 * Send a request and wait for its response.
+	 * 
+	 * @param request
+	 *        The request frame, with its payload written but not yet flipped.
+	 * @return The body of a successful response, positioned at the result.
+	 * @throws RemoteException
+	 *         If the connection fails, or the server reports an error.
+	 */
+	private ByteBuffer invoke(final long id, final ByteBuffer request) throws RemoteException {
+		final CompletableFuture<ByteBuffer> response = new CompletableFuture<>();
+		outstandingRequests.put(id, response);
+
+		// Checked after registering, so a failure either sees this request or is seen here.
+		if (failure != null) {
+			outstandingRequests.remove(id);
+			throw new RemoteException("Connection to NIO server lost.", failure);
+		}
+
+		request.flip();
+
+		try {
+			synchronized (writeLock) {
+				while (request.hasRemaining()) {
+					channel.write(request);
+				}
+			}
+		} catch (final IOException e) {
+			outstandingRequests.remove(id);
+			throw new RemoteException("Failed to send request to NIO server.", e);
+		}
+
+		final ByteBuffer body;
+
+		try {
+			body = response.get();
+		} catch (final InterruptedException e) {
+			outstandingRequests.remove(id);
+			Thread.currentThread().interrupt();
+			throw new RemoteException("Interrupted while waiting for NIO server.", e);
+		} catch (final ExecutionException e) {
+			throw new RemoteException("Connection to NIO server lost.", e.getCause());
+		}
+
+		if (body.get() != NioProtocol.STATUS_OK) {
+			throw new RemoteException("NIO server failed to run request: "
+					+ StandardCharsets.UTF_8.decode(body).toString());
+		}
+
+		return body;
+	}
+
+	private void readResponses() {
+		final ByteBuffer lengthBuffer = ByteBuffer.allocate(NioProtocol.LENGTH_SIZE);
+
+		try {
+			while (true) {
+				lengthBuffer.clear();
+				readFully(lengthBuffer);
+
+				final int length = lengthBuffer.getInt(0);
+				NioProtocol.checkFrameLength(length);
+
+				final ByteBuffer body = ByteBuffer.allocate(length);
+				readFully(body);
+				body.flip();
+
+				final long id = body.getLong();
+				final CompletableFuture<ByteBuffer> response = outstandingRequests.remove(id);
+
+				if (response == null) {
+					LOGGER.log(Level.FINE, "Response to request " + id + " arrived after its caller gave up.");
+				} else {
+					response.complete(body);
+				}
+			}
+		} catch (final IOException e) {
+			failure = e;
+
+			LOGGER.log(Level.FINE, "Connection to NIO server closed.", e);
+
+			for (final Long id : outstandingRequests.keySet()) {
+				final CompletableFuture<ByteBuffer> response = outstandingRequests.remove(id);
+
+				if (response != null) {
+					response.completeExceptionally(e);
+				}
+			}
+		}
+	}
+
+	private void readFully(final ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				throw new EOFException("NIO server closed the connection.");
+			}
+		}
+	}
+
+	/**
+	 * A cursor held open by the {@link NioServer}, pulled over this connection.
+	 */
+	private class NioCursor implements RemoteCursor {
+		private final long cursorId;
+
+		NioCursor(final long cursorId) {
+			this.cursorId = cursorId;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		@Nullable
+		public byte[] next(final int maxBytes) throws RemoteException {
+			final long id = nextRequestId.incrementAndGet();
+
+			final ByteBuffer request = NioProtocol.allocateFrame(id, NioProtocol.CURSOR_NEXT, 8 + 4);
+			request.putLong(cursorId);
+			request.putInt(maxBytes);
+
+			final ByteBuffer response = invoke(id, request);
+
+			if (response.getInt(response.position()) < 0) {
+				return null;
+			}
+
+			return NioProtocol.getBytes(response);
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void close() throws RemoteException {
+			final long id = nextRequestId.incrementAndGet();
+
+			final ByteBuffer request = NioProtocol.allocateFrame(id, NioProtocol.CURSOR_CLOSE, 8);
+			request.putLong(cursorId);
+
+			invoke(id, request);
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.transport;
+
+import java.io.Serializable;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Objects;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Socket options applied by {@link InstrumentedClientSocketFactory} and {@link InstrumentedServerSocketFactory}. Sent to
+ * clients inside the RMI stub along with the client factory, so it must be serializable.
+ * <p>
+ * A buffer size of zero leaves the operating system's default in place.
+ */
+public class SocketSettings implements Serializable {
+
+	private static final long serialVersionUID = 4460170719245130934L;
+
+	private final boolean tcpNoDelay;
+	private final int sendBufferSize;
+	private final int receiveBufferSize;
+	private final int streamBufferSize;
+
+	private SocketSettings(final boolean tcpNoDelay, final int sendBufferSize, final int receiveBufferSize, final int streamBufferSize) {
+		this.tcpNoDelay = tcpNoDelay;
+		this.sendBufferSize = sendBufferSize;
+		this.receiveBufferSize = receiveBufferSize;
+		this.streamBufferSize = streamBufferSize;
+	}
+
+	/**
+	 * The settings RMI uses with its default sockets: Nagle's algorithm on, default buffer sizes, and unbuffered socket
+	 * streams (RMI buffers them itself).
+	 */
+	public static SocketSettings defaults() {
+		return new SocketSettings(false, 0, 0, 0);
+	}
+
+	/**
+	 * A copy of these settings that sets TCP_NODELAY, turning Nagle's algorithm off so small writes are sent at once.
+	 */
+	public SocketSettings withTcpNoDelay(final boolean tcpNoDelay) {
+		return new SocketSettings(tcpNoDelay, sendBufferSize, receiveBufferSize, streamBufferSize);
+	}
+
+	/**
+	 * A copy of these settings with the given SO_SNDBUF size in bytes.
+	 */
+	public SocketSettings withSendBufferSize(final int sendBufferSize) {
+		Preconditions.checkArgument(sendBufferSize >= 0, "The send buffer size can't be negative.");
+
+		return new SocketSettings(tcpNoDelay, sendBufferSize, receiveBufferSize, streamBufferSize);
+	}
+
+	/**
+	 * A copy of these settings with the given SO_RCVBUF size in bytes.
+	 */
+	public SocketSettings withReceiveBufferSize(final int receiveBufferSize) {
+		Preconditions.checkArgument(receiveBufferSize >= 0, "The receive buffer size can't be negative.");
+
+		return new SocketSettings(tcpNoDelay, sendBufferSize, receiveBufferSize, streamBufferSize);
+	}
+
+	/**
+	 * A copy of these settings that wraps each socket's streams in buffers of the given size, in addition to any
+	 * buffering RMI does itself. Zero leaves the streams unbuffered.
+	 */
+	public SocketSettings withStreamBufferSize(final int streamBufferSize) {
+		Preconditions.checkArgument(streamBufferSize >= 0, "The stream buffer size can't be negative.");
+
+		return new SocketSettings(tcpNoDelay, sendBufferSize, receiveBufferSize, streamBufferSize);
+	}
+
+	/**
+	 * Apply the socket options to a socket that has not yet been connected, so the buffer sizes take effect for the TCP
+	 * window negotiated on connection.
+	 */
+	void apply(final Socket socket) throws SocketException {
+		socket.setTcpNoDelay(tcpNoDelay);
+
+		if (sendBufferSize > 0) {
+			socket.setSendBufferSize(sendBufferSize);
+		}
+
+		if (receiveBufferSize > 0) {
+			socket.setReceiveBufferSize(receiveBufferSize);
+		}
+	}
+
+	public boolean isTcpNoDelay() {
+		return tcpNoDelay;
+	}
+
+	public int getSendBufferSize() {
+		return sendBufferSize;
+	}
+
+	public int getReceiveBufferSize() {
+		return receiveBufferSize;
+	}
+
+	public int getStreamBufferSize() {
+		return streamBufferSize;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (!(obj instanceof SocketSettings)) {
+			return false;
+		}
+
+		final SocketSettings other = (SocketSettings) obj;
+
+		return tcpNoDelay == other.tcpNoDelay && sendBufferSize == other.sendBufferSize && receiveBufferSize == other.receiveBufferSize
+				&& streamBufferSize == other.streamBufferSize;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(tcpNoDelay, sendBufferSize, receiveBufferSize, streamBufferSize);
+	}
+
+	@Override
+	public String toString() {
+		return "TCP_NODELAY=" + tcpNoDelay + ", SO_SNDBUF=" + sendBufferSize + ", SO_RCVBUF=" + receiveBufferSize + ", stream buffer="
+				+ streamBufferSize;
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.transport;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts what happens on the sockets created by an instrumented socket factory. Use {@link #snapshot()} before and
+ * after a run, and {@link Snapshot#minus(Snapshot)} to see what the run did.
+ * <p>
+ * A connection is counted as reused each time it carries a call after its first, which is how often RMI's connection
+ * pool saved opening a new one. Pings and acknowledgements RMI sends on idle connections are not counted.
+ */
+public class SocketStatistics {
+
+	final LongAdder connectionsOpened = new LongAdder();
+	final LongAdder connectionsReused = new LongAdder();
+	final LongAdder bytesRead = new LongAdder();
+	final LongAdder bytesWritten = new LongAdder();
+	final LongAdder readCalls = new LongAdder();
+	final LongAdder writeCalls = new LongAdder();
+
+	public Snapshot snapshot() {
+		return new Snapshot(connectionsOpened.sum(), connectionsReused.sum(), bytesRead.sum(), bytesWritten.sum(), readCalls.sum(),
+				writeCalls.sum());
+	}
+
+	/**
+	 * The counts at one moment.
+	 */
+	public static class Snapshot {
+		private final long connectionsOpened;
+		private final long connectionsReused;
+		private final long bytesRead;
+		private final long bytesWritten;
+		private final long readCalls;
+		private final long writeCalls;
+
+		Snapshot(final long connectionsOpened, final long connectionsReused, final long bytesRead, final long bytesWritten,
+				final long readCalls, final long writeCalls) {
+			this.connectionsOpened = connectionsOpened;
+			this.connectionsReused = connectionsReused;
+			this.bytesRead = bytesRead;
+			this.bytesWritten = bytesWritten;
+			this.readCalls = readCalls;
+			this.writeCalls = writeCalls;
+		}
+
+		/**
+		 * Write the counts so that {@link #read(DataInput)} can recreate them in another process.
+		 */
+		public void write(final DataOutput out) throws IOException {
+			out.writeLong(connectionsOpened);
+			out.writeLong(connectionsReused);
+			out.writeLong(bytesRead);
+			out.writeLong(bytesWritten);
+			out.writeLong(readCalls);
+			out.writeLong(writeCalls);
+		}
+
+		public static Snapshot read(final DataInput in) throws IOException {
+			return new Snapshot(in.readLong(), in.readLong(), in.readLong(), in.readLong(), in.readLong(), in.readLong());
+		}
+
+		/**
+		 * The sum of these counts and <tt>other</tt>'s, for traffic seen in separate processes.
+		 */
+		public Snapshot plus(final Snapshot other) {
+			return new Snapshot(connectionsOpened + other.connectionsOpened, connectionsReused + other.connectionsReused, bytesRead
+					+ other.bytesRead, bytesWritten + other.bytesWritten, readCalls + other.readCalls, writeCalls + other.writeCalls);
+		}
+
+		/**
+		 * The counts accumulated between <tt>earlier</tt> and this snapshot.
+		 */
+		public Snapshot minus(final Snapshot earlier) {
+			return new Snapshot(connectionsOpened - earlier.connectionsOpened, connectionsReused - earlier.connectionsReused, bytesRead
+					- earlier.bytesRead, bytesWritten - earlier.bytesWritten, readCalls - earlier.readCalls, writeCalls - earlier.writeCalls);
+		}
+
+		public long getConnectionsOpened() {
+			return connectionsOpened;
+		}
+
+		public long getConnectionsReused() {
+			return connectionsReused;
+		}
+
+		public long getBytesRead() {
+			return bytesRead;
+		}
+
+		public long getBytesWritten() {
+			return bytesWritten;
+		}
+
+		public long getReadCalls() {
+			return readCalls;
+		}
+
+		public long getWriteCalls() {
+			return writeCalls;
+		}
+
+		/**
+		 * A single line summary, in the same style as the call results it is logged beside.
+		 */
+		public String toSummaryString() {
+			return String.format("connections opened=%d, reused=%d, bytes read=%d, written=%d, read calls=%d, write calls=%d",
+					connectionsOpened, connectionsReused, bytesRead, bytesWritten, readCalls, writeCalls);
+		}
+	}
+}
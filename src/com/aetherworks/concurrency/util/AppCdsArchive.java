@@ -0,0 +1,290 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import javax.annotation.Nullable;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * A dynamic application class data sharing (AppCDS) archive of the classes that child JVMs load from one classpath, so
+ * that later children map them in ready-parsed and verified instead of loading them from scratch.
+ * <p>
+ * No separate training run is needed: the first child to start with a classpath records the classes it loaded when it
+ * exits, and the archive is moved into place for the children after it. Children started while the archive is being
+ * recorded run without one. The archive is kept in the temporary directory, named after the JVM and the size and
+ * modification time of every entry on the classpath, so it is reused by later runs and never used with a different JVM
+ * or classpath, or after a jar on it is rebuilt, when the JVM would quietly refuse to map it.
+ * <p>
+ * The JVM can only archive classes from jar files, so children are given {@link #getClasspath()} in place of the
+ * classpath: each non-empty directory on it, such as <tt>target/classes</tt>, is replaced with a jar of its contents.
+ * The jar is also kept in the temporary directory, named after the names, sizes and modification times of the files in
+ * the directory, so it is only written again once the directory changes.
+ */
+final class AppCdsArchive {
+	private final static Logger LOGGER = Logger.getLogger(AppCdsArchive.class.getName());
+
+	private static final ConcurrentMap<String, AppCdsArchive> ARCHIVES = new ConcurrentHashMap<>();
+
+	private static final Path TEMPORARY_DIRECTORY = Path.of(System.getProperty("java.io.tmpdir"));
+
+	private final String childClasspath;
+
+	private final Path archive;
+
+	private final boolean supported;
+
+	/**
+	 * Whether a child has been asked to record the archive. Guarded by this.
+	 */
+	private boolean recording = false;
+
+	private AppCdsArchive(final String classpath) {
+		String jarredClasspath;
+		try {
+			jarredClasspath = jarDirectories(classpath);
+		} catch (final IOException e) {
+			LOGGER.log(Level.WARNING, "Not using AppCDS: failed to jar the directories on the classpath, and only classes in jars "
+					+ "can be archived.", e);
+			jarredClasspath = null;
+		}
+
+		supported = jarredClasspath != null;
+		childClasspath = supported ? jarredClasspath : classpath;
+
+		final Hasher key = Hashing.sha1().newHasher().putUnencodedChars(System.getProperty("java.home")).putUnencodedChars(
+				System.getProperty("java.vm.version"));
+		for (final String entry : childClasspath.split(File.pathSeparator)) {
+			putFile(key, Path.of(entry), entry);
+		}
+
+		archive = TEMPORARY_DIRECTORY.resolve("concurrency-appcds-" + key.hash().toString().substring(0, 16) + ".jsa");
+	}
+
+	/**
+	 * The archive for children started with <tt>classpath</tt>.
+	 */
+	static AppCdsArchive forClasspath(final String classpath) {
+		final AppCdsArchive existing = ARCHIVES.get(classpath);
+
+		if (existing != null) {
+			return existing;
+		}
+
+		final AppCdsArchive created = new AppCdsArchive(classpath);
+		final AppCdsArchive raced = ARCHIVES.putIfAbsent(classpath, created);
+
+		return raced == null ? created : raced;
+	}
+
+	/**
+	 * The classpath to start children with, which holds the same classes as the one this archive was made for.
+	 */
+	String getClasspath() {
+		return childClasspath;
+	}
+
+	/**
+	 * The JVM arguments for the next child: use the archive if it exists, otherwise record it if no other child is
+	 * already doing so. Once a recording child has exited, pass its recording to {@link #install(Path)}.
+	 * 
+	 * @return The arguments, and the file being recorded, if this child is recording the archive.
+	 */
+	synchronized Arguments nextArguments() throws IOException {
+		if (!supported) {
+			return new Arguments(Collections.<String> emptyList(), null);
+		}
+
+		if (Files.isReadable(archive)) {
+			return new Arguments(Collections.singletonList("-XX:SharedArchiveFile=" + archive), null);
+		}
+
+		if (recording) {
+			return new Arguments(Collections.<String> emptyList(), null);
+		}
+
+		recording = true;
+
+		final Path recordingFile = Files.createTempFile(archive.getParent(), "concurrency-appcds", ".jsa.tmp");
+		Files.delete(recordingFile);
+
+		LOGGER.log(Level.INFO, "Recording an AppCDS archive of the classpath to " + archive + ".");
+
+		return new Arguments(Collections.singletonList("-XX:ArchiveClassesAtExit=" + recordingFile), recordingFile);
+	}
+
+	/**
+	 * Move a finished recording into place for the children that follow. If the child failed to write one, the next
+	 * child tries again.
+	 */
+	synchronized void install(final Path recordingFile) {
+		recording = false;
+
+		try {
+			if (!Files.exists(recordingFile)) {
+				LOGGER.log(Level.WARNING, "The child recording the AppCDS archive exited without writing it.");
+				return;
+			}
+
+			try {
+				Files.move(recordingFile, archive, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (final AtomicMoveNotSupportedException e) {
+				Files.move(recordingFile, archive, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (final IOException e) {
+			LOGGER.log(Level.WARNING, "Failed to install the AppCDS archive.", e);
+		}
+	}
+
+	/**
+	 * The classpath with each non-empty directory on it replaced by a jar of the directory's contents.
+	 */
+	private static String jarDirectories(final String classpath) throws IOException {
+		final List<String> entries = new ArrayList<>();
+
+		for (final String entry : classpath.split(File.pathSeparator)) {
+			final Path path = Path.of(entry);
+
+			if (Files.isDirectory(path)) {
+				final List<Path> files = listFiles(path);
+
+				entries.add(files.isEmpty() ? entry : jarDirectory(path, files).toString());
+			} else {
+				entries.add(entry);
+			}
+		}
+
+		return String.join(File.pathSeparator, entries);
+	}
+
+	/**
+	 * Every file under a directory, in a fixed order.
+	 */
+	private static List<Path> listFiles(final Path directory) throws IOException {
+		final List<Path> files = new ArrayList<>();
+
+		try (final Stream<Path> contents = Files.walk(directory)) {
+			final Iterator<Path> paths = contents.iterator();
+
+			while (paths.hasNext()) {
+				final Path path = paths.next();
+
+				if (Files.isRegularFile(path)) {
+					files.add(path);
+				}
+			}
+		}
+
+		Collections.sort(files);
+
+		return files;
+	}
+
+	/**
+	 * A jar of the files in a directory, written only if there isn't already one of the same files.
+	 */
+	private static Path jarDirectory(final Path directory, final List<Path> files) throws IOException {
+		final Hasher key = Hashing.sha1().newHasher().putUnencodedChars(directory.toAbsolutePath().toString());
+		for (final Path file : files) {
+			putFile(key, file, directory.relativize(file).toString());
+		}
+
+		final Path jar = TEMPORARY_DIRECTORY.resolve("concurrency-classes-" + key.hash().toString().substring(0, 16) + ".jar");
+
+		if (Files.isReadable(jar)) {
+			return jar;
+		}
+
+		final Path writing = Files.createTempFile(TEMPORARY_DIRECTORY, "concurrency-classes", ".jar.tmp");
+
+		try {
+			final Manifest manifest = new Manifest();
+			manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+
+			try (final OutputStream out = Files.newOutputStream(writing);
+					final JarOutputStream jarOut = new JarOutputStream(out, manifest)) {
+				for (final Path file : files) {
+					jarOut.putNextEntry(new JarEntry(directory.relativize(file).toString().replace(File.separatorChar, '/')));
+					Files.copy(file, jarOut);
+					jarOut.closeEntry();
+				}
+			}
+
+			try {
+				Files.move(writing, jar, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (final AtomicMoveNotSupportedException e) {
+				Files.move(writing, jar, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(writing);
+		}
+
+		LOGGER.log(Level.INFO, "Jarred " + directory + " to " + jar + " for the AppCDS archive.");
+
+		return jar;
+	}
+
+	/**
+	 * Add a file's name, size and modification time to a key, or just its name if it can't be read.
+	 */
+	private static void putFile(final Hasher key, final Path file, final String name) {
+		key.putUnencodedChars(name);
+
+		try {
+			key.putLong(Files.size(file)).putLong(Files.getLastModifiedTime(file).toMillis());
+		} catch (final IOException e) {
+			key.putLong(-1);
+		}
+	}
+
+	/**
+	 * The archive arguments for one child.
+	 */
+	static final class Arguments {
+		private final List<String> jvmArguments;
+
+		@Nullable
+		private final Path recordingFile;
+
+		Arguments(final List<String> jvmArguments, @Nullable final Path recordingFile) {
+			this.jvmArguments = jvmArguments;
+			this.recordingFile = recordingFile;
+		}
+
+		List<String> getJvmArguments() {
+			return jvmArguments;
+		}
+
+		/**
+		 * The file the child records the archive to, or null if it isn't recording one.
+		 */
+		@Nullable
+		Path getRecordingFile() {
+			return recordingFile;
+		}
+	}
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Copies the console output of every child process to this process's console from a single thread, however many
+ * children there are.
+ * <p>
+ * A process's pipes can't be selected on, so the thread polls: each pass reads whatever every stream has available
+ * without blocking, prefixes each complete line, and writes all the lines bound for each console in one batch. It sleeps
+ * briefly when no stream has anything to read, and parks when there are no streams at all, so relaying output costs
+ * little CPU while a benchmark runs. A stream is dropped once it reaches end of file, which happens when its process
+ * exits.
+ */
+public final class ConsoleMultiplexer {
+	private final static Logger LOGGER = Logger.getLogger(ConsoleMultiplexer.class.getName());
+
+	private static final ConsoleMultiplexer INSTANCE = new ConsoleMultiplexer();
+
+	/**
+	 * How long to sleep after a pass in which no stream had anything to read.
+	 */
+	private static final long IDLE_SLEEP_MILLIS = 20;
+
+	private static final int READ_BUFFER_SIZE = 8192;
+
+	/**
+	 * Streams registered since the multiplexer's thread last looked. Only that thread touches the streams it has taken.
+	 */
+	private final Queue<Stream> newStreams = new ConcurrentLinkedQueue<>();
+
+	private volatile ConsoleOutput output = ConsoleOutput.ALL;
+
+	private volatile int sampleEvery = 1;
+
+	private final Thread thread;
+
+	private ConsoleMultiplexer() {
+		thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				multiplex();
+			}
+		}, "console-multiplexer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * The multiplexer that every {@link SeparateProcess} in this JVM shares.
+	 */
+	public static ConsoleMultiplexer getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Choose what to do with the output of children, from now on.
+	 * 
+	 * @param sampleEvery
+	 *        With {@link ConsoleOutput#SAMPLE}, copy one line in every this many.
+	 */
+	public void setOutput(final ConsoleOutput output, final int sampleEvery) {
+		checkArgument(sampleEvery > 0, "Must sample at least one line in every %s.", sampleEvery);
+
+		this.sampleEvery = sampleEvery;
+		this.output = output;
+	}
+
+	/**
+	 * Copy <tt>process</tt>'s standard output to {@link System#out} and its standard error to {@link System#err}.
+	 * 
+	 * @param prefix
+	 *        Text to be prepended to every line from the process.
+	 */
+	public void register(final String prefix, final Process process) {
+		newStreams.add(new Stream(prefix, process, process.getInputStream(), System.out));
+		newStreams.add(new Stream(prefix, process, process.getErrorStream(), System.err));
+
+		LockSupport.unpark(thread);
+	}
+
+	private void multiplex() {
+		final List<Stream> streams = new ArrayList<>();
+		final byte[] buffer = new byte[READ_BUFFER_SIZE];
+		final StringBuilder out = new StringBuilder();
+		final StringBuilder err = new StringBuilder();
+
+		while (true) {
+			Stream added;
+			while ((added = newStreams.poll()) != null) {
+				streams.add(added);
+			}
+
+			if (streams.isEmpty()) {
+				LockSupport.park(this);
+				continue;
+			}
+
+			boolean read = false;
+
+			for (final Iterator<Stream> iterator = streams.iterator(); iterator.hasNext();) {
+				final Stream stream = iterator.next();
+
+				final StringBuilder batch = stream.target == System.err ? err : out;
+
+				try {
+					read |= stream.read(buffer, batch);
+				} catch (final IOException e) {
+					LOGGER.log(Level.WARNING, "Error reading from process stream: '" + stream.prefix + "'.", e);
+
+					stream.closed = true;
+				}
+
+				if (stream.closed) {
+					stream.flushPartialLine(batch);
+					iterator.remove();
+				}
+			}
+
+			write(out, System.out);
+			write(err, System.err);
+
+			if (!read) {
+				LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(IDLE_SLEEP_MILLIS));
+			}
+		}
+	}
+
+	private static void write(final StringBuilder batch, final PrintStream target) {
+		if (batch.length() > 0) {
+			target.print(batch);
+			target.flush();
+			batch.setLength(0);
+		}
+	}
+
+	/**
+	 * One of a child's console streams, and the line it is part way through.
+	 */
+	private final class Stream {
+		private final String prefix;
+		private final Process process;
+		private final InputStream in;
+		private final PrintStream target;
+
+		private byte[] line = new byte[256];
+		private int lineLength = 0;
+
+		private long lineNumber = 0;
+
+		private boolean closed = false;
+
+		Stream(final String prefix, final Process process, final InputStream in, final PrintStream target) {
+			this.prefix = prefix;
+			this.process = process;
+			this.in = in;
+			this.target = target;
+		}
+
+		/**
+		 * Read whatever is available without blocking, appending each complete line that is to be copied to
+		 * <tt>batch</tt>.
+		 * 
+		 * @return Whether anything was read.
+		 */
+		boolean read(final byte[] buffer, final StringBuilder batch) throws IOException {
+			final int available = in.available();
+
+			final int count = available > 0 ? in.read(buffer, 0, Math.min(available, buffer.length)) : readIfExited(buffer);
+
+			if (count < 0) {
+				closed = true;
+				in.close();
+				return false;
+			}
+
+			for (int i = 0; i < count; i++) {
+				if (buffer[i] == '\n') {
+					appendLine(batch);
+				} else {
+					if (lineLength == line.length) {
+						line = Arrays.copyOf(line, line.length * 2);
+					}
+					line[lineLength++] = buffer[i];
+				}
+			}
+
+			return count > 0;
+		}
+
+		private int readIfExited(final byte[] buffer) throws IOException {
+			// An empty pipe only reports end of file once its writing end has closed, and until then reading would block.
+			return process.isAlive() ? 0 : in.read(buffer, 0, buffer.length);
+		}
+
+		void flushPartialLine(final StringBuilder batch) {
+			if (lineLength > 0) {
+				appendLine(batch);
+			}
+		}
+
+		private void appendLine(final StringBuilder batch) {
+			final int end = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+
+			if (isCopied(lineNumber++)) {
+				batch.append(prefix).append(new String(line, 0, end, Charset.defaultCharset())).append(System.lineSeparator());
+			}
+
+			lineLength = 0;
+		}
+
+		private boolean isCopied(final long number) {
+			switch (output) {
+				case ALL:
+					return true;
+				case SAMPLE:
+					return number % sampleEvery == 0;
+				default:
+					return false;
+			}
+		}
+	}
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.util;
+
+/**
+ * What {@link ConsoleMultiplexer} does with the lines child processes write to their consoles. Whatever the choice,
+ * every child's output is still read, so that no child blocks on a full pipe.
+ */
+public enum ConsoleOutput {
+
+	/**
+	 * Copy every line.
+	 */
+	ALL,
+
+	/**
+	 * Copy one line in every so many from each stream, starting with the first.
+	 */
+	SAMPLE,
+
+	/**
+	 * Copy nothing.
+	 */
+	DROP
+}
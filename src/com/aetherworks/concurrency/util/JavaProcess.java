@@ -6,12 +6,21 @@
 package com.aetherworks.concurrency.util;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.annotation.Nullable;
+
 /**
  * Class for starting a Java class in a separate process and maintaining it during its lifetime.
+ * <p>
+ * The process runs the same <tt>java</tt> executable as this process, from <tt>java.home</tt>, rather than whichever
+ * one is first on the path. Its command is passed to the operating system as a list of arguments, so paths and
+ * arguments need no quoting.
  * 
  * @author Angus Macdonald (amacdonald@aetherworks.com)
  */
@@ -19,9 +28,7 @@ public class JavaProcess extends SeparateProcess {
 
 	private final static Logger LOGGER = Logger.getLogger(JavaProcess.class.getName());
 
-	private static final String DEFAULT_JAVA_COMMAND_PATH = "java ";
-
-	private static final String USE_SPLIT_VERIFIER_ARG = "-XX:-UseSplitVerifier ";
+	private static final String JAVA_EXECUTABLE = Path.of(System.getProperty("java.home"), "bin", "java").toString();
 
 	private final String javaLibraryPath;
 	private final String classpath;
@@ -29,13 +36,11 @@ public class JavaProcess extends SeparateProcess {
 	private final Class<?> classToRun;
 	private final List<String> classArgs;
 
-	private final String vmArgs;
-
-	private final boolean useSplitVerifier;
+	private final JvmOptions options;
 
 	/**
 	 * Run a given Java class with the provided arguments. Use the classpath and java.library.path of the current
-	 * process. By default, the <code>-XX:-UseSplitVerifier</code> VM argument will not be used.
+	 * process.
 	 * <p>
 	 * Use the other constructor to specify the classpath or java.library.path.
 	 * 
@@ -45,12 +50,12 @@ public class JavaProcess extends SeparateProcess {
 	 *        Arguments to be provided to the Java classes main method.
 	 */
 	public JavaProcess(final Class<?> classToRun, final List<String> classArgs) {
-		this(classToRun, classArgs, System.getProperty("java.class.path"), System.getProperty("java.library.path"), null, false);
+		this(classToRun, classArgs, JvmOptions.defaults());
 	}
 
 	/**
 	 * Run a given Java class with the provided arguments. Use the classpath and java.library.path of the current
-	 * process. By default, the <code>-XX:-UseSplitVerifier</code> VM argument will not be used.
+	 * process.
 	 * <p>
 	 * Use the other constructor to specify the classpath or java.library.path.
 	 * 
@@ -59,27 +64,25 @@ public class JavaProcess extends SeparateProcess {
 	 * @param classArgs
 	 *        Arguments to be provided to the Java classes main method.
 	 * @param vmArgs
-	 *        Arguments to be provided to the VM.
+	 *        Arguments to be provided to the VM, separated by whitespace, or null for none.
 	 */
-	public JavaProcess(final Class<?> classToRun, final List<String> classArgs, final String vmArgs) {
-		this(classToRun, classArgs, System.getProperty("java.class.path"), System.getProperty("java.library.path"), vmArgs, false);
+	public JavaProcess(final Class<?> classToRun, final List<String> classArgs, @Nullable final String vmArgs) {
+		this(classToRun, classArgs, vmArgs == null ? JvmOptions.defaults() : JvmOptions.defaults().withExtraArguments(vmArgs));
 	}
 
 	/**
 	 * Run a given Java class with the provided arguments. Use the classpath and java.library.path of the current
 	 * process.
-	 * <p>
-	 * Use the other constructor to specify the classpath or java.library.path.
 	 * 
 	 * @param classToRun
 	 *        Java class to be run in a separate process.
 	 * @param classArgs
 	 *        Arguments to be provided to the Java classes main method.
-	 * @param useSplitVerifier
-	 *        Whether to use the <code>-XX:-UseSplitVerifier</code> VM argument.
+	 * @param options
+	 *        How to start the VM.
 	 */
-	public JavaProcess(final Class<?> classToRun, final List<String> classArgs, final boolean useSplitVerifier) {
-		this(classToRun, classArgs, System.getProperty("java.class.path"), System.getProperty("java.library.path"), null, useSplitVerifier);
+	public JavaProcess(final Class<?> classToRun, final List<String> classArgs, final JvmOptions options) {
+		this(classToRun, classArgs, System.getProperty("java.class.path"), System.getProperty("java.library.path"), options);
 	}
 
 	/**
@@ -93,103 +96,75 @@ public class JavaProcess extends SeparateProcess {
 	 *        Classpath for this process.
 	 * @param javaLibraryPath
 	 *        java.library.path for this process.
-	 * @param useSplitVerifier
-	 *        Whether to use the <code>-XX:-UseSplitVerifier</code> VM argument.
+	 * @param options
+	 *        How to start the VM.
 	 */
-	public JavaProcess(final Class<?> classToRun, final List<String> classArgs, final String classpath, final String javaLibraryPath,
-			final String vmArgs, final boolean useSplitVerifier) {
+	public JavaProcess(final Class<?> classToRun, final List<String> classArgs, final String classpath,
+			@Nullable final String javaLibraryPath, final JvmOptions options) {
 
 		this.classToRun = classToRun;
-		this.classArgs = classArgs;
+		this.classArgs = classArgs == null ? Collections.<String> emptyList() : classArgs;
 		this.javaLibraryPath = javaLibraryPath;
 		this.classpath = classpath;
-		this.vmArgs = vmArgs;
-		this.useSplitVerifier = useSplitVerifier;
+		this.options = options;
 	}
 
 	@Override
 	public void executeProcess(final String consolePrefix) throws IOException {
-		final String commandToRun = createJavaCommand();
+		final AppCdsArchive archive = options.isAppCds() ? AppCdsArchive.forClasspath(classpath) : null;
+		final AppCdsArchive.Arguments archiveArguments = archive == null ? null : archive.nextArguments();
 
-		LOGGER.log(Level.INFO, "Executing command: '" + commandToRun + "'.");
+		final List<String> command = createJavaCommand(archive == null ? classpath : archive.getClasspath(),
+				archiveArguments == null ? Collections.<String> emptyList() : archiveArguments.getJvmArguments());
+
+		LOGGER.log(Level.INFO, "Executing command: '" + String.join(" ", command) + "'.");
 
 		try {
-			process = Runtime.getRuntime().exec(commandToRun);
+			process = new ProcessBuilder(command).start();
 		} catch (final IOException e) {
 			LOGGER.log(Level.WARNING, "Exception thrown while attempting to start process for class: '" + classToRun.getName() + "'.", e);
-			throw e;
-		}
-
-		redirectConsoleOutput(consolePrefix, classToRun.getSimpleName());
-	}
-
-	/**
-	 * Use all of the provided information to create the java command necessary to start the given class as a separate
-	 * process.
-	 */
-	private String createJavaCommand() {
-
-		final StringBuilder command = new StringBuilder();
 
-		command.append(getJavaCommandPath());
+			if (archiveArguments != null && archiveArguments.getRecordingFile() != null) {
+				archive.install(archiveArguments.getRecordingFile());
+			}
 
-		if (useSplitVerifier) {
-			command.append(USE_SPLIT_VERIFIER_ARG);
+			throw e;
 		}
 
-		if (vmArgs != null) {
-			command.append(vmArgs + " ");
-		}
+		if (archiveArguments != null && archiveArguments.getRecordingFile() != null) {
+			final Path recordingFile = archiveArguments.getRecordingFile();
 
-		command.append(getJavaLibraryPath());
-		command.append(getClasspath());
-		command.append(classToRun.getName() + " ");
-		command.append(getClassArgs());
+			process.onExit().thenRun(new Runnable() {
+				@Override
+				public void run() {
+					archive.install(recordingFile);
+				}
+			});
+		}
 
-		return command.toString();
+		redirectConsoleOutput(consolePrefix);
 	}
 
 	/**
-	 * Returns the class args as a single string formatted for the 'java' command.
+	 * Use all of the provided information to create the java command necessary to start the given class as a separate
+	 * process.
 	 */
-	private StringBuilder getClassArgs() {
-		if (classArgs == null || classArgs.size() == 0) {
-			return new StringBuilder("");
-		}
+	private List<String> createJavaCommand(final String childClasspath, final List<String> archiveArguments) {
+		final List<String> command = new ArrayList<>();
 
-		final StringBuilder sb = new StringBuilder();
+		command.add(JAVA_EXECUTABLE);
+		command.addAll(archiveArguments);
+		command.addAll(options.getArguments());
 
-		for (final String arg : classArgs) {
-			sb.append(arg + " ");
+		if (javaLibraryPath != null) {
+			command.add("-Djava.library.path=" + javaLibraryPath);
 		}
-		return sb;
-	}
 
-	/**
-	 * Returns the classpath as a single string (beginning -cp) formatted for the 'java' command.
-	 */
-	private String getClasspath() {
-		return "-cp \"" + classpath + "\" ";
-	}
-
-	/**
-	 * Returns the java.library.path as a single string (beginning -Djava.library.path=) formatted for the 'java'
-	 * command.
-	 */
-	private String getJavaLibraryPath() {
-		if (javaLibraryPath == null) {
-			return "";
-		} else {
-			final String sanitizedPath = javaLibraryPath.replaceAll("\"", "");
-			return "-Djava.library.path=\"" + sanitizedPath + "\" ";
-		}
-	}
+		command.add("-cp");
+		command.add(childClasspath);
+		command.add(classToRun.getName());
+		command.addAll(classArgs);
 
-	/**
-	 * Returns the java command path. This may be just 'java', but in future we might have to specify a full path in
-	 * some systems if 'java' is not set.
-	 */
-	private static String getJavaCommandPath() {
-		return DEFAULT_JAVA_COMMAND_PATH;
+		return command;
 	}
 }
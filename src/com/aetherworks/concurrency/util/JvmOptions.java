@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * How a {@link JavaProcess} starts its JVM, mostly to make short-lived children start faster. Immutable: each
+ * <tt>with</tt> method returns a copy with one option changed. Options left at zero or false leave the JVM's own
+ * default in place.
+ */
+public final class JvmOptions {
+
+	private static final JvmOptions DEFAULTS = new JvmOptions(0, 0, false, Collections.<String> emptyList());
+
+	private final int tieredStopAtLevel;
+
+	private final int heapMegabytes;
+
+	private final boolean appCds;
+
+	private final List<String> extraArguments;
+
+	private JvmOptions(final int tieredStopAtLevel, final int heapMegabytes, final boolean appCds, final List<String> extraArguments) {
+		this.tieredStopAtLevel = tieredStopAtLevel;
+		this.heapMegabytes = heapMegabytes;
+		this.appCds = appCds;
+		this.extraArguments = Collections.unmodifiableList(new ArrayList<>(extraArguments));
+	}
+
+	/**
+	 * No options: the JVM starts exactly as <tt>java</tt> would by default.
+	 */
+	public static JvmOptions defaults() {
+		return DEFAULTS;
+	}
+
+	/**
+	 * Stop compiling at this tier. 1 uses only the client compiler, which is much cheaper for a process that makes one
+	 * call and exits, but makes long-running code slower.
+	 */
+	public JvmOptions withTieredStopAtLevel(final int level) {
+		checkArgument(level >= 0 && level <= 4, "Tiered compilation levels run from 0 to 4, not %s.", level);
+
+		return new JvmOptions(level, heapMegabytes, appCds, extraArguments);
+	}
+
+	/**
+	 * Fix the initial and maximum heap at this size, so the JVM neither sizes it from the machine's memory nor grows it.
+	 */
+	public JvmOptions withHeapMegabytes(final int megabytes) {
+		checkArgument(megabytes >= 0, "The heap size can't be negative.");
+
+		return new JvmOptions(tieredStopAtLevel, megabytes, appCds, extraArguments);
+	}
+
+	/**
+	 * Load classes from an {@link AppCdsArchive} of the classpath, which is generated by the first process that uses it.
+	 */
+	public JvmOptions withAppCds(final boolean enabled) {
+		return new JvmOptions(tieredStopAtLevel, heapMegabytes, enabled, extraArguments);
+	}
+
+	/**
+	 * Pass these arguments to the JVM as well, after the others.
+	 * 
+	 * @param arguments
+	 *        Arguments separated by whitespace. None may contain whitespace itself.
+	 */
+	public JvmOptions withExtraArguments(final String arguments) {
+		final List<String> extra = new ArrayList<>(extraArguments);
+
+		for (final String argument : arguments.trim().split("\\s+")) {
+			if (!argument.isEmpty()) {
+				extra.add(argument);
+			}
+		}
+
+		return new JvmOptions(tieredStopAtLevel, heapMegabytes, appCds, extra);
+	}
+
+	public int getTieredStopAtLevel() {
+		return tieredStopAtLevel;
+	}
+
+	public int getHeapMegabytes() {
+		return heapMegabytes;
+	}
+
+	public boolean isAppCds() {
+		return appCds;
+	}
+
+	/**
+	 * The JVM arguments for every option except the class data archive, which depends on the classpath.
+	 */
+	List<String> getArguments() {
+		final List<String> arguments = new ArrayList<>();
+
+		if (tieredStopAtLevel > 0) {
+			arguments.add("-XX:TieredStopAtLevel=" + tieredStopAtLevel);
+		}
+
+		if (heapMegabytes > 0) {
+			arguments.addAll(Arrays.asList("-Xms" + heapMegabytes + "m", "-Xmx" + heapMegabytes + "m"));
+		}
+
+		arguments.addAll(extraArguments);
+
+		return arguments;
+	}
+
+	@Override
+	public String toString() {
+		return "tiered stop level=" + tieredStopAtLevel + ", heap=" + heapMegabytes + "MB, AppCDS=" + appCds + ", extra arguments="
+				+ extraArguments;
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2015, AetherWorks LLC.
+ */
+
+package com.aetherworks.concurrency.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.aetherworks.concurrency.stats.LatencyHistogram;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Starts child processes from a small pool of threads, so the caller doesn't wait for each one in turn, while limiting
+ * how many children are starting up at the same time so that they don't all compete for the CPU at once.
+ * <p>
+ * Each launching thread starts a child and then waits until the child reports that it has started, or exits, before
+ * starting the next. The time from starting the process to the child reporting that it has started is recorded as its
+ * startup time.
+ * <p>
+ * Closing the launcher fails the launch of every child that has not yet finished starting up, and destroys those that
+ * were part way through, so nothing waits on a launch that will never happen.
+ */
+public class ProcessLauncher implements Closeable {
+	private final static Logger LOGGER = Logger.getLogger(ProcessLauncher.class.getName());
+
+	/**
+	 * How often to check whether a child has started.
+	 */
+	private static final long STARTUP_POLL_MICROS = 200;
+
+	/**
+	 * How long to wait for a child to start before launching the next one anyway.
+	 */
+	private static final long STARTUP_TIMEOUT_SECONDS = 60;
+
+	private final ExecutorService launchers;
+
+	/**
+	 * Guarded by itself.
+	 */
+	private final LatencyHistogram startupTimes = new LatencyHistogram();
+
+	/**
+	 * @param parallelism
+	 *        The most children that can be starting up at once.
+	 */
+	public ProcessLauncher(final int parallelism) {
+		checkArgument(parallelism > 0, "At least one process must be able to start at a time.");
+
+		launchers = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder().setNameFormat("process-launcher-%d")
+				.setDaemon(true).build());
+	}
+
+	/**
+	 * Start <tt>process</tt> as soon as fewer than the maximum number of children are starting up.
+	 * 
+	 * @param started
+	 *        Whether the child has finished starting up, however it reports that.
+	 * @return Completes with the {@link System#nanoTime()} the process was started at, once it has started up, exited or
+	 *         timed out, or completes exceptionally if it couldn't be started or the launcher was closed first.
+	 */
+	public CompletableFuture<Long> launch(final SeparateProcess process, final String consolePrefix, final BooleanSupplier started) {
+		final Launch launch = new Launch(process, consolePrefix, started);
+
+		try {
+			launchers.execute(launch);
+		} catch (final RejectedExecutionException e) {
+			launch.launched.completeExceptionally(new IOException("The launcher is closed.", e));
+		}
+
+		return launch.launched;
+	}
+
+	/**
+	 * The startup times of every child this launcher has started, in nanoseconds.
+	 */
+	public LatencyHistogram getStartupTimes() {
+		final LatencyHistogram copy = new LatencyHistogram();
+
+		synchronized (startupTimes) {
+			copy.add(startupTimes);
+		}
+
+		return copy;
+	}
+
+	/**
+	 * Stop launching. Children that have already started up are left running, while those starting up are destroyed and
+	 * those still waiting to be launched never are; the launches of both complete exceptionally.
+	 */
+	@Override
+	public void close() {
+		for (final Runnable pending : launchers.shutdownNow()) {
+			final Launch launch = (Launch) pending;
+
+			launch.launched.completeExceptionally(new IOException("The launcher was closed before child " + launch.consolePrefix
+					+ "was started."));
+		}
+	}
+
+	private static void destroy(final SeparateProcess process) {
+		try {
+			process.killProcess();
+		} catch (final DeadProcessException e) {
+			// It exited anyway.
+		}
+	}
+
+	/**
+	 * Starts one child, and waits for it to start up, on a launching thread.
+	 */
+	private class Launch implements Runnable {
+		private final SeparateProcess process;
+
+		private final String consolePrefix;
+
+		private final BooleanSupplier started;
+
+		private final CompletableFuture<Long> launched = new CompletableFuture<>();
+
+		Launch(final SeparateProcess process, final String consolePrefix, final BooleanSupplier started) {
+			this.process = process;
+			this.consolePrefix = consolePrefix;
+			this.started = started;
+		}
+
+		@Override
+		public void run() {
+			try {
+				launched.complete(startAndWait());
+			} catch (final IOException | RuntimeException e) {
+				launched.completeExceptionally(e);
+			}
+		}
+
+		private long startAndWait() throws IOException {
+			final long launchTime = System.nanoTime();
+
+			process.executeProcess(consolePrefix);
+
+			final long deadline = launchTime + TimeUnit.SECONDS.toNanos(STARTUP_TIMEOUT_SECONDS);
+
+			while (!started.getAsBoolean()) {
+				if (!process.isAlive()) {
+					return launchTime;
+				}
+
+				if (Thread.interrupted()) {
+					destroy(process);
+					Thread.currentThread().interrupt();
+
+					throw new IOException("The launcher was closed while child " + consolePrefix + "was starting up.");
+				}
+
+				if (System.nanoTime() - deadline > 0) {
+					LOGGER.log(Level.WARNING, "Child " + consolePrefix + "has not started after " + STARTUP_TIMEOUT_SECONDS + " seconds.");
+					return launchTime;
+				}
+
+				LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(STARTUP_POLL_MICROS));
+			}
+
+			final long startupNanos = System.nanoTime() - launchTime;
+
+			synchronized (startupTimes) {
+				startupTimes.recordValue(startupNanos);
+			}
+
+			return launchTime;
+		}
+	}
+}
@@ -5,6 +5,8 @@
 package com.aetherworks.concurrency.util;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -24,16 +26,6 @@ public abstract class SeparateProcess {
 	 */
 	protected Process process;
 
-	/**
-	 * Thread managing the redirection of standard output for this process to a particular print stream.
-	 */
-	private Thread outWriter;
-
-	/**
-	 * Thread managing the redirection of standard error for this process to a particular print stream.
-	 */
-	private Thread errWriter;
-
 	/**
 	 * Start the execution of the separate process.
 	 * 
@@ -60,11 +52,24 @@ public abstract class SeparateProcess {
 			throw new DeadProcessException("The process has not yet been created so no exit value can be retrieved.");
 		}
 
-		try {
-			return process.waitFor();
-		} finally {
-			stopThreads();
+		return process.waitFor();
+	}
+
+	/**
+	 * A future that completes with the exit value of the process once it has terminated, without a thread having to wait
+	 * for it. Completes immediately with -1 if the process has not been created.
+	 */
+	public CompletableFuture<Integer> onExit() {
+		if (process == null) {
+			return CompletableFuture.completedFuture(-1);
 		}
+
+		return process.onExit().thenApply(new Function<Process, Integer>() {
+			@Override
+			public Integer apply(final Process exited) {
+				return exited.exitValue();
+			}
+		});
 	}
 
 	/**
@@ -79,8 +84,6 @@ public abstract class SeparateProcess {
 		}
 
 		process.destroy();
-
-		stopThreads();
 	}
 
 	/**
@@ -120,22 +123,11 @@ public abstract class SeparateProcess {
 		return process.exitValue();
 	}
 
-	private void stopThreads() {
-		if (outWriter != null) {
-			outWriter.interrupt();
-			outWriter = null;
-		}
-
-		if (errWriter != null) {
-			errWriter.interrupt();
-			errWriter = null;
-		}
-	}
-
-	protected void redirectConsoleOutput(@Nonnull final String consolePrefix, @Nonnull final String threadName) {
-		outWriter = ConsoleWriterFactory.createConsoleWriter(consolePrefix, threadName + "-OutConsoleWriter", process.getInputStream(),
-				System.out);
-		errWriter = ConsoleWriterFactory.createConsoleWriter(consolePrefix, threadName + "-ErrConsoleWriter", process.getErrorStream(),
-				System.err);
+	/**
+	 * Copy the process's console output to this process's console, through the shared {@link ConsoleMultiplexer}. The
+	 * output keeps being copied until the process exits.
+	 */
+	protected void redirectConsoleOutput(@Nonnull final String consolePrefix) {
+		ConsoleMultiplexer.getInstance().register(consolePrefix, process);
 	}
 }